@@ -0,0 +1,401 @@
+package hashmap;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *  A thread-safe hash table-backed Map implementation.
+ *
+ *  写操作使用分段锁：桶 i 由 locks[i & (STRIPES - 1)] 保护。表长总是不小于 STRIPES 的 2 的幂，
+ *  扩容时桶 i 只会拆分到新表的 i 和 i + n，它们对应同一把锁，所以锁的划分在扩容前后保持不变。
+ *
+ *  读操作不加锁：表本身通过 volatile 字段发布，桶通过 AtomicReferenceArray 读写，
+ *  链表节点不可变，写操作在锁内复制被修改节点之前的部分，再用一次 set 替换整个桶。
+ *  读者看到的总是某一时刻完整的链表。
+ *
+ *  扩容由多个线程协作完成：第一个发现负载超过阈值的线程创建新表，
+ *  之后任何写线程遇到正在扩容都会按 TRANSFER_STRIDE 个桶一段领取任务，在桶的锁内把链表拆分到新表，
+ *  再在旧表原位置放一个指向新表的 Forwarding 节点。读写操作遇到 Forwarding 节点就转到新表继续。
+ *  最后一个完成迁移的线程发布新表。当前表和正在进行的扩容放在同一个不可变的 State 中，
+ *  通过一个 AtomicReference 一起发布：开始扩容时对读到的 State 做 CAS，
+ *  因此不会为已经过期的表开始扩容，每张表也最多只被扩容一次。
+ *
+ *  迭代器、keySet 和 clear 都是弱一致的：它们逐桶进行，不保证反映并发修改。
+ *  Assumes null keys will never be inserted.
+ *  @author YOUR NAME HERE
+ */
+public class ConcurrentMyHashMap<K, V> implements Map61B<K, V> {
+
+    /** 锁的数量，也是表长的下限 */
+    private static final int STRIPES = 64;
+
+    /** 扩容时每个线程一次领取的桶数 */
+    private static final int TRANSFER_STRIDE = 16;
+
+    /** 不可变的链表节点 */
+    private static class Node<K, V> {
+        final int hash;
+        final K key;
+        final V value;
+        final Node<K, V> next;
+
+        Node(int hash, K key, V value, Node<K, V> next) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    /** 放在已迁移的桶中，指向新表 */
+    private static class Forwarding<K, V> extends Node<K, V> {
+        final AtomicReferenceArray<Node<K, V>> nextTable;
+
+        Forwarding(AtomicReferenceArray<Node<K, V>> nextTable) {
+            super(-1, null, null, null);
+            this.nextTable = nextTable;
+        }
+    }
+
+    /** 一次正在进行的扩容 */
+    private static class Resize<K, V> {
+        final AtomicReferenceArray<Node<K, V>> from;
+        final AtomicReferenceArray<Node<K, V>> to;
+        /** 下一个未被领取的桶 */
+        final AtomicInteger nextIndex = new AtomicInteger();
+        /** 已迁移的桶数 */
+        final AtomicInteger moved = new AtomicInteger();
+
+        Resize(AtomicReferenceArray<Node<K, V>> from) {
+            this.from = from;
+            this.to = new AtomicReferenceArray<>(from.length() * 2);
+        }
+    }
+
+    /** 当前表和它正在进行的扩容（没有时为 null） */
+    private static class State<K, V> {
+        final AtomicReferenceArray<Node<K, V>> table;
+        final Resize<K, V> resize;
+
+        State(AtomicReferenceArray<Node<K, V>> table, Resize<K, V> resize) {
+            this.table = table;
+            this.resize = resize;
+        }
+    }
+
+    /* Instance Variables */
+    private final AtomicReference<State<K, V>> state = new AtomicReference<>();
+    /** 只供测试使用：开始扩容的 CAS 之前调用，用来构造其他线程抢先完成扩容的交错 */
+    volatile Runnable beforeResizeCas;
+    private final Object[] locks = new Object[STRIPES];
+    private final LongAdder count = new LongAdder();
+    private final double maxLoadFactor;
+
+    /** Constructors */
+    public ConcurrentMyHashMap() {
+        this(STRIPES, 0.75);
+    }
+
+    public ConcurrentMyHashMap(int initialSize) {
+        this(initialSize, 0.75);
+    }
+
+    /**
+     * @param initialSize initial size of backing array, rounded up to a power of two no less than 64
+     * @param maxLoad maximum load factor
+     */
+    public ConcurrentMyHashMap(int initialSize, double maxLoad) {
+        maxLoadFactor = maxLoad;
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        int capacity = STRIPES;
+        while (capacity < initialSize) {
+            capacity <<= 1;
+        }
+        state.set(new State<>(new AtomicReferenceArray<>(capacity), null));
+    }
+
+    private AtomicReferenceArray<Node<K, V>> table() {
+        return state.get().table;
+    }
+
+    /** 把高位折叠到低位，结果非负（-1 留给 Forwarding） */
+    private static int spread(int h) {
+        return (h ^ (h >>> 16)) & 0x7fffffff;
+    }
+
+    private Object lockFor(int index) {
+        return locks[index & (STRIPES - 1)];
+    }
+
+    private static <K, V> Node<K, V> findIn(Node<K, V> head, int hash, K key) {
+        for (Node<K, V> e = head; e != null; e = e.next) {
+            if (e.hash == hash && key.equals(e.key)) {
+                return e;
+            }
+        }
+        return null;
+    }
+
+    /** 无锁查找：沿 Forwarding 节点找到 key 当前所在的桶 */
+    private Node<K, V> getNode(K key) {
+        if (key == null) {
+            return null;
+        }
+        int h = spread(key.hashCode());
+        AtomicReferenceArray<Node<K, V>> tab = table();
+        while (true) {
+            Node<K, V> head = tab.get(h & (tab.length() - 1));
+            if (head instanceof Forwarding) {
+                tab = ((Forwarding<K, V>) head).nextTable;
+                continue;
+            }
+            return findIn(head, h, key);
+        }
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return getNode(key) != null;
+    }
+
+    @Override
+    public V get(K key) {
+        Node<K, V> node = getNode(key);
+        return node != null ? node.value : null;
+    }
+
+    @Override
+    public int size() {
+        return (int) count.sum();
+    }
+
+    @Override
+    public void put(K key, V value) {
+        if (key == null) {
+            throw new IllegalArgumentException("null keys are not supported");
+        }
+        int h = spread(key.hashCode());
+        AtomicReferenceArray<Node<K, V>> tab = table();
+        while (true) {
+            int i = h & (tab.length() - 1);
+            if (tab.get(i) instanceof Forwarding) {
+                tab = helpResize(tab, i);
+                continue;
+            }
+            synchronized (lockFor(i)) {
+                Node<K, V> head = tab.get(i);
+                // 加锁前这个桶刚被迁移
+                if (head instanceof Forwarding) {
+                    continue;
+                }
+                Node<K, V> old = findIn(head, h, key);
+                if (old != null) {
+                    tab.set(i, replace(head, old, new Node<>(h, key, value, old.next)));
+                    return;
+                }
+                tab.set(i, new Node<>(h, key, value, head));
+            }
+            count.increment();
+            if (count.sum() > (long) (tab.length() * maxLoadFactor)) {
+                startResize(tab);
+            }
+            return;
+        }
+    }
+
+    @Override
+    public V remove(K key) {
+        return remove(key, null, false);
+    }
+
+    @Override
+    public V remove(K key, V value) {
+        return remove(key, value, true);
+    }
+
+    /** 删除 key；matchValue 为 true 时只在当前值等于 value 时删除 */
+    private V remove(K key, V value, boolean matchValue) {
+        if (key == null) {
+            return null;
+        }
+        int h = spread(key.hashCode());
+        AtomicReferenceArray<Node<K, V>> tab = table();
+        while (true) {
+            int i = h & (tab.length() - 1);
+            if (tab.get(i) instanceof Forwarding) {
+                tab = helpResize(tab, i);
+                continue;
+            }
+            synchronized (lockFor(i)) {
+                Node<K, V> head = tab.get(i);
+                if (head instanceof Forwarding) {
+                    continue;
+                }
+                Node<K, V> old = findIn(head, h, key);
+                if (old == null || (matchValue && !Objects.equals(old.value, value))) {
+                    return null;
+                }
+                tab.set(i, replace(head, old, old.next));
+                count.decrement();
+                return old.value;
+            }
+        }
+    }
+
+    /** 返回把 head 链表中的 target 换成 replacement 链后的新链表，复制 target 之前的节点 */
+    private static <K, V> Node<K, V> replace(Node<K, V> head, Node<K, V> target, Node<K, V> replacement) {
+        if (head == target) {
+            return replacement;
+        }
+        return new Node<>(head.hash, head.key, head.value, replace(head.next, target, replacement));
+    }
+
+    @Override
+    public void clear() {
+        AtomicReferenceArray<Node<K, V>> tab = table();
+        for (int i = 0; i < tab.length(); i++) {
+            clearBucket(tab, i);
+        }
+    }
+
+    /** 清空桶 i；桶已迁移时清空它在新表中对应的两个桶 */
+    private void clearBucket(AtomicReferenceArray<Node<K, V>> tab, int i) {
+        synchronized (lockFor(i)) {
+            Node<K, V> head = tab.get(i);
+            if (!(head instanceof Forwarding)) {
+                for (Node<K, V> e = head; e != null; e = e.next) {
+                    count.decrement();
+                }
+                tab.set(i, null);
+                return;
+            }
+        }
+        AtomicReferenceArray<Node<K, V>> next = ((Forwarding<K, V>) tab.get(i)).nextTable;
+        clearBucket(next, i);
+        clearBucket(next, i + tab.length());
+    }
+
+    /**
+     * tab 的负载超过阈值时调用。tab 仍是当前表且没有正在进行的扩容时开始扩容，
+     * 正在扩容 tab 时协助，tab 已经过期时什么也不做。
+     */
+    private void startResize(AtomicReferenceArray<Node<K, V>> tab) {
+        while (true) {
+            State<K, V> s = state.get();
+            if (s.table != tab) {
+                return;
+            }
+            if (s.resize != null) {
+                transfer(s.resize);
+                return;
+            }
+            Runnable hook = beforeResizeCas;
+            if (hook != null) {
+                hook.run();
+            }
+            Resize<K, V> r = new Resize<>(tab);
+            // 与读到的 State 比较，期间另一个线程开始或完成了扩容时 CAS 失败，重新判断
+            if (state.compareAndSet(s, new State<>(tab, r))) {
+                transfer(r);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 在 tab 的桶 i 遇到 Forwarding 节点时调用：协助正在进行的扩容，返回桶 i 被迁移到的新表。
+     */
+    private AtomicReferenceArray<Node<K, V>> helpResize(AtomicReferenceArray<Node<K, V>> tab, int i) {
+        Resize<K, V> r = state.get().resize;
+        if (r != null && r.from == tab) {
+            transfer(r);
+        }
+        return ((Forwarding<K, V>) tab.get(i)).nextTable;
+    }
+
+    /** 领取并迁移桶，直到没有未被领取的桶；迁移最后一段的线程发布新表 */
+    private void transfer(Resize<K, V> r) {
+        int n = r.from.length();
+        while (true) {
+            int start = r.nextIndex.getAndAdd(TRANSFER_STRIDE);
+            if (start >= n) {
+                return;
+            }
+            int end = Math.min(start + TRANSFER_STRIDE, n);
+            for (int i = start; i < end; i++) {
+                transferBucket(r, i, n);
+            }
+            if (r.moved.addAndGet(end - start) == n) {
+                // 扩容进行期间没有人能替换 State，这里一定还是 (r.from, r)
+                state.set(new State<>(r.to, null));
+                return;
+            }
+        }
+    }
+
+    /** 在锁内把旧表桶 i 的链表拆分到新表的 i 和 i + n，再放入 Forwarding 节点；已迁移的桶跳过 */
+    private void transferBucket(Resize<K, V> r, int i, int n) {
+        synchronized (lockFor(i)) {
+            Node<K, V> head = r.from.get(i);
+            if (head instanceof Forwarding) {
+                // 已经迁移过，Forwarding 节点不是数据
+                return;
+            }
+            Node<K, V> lo = null;
+            Node<K, V> hi = null;
+            for (Node<K, V> e = head; e != null; e = e.next) {
+                if ((e.hash & n) == 0) {
+                    lo = new Node<>(e.hash, e.key, e.value, lo);
+                } else {
+                    hi = new Node<>(e.hash, e.key, e.value, hi);
+                }
+            }
+            r.to.set(i, lo);
+            r.to.set(i + n, hi);
+            r.from.set(i, new Forwarding<>(r.to));
+        }
+    }
+
+    @Override
+    public Set<K> keySet() {
+        Set<K> s = new HashSet<>();
+        for (K key : this) {
+            s.add(key);
+        }
+        return s;
+    }
+
+    /** 返回逐桶收集的键的快照上的迭代器 */
+    @Override
+    public Iterator<K> iterator() {
+        List<K> keys = new ArrayList<>();
+        AtomicReferenceArray<Node<K, V>> tab = table();
+        for (int i = 0; i < tab.length(); i++) {
+            collectKeys(tab, i, keys);
+        }
+        return keys.iterator();
+    }
+
+    private static <K, V> void collectKeys(AtomicReferenceArray<Node<K, V>> tab, int i, List<K> keys) {
+        Node<K, V> head = tab.get(i);
+        if (head instanceof Forwarding) {
+            AtomicReferenceArray<Node<K, V>> next = ((Forwarding<K, V>) head).nextTable;
+            collectKeys(next, i, keys);
+            collectKeys(next, i + tab.length(), keys);
+            return;
+        }
+        for (Node<K, V> e = head; e != null; e = e.next) {
+            keys.add(e.key);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package hashmap;
+
+import java.util.function.IntBinaryOperator;
+
+/**
+ *  A hash map from int keys to int values that never boxes.
+ *
+ *  键和值存放在两个 int 数组中，探测、删除和扩容由 PrimitiveHashTable 完成。
+ *  数组中用 0 表示空槽位，键 0 的值单独存放在 zeroValue 中。
+ *  与 IntObjectHashMap 一致，get 和 remove 在键不存在时返回 0，需要区分时用 containsKey。
+ *
+ *  @author YOUR NAME HERE
+ */
+public class IntIntHashMap extends PrimitiveHashTable {
+
+    /** 按 (键, 值) 遍历时调用的回调，参数都是 int，不装箱 */
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(int key, int value);
+    }
+
+    /* Instance Variables */
+    private int[] keys;
+    private int[] values;
+    private int zeroValue;
+
+    /** Constructors */
+    public IntIntHashMap() {
+        this(DEFAULT_CAPACITY, DEFAULT_MAX_LOAD);
+    }
+
+    public IntIntHashMap(int initialSize) {
+        this(initialSize, DEFAULT_MAX_LOAD);
+    }
+
+    /**
+     * @param initialSize initial size of backing arrays, rounded up to a power of two
+     * @param maxLoad maximum load factor, must be in (0, 1)
+     */
+    public IntIntHashMap(int initialSize, double maxLoad) {
+        super(initialSize, maxLoad);
+    }
+
+    /** 返回 key 的理想槽位 */
+    private int slotOf(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /** 返回非零 key 所在的槽位，不存在时返回 -1 */
+    private int find(int key) {
+        for (int i = slotOf(key); keys[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public boolean containsKey(int key) {
+        return key == 0 ? hasZeroKey : find(key) >= 0;
+    }
+
+    /** 返回 key 对应的值，不存在时返回 0 */
+    public int get(int key) {
+        return getOrDefault(key, 0);
+    }
+
+    /** 返回 key 对应的值，不存在时返回 defaultValue */
+    public int getOrDefault(int key, int defaultValue) {
+        if (key == 0) {
+            return hasZeroKey ? zeroValue : defaultValue;
+        }
+        int i = find(key);
+        return i >= 0 ? values[i] : defaultValue;
+    }
+
+    /** Associates value with key, replacing any old value. */
+    public void put(int key, int value) {
+        if (key == 0) {
+            hasZeroKey = true;
+            zeroValue = value;
+            return;
+        }
+        int i = slotOf(key);
+        while (keys[i] != 0) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        insertAt(i, key, value);
+    }
+
+    /**
+     * 把 key 对应的值加上 delta，key 不存在时视为 0，返回新的值。
+     * 只探测一次，适合计数。
+     */
+    public int increment(int key, int delta) {
+        if (key == 0) {
+            zeroValue = hasZeroKey ? zeroValue + delta : delta;
+            hasZeroKey = true;
+            return zeroValue;
+        }
+        int i = slotOf(key);
+        while (keys[i] != 0) {
+            if (keys[i] == key) {
+                values[i] += delta;
+                return values[i];
+            }
+            i = (i + 1) & mask;
+        }
+        insertAt(i, key, delta);
+        return delta;
+    }
+
+    /**
+     * key 不存在时放入 value，否则放入 fn(旧值, value)，返回新的值。
+     * 与 java.util.Map.merge 不同，结果不能表示“删除”。
+     */
+    public int merge(int key, int value, IntBinaryOperator fn) {
+        if (key == 0) {
+            zeroValue = hasZeroKey ? fn.applyAsInt(zeroValue, value) : value;
+            hasZeroKey = true;
+            return zeroValue;
+        }
+        int i = slotOf(key);
+        while (keys[i] != 0) {
+            if (keys[i] == key) {
+                values[i] = fn.applyAsInt(values[i], value);
+                return values[i];
+            }
+            i = (i + 1) & mask;
+        }
+        insertAt(i, key, value);
+        return value;
+    }
+
+    /** 在空槽位 i 放入键值对，必要时扩容 */
+    private void insertAt(int i, int key, int value) {
+        keys[i] = key;
+        values[i] = value;
+        inserted();
+    }
+
+    /** Removes the mapping for key if present, returning its value or 0. */
+    public int remove(int key) {
+        if (key == 0) {
+            int old = zeroValue;
+            hasZeroKey = false;
+            zeroValue = 0;
+            return old;
+        }
+        int i = find(key);
+        if (i < 0) {
+            return 0;
+        }
+        int old = values[i];
+        deleteSlot(i);
+        return old;
+    }
+
+    /** 对每个键值对调用 action，顺序不确定 */
+    public void forEach(EntryConsumer action) {
+        if (hasZeroKey) {
+            action.accept(0, zeroValue);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                action.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    /** 返回所有键组成的新数组，顺序不确定 */
+    public int[] keys() {
+        int[] res = new int[size()];
+        int n = 0;
+        if (hasZeroKey) {
+            res[n++] = 0;
+        }
+        for (int key : keys) {
+            if (key != 0) {
+                res[n++] = key;
+            }
+        }
+        return res;
+    }
+
+    @Override
+    void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+    }
+
+    @Override
+    boolean isFree(int i) {
+        return keys[i] == 0;
+    }
+
+    @Override
+    int homeOf(int i) {
+        return slotOf(keys[i]);
+    }
+
+    @Override
+    void move(int from, int to) {
+        keys[to] = keys[from];
+        values[to] = values[from];
+    }
+
+    @Override
+    void clearSlot(int i) {
+        keys[i] = 0;
+        values[i] = 0;
+    }
+
+    @Override
+    void relocate(int[] target, int capacity) {
+        int[] newKeys = new int[capacity];
+        int[] newValues = new int[capacity];
+        for (int j = 0; j < target.length; j++) {
+            if (target[j] >= 0) {
+                newKeys[target[j]] = keys[j];
+                newValues[target[j]] = values[j];
+            }
+        }
+        keys = newKeys;
+        values = newValues;
+    }
+
+    @Override
+    void clearZeroValue() {
+        zeroValue = 0;
+    }
+}
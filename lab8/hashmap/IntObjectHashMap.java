@@ -0,0 +1,236 @@
+package hashmap;
+
+import java.util.Objects;
+import java.util.function.BiFunction;
+
+/**
+ *  A hash map from int keys to object values that never boxes its keys.
+ *
+ *  与 IntIntHashMap 相同，探测、删除和扩容由 PrimitiveHashTable 完成，值存放在 Object 数组中。
+ *  数组中用键 0 表示空槽位，键 0 的值单独存放在 zeroValue 中。
+ *  值可以为 null，get 和 remove 返回 null 时用 containsKey 区分。
+ *
+ *  @author YOUR NAME HERE
+ */
+public class IntObjectHashMap<V> extends PrimitiveHashTable {
+
+    /** 按 (键, 值) 遍历时调用的回调，键不装箱 */
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        void accept(int key, V value);
+    }
+
+    /* Instance Variables */
+    private int[] keys;
+    private V[] values;
+    private V zeroValue;
+
+    /** Constructors */
+    public IntObjectHashMap() {
+        this(DEFAULT_CAPACITY, DEFAULT_MAX_LOAD);
+    }
+
+    public IntObjectHashMap(int initialSize) {
+        this(initialSize, DEFAULT_MAX_LOAD);
+    }
+
+    /**
+     * @param initialSize initial size of backing arrays, rounded up to a power of two
+     * @param maxLoad maximum load factor, must be in (0, 1)
+     */
+    public IntObjectHashMap(int initialSize, double maxLoad) {
+        super(initialSize, maxLoad);
+    }
+
+    /** 返回长度为 capacity 的值数组 */
+    @SuppressWarnings("unchecked")
+    private V[] newValues(int capacity) {
+        return (V[]) new Object[capacity];
+    }
+
+    /** 返回 key 的理想槽位 */
+    private int slotOf(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /** 返回非零 key 所在的槽位，不存在时返回 -1 */
+    private int find(int key) {
+        for (int i = slotOf(key); keys[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public boolean containsKey(int key) {
+        return key == 0 ? hasZeroKey : find(key) >= 0;
+    }
+
+    /** 返回 key 对应的值，不存在时返回 null */
+    public V get(int key) {
+        return getOrDefault(key, null);
+    }
+
+    /** 返回 key 对应的值，不存在时返回 defaultValue */
+    public V getOrDefault(int key, V defaultValue) {
+        if (key == 0) {
+            return hasZeroKey ? zeroValue : defaultValue;
+        }
+        int i = find(key);
+        return i >= 0 ? values[i] : defaultValue;
+    }
+
+    /** Associates value with key, returning the old value or null. */
+    public V put(int key, V value) {
+        if (key == 0) {
+            V old = zeroValue;
+            hasZeroKey = true;
+            zeroValue = value;
+            return old;
+        }
+        int i = slotOf(key);
+        while (keys[i] != 0) {
+            if (keys[i] == key) {
+                V old = values[i];
+                values[i] = value;
+                return old;
+            }
+            i = (i + 1) & mask;
+        }
+        insertAt(i, key, value);
+        return null;
+    }
+
+    /**
+     * key 不存在时放入 value，否则放入 fn(旧值, value)；fn 返回 null 时删除 key。
+     * 与 java.util.Map.merge 相同，返回新的值。
+     */
+    public V merge(int key, V value, BiFunction<? super V, ? super V, ? extends V> fn) {
+        Objects.requireNonNull(value);
+        if (key == 0) {
+            V merged = hasZeroKey && zeroValue != null ? fn.apply(zeroValue, value) : value;
+            if (merged == null) {
+                remove(0);
+            } else {
+                hasZeroKey = true;
+                zeroValue = merged;
+            }
+            return merged;
+        }
+        int i = slotOf(key);
+        while (keys[i] != 0) {
+            if (keys[i] == key) {
+                V merged = values[i] == null ? value : fn.apply(values[i], value);
+                if (merged == null) {
+                    deleteSlot(i);
+                } else {
+                    values[i] = merged;
+                }
+                return merged;
+            }
+            i = (i + 1) & mask;
+        }
+        insertAt(i, key, value);
+        return value;
+    }
+
+    /** 在空槽位 i 放入键值对，必要时扩容 */
+    private void insertAt(int i, int key, V value) {
+        keys[i] = key;
+        values[i] = value;
+        inserted();
+    }
+
+    /** Removes the mapping for key if present, returning its value or null. */
+    public V remove(int key) {
+        if (key == 0) {
+            V old = zeroValue;
+            hasZeroKey = false;
+            zeroValue = null;
+            return old;
+        }
+        int i = find(key);
+        if (i < 0) {
+            return null;
+        }
+        V old = values[i];
+        deleteSlot(i);
+        return old;
+    }
+
+    /** 对每个键值对调用 action，顺序不确定 */
+    public void forEach(EntryConsumer<? super V> action) {
+        if (hasZeroKey) {
+            action.accept(0, zeroValue);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                action.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    /** 返回所有键组成的新数组，顺序不确定 */
+    public int[] keys() {
+        int[] res = new int[size()];
+        int n = 0;
+        if (hasZeroKey) {
+            res[n++] = 0;
+        }
+        for (int key : keys) {
+            if (key != 0) {
+                res[n++] = key;
+            }
+        }
+        return res;
+    }
+
+    @Override
+    void allocate(int capacity) {
+        keys = new int[capacity];
+        values = newValues(capacity);
+    }
+
+    @Override
+    boolean isFree(int i) {
+        return keys[i] == 0;
+    }
+
+    @Override
+    int homeOf(int i) {
+        return slotOf(keys[i]);
+    }
+
+    @Override
+    void move(int from, int to) {
+        keys[to] = keys[from];
+        values[to] = values[from];
+    }
+
+    @Override
+    void clearSlot(int i) {
+        keys[i] = 0;
+        values[i] = null;
+    }
+
+    @Override
+    void relocate(int[] target, int capacity) {
+        int[] newKeys = new int[capacity];
+        V[] newValues = newValues(capacity);
+        for (int j = 0; j < target.length; j++) {
+            if (target[j] >= 0) {
+                newKeys[target[j]] = keys[j];
+                newValues[target[j]] = values[j];
+            }
+        }
+        keys = newKeys;
+        values = newValues;
+    }
+
+    @Override
+    void clearZeroValue() {
+        zeroValue = null;
+    }
+}
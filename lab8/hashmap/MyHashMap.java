@@ -7,6 +7,10 @@ import java.util.*;
  *  access to elements via get(), remove(), and put() in the best case.
  *
  *  Assumes null keys will never be inserted, and does not resize down upon remove().
+ *
+ *  在增量扩容模式下，resize() 只分配新表，不立即移动节点：旧表保留下来，
+ *  之后每次 put / remove 从旧表迁移至多 migrateStep 个桶，查找同时检查新表和旧表中尚未迁移的桶。
+ *  这样单次 put 的耗时不再随元素总数增长，代价是迁移期间查找可能多检查一个桶。
  *  @author YOUR NAME HERE
  */
 public class MyHashMap<K, V> implements Map61B<K, V> {
@@ -25,24 +29,36 @@ public class MyHashMap<K, V> implements Map61B<K, V> {
         }
     }
 
+    /** 增量扩容时每次 put / remove 至少迁移的旧桶数 */
+    private static final int MIGRATE_STEP = 4;
+
     /* Instance Variables */
     private Collection<Node>[] table;
     // You should probably define some more!
     private final double maxLoadFactor;
     private int numOfBucket;
     private int numOfNode;
+    /** 是否使用增量扩容 */
+    private final boolean incrementalResize;
+    /** 增量扩容时尚未迁移完的旧表，没有正在进行的迁移时为 null；已迁移的桶被置为 null */
+    private Collection<Node>[] oldTable;
+    private int numOfOldBucket;
+    /** 下一个要迁移的旧桶，小于它的旧桶都已迁移 */
+    private int migrateIndex;
+    /**
+     * 增量扩容时每次 put / remove 迁移的旧桶数。两次扩容之间大约有 maxLoad * 旧桶数 次 put，
+     * 每次迁移超过 1 / maxLoad 个桶才能在下次扩容前迁移完；负载因子很小时按它放大，
+     * 否则 resize() 只能一次性迁移剩下的桶
+     */
+    private final int migrateStep;
 
     /** Constructors */
     public MyHashMap() {
-        maxLoadFactor = 0.75;
-        numOfBucket = 16;
-        table = createTable(numOfBucket);
+        this(16, 0.75, false);
     }
 
     public MyHashMap(int initialSize) {
-        numOfBucket = initialSize;
-        maxLoadFactor = 0.75;
-        table = createTable(numOfBucket);
+        this(initialSize, 0.75, false);
     }
 
     /**
@@ -53,8 +69,22 @@ public class MyHashMap<K, V> implements Map61B<K, V> {
      * @param maxLoad maximum load factor
      */
     public MyHashMap(int initialSize, double maxLoad) {
+        this(initialSize, maxLoad, false);
+    }
+
+    /**
+     * MyHashMap constructor that optionally resizes incrementally: old and new
+     * tables coexist and a bounded number of buckets migrate on each put/remove.
+     *
+     * @param initialSize initial size of backing array
+     * @param maxLoad maximum load factor
+     * @param incremental whether to migrate buckets incrementally on resize
+     */
+    public MyHashMap(int initialSize, double maxLoad, boolean incremental) {
         numOfBucket = initialSize;
         maxLoadFactor = maxLoad;
+        incrementalResize = incremental;
+        migrateStep = Math.max(MIGRATE_STEP, (int) Math.ceil(1 / maxLoad) + 1);
         table = createTable(numOfBucket);
     }
 
@@ -98,7 +128,7 @@ public class MyHashMap<K, V> implements Map61B<K, V> {
      */
     private Collection<Node>[] createTable(int tableSize) {
         // 创建新 Collection 数组 table
-        Collection<Node>[] table = new Collection[tableSize];
+        Collection<Node>[] table = newTable(tableSize);
         // 遍历 table，调用 createBucket()
         for (int i = 0; i < table.length; i++) {
             table[i] = createBucket();
@@ -107,6 +137,12 @@ public class MyHashMap<K, V> implements Map61B<K, V> {
         return table;
     }
 
+    /** 创建长度为 tableSize 的空数组，桶由调用者创建。泛型数组只能由原始类型的数组转换得到 */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Collection<Node>[] newTable(int tableSize) {
+        return (Collection<Node>[]) new Collection[tableSize];
+    }
+
     // TODO: Implement the methods of the Map61B Interface below
     // Your code won't compile until you do so!
     @Override
@@ -114,10 +150,25 @@ public class MyHashMap<K, V> implements Map61B<K, V> {
         numOfBucket = 16;
         numOfNode = 0;
         table = createTable(numOfBucket);
+        oldTable = null;
     }
 
-    private Node getNode(K key) {
-        for (Node node : table[indexOf(key)]) {
+    /** 在 bucket 中查找 key，bucket 为 null（增量扩容中尚未创建的新桶）时返回 null */
+    private Node findIn(Collection<Node> bucket, K key) {
+        if (bucket == null) {
+            return null;
+        }
+        return findInBucket(bucket, key);
+    }
+
+    /**
+     * Returns the node with key in bucket, or null.
+     *
+     * 默认逐个比较；createBucket() 返回支持按键查找的 bucket 时，
+     * 子类覆盖这个方法使用 bucket 自己的查找（参见 MyHashMapTreeBuckets）。
+     */
+    protected Node findInBucket(Collection<Node> bucket, K key) {
+        for (Node node : bucket) {
             if (node.key.equals(key)) {
                 return node;
             }
@@ -125,6 +176,22 @@ public class MyHashMap<K, V> implements Map61B<K, V> {
         return null;
     }
 
+    /** 返回 key 在旧表中所在的桶，没有正在进行的迁移或该桶已迁移时返回 null */
+    private Collection<Node> oldBucketOf(K key) {
+        if (oldTable == null) {
+            return null;
+        }
+        return oldTable[Math.floorMod(key.hashCode(), numOfOldBucket)];
+    }
+
+    private Node getNode(K key) {
+        Node node = findIn(table[indexOf(key)], key);
+        if (node == null) {
+            node = findIn(oldBucketOf(key), key);
+        }
+        return node;
+    }
+
     @Override
     public boolean containsKey(K key) {
         return (getNode(key) != null);
@@ -146,21 +213,20 @@ public class MyHashMap<K, V> implements Map61B<K, V> {
 
     @Override
     public void put(K key, V value) {
-        // 创建新 newNode 储存键值对，获取哈希值，以确定 newNode 应在 table 中的位置
-        Node newNode = createNode(key, value);
-        int index = indexOf(key);
-
-        // 遍历相应位置的 bucket 查询是否存在相同的 node
-        // 如果已经存在则更新 value
-        for (Node node : table[index]) {
-            if (node.key.equals(newNode.key)) {
-                node.value = newNode.value;
-                return;
-            }
+        migrateSome();
+        // 查询新表和旧表中是否存在相同的 node，如果已经存在则更新 value
+        Node node = getNode(key);
+        if (node != null) {
+            node.value = value;
+            return;
         }
 
-        // 否则将 newNode 加入到 bucket 中，更新 nodeNum
-        table[index].add(newNode);
+        // 否则创建新 newNode 储存键值对，加入到新表相应位置的 bucket 中，更新 nodeNum
+        int index = indexOf(key);
+        if (table[index] == null) {
+            table[index] = createBucket();
+        }
+        table[index].add(createNode(key, value));
         numOfNode++;
         // 如果此时 loadFactor 到达阈值，则调用 resize()
         double lf = loadFactor();
@@ -180,19 +246,26 @@ public class MyHashMap<K, V> implements Map61B<K, V> {
 
     @Override
     public V remove(K key) {
-        Node node = getNode(key);
-        if (node != null) {
-            table[indexOf(key)].remove(node);
-            return node.value;
-        }
-        return null;
+        return remove(key, null, false);
     }
 
     @Override
     public V remove(K key, V value) {
-        Node node = getNode(key);
-        if (node != null && node.value.equals(value)) {
-            table[indexOf(key)].remove(node);
+        return remove(key, value, true);
+    }
+
+    /** 删除 key；matchValue 为 true 时只在当前值等于 value 时删除 */
+    private V remove(K key, V value, boolean matchValue) {
+        migrateSome();
+        Collection<Node> bucket = table[indexOf(key)];
+        Node node = findIn(bucket, key);
+        if (node == null) {
+            bucket = oldBucketOf(key);
+            node = findIn(bucket, key);
+        }
+        if (node != null && (!matchValue || node.value.equals(value))) {
+            bucket.remove(node);
+            numOfNode--;
             return node.value;
         }
         return null;
@@ -203,19 +276,23 @@ public class MyHashMap<K, V> implements Map61B<K, V> {
         return new MyHashMapIterator();
     }
 
+    /** 依次遍历新表和旧表中尚未迁移的桶 */
     private class MyHashMapIterator implements Iterator<K> {
         Iterator<Node> bucketIterator;
         int index;
+        final Collection<Node>[] newBuckets = table;
+        final Collection<Node>[] oldBuckets = oldTable;
+        final int total = table.length + (oldTable == null ? 0 : oldTable.length);
 
         public MyHashMapIterator() {
             index = 0;
-            bucketIterator = table[index].iterator();
+            bucketIterator = Collections.emptyIterator();
             moveToNext();
         }
 
         @Override
         public boolean hasNext() {
-            return index < numOfBucket;
+            return bucketIterator.hasNext();
         }
 
         @Override
@@ -230,10 +307,12 @@ public class MyHashMap<K, V> implements Map61B<K, V> {
         }
 
         private void moveToNext() {
-            while (index < numOfBucket && !bucketIterator.hasNext()) {
+            while (index < total && !bucketIterator.hasNext()) {
+                Collection<Node> bucket = index < newBuckets.length
+                        ? newBuckets[index] : oldBuckets[index - newBuckets.length];
                 index++;
-                if (index < numOfBucket) {
-                    bucketIterator = table[index].iterator();
+                if (bucket != null) {
+                    bucketIterator = bucket.iterator();
                 }
             }
         }
@@ -244,6 +323,19 @@ public class MyHashMap<K, V> implements Map61B<K, V> {
     }
 
     private void resize() {
+        if (incrementalResize) {
+            // 上一次迁移还没完成时先完成它，保证最多只有两张表
+            while (oldTable != null) {
+                migrateSome();
+            }
+            // 只分配新表，桶在第一次放入节点时创建
+            oldTable = table;
+            numOfOldBucket = numOfBucket;
+            migrateIndex = 0;
+            numOfBucket *= 2;
+            table = newTable(numOfBucket);
+            return;
+        }
         numOfBucket *= 2;
         Collection<Node>[] newTable = createTable(numOfBucket);
         for (Collection<Node> bucket : table) {
@@ -254,6 +346,30 @@ public class MyHashMap<K, V> implements Map61B<K, V> {
         table = newTable;
     }
 
+    /** 把旧表中至多 migrateStep 个桶的节点移到新表，全部迁移完后丢弃旧表 */
+    private void migrateSome() {
+        if (oldTable == null) {
+            return;
+        }
+        int end = Math.min(migrateIndex + migrateStep, numOfOldBucket);
+        for (; migrateIndex < end; migrateIndex++) {
+            if (oldTable[migrateIndex] == null) {
+                continue;
+            }
+            for (Node node : oldTable[migrateIndex]) {
+                int index = indexOf(node.key);
+                if (table[index] == null) {
+                    table[index] = createBucket();
+                }
+                table[index].add(node);
+            }
+            oldTable[migrateIndex] = null;
+        }
+        if (migrateIndex == numOfOldBucket) {
+            oldTable = null;
+        }
+    }
+
     private int indexOf(K key) {
         return Math.floorMod(key.hashCode(), numOfBucket);
     }
@@ -0,0 +1,256 @@
+package hashmap;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ *  An open-addressing hash table. Keys and values live in two parallel arrays
+ *  instead of Node objects inside bucket Collections.
+ *
+ *  表长总是 2 的幂，用掩码代替取模；冲突时线性探测下一个槽位。
+ *  删除时不留墓碑，而是把后面同一簇中可以前移的键值对向前移动（backward-shift），
+ *  因此任何时候从理想槽位探测到第一个空槽位就能确定键是否存在。
+ *
+ *  Assumes null keys will never be inserted (null marks an empty slot).
+ *  @author YOUR NAME HERE
+ */
+public class MyHashMapOA<K, V> implements Map61B<K, V> {
+
+    /** 默认表长 */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /** 默认最大负载因子。线性探测在负载超过 0.75 后探测长度迅速变长 */
+    private static final double DEFAULT_MAX_LOAD = 0.75;
+
+    /* Instance Variables */
+    private K[] keys;
+    private V[] values;
+    private final double maxLoadFactor;
+    /** 表长 - 1 */
+    private int mask;
+    /** 元素数超过 threshold 时扩容 */
+    private int threshold;
+    private int size;
+
+    /** Constructors */
+    public MyHashMapOA() {
+        this(DEFAULT_CAPACITY, DEFAULT_MAX_LOAD);
+    }
+
+    public MyHashMapOA(int initialSize) {
+        this(initialSize, DEFAULT_MAX_LOAD);
+    }
+
+    /**
+     * MyHashMapOA constructor that creates backing arrays of at least initialSize,
+     * rounded up to a power of two.
+     * The load factor (# items / # slots) should always be <= maxLoad, which must be below 1.
+     *
+     * @param initialSize initial size of backing arrays
+     * @param maxLoad maximum load factor
+     */
+    public MyHashMapOA(int initialSize, double maxLoad) {
+        if (maxLoad <= 0 || maxLoad >= 1) {
+            throw new IllegalArgumentException("maxLoad must be in (0, 1) for open addressing");
+        }
+        maxLoadFactor = maxLoad;
+        createTable(tableSizeFor(initialSize));
+    }
+
+    /** 返回不小于 n 的最小的 2 的幂 */
+    private static int tableSizeFor(int n) {
+        int capacity = 2;
+        while (capacity < n) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /** 创建长度为 capacity 的空数组，更新掩码和扩容阈值 */
+    @SuppressWarnings("unchecked")
+    private void createTable(int capacity) {
+        keys = (K[]) new Object[capacity];
+        values = (V[]) new Object[capacity];
+        mask = capacity - 1;
+        // 至少留一个空槽位，保证探测一定会停止
+        threshold = Math.min((int) (capacity * maxLoadFactor), capacity - 1);
+    }
+
+    /**
+     * 返回 key 的理想槽位。
+     * 乘以黄金分割常数再折叠高位，使只在高位不同的哈希值也能分散到低位，减少线性探测的聚集。
+     */
+    private int slotOf(Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /** 返回 key 所在的槽位，不存在时返回 -1 */
+    private int find(K key) {
+        if (key == null) {
+            return -1;
+        }
+        for (int i = slotOf(key); keys[i] != null; i = (i + 1) & mask) {
+            if (keys[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        createTable(DEFAULT_CAPACITY);
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return find(key) >= 0;
+    }
+
+    @Override
+    public V get(K key) {
+        int i = find(key);
+        return i >= 0 ? values[i] : null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        if (key == null) {
+            throw new IllegalArgumentException("null keys are not supported");
+        }
+        // 从理想槽位向后探测，遇到相同的键则更新，遇到空槽位则插入
+        int i = slotOf(key);
+        while (keys[i] != null) {
+            if (keys[i].equals(key)) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        size++;
+        if (size > threshold) {
+            resize();
+        }
+    }
+
+    @Override
+    public Set<K> keySet() {
+        Set<K> s = new HashSet<>();
+        for (K key : this) {
+            s.add(key);
+        }
+        return s;
+    }
+
+    @Override
+    public V remove(K key) {
+        int i = find(key);
+        if (i < 0) {
+            return null;
+        }
+        V value = values[i];
+        deleteSlot(i);
+        return value;
+    }
+
+    @Override
+    public V remove(K key, V value) {
+        int i = find(key);
+        if (i < 0 || !Objects.equals(values[i], value)) {
+            return null;
+        }
+        V old = values[i];
+        deleteSlot(i);
+        return old;
+    }
+
+    /**
+     * 删除槽位 hole 中的键值对。
+     * 向后扫描同一簇：理想槽位不在 (hole, j] 之间的键值对被移到 hole，j 成为新的空洞，
+     * 直到遇到空槽位。这样簇中每个键到它理想槽位之间都没有空槽位，不需要墓碑。
+     */
+    private void deleteSlot(int hole) {
+        int j = hole;
+        while (true) {
+            j = (j + 1) & mask;
+            if (keys[j] == null) {
+                break;
+            }
+            int ideal = slotOf(keys[j]);
+            // j 到理想槽位的探测距离不小于 j 到空洞的距离时，说明理想槽位在空洞之前（含空洞），可以前移
+            if (((j - ideal) & mask) >= ((j - hole) & mask)) {
+                keys[hole] = keys[j];
+                values[hole] = values[j];
+                hole = j;
+            }
+        }
+        keys[hole] = null;
+        values[hole] = null;
+        size--;
+    }
+
+    @Override
+    public Iterator<K> iterator() {
+        return new MyHashMapOAIterator();
+    }
+
+    private class MyHashMapOAIterator implements Iterator<K> {
+        /** 下一个非空槽位，没有时为表长 */
+        int index;
+
+        MyHashMapOAIterator() {
+            index = -1;
+            moveToNext();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < keys.length;
+        }
+
+        @Override
+        public K next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            K res = keys[index];
+            moveToNext();
+            return res;
+        }
+
+        private void moveToNext() {
+            do {
+                index++;
+            } while (index < keys.length && keys[index] == null);
+        }
+    }
+
+    /** 表长翻倍，把所有键值对重新插入新数组；新表中没有重复键，只需找到空槽位 */
+    private void resize() {
+        K[] oldKeys = keys;
+        V[] oldValues = values;
+        createTable(oldKeys.length * 2);
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != null) {
+                int i = slotOf(oldKeys[j]);
+                while (keys[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+}
@@ -0,0 +1,365 @@
+package hashmap;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Stack;
+
+/**
+ * Hash Table with adaptive buckets: a compact array that turns into an AVL tree
+ * once it holds more than TREEIFY_THRESHOLD nodes.
+ *
+ * 哈希值质量差或被刻意构造冲突时，普通 bucket 的查找和插入退化为 O(n) 的逐个比较。
+ * 这里的 bucket 在元素不多时是一个数组；超过 TREEIFY_THRESHOLD 个且所有键都是同一个 Comparable 类时，
+ * 转换为按 (hashCode, compareTo) 排序的 AVL 树，查找、插入和删除都是 O(log n)；
+ * 删除到不多于 UNTREEIFY_THRESHOLD 个时再转换回数组。两个阈值之间留有间隔，避免反复转换。
+ * 树中混入其他类的键时也转换回数组，这个键被删除后，数组中的节点仍超过阈值就再次转换为树。
+ * 树的平衡逻辑（rebalanceNode / rotate / removeNode）与 lab7 bstmap.BSTMap 的 AVL 树相同。
+ * 不是 Comparable 的键无法排序，它们所在的 bucket 始终保持为数组。
+ *
+ * @author YOUR NAME HERE
+ */
+public class MyHashMapTreeBuckets<K, V> extends MyHashMap<K, V> {
+
+    /** bucket 中的节点数超过它时转换为树 */
+    static final int TREEIFY_THRESHOLD = 8;
+
+    /** 树中的节点数不多于它时转换回数组 */
+    static final int UNTREEIFY_THRESHOLD = 6;
+
+    /**
+     * Constructor that creates a backing array with default
+     * initial size and load factor
+     */
+    public MyHashMapTreeBuckets() {
+        super();
+    }
+
+    /**
+     * Constructor that creates a backing array of initialSize
+     * and default load factor
+     *
+     * @param initialSize initial size of backing array
+     */
+    public MyHashMapTreeBuckets(int initialSize) {
+        super(initialSize);
+    }
+
+    /**
+     * Constructor that creates a backing array of initialSize.
+     * The load factor (# items / # buckets) should always be <= loadFactor
+     *
+     * @param initialSize initial size of backing array
+     * @param maxLoad maximum load factor
+     */
+    public MyHashMapTreeBuckets(int initialSize, double maxLoad) {
+        super(initialSize, maxLoad);
+    }
+
+    @Override
+    protected Collection<Node> createBucket() {
+        return new AdaptiveBucket();
+    }
+
+    @Override
+    protected Node findInBucket(Collection<Node> bucket, K key) {
+        return ((AdaptiveBucket) bucket).find(key);
+    }
+
+    /** AVL 树节点，包装一个 MyHashMap 的 Node */
+    private class TreeNode {
+        Node node;
+        TreeNode left;
+        TreeNode right;
+        int height;
+
+        TreeNode(Node node) {
+            this.node = node;
+            this.height = 1;
+        }
+
+        void updateHeight() {
+            this.height = Math.max(height(left), height(right)) + 1;
+        }
+
+        int getBalance() {
+            return height(left) - height(right);
+        }
+    }
+
+    private int height(TreeNode t) {
+        return t == null ? 0 : t.height;
+    }
+
+    /** 返回长度为 n 的 Node 数组；泛型内部类不能直接创建数组，只能转换原始类型的数组 */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Node[] newArray(int n) {
+        return (Node[]) new MyHashMap.Node[n];
+    }
+
+    /**
+     * 数组和 AVL 树两种形态的 bucket。MyHashMap 只在键不存在时调用 add，
+     * 因此 add 不需要处理重复的键。
+     */
+    private class AdaptiveBucket extends AbstractCollection<Node> {
+        /** 数组形态的节点，树形态时为 null */
+        private Node[] items = newArray(2);
+        /** 树形态的根，数组形态时为 null */
+        private TreeNode root;
+        private int size;
+        /** 树形态时所有键的类 */
+        private Class<?> keyClass;
+
+        Node find(K key) {
+            if (root == null) {
+                for (int i = 0; i < size; i++) {
+                    if (items[i].key.equals(key)) {
+                        return items[i];
+                    }
+                }
+                return null;
+            }
+            if (key.getClass() != keyClass) {
+                return null;
+            }
+            TreeNode t = root;
+            while (t != null) {
+                int cmp = compare(key, t.node.key);
+                if (cmp == 0) {
+                    return t.node;
+                }
+                t = cmp < 0 ? t.left : t.right;
+            }
+            return null;
+        }
+
+        @Override
+        public boolean add(Node node) {
+            if (root != null && node.key.getClass() != keyClass) {
+                // 混入了无法与树中的键比较的键
+                untreeify();
+            }
+            if (root == null) {
+                if (size == items.length) {
+                    Node[] bigger = newArray(size * 2);
+                    System.arraycopy(items, 0, bigger, 0, size);
+                    items = bigger;
+                }
+                items[size++] = node;
+                if (size > TREEIFY_THRESHOLD) {
+                    treeify();
+                }
+            } else {
+                root = insert(root, node);
+                size++;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            @SuppressWarnings("unchecked")
+            Node node = (Node) o;
+            if (root == null) {
+                for (int i = 0; i < size; i++) {
+                    if (items[i] == node) {
+                        System.arraycopy(items, i + 1, items, i, size - i - 1);
+                        items[--size] = null;
+                        if (size > TREEIFY_THRESHOLD) {
+                            // 删除的可能是导致退化的其他类的键，剩下的键也许又可以排序
+                            treeify();
+                        }
+                        return true;
+                    }
+                }
+                return false;
+            }
+            if (find(node.key) != node) {
+                return false;
+            }
+            root = removeNode(root, node.key);
+            size--;
+            if (size <= UNTREEIFY_THRESHOLD) {
+                untreeify();
+            }
+            return true;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        /** 所有键都是同一个 Comparable 类时把数组转换为树，否则保持数组 */
+        private void treeify() {
+            Class<?> cls = items[0].key.getClass();
+            if (!(items[0].key instanceof Comparable)) {
+                return;
+            }
+            for (int i = 1; i < size; i++) {
+                if (items[i].key.getClass() != cls) {
+                    return;
+                }
+            }
+            keyClass = cls;
+            TreeNode t = null;
+            for (int i = 0; i < size; i++) {
+                t = insert(t, items[i]);
+            }
+            root = t;
+            items = null;
+        }
+
+        /** 把树按中序转换回数组 */
+        private void untreeify() {
+            Node[] array = newArray(Math.max(2, size * 2));
+            int n = 0;
+            for (Node node : this) {
+                array[n++] = node;
+            }
+            root = null;
+            keyClass = null;
+            items = array;
+        }
+
+        /** 先比较哈希值，相同时再用 compareTo 比较；调用前已确认两个键是同一个 Comparable 类 */
+        private int compare(K a, K b) {
+            int cmp = Integer.compare(a.hashCode(), b.hashCode());
+            if (cmp != 0) {
+                return cmp;
+            }
+            @SuppressWarnings("unchecked")
+            Comparable<K> comparable = (Comparable<K>) a;
+            return comparable.compareTo(b);
+        }
+
+        private TreeNode insert(TreeNode t, Node node) {
+            if (t == null) {
+                return new TreeNode(node);
+            }
+            if (compare(node.key, t.node.key) < 0) {
+                t.left = insert(t.left, node);
+            } else {
+                t.right = insert(t.right, node);
+            }
+            return rebalanceNode(t);
+        }
+
+        /** 与 BSTMap.rebalanceNode 相同：左倾时右旋（LR 情况先左旋左子节点），右倾时左旋 */
+        private TreeNode rebalanceNode(TreeNode t) {
+            t.updateHeight();
+            int balance = t.getBalance();
+            if (balance > 1) {
+                if (t.left.getBalance() < 0) {
+                    t.left = rotate(t.left, true);
+                }
+                return rotate(t, false);
+            }
+            if (balance < -1) {
+                if (t.right.getBalance() > 0) {
+                    t.right = rotate(t.right, false);
+                }
+                return rotate(t, true);
+            }
+            return t;
+        }
+
+        /** 与 BSTMap.rotate 相同：leftRotation 为 true 时左旋，否则右旋 */
+        private TreeNode rotate(TreeNode t, boolean leftRotation) {
+            TreeNode child;
+            if (leftRotation) {
+                child = t.right;
+                t.right = child.left;
+                child.left = t;
+            } else {
+                child = t.left;
+                t.left = child.right;
+                child.right = t;
+            }
+            t.updateHeight();
+            child.updateHeight();
+            return child;
+        }
+
+        /** 与 BSTMap.removeNode 相同：有两个子节点时用右子树中的最小节点替换 */
+        private TreeNode removeNode(TreeNode t, K key) {
+            if (t == null) {
+                return null;
+            }
+            int cmp = compare(key, t.node.key);
+            if (cmp < 0) {
+                t.left = removeNode(t.left, key);
+            } else if (cmp > 0) {
+                t.right = removeNode(t.right, key);
+            } else {
+                if (t.left == null) {
+                    return t.right;
+                }
+                if (t.right == null) {
+                    return t.left;
+                }
+                TreeNode successor = t.right;
+                while (successor.left != null) {
+                    successor = successor.left;
+                }
+                t.node = successor.node;
+                t.right = removeNode(t.right, successor.node.key);
+            }
+            return rebalanceNode(t);
+        }
+
+        @Override
+        public Iterator<Node> iterator() {
+            return root == null ? new ArrayIterator() : new TreeIterator();
+        }
+
+        private class ArrayIterator implements Iterator<Node> {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public Node next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return items[index++];
+            }
+        }
+
+        /** 与 BSTMap 的迭代器相同的中序遍历 */
+        private class TreeIterator implements Iterator<Node> {
+            private final Stack<TreeNode> stack = new Stack<>();
+
+            TreeIterator() {
+                pushLeftBranch(root);
+            }
+
+            private void pushLeftBranch(TreeNode t) {
+                while (t != null) {
+                    stack.push(t);
+                    t = t.left;
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !stack.isEmpty();
+            }
+
+            @Override
+            public Node next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                TreeNode current = stack.pop();
+                pushLeftBranch(current.right);
+                return current.node;
+            }
+        }
+    }
+}
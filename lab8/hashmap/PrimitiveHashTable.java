@@ -0,0 +1,129 @@
+package hashmap;
+
+/**
+ *  The open-addressing table shared by IntIntHashMap, IntObjectHashMap and LongObjectHashMap.
+ *
+ *  与 MyHashMapOA 相同：表长为 2 的幂，线性探测，删除时向前移动后续键值对而不留墓碑。
+ *  键和值的数组由子类持有，这里只通过槽位下标操作它们，因此探测、删除和扩容的逻辑
+ *  只写一次，子类也不需要把键装箱。数组中用键 0 表示空槽位，键 0 本身由子类单独存放，
+ *  这里只记录它是否存在。
+ *
+ *  @author YOUR NAME HERE
+ */
+abstract class PrimitiveHashTable {
+
+    static final int DEFAULT_CAPACITY = 16;
+    static final double DEFAULT_MAX_LOAD = 0.75;
+
+    private final double maxLoadFactor;
+    /** 表长减一 */
+    int mask;
+    private int threshold;
+    /** 数组中的键值对数，不含键 0 */
+    private int size;
+    /** 键 0 是否存在 */
+    boolean hasZeroKey;
+
+    /**
+     * @param initialSize initial size of backing arrays, rounded up to a power of two
+     * @param maxLoad maximum load factor, must be in (0, 1)
+     */
+    PrimitiveHashTable(int initialSize, double maxLoad) {
+        if (maxLoad <= 0 || maxLoad >= 1) {
+            throw new IllegalArgumentException("maxLoad must be in (0, 1) for open addressing");
+        }
+        maxLoadFactor = maxLoad;
+        int capacity = 2;
+        while (capacity < initialSize) {
+            capacity <<= 1;
+        }
+        createTable(capacity);
+    }
+
+    /** 子类用长度为 capacity 的空数组替换当前的数组 */
+    abstract void allocate(int capacity);
+
+    /** 槽位 i 是否为空 */
+    abstract boolean isFree(int i);
+
+    /** 返回槽位 i 中的键在当前表长下的理想槽位 */
+    abstract int homeOf(int i);
+
+    /** 把槽位 from 的键值对移到槽位 to */
+    abstract void move(int from, int to);
+
+    /** 清空槽位 i，值数组中的对象引用也要清除 */
+    abstract void clearSlot(int i);
+
+    /** 子类分配长度为 capacity 的新数组，把旧数组槽位 j 的键值对放到 target[j]（为 -1 时是空槽位） */
+    abstract void relocate(int[] target, int capacity);
+
+    /** 子类清除键 0 的值 */
+    abstract void clearZeroValue();
+
+    private void createTable(int capacity) {
+        allocate(capacity);
+        mask = capacity - 1;
+        threshold = Math.min((int) (capacity * maxLoadFactor), capacity - 1);
+    }
+
+    /** Removes all of the mappings from this map. */
+    public void clear() {
+        size = 0;
+        hasZeroKey = false;
+        clearZeroValue();
+        createTable(DEFAULT_CAPACITY);
+    }
+
+    public int size() {
+        return size + (hasZeroKey ? 1 : 0);
+    }
+
+    /** 子类在空槽位中放入键值对后调用，必要时扩容 */
+    void inserted() {
+        size++;
+        if (size > threshold) {
+            resize();
+        }
+    }
+
+    /** backward-shift 删除：理想槽位不在 (hole, j] 之间的键值对前移到空洞 */
+    void deleteSlot(int hole) {
+        int j = hole;
+        while (true) {
+            j = (j + 1) & mask;
+            if (isFree(j)) {
+                break;
+            }
+            if (((j - homeOf(j)) & mask) >= ((j - hole) & mask)) {
+                move(j, hole);
+                hole = j;
+            }
+        }
+        clearSlot(hole);
+        size--;
+    }
+
+    /** 表长翻倍：先按新的掩码算出每个键值对在新表中的槽位，再由子类搬到新数组 */
+    private void resize() {
+        int oldCapacity = mask + 1;
+        int capacity = oldCapacity * 2;
+        mask = capacity - 1;
+        threshold = Math.min((int) (capacity * maxLoadFactor), capacity - 1);
+        int[] target = new int[oldCapacity];
+        boolean[] used = new boolean[capacity];
+        for (int j = 0; j < oldCapacity; j++) {
+            if (isFree(j)) {
+                target[j] = -1;
+                continue;
+            }
+            int i = homeOf(j);
+            while (used[i]) {
+                i = (i + 1) & mask;
+            }
+            used[i] = true;
+            target[j] = i;
+        }
+        relocate(target, capacity);
+    }
+}
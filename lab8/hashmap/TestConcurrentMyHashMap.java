@@ -0,0 +1,192 @@
+package hashmap;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Runs the MyHashMap tests against ConcurrentMyHashMap, plus multi-threaded stress tests. */
+public class TestConcurrentMyHashMap {
+
+    private static final int THREADS = 8;
+
+    @Test
+    public void sequentialTest() {
+        TestMyHashMap.sanityClearTest(new ConcurrentMyHashMap<>());
+        TestMyHashMap.sanityContainsKeyTest(new ConcurrentMyHashMap<>());
+        TestMyHashMap.sanityGetTest(new ConcurrentMyHashMap<>());
+        TestMyHashMap.sanitySizeTest(new ConcurrentMyHashMap<>());
+        TestMyHashMap.sanityPutTest(new ConcurrentMyHashMap<>());
+        TestMyHashMap.sanityKeySetTest(new ConcurrentMyHashMap<>());
+        TestMyHashMap.functionalityTest(new ConcurrentMyHashMap<>(), new ConcurrentMyHashMap<>());
+    }
+
+    /** 同时启动 threads 个线程运行 task(线程编号)，等待全部结束，把任何线程中的失败抛给 JUnit */
+    private static void runConcurrently(int threads, ThreadTask task) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    task.run(id);
+                } catch (Throwable e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        if (!failures.isEmpty()) {
+            throw new AssertionError(failures.get(0));
+        }
+    }
+
+    private interface ThreadTask {
+        void run(int id) throws Exception;
+    }
+
+    // 多个线程并发插入互不相同的键，期间发生多次协作扩容，不丢失任何键
+    @Test
+    public void concurrentPutsDuringResizeTest() throws InterruptedException {
+        ConcurrentMyHashMap<Integer, Integer> m = new ConcurrentMyHashMap<>();
+        int perThread = 20000;
+        runConcurrently(THREADS, id -> {
+            for (int i = 0; i < perThread; i++) {
+                m.put(id * perThread + i, id);
+            }
+        });
+        assertEquals(THREADS * perThread, m.size());
+        assertEquals(THREADS * perThread, m.keySet().size());
+        for (int k = 0; k < THREADS * perThread; k++) {
+            assertEquals(k / perThread, m.get(k).intValue());
+        }
+    }
+
+    // 一个线程决定扩容后、CAS 之前，另一次扩容抢先开始并完成：过期的表不能再次被扩容，不丢失任何键
+    @Test
+    public void staleResizeTest() {
+        ConcurrentMyHashMap<Integer, Integer> m = new ConcurrentMyHashMap<>(64, 0.75);
+        AtomicInteger hookRuns = new AtomicInteger();
+        m.beforeResizeCas = () -> {
+            // 只在第一次扩容时插入一次：这次 put 在当前线程中完成整个扩容
+            m.beforeResizeCas = null;
+            hookRuns.incrementAndGet();
+            m.put(-1, -1);
+        };
+        int n = 10000;
+        for (int k = 0; k < n; k++) {
+            m.put(k, k);
+        }
+        assertEquals(1, hookRuns.get());
+        assertEquals(n + 1, m.size());
+        assertEquals(n + 1, m.keySet().size());
+        assertEquals(-1, m.get(-1).intValue());
+        for (int k = 0; k < n; k++) {
+            assertEquals(k, m.get(k).intValue());
+        }
+    }
+
+    // 表很小、负载因子很低时多个线程同时插入，几乎每次扩容都有多个线程竞争开始和协助
+    @Test
+    public void contendedResizeStressTest() throws InterruptedException {
+        for (int round = 0; round < 20; round++) {
+            ConcurrentMyHashMap<Integer, Integer> m = new ConcurrentMyHashMap<>(64, 0.1);
+            int perThread = 3000;
+            runConcurrently(THREADS, id -> {
+                for (int i = 0; i < perThread; i++) {
+                    m.put(id * perThread + i, i);
+                    if (i % 3 == 0) {
+                        assertEquals(i, m.remove(id * perThread + i).intValue());
+                    }
+                }
+            });
+            int expected = THREADS * (perThread - perThread / 3);
+            assertEquals(expected, m.size());
+            assertEquals(expected, m.keySet().size());
+            for (int k = 0; k < THREADS * perThread; k++) {
+                int i = k % perThread;
+                assertEquals(i % 3 != 0, m.containsKey(k));
+            }
+        }
+    }
+
+    // 单个写线程按顺序插入 0..N-1，读线程一旦看到键 k，之后必须也能看到所有小于 k 的键
+    @Test
+    public void readersSeeWritesInOrderTest() throws InterruptedException {
+        ConcurrentMyHashMap<Integer, Integer> m = new ConcurrentMyHashMap<>();
+        int n = 100000;
+        runConcurrently(4, id -> {
+            if (id == 0) {
+                for (int k = 0; k < n; k++) {
+                    m.put(k, k);
+                }
+                return;
+            }
+            int seen = 0;
+            while (seen < n) {
+                int probe = Math.min(n - 1, seen + 1000);
+                if (m.containsKey(probe)) {
+                    for (int k = seen; k <= probe; k++) {
+                        assertEquals(k, m.get(k).intValue());
+                    }
+                    seen = probe + 1;
+                }
+            }
+        });
+    }
+
+    // 多个线程对同一组键竞争 remove(key, value)，每个键恰好被一个线程删除
+    @Test
+    public void conditionalRemoveIsExclusiveTest() throws InterruptedException {
+        ConcurrentMyHashMap<Integer, String> m = new ConcurrentMyHashMap<>();
+        int n = 20000;
+        for (int k = 0; k < n; k++) {
+            m.put(k, "v" + k);
+        }
+        AtomicInteger removed = new AtomicInteger();
+        runConcurrently(THREADS, id -> {
+            for (int k = 0; k < n; k++) {
+                if (m.remove(k, "v" + k) != null) {
+                    removed.incrementAndGet();
+                }
+            }
+        });
+        assertEquals(n, removed.get());
+        assertEquals(0, m.size());
+    }
+
+    // 并发的插入、覆盖和删除结束后，每个线程自己的键处于它最后一次操作的状态
+    @Test
+    public void mixedOperationsTest() throws InterruptedException {
+        ConcurrentMyHashMap<String, Integer> m = new ConcurrentMyHashMap<>();
+        int perThread = 5000;
+        runConcurrently(THREADS, id -> {
+            for (int round = 0; round < 3; round++) {
+                for (int i = 0; i < perThread; i++) {
+                    m.put(id + "-" + i, round);
+                }
+                for (int i = 0; i < perThread; i += 2) {
+                    assertEquals(round, m.remove(id + "-" + i).intValue());
+                }
+            }
+        });
+        assertEquals(THREADS * perThread / 2, m.size());
+        for (int id = 0; id < THREADS; id++) {
+            for (int i = 0; i < perThread; i++) {
+                assertEquals(i % 2 == 1, m.containsKey(id + "-" + i));
+            }
+        }
+    }
+}
@@ -3,8 +3,12 @@ package hashmap;
 import static org.junit.Assert.*;
 import org.junit.Test;
 
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.function.Function;
 
 /**
  * Tests by Brendan Hu, Spring 2015
@@ -27,7 +31,7 @@ public class TestMyHashMap {
         sanityClearTest(new MyHashMap<>());
     }
 
-    public static void sanityClearTest(MyHashMap<String, Integer> b) {
+    public static void sanityClearTest(Map61B<String, Integer> b) {
         for (int i = 0; i < 455; i++) {
             b.put("hi" + i, 1);
             //make sure put is working via containsKey and get
@@ -47,7 +51,7 @@ public class TestMyHashMap {
         sanityContainsKeyTest(new MyHashMap<>());
     }
 
-    public static void sanityContainsKeyTest(MyHashMap<String, Integer> b) {
+    public static void sanityContainsKeyTest(Map61B<String, Integer> b) {
         assertFalse(b.containsKey("waterYouDoingHere"));
         b.put("waterYouDoingHere", 0);
         assertTrue(b.containsKey("waterYouDoingHere"));
@@ -59,7 +63,7 @@ public class TestMyHashMap {
         sanityGetTest(new MyHashMap<>());
     }
 
-    public static void sanityGetTest(MyHashMap<String, Integer> b) {
+    public static void sanityGetTest(Map61B<String, Integer> b) {
         assertEquals(null, b.get("starChild"));
         b.put("starChild", 5);
         assertNotEquals(null, b.get("starChild"));
@@ -74,7 +78,7 @@ public class TestMyHashMap {
         sanitySizeTest(new MyHashMap<>());
     }
 
-    public static void sanitySizeTest(MyHashMap<String, Integer> b) {
+    public static void sanitySizeTest(Map61B<String, Integer> b) {
         assertEquals(0, b.size());
         b.put("hi", 1);
         assertEquals(1, b.size());
@@ -90,7 +94,7 @@ public class TestMyHashMap {
         sanityPutTest(new MyHashMap<>());
     }
 
-    public static void sanityPutTest(MyHashMap<String, Integer> b) {
+    public static void sanityPutTest(Map61B<String, Integer> b) {
         b.put("hi", 1);
         assertTrue(b.containsKey("hi") && b.get("hi") != null);
     }
@@ -100,7 +104,7 @@ public class TestMyHashMap {
         sanityKeySetTest(new MyHashMap<>());
     }
 
-    public static void sanityKeySetTest(MyHashMap<String, Integer> b) {
+    public static void sanityKeySetTest(Map61B<String, Integer> b) {
         HashSet<String> values = new HashSet<String>();
         for (int i = 0; i < 455; i++) {
             b.put("hi" + i, 1);
@@ -118,8 +122,8 @@ public class TestMyHashMap {
         functionalityTest(new MyHashMap<>(), new MyHashMap<>());
     }
 
-    public static void functionalityTest(MyHashMap<String, String> dictionary,
-                                   MyHashMap<String, Integer> studentIDs) {
+    public static void functionalityTest(Map61B<String, String> dictionary,
+                                   Map61B<String, Integer> studentIDs) {
         assertEquals(0, dictionary.size());
 
         // can put objects in dictionary and get them
@@ -164,7 +168,7 @@ public class TestMyHashMap {
         smallSanityKeySetTest(new MyHashMap<>());
     }
 
-    public static void smallSanityKeySetTest(MyHashMap<String, Integer> b) {
+    public static void smallSanityKeySetTest(Map61B<String, Integer> b) {
         HashSet<String> values = new HashSet<String>();
         for (int i = 0; i < 10; i++) {
             b.put("hi" + i, 1);
@@ -175,4 +179,35 @@ public class TestMyHashMap {
         assertTrue(values.containsAll(keySet));
         assertTrue(keySet.containsAll(values));
     }
+
+    // 随机的 put/remove 序列与 java.util.HashMap 的结果一致
+    @Test
+    public void randomizedTest() {
+        randomizedTest(new MyHashMap<>(), 20000, 3, random -> random.nextInt(5000));
+    }
+
+    /**
+     * 用固定的种子对 m 执行 n 次随机的 put / remove，每一步都与 java.util.HashMap 比较大小和
+     * remove 的返回值，最后比较所有键值对。每次操作以 putWeight / (putWeight + 1) 的概率是 put，
+     * 否则是 remove；nextKey 用同一个随机数生成器产生操作的键。
+     */
+    public static <K> void randomizedTest(Map61B<K, Integer> m, int n, int putWeight,
+                                          Function<Random, K> nextKey) {
+        Random random = new Random(61);
+        Map<K, Integer> expected = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            K key = nextKey.apply(random);
+            if (random.nextInt(putWeight + 1) != 0) {
+                m.put(key, i);
+                expected.put(key, i);
+            } else {
+                assertEquals(expected.remove(key), m.remove(key));
+            }
+            assertEquals(expected.size(), m.size());
+        }
+        for (Map.Entry<K, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), m.get(entry.getKey()));
+        }
+        assertEquals(expected.keySet(), m.keySet());
+    }
 }
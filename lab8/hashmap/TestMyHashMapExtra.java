@@ -22,6 +22,26 @@ public class TestMyHashMapExtra {
         assertTrue(q.containsKey("e"));
     }
 
+    /** remove 成功时 size 减一，键不存在或值不匹配时 size 不变 */
+    @Test
+    public void testRemoveUpdatesSize() {
+        MyHashMap<String, String> q = new MyHashMap<>();
+        q.put("a", "1");
+        q.put("b", "2");
+        q.put("c", "3");
+        assertEquals(3, q.size());
+        assertEquals("1", q.remove("a"));
+        assertEquals(2, q.size());
+        assertNull(q.remove("a"));
+        assertEquals(2, q.size());
+        assertNull(q.remove("b", "3"));
+        assertEquals(2, q.size());
+        assertEquals("2", q.remove("b", "2"));
+        assertEquals(1, q.size());
+        q.put("a", "4");
+        assertEquals(2, q.size());
+    }
+
     /** 
      * Remove Test 2
      * Test the 3 different cases of remove
@@ -0,0 +1,69 @@
+package hashmap;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Runs the MyHashMap tests against MyHashMap in incremental resize mode. */
+public class TestMyHashMapIncremental {
+
+    private static <K, V> MyHashMap<K, V> incremental() {
+        return new MyHashMap<>(16, 0.75, true);
+    }
+
+    @Test
+    public void sanityTest() {
+        TestMyHashMap.sanityClearTest(incremental());
+        TestMyHashMap.sanityContainsKeyTest(incremental());
+        TestMyHashMap.sanityGetTest(incremental());
+        TestMyHashMap.sanitySizeTest(incremental());
+        TestMyHashMap.sanityPutTest(incremental());
+        TestMyHashMap.sanityKeySetTest(incremental());
+        TestMyHashMap.smallSanityKeySetTest(incremental());
+        TestMyHashMap.functionalityTest(incremental(), incremental());
+    }
+
+    // 迁移进行到一半时，旧表和新表中的键都能被找到、覆盖、删除和遍历
+    @Test
+    public void operationsDuringMigrationTest() {
+        MyHashMap<Integer, Integer> m = new MyHashMap<>(1024, 0.75, true);
+        // 第 769 次 put 触发扩容，之后每次 put 只迁移少量桶
+        for (int k = 0; k < 800; k++) {
+            m.put(k, k);
+        }
+        for (int k = 0; k < 800; k++) {
+            assertEquals(k, m.get(k).intValue());
+        }
+        m.put(5, -5);
+        m.put(1000, 1000);
+        assertEquals(-5, m.get(5).intValue());
+        assertNull(m.remove(1023));
+        assertEquals(700, m.remove(700).intValue());
+        assertNull(m.remove(701, 0));
+        assertEquals(701, m.remove(701, 701).intValue());
+        assertEquals(799, m.size());
+        assertEquals(799, m.keySet().size());
+        assertFalse(m.containsKey(700));
+        assertTrue(m.keySet().contains(1000));
+    }
+
+    // 负载因子很小时每次迁移的桶数随之放大，连续扩容时所有键仍然可以找到
+    @Test
+    public void lowLoadFactorTest() {
+        MyHashMap<Integer, Integer> m = new MyHashMap<>(4, 0.1, true);
+        for (int k = 0; k < 5000; k++) {
+            m.put(k, k);
+        }
+        assertEquals(5000, m.size());
+        for (int k = 0; k < 5000; k++) {
+            assertEquals(k, m.remove(k).intValue());
+        }
+        assertEquals(0, m.size());
+        assertTrue(m.keySet().isEmpty());
+    }
+
+    // 随机的 put/remove 序列与 java.util.HashMap 的结果一致，期间经历多次增量扩容
+    @Test
+    public void randomizedTest() {
+        TestMyHashMap.randomizedTest(incremental(), 50000, 3, random -> random.nextInt(20000));
+    }
+}
@@ -0,0 +1,106 @@
+package hashmap;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Runs the MyHashMap tests against the open-addressing MyHashMapOA. */
+public class TestMyHashMapOA {
+
+    @Test
+    public void sanityGenericsTest() {
+        Map61B<String, String> a = new MyHashMapOA<>();
+        Map61B<String, Integer> b = new MyHashMapOA<>();
+        Map61B<Integer, String> c = new MyHashMapOA<>();
+        Map61B<Boolean, Integer> d = new MyHashMapOA<>();
+    }
+
+    @Test
+    public void sanityClearTest() {
+        TestMyHashMap.sanityClearTest(new MyHashMapOA<>());
+    }
+
+    @Test
+    public void sanityContainsKeyTest() {
+        TestMyHashMap.sanityContainsKeyTest(new MyHashMapOA<>());
+    }
+
+    @Test
+    public void sanityGetTest() {
+        TestMyHashMap.sanityGetTest(new MyHashMapOA<>());
+    }
+
+    @Test
+    public void sanitySizeTest() {
+        TestMyHashMap.sanitySizeTest(new MyHashMapOA<>());
+    }
+
+    @Test
+    public void sanityPutTest() {
+        TestMyHashMap.sanityPutTest(new MyHashMapOA<>());
+    }
+
+    @Test
+    public void sanityKeySetTest() {
+        TestMyHashMap.sanityKeySetTest(new MyHashMapOA<>());
+        TestMyHashMap.smallSanityKeySetTest(new MyHashMapOA<>());
+    }
+
+    @Test
+    public void functionalityTest() {
+        TestMyHashMap.functionalityTest(new MyHashMapOA<>(), new MyHashMapOA<>());
+    }
+
+    /** Keys whose hash codes collide, so they share one probe cluster. */
+    private static class Collider {
+        final int id;
+        final int hash;
+
+        Collider(int id, int hash) {
+            this.id = id;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Collider && ((Collider) o).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    // 删除簇中间的键后，簇中后面的键仍然能找到
+    @Test
+    public void removeInClusterTest() {
+        MyHashMapOA<Collider, Integer> m = new MyHashMapOA<>(64);
+        Collider[] keys = new Collider[10];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = new Collider(i, i < 6 ? 7 : 8);
+            m.put(keys[i], i);
+        }
+        assertEquals(3, m.remove(keys[3]).intValue());
+        assertEquals(0, m.remove(keys[0]).intValue());
+        assertNull(m.remove(keys[0]));
+        assertNull(m.remove(keys[9], 100));
+        assertEquals(9, m.remove(keys[9], 9).intValue());
+        assertEquals(7, m.size());
+        for (int i = 0; i < keys.length; i++) {
+            if (i == 0 || i == 3 || i == 9) {
+                assertFalse(m.containsKey(keys[i]));
+            } else {
+                assertEquals(i, m.get(keys[i]).intValue());
+            }
+        }
+        assertEquals(7, m.keySet().size());
+    }
+
+    // 随机的 put/remove 序列与 java.util.HashMap 的结果一致
+    @Test
+    public void randomizedTest() {
+        // 只用 512 个不同的键，并让一部分键的哈希值只在高位不同
+        TestMyHashMap.randomizedTest(new MyHashMapOA<>(), 20000, 2,
+                random -> random.nextInt(512) << (random.nextBoolean() ? 0 : 20));
+    }
+}
@@ -0,0 +1,112 @@
+package hashmap;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static speed.StringUtils.collidingString;
+
+/** Tests of the adaptive array/AVL-tree buckets under colliding keys. */
+public class TestMyHashMapTreeBuckets {
+
+    // 同一个 bucket 中的键超过阈值后变成树，删除到阈值以下后变回数组，期间所有操作结果正确
+    @Test
+    public void treeifyAndShrinkTest() {
+        MyHashMapTreeBuckets<String, Integer> m = new MyHashMapTreeBuckets<>();
+        int n = 1000;
+        for (int i = 0; i < n; i++) {
+            m.put(collidingString(i, 10), i);
+        }
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        assertEquals(n, m.size());
+        for (int i = 0; i < n; i++) {
+            assertEquals(i, m.get(collidingString(i, 10)).intValue());
+        }
+        assertNull(m.get(collidingString(n, 11)));
+        m.put(collidingString(3, 10), -3);
+        assertEquals(-3, m.get(collidingString(3, 10)).intValue());
+        assertEquals(n, m.keySet().size());
+
+        for (int i = 0; i < n - 3; i++) {
+            assertEquals(i == 3 ? -3 : i, m.remove(collidingString(i, 10)).intValue());
+        }
+        assertEquals(3, m.size());
+        Set<String> rest = new HashSet<>();
+        for (int i = n - 3; i < n; i++) {
+            rest.add(collidingString(i, 10));
+            assertTrue(m.containsKey(collidingString(i, 10)));
+        }
+        assertEquals(rest, m.keySet());
+    }
+
+    /** 哈希值全部相同、又不是 Comparable 的键 */
+    private static class BadKey {
+        final int id;
+
+        BadKey(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof BadKey && ((BadKey) o).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return 42;
+        }
+    }
+
+    // 无法比较的键留在数组形态，仍然正确
+    @Test
+    public void nonComparableKeysTest() {
+        MyHashMapTreeBuckets<Object, Integer> m = new MyHashMapTreeBuckets<>();
+        for (int i = 0; i < 50; i++) {
+            m.put(new BadKey(i), i);
+        }
+        // 与已有的键类型不同的 Comparable 键混入同一个 bucket
+        m.put(42, -1);
+        assertEquals(51, m.size());
+        for (int i = 0; i < 50; i++) {
+            assertEquals(i, m.get(new BadKey(i)).intValue());
+        }
+        assertEquals(-1, m.get(42).intValue());
+        assertEquals(10, m.remove(new BadKey(10)).intValue());
+        assertFalse(m.containsKey(new BadKey(10)));
+    }
+
+    // 树中混入 hashCode 相同的其他类的键后退化为数组，删除这个键后重新树化，期间所有操作结果正确
+    @Test
+    public void foreignKeyTest() {
+        MyHashMapTreeBuckets<Object, Integer> m = new MyHashMapTreeBuckets<>();
+        int n = 100;
+        for (int i = 0; i < n; i++) {
+            m.put(collidingString(i, 8), i);
+        }
+        Integer foreign = collidingString(0, 8).hashCode();
+        m.put(foreign, -1);
+        assertEquals(-1, m.get(foreign).intValue());
+        assertEquals(-1, m.remove(foreign).intValue());
+        assertNull(m.get(foreign));
+        for (int i = 0; i < n; i++) {
+            assertEquals(i, m.get(collidingString(i, 8)).intValue());
+        }
+        for (int i = 0; i < n; i += 2) {
+            assertEquals(i, m.remove(collidingString(i, 8)).intValue());
+        }
+        assertEquals(n / 2, m.size());
+        for (int i = 1; i < n; i += 2) {
+            assertTrue(m.containsKey(collidingString(i, 8)));
+        }
+    }
+
+    // 哈希值只有少数几种的随机操作序列与 java.util.HashMap 的结果一致，经历树化、退化和扩容
+    @Test
+    public void randomizedTest() {
+        TestMyHashMap.randomizedTest(new MyHashMapTreeBuckets<>(), 30000, 2,
+                random -> collidingString(random.nextInt(64), 6) + random.nextInt(4));
+    }
+}
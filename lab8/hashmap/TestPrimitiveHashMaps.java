@@ -0,0 +1,203 @@
+package hashmap;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+
+/** Tests of IntIntHashMap, IntObjectHashMap and LongObjectHashMap. */
+public class TestPrimitiveHashMaps {
+
+    // 键 0 表示空槽位，需要单独存放
+    @Test
+    public void zeroKeyTest() {
+        IntIntHashMap a = new IntIntHashMap();
+        assertFalse(a.containsKey(0));
+        assertEquals(-1, a.getOrDefault(0, -1));
+        a.put(0, 5);
+        assertTrue(a.containsKey(0));
+        assertEquals(5, a.get(0));
+        assertEquals(1, a.size());
+        assertEquals(5, a.remove(0));
+        assertEquals(0, a.remove(0));
+        assertEquals(0, a.size());
+
+        IntObjectHashMap<String> b = new IntObjectHashMap<>();
+        assertNull(b.put(0, "zero"));
+        assertEquals("zero", b.put(0, "0"));
+        assertEquals("0", b.remove(0));
+        assertFalse(b.containsKey(0));
+
+        LongObjectHashMap<String> c = new LongObjectHashMap<>();
+        c.put(0L, "zero");
+        c.put(1L << 40, "big");
+        assertEquals("zero", c.get(0L));
+        assertEquals("big", c.get(1L << 40));
+        assertNull(c.get(1L));
+        assertEquals(2, c.size());
+    }
+
+    @Test
+    public void incrementAndMergeTest() {
+        IntIntHashMap counts = new IntIntHashMap();
+        int[] words = {3, 0, 3, 7, 3, 0};
+        for (int w : words) {
+            counts.increment(w, 1);
+        }
+        assertEquals(3, counts.get(3));
+        assertEquals(2, counts.get(0));
+        assertEquals(1, counts.get(7));
+        assertEquals(10, counts.merge(7, 10, Math::max));
+        assertEquals(4, counts.merge(8, 4, Math::max));
+        int[] sum = new int[1];
+        counts.forEach((k, v) -> sum[0] += v);
+        assertEquals(3 + 2 + 10 + 4, sum[0]);
+        assertEquals(4, counts.keys().length);
+
+        IntObjectHashMap<String> names = new IntObjectHashMap<>();
+        assertEquals("a", names.merge(1, "a", String::concat));
+        assertEquals("ab", names.merge(1, "b", String::concat));
+        assertNull(names.merge(1, "c", (x, y) -> null));
+        assertFalse(names.containsKey(1));
+    }
+
+    // 随机的 put/increment/remove 序列与 java.util.HashMap 的结果一致
+    @Test
+    public void randomizedIntIntTest() {
+        Random random = new Random(61);
+        IntIntHashMap m = new IntIntHashMap();
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 50000; i++) {
+            int key = (random.nextInt(1000) - 500) << (random.nextBoolean() ? 0 : 16);
+            switch (random.nextInt(4)) {
+                case 0 -> {
+                    m.put(key, i);
+                    expected.put(key, i);
+                }
+                case 1 -> assertEquals((int) expected.merge(key, 1, Integer::sum), m.increment(key, 1));
+                case 2 -> {
+                    Integer old = expected.remove(key);
+                    assertEquals(old == null ? 0 : old, m.remove(key));
+                }
+                default -> assertEquals((int) expected.getOrDefault(key, -1), m.getOrDefault(key, -1));
+            }
+            assertEquals(expected.size(), m.size());
+        }
+        Map<Integer, Integer> actual = new HashMap<>();
+        m.forEach(actual::put);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void randomizedObjectTest() {
+        TestMyHashMap.randomizedTest(boxed(new IntObjectHashMap<>()), 50000, 2,
+                random -> random.nextInt(2000) - 1000);
+        TestMyHashMap.randomizedTest(boxed(new LongObjectHashMap<>()), 50000, 2,
+                random -> (long) (random.nextInt(2000) - 1000) << 32);
+    }
+
+    /** 把值为 Integer 的原始类型键 map 包装成 Map61B，供 TestMyHashMap 中的测试使用 */
+    private abstract static class Boxed<K> implements Map61B<K, Integer> {
+        @Override
+        public Integer remove(K key, Integer value) {
+            return containsKey(key) && Objects.equals(get(key), value) ? remove(key) : null;
+        }
+
+        @Override
+        public Iterator<K> iterator() {
+            return keySet().iterator();
+        }
+    }
+
+    private static Map61B<Integer, Integer> boxed(IntObjectHashMap<Integer> m) {
+        return new Boxed<>() {
+            @Override
+            public void clear() {
+                m.clear();
+            }
+
+            @Override
+            public boolean containsKey(Integer key) {
+                return m.containsKey(key);
+            }
+
+            @Override
+            public Integer get(Integer key) {
+                return m.get(key);
+            }
+
+            @Override
+            public int size() {
+                return m.size();
+            }
+
+            @Override
+            public void put(Integer key, Integer value) {
+                m.put(key, value);
+            }
+
+            @Override
+            public Set<Integer> keySet() {
+                Set<Integer> keys = new HashSet<>();
+                for (int key : m.keys()) {
+                    keys.add(key);
+                }
+                return keys;
+            }
+
+            @Override
+            public Integer remove(Integer key) {
+                return m.remove(key);
+            }
+        };
+    }
+
+    private static Map61B<Long, Integer> boxed(LongObjectHashMap<Integer> m) {
+        return new Boxed<>() {
+            @Override
+            public void clear() {
+                m.clear();
+            }
+
+            @Override
+            public boolean containsKey(Long key) {
+                return m.containsKey(key);
+            }
+
+            @Override
+            public Integer get(Long key) {
+                return m.get(key);
+            }
+
+            @Override
+            public int size() {
+                return m.size();
+            }
+
+            @Override
+            public void put(Long key, Integer value) {
+                m.put(key, value);
+            }
+
+            @Override
+            public Set<Long> keySet() {
+                Set<Long> keys = new HashSet<>();
+                for (long key : m.keys()) {
+                    keys.add(key);
+                }
+                return keys;
+            }
+
+            @Override
+            public Integer remove(Long key) {
+                return m.remove(key);
+            }
+        };
+    }
+}
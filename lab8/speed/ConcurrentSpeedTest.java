@@ -0,0 +1,147 @@
+package speed;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import hashmap.ConcurrentMyHashMap;
+import hashmap.Map61B;
+import hashmap.MyHashMap;
+
+/** Measures multi-threaded throughput of ConcurrentMyHashMap against a MyHashMap
+ *  shared behind one external lock, from 1 thread up to the number of cores.
+ */
+public class ConcurrentSpeedTest {
+
+    /** 每个线程执行的操作中 get 所占的比例（百分比），其余为 put */
+    private static final int GET_PERCENT = 90;
+
+    /** 键的取值范围 */
+    private static final int KEYS = 1 << 20;
+
+    /**
+     * Requests the number of operations per thread, then prints operations per second
+     * for 1, 2, 4, ... threads up to the number of available processors.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        Scanner input = new Scanner(System.in);
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.println("\n This program runs " + GET_PERCENT + "% get / "
+                + (100 - GET_PERCENT) + "% put on random Integer keys\n"
+                + " from 1 to " + cores + " threads.\n");
+        String repeat = "y";
+        do {
+            System.out.print("Enter # operations per thread: ");
+            int N = BucketsSpeedTest.waitForPositiveInt(input);
+            for (int threads = 1; threads <= cores; threads = nextThreads(threads, cores)) {
+                double concurrent = throughput(new ConcurrentMyHashMap<>(), threads, N);
+                double locked = throughput(new LockedMap<>(new MyHashMap<>()), threads, N);
+                System.out.printf("%2d threads  ConcurrentMyHashMap: %6.2f M ops/sec"
+                        + "  synchronized MyHashMap: %6.2f M ops/sec\n", threads, concurrent, locked);
+            }
+            System.out.print("\nWould you like to try more timed-tests? (y/n)");
+            repeat = input.nextLine();
+        } while (!repeat.equalsIgnoreCase("n") && !repeat.equalsIgnoreCase("no"));
+        input.close();
+    }
+
+    /** 1, 2, 4, ... 最后一次为 cores */
+    private static int nextThreads(int threads, int cores) {
+        return threads == cores ? cores + 1 : Math.min(threads * 2, cores);
+    }
+
+    /** 预先放入 KEYS / 2 个键，再用 threads 个线程各执行 N 次操作，返回每秒百万次操作数 */
+    private static double throughput(Map61B<Integer, Integer> map, int threads, int N)
+            throws InterruptedException {
+        for (int k = 0; k < KEYS; k += 2) {
+            map.put(k, k);
+        }
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Random random = new Random(61 + t);
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < N; i++) {
+                    int key = random.nextInt(KEYS);
+                    if (random.nextInt(100) < GET_PERCENT) {
+                        map.get(key);
+                    } else {
+                        map.put(key, i);
+                    }
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        return (double) threads * N / seconds / 1e6;
+    }
+
+    /** 用一把锁保护所有操作的 Map61B，相当于在线程间共享 MyHashMap 的外部同步 */
+    private static class LockedMap<K, V> implements Map61B<K, V> {
+        private final Map61B<K, V> map;
+
+        LockedMap(Map61B<K, V> map) {
+            this.map = map;
+        }
+
+        @Override
+        public synchronized void clear() {
+            map.clear();
+        }
+
+        @Override
+        public synchronized boolean containsKey(K key) {
+            return map.containsKey(key);
+        }
+
+        @Override
+        public synchronized V get(K key) {
+            return map.get(key);
+        }
+
+        @Override
+        public synchronized int size() {
+            return map.size();
+        }
+
+        @Override
+        public synchronized void put(K key, V value) {
+            map.put(key, value);
+        }
+
+        @Override
+        public synchronized Set<K> keySet() {
+            return map.keySet();
+        }
+
+        @Override
+        public synchronized V remove(K key) {
+            return map.remove(key);
+        }
+
+        @Override
+        public synchronized V remove(K key, V value) {
+            return map.remove(key, value);
+        }
+
+        @Override
+        public synchronized Iterator<K> iterator() {
+            return map.keySet().iterator();
+        }
+    }
+}
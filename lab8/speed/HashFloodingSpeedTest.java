@@ -0,0 +1,74 @@
+package speed;
+
+import edu.princeton.cs.algs4.Stopwatch;
+
+import java.util.HashMap;
+import java.util.Scanner;
+
+import hashmap.Map61B;
+import hashmap.MyHashMapALBuckets;
+import hashmap.MyHashMapTreeBuckets;
+
+/** Times puts and gets of N Strings that all share one hashCode, for doubling N.
+ *  With list buckets the time per operation grows linearly with N;
+ *  with treeified buckets it grows logarithmically.
+ */
+public class HashFloodingSpeedTest {
+    /**
+     * Requests the largest N, then prints the average time per operation
+     * for N / 16, N / 8, ..., N colliding strings.
+     */
+    public static void main(String[] args) {
+        Scanner input = new Scanner(System.in);
+        System.out.println("\n This program inserts and looks up N Strings "
+                + "that all have the same hashCode.\n");
+        String repeat = "y";
+        do {
+            System.out.print("Enter the largest # strings (at most 1048576): ");
+            int maxN = Math.min(BucketsSpeedTest.waitForPositiveInt(input), 1 << 20);
+            // 先用最小的 N 运行一轮预热 JIT，不报告
+            timeAll(Math.max(1, maxN / 16));
+            for (int N = Math.max(1, maxN / 16); N <= maxN; N *= 2) {
+                double[] t = timeAll(N);
+                System.out.printf("N = %7d  MyHashMapALBuckets: %9.2f us/op"
+                        + "  MyHashMapTreeBuckets: %6.2f us/op  Java's HashMap: %6.2f us/op\n", N, t[0], t[1], t[2]);
+            }
+            System.out.print("\nWould you like to try more timed-tests? (y/n)");
+            repeat = input.nextLine();
+        } while (!repeat.equalsIgnoreCase("n") && !repeat.equalsIgnoreCase("no"));
+        input.close();
+    }
+
+    /** 返回三种 map 放入再查找 N 个冲突字符串时每次操作的平均耗时（微秒） */
+    private static double[] timeAll(int N) {
+        String[] keys = new String[N];
+        for (int i = 0; i < N; i++) {
+            keys[i] = StringUtils.collidingString(i, 20);
+        }
+        return new double[] {perOp(new MyHashMapALBuckets<>(), keys),
+            perOp(new MyHashMapTreeBuckets<>(), keys), perOpHashMap(new HashMap<>(), keys)};
+    }
+
+    /** 放入再查找所有 keys，返回每次操作的平均耗时（微秒） */
+    private static double perOp(Map61B<String, Integer> map, String[] keys) {
+        Stopwatch sw = new Stopwatch();
+        for (int i = 0; i < keys.length; i++) {
+            map.put(keys[i], i);
+        }
+        for (String key : keys) {
+            map.get(key);
+        }
+        return sw.elapsedTime() * 1e6 / (2 * keys.length);
+    }
+
+    private static double perOpHashMap(HashMap<String, Integer> map, String[] keys) {
+        Stopwatch sw = new Stopwatch();
+        for (int i = 0; i < keys.length; i++) {
+            map.put(keys[i], i);
+        }
+        for (String key : keys) {
+            map.get(key);
+        }
+        return sw.elapsedTime() * 1e6 / (2 * keys.length);
+    }
+}
@@ -0,0 +1,114 @@
+package speed;
+
+import edu.princeton.cs.algs4.Stopwatch;
+
+import java.util.HashMap;
+import java.util.Random;
+import java.util.Scanner;
+
+import hashmap.IntIntHashMap;
+import hashmap.LongObjectHashMap;
+import hashmap.MyHashMap;
+
+/** Compares the primitive-keyed maps with MyHashMap and java.util.HashMap,
+ *  which box every key and value.
+ */
+public class PrimitiveMapSpeedTest {
+    /**
+     * Requests N and times two workloads on each map:
+     * counting N random ints (increment), and putting then getting N random long ids.
+     */
+    public static void main(String[] args) {
+        Scanner input = new Scanner(System.in);
+        System.out.println("\n This program counts N random ints and stores N random long ids\n"
+                + " in IntIntHashMap / LongObjectHashMap, MyHashMap and Java's HashMap.\n");
+        String repeat = "y";
+        do {
+            System.out.print("Enter N: ");
+            int N = BucketsSpeedTest.waitForPositiveInt(input);
+            int[] ints = new int[N];
+            long[] ids = new long[N];
+            Random random = new Random(61);
+            for (int i = 0; i < N; i++) {
+                // 约 N/4 个不同的键，每个键平均计数 4 次
+                ints[i] = random.nextInt(Math.max(1, N / 4));
+                ids[i] = random.nextLong();
+            }
+
+            System.out.printf("count ints  IntIntHashMap: %.2f sec\n", countIntInt(ints));
+            System.out.printf("count ints  MyHashMap<Integer, Integer>: %.2f sec\n", countMyHashMap(ints));
+            System.out.printf("count ints  Java's HashMap<Integer, Integer>: %.2f sec\n", countHashMap(ints));
+            System.out.printf("long ids    LongObjectHashMap: %.2f sec\n", idsLongObject(ids));
+            System.out.printf("long ids    MyHashMap<Long, String>: %.2f sec\n", idsMyHashMap(ids));
+            System.out.printf("long ids    Java's HashMap<Long, String>: %.2f sec\n", idsHashMap(ids));
+
+            System.out.print("\nWould you like to try more timed-tests? (y/n)");
+            repeat = input.nextLine();
+        } while (!repeat.equalsIgnoreCase("n") && !repeat.equalsIgnoreCase("no"));
+        input.close();
+    }
+
+    private static double countIntInt(int[] ints) {
+        Stopwatch sw = new Stopwatch();
+        IntIntHashMap map = new IntIntHashMap();
+        for (int key : ints) {
+            map.increment(key, 1);
+        }
+        return sw.elapsedTime();
+    }
+
+    private static double countMyHashMap(int[] ints) {
+        Stopwatch sw = new Stopwatch();
+        MyHashMap<Integer, Integer> map = new MyHashMap<>();
+        for (int key : ints) {
+            Integer old = map.get(key);
+            map.put(key, old == null ? 1 : old + 1);
+        }
+        return sw.elapsedTime();
+    }
+
+    private static double countHashMap(int[] ints) {
+        Stopwatch sw = new Stopwatch();
+        HashMap<Integer, Integer> map = new HashMap<>();
+        for (int key : ints) {
+            map.merge(key, 1, Integer::sum);
+        }
+        return sw.elapsedTime();
+    }
+
+    private static double idsLongObject(long[] ids) {
+        Stopwatch sw = new Stopwatch();
+        LongObjectHashMap<String> map = new LongObjectHashMap<>();
+        for (long id : ids) {
+            map.put(id, "x");
+        }
+        for (long id : ids) {
+            map.get(id);
+        }
+        return sw.elapsedTime();
+    }
+
+    private static double idsMyHashMap(long[] ids) {
+        Stopwatch sw = new Stopwatch();
+        MyHashMap<Long, String> map = new MyHashMap<>();
+        for (long id : ids) {
+            map.put(id, "x");
+        }
+        for (long id : ids) {
+            map.get(id);
+        }
+        return sw.elapsedTime();
+    }
+
+    private static double idsHashMap(long[] ids) {
+        Stopwatch sw = new Stopwatch();
+        HashMap<Long, String> map = new HashMap<>();
+        for (long id : ids) {
+            map.put(id, "x");
+        }
+        for (long id : ids) {
+            map.get(id);
+        }
+        return sw.elapsedTime();
+    }
+}
@@ -0,0 +1,75 @@
+package speed;
+
+import java.util.Arrays;
+import java.util.Scanner;
+
+import hashmap.Map61B;
+import hashmap.MyHashMap;
+
+/** Records the latency of every put into MyHashMap with stop-the-world and with
+ *  incremental resizing, and prints latency percentiles.
+ *  Run with a large fixed heap (e.g. -Xms3g -Xmx3g) so that GC pauses
+ *  do not dominate the maximum.
+ */
+public class ResizeLatencySpeedTest {
+    /**
+     * Requests user input, inserts N random strings of length L into each map
+     * as <String, Integer> pairs, and prints the percentiles of single put calls.
+     */
+    public static void main(String[] args) {
+        Scanner input = new Scanner(System.in);
+        System.out.println("\n This program times every single put of random "
+                + "Strings of length L\n"
+                + " into MyHashMap with stop-the-world and incremental resizing.\n");
+        System.out.print("What would you like L to be?: ");
+        int L = BucketsSpeedTest.waitForPositiveInt(input);
+
+        String repeat = "y";
+        do {
+            System.out.print("\nEnter # strings to insert into each map: ");
+            int N = BucketsSpeedTest.waitForPositiveInt(input);
+            String[] keys = new String[N];
+            for (int i = 0; i < N; i++) {
+                keys[i] = StringUtils.randomString(L);
+            }
+            // 第一轮用于预热 JIT，只报告第二轮
+            for (int round = 0; round < 2; round++) {
+                long[] stopTheWorld = putLatencies(new MyHashMap<>(16, 0.75, false), keys);
+                long[] incremental = putLatencies(new MyHashMap<>(16, 0.75, true), keys);
+                if (round == 1) {
+                    printPercentiles("stop-the-world resize", stopTheWorld);
+                    printPercentiles("incremental resize   ", incremental);
+                }
+            }
+
+            System.out.print("\nWould you like to try more timed-tests? (y/n)");
+            repeat = input.nextLine();
+        } while (!repeat.equalsIgnoreCase("n") && !repeat.equalsIgnoreCase("no"));
+        input.close();
+    }
+
+    /** 依次放入 keys，返回每次 put 的耗时（纳秒），已排序 */
+    private static long[] putLatencies(Map61B<String, Integer> map, String[] keys) {
+        long[] latencies = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            long start = System.nanoTime();
+            map.put(keys[i], i);
+            latencies[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private static void printPercentiles(String name, long[] sorted) {
+        System.out.printf("%s  p50: %8.1f us  p99: %8.1f us  p99.9: %8.1f us"
+                        + "  p99.99: %8.1f us  max: %9.1f us  total: %.2f sec\n", name,
+                percentile(sorted, 50), percentile(sorted, 99), percentile(sorted, 99.9),
+                percentile(sorted, 99.99), sorted[sorted.length - 1] / 1e3,
+                Arrays.stream(sorted).sum() / 1e9);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        int i = (int) Math.ceil(p / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(i, sorted.length - 1))] / 1e3;
+    }
+}
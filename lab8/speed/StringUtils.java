@@ -27,6 +27,19 @@ public class StringUtils {
         return new String(someChars);
     }
 
+    /**
+     * Returns the Ith string of length 2 * BLOCKS made of "Aa" and "BB" blocks.
+     * "Aa" and "BB" have the same hashCode, so all strings of the same length
+     * returned here collide: there are 2^BLOCKS of them.
+     */
+    public static String collidingString(int i, int blocks) {
+        StringBuilder sb = new StringBuilder();
+        for (int b = 0; b < blocks; b++) {
+            sb.append((i >> b & 1) == 0 ? "Aa" : "BB");
+        }
+        return sb.toString();
+    }
+
     /**
      * Returns true if string S consists of characters between
      * 'a' and 'z' only. No spaces, numbers, upper-case, or any other
@@ -0,0 +1,118 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * benchmark 目录中各性能测试共用的工具：读取命令行参数、计时、在临时目录中运行，以及按列打印结果表。
+ *
+ * 性能测试与 gitlet 属于同一个包，可以直接调用包内的类；但放在单独的目录中，
+ * 不会被 make default 编译进 gitlet。在 proj2 目录中编译和运行：
+ * <pre>
+ * make benchmark
+ * java -cp .:benchmark/classes gitlet.DiffSpeedTest
+ * </pre>
+ */
+class Benchmark {
+
+    private Benchmark() {
+    }
+
+    /**
+     * 返回第 index 个命令行参数的整数值。
+     *
+     * @param args 命令行参数
+     * @param index 参数下标
+     * @param defaultValue 没有该参数时的默认值
+     */
+    static int intArg(String[] args, int index, int defaultValue) {
+        return args.length > index ? Integer.parseInt(args[index]) : defaultValue;
+    }
+
+    /** 返回从 start（System.nanoTime() 的值）到现在经过的毫秒数 */
+    static double millis(long start) {
+        return (System.nanoTime() - start) / 1e6;
+    }
+
+    /** 返回从 start（System.nanoTime() 的值）到现在经过的秒数 */
+    static double seconds(long start) {
+        return (System.nanoTime() - start) / 1e9;
+    }
+
+    /** 执行一次 task，返回耗时（纳秒） */
+    static long nanos(Runnable task) {
+        long start = System.nanoTime();
+        task.run();
+        return System.nanoTime() - start;
+    }
+
+    /** 在临时目录中运行的测试 */
+    interface DirTask {
+        void run(File dir) throws IOException;
+    }
+
+    /**
+     * 创建临时目录并在其中运行 task，结束后（包括出错时）删除临时目录。
+     *
+     * @param prefix 临时目录名前缀
+     * @param task 测试
+     */
+    static void inTempDir(String prefix, DirTask task) throws IOException {
+        File dir = Files.createTempDirectory(prefix).toFile();
+        try {
+            task.run(dir);
+        } finally {
+            try (Stream<Path> walk = Files.walk(dir.toPath())) {
+                walk.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    /**
+     * 按列打印的结果表。每列由列名和 printf 格式组成，表头按格式中的宽度和对齐方式对齐。
+     */
+    static class Table {
+        /** 格式中的标志和宽度，例如 "%-8s" 中的 "-8" */
+        private static final Pattern WIDTH = Pattern.compile("%(-?\\d*)");
+
+        private final List<String> names = new ArrayList<>();
+        private final List<String> formats = new ArrayList<>();
+
+        /**
+         * 添加一列。
+         *
+         * @param name 列名
+         * @param format 该列的 printf 格式，例如 "%10.2f"
+         * @return 本对象，便于连续调用
+         */
+        Table column(String name, String format) {
+            names.add(name);
+            formats.add(format);
+            return this;
+        }
+
+        /** 打印表头 */
+        void printHeader() {
+            StringBuilder header = new StringBuilder();
+            for (int i = 0; i < names.size(); i++) {
+                Matcher m = WIDTH.matcher(formats.get(i));
+                String width = m.lookingAt() ? m.group(1) : "";
+                header.append(i == 0 ? "" : " ").append(String.format("%" + width + "s", names.get(i)));
+            }
+            System.out.println(header);
+        }
+
+        /** 按各列的格式打印一行 */
+        void row(Object... values) {
+            System.out.printf(String.join(" ", formats) + "%n", values);
+        }
+    }
+}
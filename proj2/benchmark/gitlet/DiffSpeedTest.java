@@ -0,0 +1,75 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 测试 Diff 在不同文件大小和修改比例下的耗时。
+ *
+ * 对每个行数 N，生成 N 行的随机文本，再按比例随机修改、插入和删除一部分行，
+ * 分别计时切分与内部化（intern）、Myers 比较和生成 unified 输出。每组先预热再取多次的平均值。
+ *
+ * 用法：java gitlet.DiffSpeedTest [最大行数]
+ * 默认最大行数为 100000，测试 1000、10000、100000 行，修改比例 0.1%、1%、10%。
+ */
+public class DiffSpeedTest {
+
+    /** 每组测试的重复次数 */
+    private static final int REPEATS = 5;
+
+    /** 结果表，耗时单位为毫秒 */
+    private static final Benchmark.Table TABLE = new Benchmark.Table()
+            .column("lines", "%8d").column("edits", "%7d").column("intern", "%10.2f")
+            .column("diff", "%10.2f").column("unified", "%10.2f");
+
+    public static void main(String[] args) {
+        int maxLines = Benchmark.intArg(args, 0, 100000);
+        double[] ratios = {0.001, 0.01, 0.1};
+        TABLE.printHeader();
+        for (int n = 1000; n <= maxLines; n *= 10) {
+            for (double ratio : ratios) {
+                time(n, ratio);
+            }
+        }
+    }
+
+    /** 在 n 行、修改比例为 ratio 的输入上计时并打印结果 */
+    private static void time(int n, double ratio) {
+        Random random = new Random(n);
+        List<String> lines = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            lines.add("line " + random.nextInt(n) + " of some source file\n");
+        }
+        List<String> changed = new ArrayList<>(lines);
+        int edits = Math.max(1, (int) (n * ratio));
+        for (int i = 0; i < edits; i++) {
+            int pos = random.nextInt(changed.size());
+            switch (random.nextInt(3)) {
+                case 0 -> changed.set(pos, "changed " + i + "\n");
+                case 1 -> changed.add(pos, "inserted " + i + "\n");
+                default -> changed.remove(pos);
+            }
+        }
+        String a = String.join("", lines);
+        String b = String.join("", changed);
+
+        // 预热
+        Diff.unified("a", "b", a, b);
+
+        long internNanos = 0;
+        long diffNanos = 0;
+        long unifiedNanos = 0;
+        for (int r = 0; r < REPEATS; r++) {
+            long start = System.nanoTime();
+            Diff.Interner interner = new Diff.Interner();
+            int[] x = interner.intern(Diff.splitLines(a));
+            int[] y = interner.intern(Diff.splitLines(b));
+            internNanos += System.nanoTime() - start;
+            diffNanos += Benchmark.nanos(() -> Diff.diff(x, y));
+            unifiedNanos += Benchmark.nanos(() -> Diff.unified("a", "b", a, b));
+        }
+        TABLE.row(n, edits, internNanos / 1e6 / REPEATS, diffNanos / 1e6 / REPEATS,
+                unifiedNanos / 1e6 / REPEATS);
+    }
+}
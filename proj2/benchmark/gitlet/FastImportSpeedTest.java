@@ -0,0 +1,53 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 测试 FastImport 的导入吞吐量。
+ *
+ * 在内存中生成一个线性历史的 fast-import 流：共 F 个文件，每个 commit 修改其中一个文件，
+ * 然后在临时仓库中导入，打印每秒导入的 commit 数。与 gitlet 命令一样在 Journal 事务中运行。
+ *
+ * 用法：java gitlet.FastImportSpeedTest [commit 数 N] [文件数 F]
+ * 默认 N = 50000，F = 100。测试结束后会删除临时目录。
+ */
+public class FastImportSpeedTest {
+
+    public static void main(String[] args) throws IOException {
+        int n = Benchmark.intArg(args, 0, 50000);
+        int files = Benchmark.intArg(args, 1, 100);
+        StringBuilder stream = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            String content = "file " + (i % files) + " version " + i + "\n";
+            String message = "commit " + i;
+            stream.append("blob\nmark :").append(2 * i + 1).append('\n')
+                    .append("data ").append(content.length()).append('\n').append(content).append('\n')
+                    .append("commit master\nmark :").append(2 * i + 2).append('\n')
+                    .append("time ").append(i).append('\n')
+                    .append("data ").append(message.length()).append('\n').append(message).append('\n')
+                    .append("M :").append(2 * i + 1).append(" f").append(i % files).append(".txt\n\n");
+        }
+        byte[] bytes = stream.toString().getBytes(StandardCharsets.UTF_8);
+
+        Benchmark.inTempDir("gitlet-import", root -> {
+            File commitDir = Utils.join(root, "commits");
+            File blobDir = Utils.join(root, "blobs");
+            commitDir.mkdir();
+            blobDir.mkdir();
+            CommitManager commitManager = new CommitManager(Utils.join(root, "CommitManager"), commitDir);
+            Journal.begin(Utils.join(root, "journal"));
+            long start = System.nanoTime();
+            FastImport importer = new FastImport(commitManager, commitDir, blobDir,
+                    new ByteArrayInputStream(bytes));
+            importer.run();
+            Journal.commit();
+            double seconds = Benchmark.seconds(start);
+            System.out.printf("%d commits, %d files (%.1f MB stream): %.2f sec, %.0f commits/sec%n",
+                    importer.commitCount(), files, bytes.length / 1e6, seconds,
+                    importer.commitCount() / seconds);
+        });
+    }
+}
@@ -0,0 +1,99 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * LockManager 的并发读取测试：N 个进程同时反复执行只读命令（status 和 log），
+ * 分别在没有写者和有一个写者不断提交的情况下统计总耗时和每条命令的平均耗时。
+ * 读者之间共享锁，耗时应随 N 近似不变（受 CPU 核数限制）；有写者时读者只会在写者提交的短暂时间内等待。
+ *
+ * 用法：java gitlet.LockSpeedTest [读者数量 N] [每个读者执行的命令数 K]
+ * 默认 N = 8，K = 10。测试在临时目录中进行，结束后会删除临时目录。
+ */
+public class LockSpeedTest {
+
+    /** 结果表 */
+    private static final Benchmark.Table TABLE = new Benchmark.Table()
+            .column("", "%-13s").column("total sec", "%9.2f").column("ms/command", "%10.1f")
+            .column("writer commits", "%14d");
+
+    public static void main(String[] args) throws IOException {
+        int readers = Benchmark.intArg(args, 0, 8);
+        int rounds = Benchmark.intArg(args, 1, 10);
+        Benchmark.inTempDir("gitlet-lock", repo -> {
+            run(repo, "init");
+            Utils.writeContents(Utils.join(repo, "f.txt"), "0\n");
+            run(repo, "add", "f.txt");
+            run(repo, "commit", "initial");
+
+            System.out.printf("%d readers x %d commands%n", readers, rounds);
+            TABLE.printHeader();
+            try {
+                time("readers only", repo, readers, rounds, false);
+                time("with writer", repo, readers, rounds, true);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    /** 启动 readers 个读者线程，每个线程依次启动 rounds 个 gitlet 只读进程，打印耗时 */
+    private static void time(String name, File repo, int readers, int rounds,
+                             boolean withWriter) throws InterruptedException {
+        Thread writer = null;
+        AtomicInteger commits = new AtomicInteger();
+        AtomicBoolean done = new AtomicBoolean();
+        if (withWriter) {
+            writer = new Thread(() -> {
+                while (!done.get()) {
+                    int n = commits.incrementAndGet();
+                    Utils.writeContents(Utils.join(repo, "f.txt"), n + "\n");
+                    run(repo, "add", "f.txt");
+                    run(repo, "commit", "change " + n);
+                }
+            });
+            writer.start();
+        }
+        long start = System.nanoTime();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < readers; i++) {
+            Thread reader = new Thread(() -> {
+                for (int j = 0; j < rounds; j++) {
+                    run(repo, j % 2 == 0 ? "status" : "log");
+                }
+            });
+            threads.add(reader);
+            reader.start();
+        }
+        for (Thread reader : threads) {
+            reader.join();
+        }
+        double elapsed = Benchmark.seconds(start);
+        done.set(true);
+        if (writer != null) {
+            writer.join();
+        }
+        TABLE.row(name, elapsed, elapsed * 1000 / (readers * rounds), commits.get());
+    }
+
+    /** 在 repo 目录中以新进程运行一条 gitlet 命令，等待其结束 */
+    private static void run(File repo, String... command) {
+        List<String> cmd = new ArrayList<>(List.of(
+                Utils.join(System.getProperty("java.home"), "bin", "java").getPath(),
+                "-cp", System.getProperty("java.class.path"), "gitlet.Main"));
+        cmd.addAll(List.of(command));
+        try {
+            Process process = new ProcessBuilder(cmd).directory(repo)
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+            process.waitFor();
+        } catch (IOException | InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 比较 log -- 文件名 在有无提交图（Bloom 过滤器）时的耗时，并统计过滤器的误判率。
+ *
+ * 先用 FastImport 在临时仓库中导入一个线性历史：共 F 个文件，每个 commit 随机修改其中 C 个，
+ * 然后写入提交图。对 Q 个随机文件分别用提交图和空图查询历史，检查两者结果相同，
+ * 打印平均耗时和误判率（过滤器命中但文件没有变化的 commit 占所有没有修改该文件的 commit 的比例）。
+ *
+ * 用法：java gitlet.LogPathSpeedTest [commit 数 N] [文件数 F] [每个 commit 修改的文件数 C] [查询数 Q]
+ * 默认 N = 10000，F = 1000，C = 3，Q = 5。测试结束后会删除临时目录。
+ */
+public class LogPathSpeedTest {
+
+    public static void main(String[] args) throws IOException {
+        int n = Benchmark.intArg(args, 0, 10000);
+        int files = Benchmark.intArg(args, 1, 1000);
+        int changes = Benchmark.intArg(args, 2, 3);
+        int queries = Benchmark.intArg(args, 3, 5);
+        Random random = new Random(61);
+        StringBuilder stream = new StringBuilder();
+        int mark = 0;
+        for (int i = 0; i < n; i++) {
+            StringBuilder changed = new StringBuilder();
+            for (int j = 0; j < changes; j++) {
+                int f = random.nextInt(files);
+                String content = "file " + f + " version " + i + "\n";
+                stream.append("blob\nmark :").append(++mark).append('\n')
+                        .append("data ").append(content.length()).append('\n').append(content).append('\n');
+                changed.append("M :").append(mark).append(" f").append(f).append(".txt\n");
+            }
+            String message = "commit " + i;
+            stream.append("commit master\ntime ").append(i).append('\n')
+                    .append("data ").append(message.length()).append('\n').append(message).append('\n')
+                    .append(changed).append('\n');
+        }
+        byte[] bytes = stream.toString().getBytes(StandardCharsets.UTF_8);
+
+        Benchmark.inTempDir("gitlet-logpath", root -> {
+            File commitDir = Utils.join(root, "commits");
+            File blobDir = Utils.join(root, "blobs");
+            commitDir.mkdir();
+            blobDir.mkdir();
+            CommitManager commitManager = new CommitManager(Utils.join(root, "CommitManager"), commitDir);
+            Journal.begin(Utils.join(root, "journal"));
+            new FastImport(commitManager, commitDir, blobDir, new ByteArrayInputStream(bytes)).run();
+
+            long start = System.nanoTime();
+            int size = CommitGraph.write(root, commitManager);
+            Journal.commit();
+            System.out.printf("%d commits, %d files, %d changes per commit; commit-graph written in %.2f sec%n",
+                    size, files, changes, Benchmark.seconds(start));
+
+            CommitGraph graph = CommitGraph.load(root);
+            CommitGraph empty = CommitGraph.empty();
+            String head = commitManager.getBranchCommit("master").id();
+            long withGraph = 0;
+            long withoutGraph = 0;
+            long skipped = 0;
+            long falsePositives = 0;
+            long matches = 0;
+            for (int q = 0; q < queries; q++) {
+                String path = "f" + random.nextInt(files) + ".txt";
+                start = System.nanoTime();
+                List<Commit> fast = graph.history(commitManager, head, path);
+                withGraph += System.nanoTime() - start;
+                start = System.nanoTime();
+                List<Commit> slow = empty.history(commitManager, head, path);
+                withoutGraph += System.nanoTime() - start;
+                if (fast.size() != slow.size()) {
+                    throw new IllegalStateException("different history for " + path);
+                }
+                for (int i = 0; i < fast.size(); i++) {
+                    if (!fast.get(i).id().equals(slow.get(i).id())) {
+                        throw new IllegalStateException("different history for " + path);
+                    }
+                }
+                skipped += graph.skipped();
+                falsePositives += graph.falsePositives();
+                matches += fast.size();
+            }
+            System.out.printf("with commit-graph: %.1f ms/query, without: %.1f ms/query (%.1fx)%n",
+                    withGraph / 1e6 / queries, withoutGraph / 1e6 / queries,
+                    (double) withoutGraph / withGraph);
+            System.out.printf("%d matching commits, %d skipped by the filter, false-positive rate %.3f%%%n",
+                    matches, skipped, 100.0 * falsePositives / (falsePositives + skipped));
+        });
+    }
+}
@@ -0,0 +1,119 @@
+package gitlet;
+
+import java.io.File;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 测试 MergeManager 对三个快照中文件的分类（checkout / remove / conflict）耗时。
+ *
+ * 随机生成 split、current、given 三个快照：current 和 given 各自修改约 10%、删除约 5%、新增约 5% 的文件，
+ * 部分修改和新增互相重叠以产生冲突。先在 S 个文件上比较有序归并与旧的逐文件查找
+ * （每个文件调用三次 getTrackedFile() 复制整个映射），检查两者得到相同的集合，再单独测量 F 个文件的有序归并。
+ *
+ * 用法：java gitlet.MergeClassifySpeedTest [文件数 F] [与旧实现比较的文件数 S]
+ * 默认 F = 100000，S = 5000。
+ */
+public class MergeClassifySpeedTest {
+
+    public static void main(String[] args) {
+        int files = Benchmark.intArg(args, 0, 100000);
+        int small = Benchmark.intArg(args, 1, 5000);
+
+        Commit[] commits = snapshots(small, new Random(61));
+        long start = System.nanoTime();
+        MergeManager manager = classify(commits);
+        double join = Benchmark.millis(start);
+        start = System.nanoTime();
+        List<Set<String>> legacy = legacyClassify(commits);
+        double copying = Benchmark.millis(start);
+        if (!legacy.get(0).equals(manager.getCheckoutFiles())
+                || !legacy.get(1).equals(manager.getRemoveFiles())
+                || !legacy.get(2).equals(manager.getConflictFiles())) {
+            throw new IllegalStateException("merge-join and per-file lookup disagree");
+        }
+        System.out.printf("%d files: merge-join %.1f ms, per-file copies %.1f ms (same sets)%n",
+                small, join, copying);
+
+        commits = snapshots(files, new Random(61));
+        classify(commits); // 预热
+        start = System.nanoTime();
+        manager = classify(commits);
+        System.out.printf("%d files: merge-join %.1f ms; %d checkout, %d remove, %d conflict%n",
+                files, Benchmark.millis(start), manager.getCheckoutFiles().size(),
+                manager.getRemoveFiles().size(), manager.getConflictFiles().size());
+    }
+
+    /** 用有序归并分类，返回分类后的 MergeManager */
+    private static MergeManager classify(Commit[] commits) {
+        MergeManager manager = new MergeManager(commits[0], commits[1], commits[2],
+                List.of(), new File("."), new File("."));
+        manager.classify();
+        return manager;
+    }
+
+    /** 旧实现：对所有文件的并集逐个调用 getTrackedFile() 查找，返回 checkout、remove、conflict 集合 */
+    private static List<Set<String>> legacyClassify(Commit[] commits) {
+        Set<String> all = new HashSet<>();
+        for (Commit commit : commits) {
+            all.addAll(commit.getTrackedFile().keySet());
+        }
+        Set<String> checkout = new HashSet<>();
+        Set<String> remove = new HashSet<>();
+        Set<String> conflict = new HashSet<>();
+        for (String fileName : all) {
+            int code = MergeManager.statusCode(commits[0].getTrackedFile().get(fileName),
+                    commits[1].getTrackedFile().get(fileName), commits[2].getTrackedFile().get(fileName));
+            switch (code) {
+                case 112, 1 -> checkout.add(fileName);
+                case 110 -> remove.add(fileName);
+                case 123, 120, 102, 12 -> conflict.add(fileName);
+                default -> { }
+            }
+        }
+        return List.of(checkout, remove, conflict);
+    }
+
+    /** 生成 split、current、given 三个快照 */
+    private static Commit[] snapshots(int files, Random random) {
+        TreeMap<String, String> split = new TreeMap<>();
+        for (int i = 0; i < files; i++) {
+            split.put(String.format("f%06d.txt", i), Utils.sha1("base " + i));
+        }
+        TreeMap<String, String> current = edit(split, random, "current", files);
+        TreeMap<String, String> given = edit(split, random, "given", files);
+        // 一部分文件被双方改成相同内容，或者由双方新增
+        for (int i = 0; i < files / 50; i++) {
+            String name = String.format("f%06d.txt", random.nextInt(files));
+            String hash = Utils.sha1("same " + i);
+            current.put(name, hash);
+            given.put(name, hash);
+            String added = String.format("both%06d.txt", i);
+            current.put(added, Utils.sha1("both current " + i));
+            given.put(added, Utils.sha1(i % 2 == 0 ? "both current " + i : "both given " + i));
+        }
+        return new Commit[]{
+            Commit.create("split", Instant.EPOCH, new ArrayList<>(), split),
+            Commit.create("current", Instant.EPOCH, new ArrayList<>(), current),
+            Commit.create("given", Instant.EPOCH, new ArrayList<>(), given)};
+    }
+
+    /** 返回 base 的副本，其中约 10% 的文件被修改、5% 被删除，另有 5% 的新文件 */
+    private static TreeMap<String, String> edit(TreeMap<String, String> base, Random random,
+                                                String side, int files) {
+        TreeMap<String, String> result = new TreeMap<>(base);
+        for (int i = 0; i < files / 10; i++) {
+            result.put(String.format("f%06d.txt", random.nextInt(files)), Utils.sha1(side + " " + i));
+        }
+        for (int i = 0; i < files / 20; i++) {
+            result.remove(String.format("f%06d.txt", random.nextInt(files)));
+            result.put(String.format("%s%06d.txt", side, i), Utils.sha1(side + " new " + i));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,81 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * 测试 Merge3 在大量文件上的三方合并吞吐量，比较逐个合并与并行合并（与 MergeManager 相同的并行方式）。
+ *
+ * 每个文件有 L 行，当前分支和目标分支各自随机修改文件中不同位置的若干行，
+ * 其中一部分文件的修改互相重叠以产生冲突区块。
+ *
+ * 用法：java gitlet.MergeSpeedTest [文件数 F] [每个文件的行数 L]
+ * 默认 F = 2000，L = 2000。
+ */
+public class MergeSpeedTest {
+
+    /** 每个文件中每一方修改的行数 */
+    private static final int EDITS = 20;
+
+    /** 结果表 */
+    private static final Benchmark.Table TABLE = new Benchmark.Table()
+            .column("mode", "%-10s").column("sec", "%6.2f").column("MB/s", "%7.1f")
+            .column("conflicts", "%9d");
+
+    public static void main(String[] args) {
+        int files = Benchmark.intArg(args, 0, 2000);
+        int lines = Benchmark.intArg(args, 1, 2000);
+        Random random = new Random(61);
+        List<String[]> inputs = new ArrayList<>(files);
+        long bytes = 0;
+        for (int f = 0; f < files; f++) {
+            List<String> base = new ArrayList<>(lines);
+            for (int i = 0; i < lines; i++) {
+                base.add("file " + f + " line " + random.nextInt(lines) + "\n");
+            }
+            // 当前分支修改前半部分，目标分支修改后半部分；每十个文件中有一个在中间重叠
+            boolean overlap = f % 10 == 0;
+            List<String> ours = edit(base, random, 0, overlap ? lines * 3 / 4 : lines / 2);
+            List<String> theirs = edit(base, random, overlap ? lines / 4 : lines / 2, lines);
+            String[] input = {String.join("", base), String.join("", ours), String.join("", theirs)};
+            bytes += input[0].length() + input[1].length() + input[2].length();
+            inputs.add(input);
+        }
+        System.out.printf("%d files x %d lines (%.1f MB)%n", files, lines, bytes / 1e6);
+
+        // 预热
+        inputs.parallelStream().limit(100).forEach(in -> Merge3.merge(in[0], in[1], in[2]));
+
+        TABLE.printHeader();
+        long start = System.nanoTime();
+        int conflicts = 0;
+        for (String[] in : inputs) {
+            conflicts += Merge3.merge(in[0], in[1], in[2]).conflict ? 1 : 0;
+        }
+        report("sequential", start, bytes, conflicts);
+
+        start = System.nanoTime();
+        conflicts = (int) IntStream.range(0, files).parallel()
+                .filter(f -> Merge3.merge(inputs.get(f)[0], inputs.get(f)[1],
+                        inputs.get(f)[2]).conflict)
+                .count();
+        report("parallel", start, bytes, conflicts);
+    }
+
+    /** 返回 base 的副本，其中 [from, to) 范围内随机 EDITS 行被替换 */
+    private static List<String> edit(List<String> base, Random random, int from, int to) {
+        List<String> result = new ArrayList<>(base);
+        for (int i = 0; i < EDITS; i++) {
+            result.set(from + random.nextInt(to - from), "edited " + random.nextInt() + "\n");
+        }
+        return result;
+    }
+
+    /** 打印耗时、吞吐量和有冲突的文件数 */
+    private static void report(String name, long start, long bytes, int conflicts) {
+        double seconds = Benchmark.seconds(start);
+        TABLE.row(name, seconds, bytes / 1e6 / seconds, conflicts);
+    }
+}
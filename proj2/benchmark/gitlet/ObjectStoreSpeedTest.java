@@ -0,0 +1,73 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 比较平铺目录和 ObjectStore 分片目录在大量对象下的创建、查找和列举耗时。
+ *
+ * 用法：java gitlet.ObjectStoreSpeedTest [对象数量 N] [查找次数 M]
+ * 默认 N = 100000，M = 200000，其中一半查找的是不存在的对象。
+ * 测试在临时目录中进行，结束后会删除临时目录。
+ */
+public class ObjectStoreSpeedTest {
+
+    /** 结果表，耗时单位为秒 */
+    private static final Benchmark.Table TABLE = new Benchmark.Table()
+            .column("layout", "%-8s").column("create", "%7.2f").column("lookup", "%7.2f")
+            .column("hits", "%7d").column("list", "%7.2f").column("listed", "%7d");
+
+    public static void main(String[] args) throws IOException {
+        int n = Benchmark.intArg(args, 0, 100000);
+        int m = Benchmark.intArg(args, 1, 200000);
+        Random random = new Random(61);
+        List<String> ids = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            ids.add(Utils.sha1(Integer.toString(i)));
+        }
+        List<String> probes = new ArrayList<>(m);
+        for (int i = 0; i < m; i++) {
+            // 一半命中，一半未命中
+            probes.add(i % 2 == 0 ? ids.get(random.nextInt(n)) : Utils.sha1("miss" + i));
+        }
+
+        Benchmark.inTempDir("gitlet-objects", root -> {
+            System.out.printf("%d objects, %d lookups%n", n, m);
+            TABLE.printHeader();
+            timeLayout("flat", Utils.join(root, "flat"), false, ids, probes);
+            timeLayout("sharded", Utils.join(root, "sharded"), true, ids, probes);
+        });
+    }
+
+    /** 在 dir 中按指定布局写入 ids，并对 probes 做查找，最后列举全部对象，打印各阶段耗时 */
+    private static void timeLayout(String name, File dir, boolean sharded,
+                                   List<String> ids, List<String> probes) {
+        dir.mkdir();
+        long start = System.nanoTime();
+        for (String id : ids) {
+            if (sharded) {
+                ObjectStore.write(dir, id, id);
+            } else {
+                Utils.writeContents(Utils.join(dir, id), id);
+            }
+        }
+        double create = Benchmark.seconds(start);
+
+        start = System.nanoTime();
+        int hits = 0;
+        for (String id : probes) {
+            File file = sharded ? ObjectStore.find(dir, id) : Utils.join(dir, id);
+            if (file.isFile()) {
+                hits += Utils.readContents(file).length > 0 ? 1 : 0;
+            }
+        }
+        double lookup = Benchmark.seconds(start);
+
+        start = System.nanoTime();
+        int listed = sharded ? ObjectStore.list(dir).size() : Utils.plainFilenamesIn(dir).size();
+        TABLE.row(name, create, lookup, hits, Benchmark.seconds(start), listed);
+    }
+}
@@ -0,0 +1,66 @@
+package gitlet;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 测试 RenameDetector 在大量删除 / 新增文件下的耗时，验证耗时随文件数近似线性增长。
+ *
+ * 对每个规模 N，生成 N 个被删除的文件和 N 个新增的文件：其中一半新增文件由某个被删除文件
+ * 修改少量行得到（应被识别为重命名），另一半是无关内容。
+ *
+ * 用法：java gitlet.RenameSpeedTest [最大文件数] [每个文件的行数]
+ * 默认最大文件数为 16000，每个文件 50 行。
+ */
+public class RenameSpeedTest {
+
+    /** 结果表 */
+    private static final Benchmark.Table TABLE = new Benchmark.Table()
+            .column("deleted", "%7d").column("added", "%7d").column("sec", "%7.2f")
+            .column("renames", "%8d").column("expected", "%8d");
+
+    public static void main(String[] args) {
+        int maxFiles = Benchmark.intArg(args, 0, 16000);
+        int lines = Benchmark.intArg(args, 1, 50);
+        TABLE.printHeader();
+        for (int n = 1000; n <= maxFiles; n *= 2) {
+            time(n, lines);
+        }
+    }
+
+    /** 生成 n 对文件并计时 */
+    private static void time(int n, int lines) {
+        Random random = new Random(n);
+        Map<String, String> contents = new HashMap<>();
+        Map<String, String> deleted = new HashMap<>();
+        Map<String, String> added = new HashMap<>();
+        for (int f = 0; f < n; f++) {
+            String[] text = new String[lines];
+            for (int i = 0; i < lines; i++) {
+                text[i] = "file " + f + " line " + random.nextInt() + "\n";
+            }
+            String old = String.join("", text);
+            String next;
+            if (f % 2 == 0) {
+                // 修改约 10% 的行
+                for (int i = 0; i < lines / 10; i++) {
+                    text[random.nextInt(lines)] = "edited " + random.nextInt() + "\n";
+                }
+                next = String.join("", text);
+            } else {
+                next = "unrelated " + f + "\n" + random.nextLong() + "\n";
+            }
+            String oldHash = Utils.sha1(old);
+            String newHash = Utils.sha1(next);
+            contents.put(oldHash, old);
+            contents.put(newHash, next);
+            deleted.put("old/" + f + ".txt", oldHash);
+            added.put("new/" + f + ".txt", newHash);
+        }
+        long start = System.nanoTime();
+        int found = RenameDetector.detect(deleted, added, contents::get,
+                RenameDetector.DEFAULT_THRESHOLD).size();
+        TABLE.row(n, n, Benchmark.seconds(start), found, (n + 1) / 2);
+    }
+}
@@ -0,0 +1,122 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 比较在内存中连续重放一系列 commit（Replayer.replay）与每一步都重新读取三个快照的耗时。
+ *
+ * 先用 FastImport 在临时仓库中导入：master 上一个包含 F 个文件的基础 commit 和一个修改了文件 f0 的 commit，
+ * 分支 side 从基础 commit 出发，N 个 commit 各随机修改 C 个其他文件。
+ * 然后把 side 的 N 个 commit 重放到 master 上：一次用 replay，一次每一步都按 ID 重新读取并解码
+ * base、基底和被重放的 commit 再调用 pick，检查两者得到的快照相同，打印总耗时和每个 commit 的平均耗时。
+ *
+ * 用法：java gitlet.ReplaySpeedTest [commit 数 N] [文件数 F] [每个 commit 修改的文件数 C]
+ * 默认 N = 500，F = 1000，C = 3。测试结束后会删除临时目录。
+ */
+public class ReplaySpeedTest {
+
+    public static void main(String[] args) throws IOException {
+        int n = Benchmark.intArg(args, 0, 500);
+        int files = Benchmark.intArg(args, 1, 1000);
+        int changes = Benchmark.intArg(args, 2, 3);
+        Random random = new Random(61);
+        StringBuilder stream = new StringBuilder();
+        int mark = 0;
+        StringBuilder tree = new StringBuilder();
+        for (int f = 0; f < files; f++) {
+            mark = blob(stream, mark, "file " + f + "\n");
+            tree.append("M :").append(mark).append(" f").append(f).append(".txt\n");
+        }
+        commit(stream, "master", 0, "base", tree.toString());
+        stream.append("reset side\nfrom master\n\n");
+        mark = blob(stream, mark, "file 0 on master\n");
+        commit(stream, "master", 1, "master change", "M :" + mark + " f0.txt\n");
+        for (int i = 0; i < n; i++) {
+            StringBuilder changed = new StringBuilder();
+            for (int j = 0; j < changes; j++) {
+                int f = 1 + random.nextInt(files - 1);
+                mark = blob(stream, mark, "file " + f + " version " + i + "\n");
+                changed.append("M :").append(mark).append(" f").append(f).append(".txt\n");
+            }
+            commit(stream, "side", i + 2, "side " + i, changed.toString());
+        }
+        byte[] bytes = stream.toString().getBytes(StandardCharsets.UTF_8);
+
+        Benchmark.inTempDir("gitlet-replay", root -> {
+            File commitDir = Utils.join(root, "commits");
+            File blobDir = Utils.join(root, "blobs");
+            commitDir.mkdir();
+            blobDir.mkdir();
+            CommitManager commitManager = new CommitManager(Utils.join(root, "CommitManager"), commitDir);
+            Journal.begin(Utils.join(root, "journal"));
+            new FastImport(commitManager, commitDir, blobDir, new ByteArrayInputStream(bytes)).run();
+            Journal.commit();
+
+            // 与 rebase 相同：沿第一个父提交收集 side 上的 commit
+            List<Commit> commits = new ArrayList<>();
+            Commit cur = commitManager.getBranchCommit("side");
+            while (!cur.getParentIds().isEmpty() && commits.size() < n) {
+                commits.add(cur);
+                cur = commitManager.getCommit(cur.getParentIds().get(0));
+            }
+            Collections.reverse(commits);
+            Commit onto = commitManager.getBranchCommit("master");
+
+            // 第一轮用于预热 JIT，只报告第二轮的耗时
+            Replayer replayer = new Replayer(commitManager, commitDir, blobDir);
+            Commit fast = null;
+            Commit slow = null;
+            long inMemory = 0;
+            long reloading = 0;
+            for (int round = 0; round < 2; round++) {
+                long start = System.nanoTime();
+                fast = replayer.replay(onto, commits);
+                inMemory = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                slow = onto;
+                for (Commit commit : commits) {
+                    Commit base = commitManager.getCommit(commit.getParentIds().get(0));
+                    Commit picked = commitManager.getCommit(commit.id());
+                    Commit tip = commitManager.getCommit(slow.id());
+                    Replayer.Step step = replayer.pick(tip, base, picked);
+                    if (commitManager.recordCommit(step.commit)) {
+                        step.commit.save(commitDir);
+                    }
+                    slow = step.commit;
+                }
+                reloading = System.nanoTime() - start;
+                Journal.commit();
+            }
+
+            if (!fast.trackedFiles().equals(slow.trackedFiles())) {
+                throw new IllegalStateException("different snapshots after replay");
+            }
+            System.out.printf("%d commits, %d files, %d changes per commit%n", commits.size(), files, changes);
+            System.out.printf("replay: %.1f ms (%.2f ms/commit), reloading every step: %.1f ms (%.2f ms/commit)%n",
+                    inMemory / 1e6, inMemory / 1e6 / commits.size(),
+                    reloading / 1e6, reloading / 1e6 / commits.size());
+        });
+    }
+
+    /** 向流中写入一个带标记的 blob，返回它的标记 */
+    private static int blob(StringBuilder stream, int mark, String content) {
+        stream.append("blob\nmark :").append(++mark).append('\n')
+                .append("data ").append(content.length()).append('\n').append(content).append('\n');
+        return mark;
+    }
+
+    /** 向流中写入一个 commit */
+    private static void commit(StringBuilder stream, String branch, int time, String message, String changes) {
+        stream.append("commit ").append(branch).append("\ntime ").append(time).append('\n')
+                .append("data ").append(message.length()).append('\n').append(message).append('\n')
+                .append(changes).append('\n');
+    }
+}
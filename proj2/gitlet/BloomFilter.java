@@ -0,0 +1,142 @@
+package gitlet;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+/**
+ * 记录一个 commit 相对第一个父提交修改过的文件名的 Bloom 过滤器（changed-path filter）。
+ *
+ * 参数与 git 的 changed-path Bloom filter 相同：每个文件名 10 位、7 个哈希函数，至少 8 字节，
+ * 理论误判率约 1%。第 i 个哈希位置为 h1 + i * h2（对位数取模），h1、h2 是两个不同种子的 murmur3。
+ * 没有修改任何文件时过滤器为空，任何查询都返回 false；修改的文件超过 MAX_CHANGED_PATHS 个时
+ * 用一个全 1 的字节表示，任何查询都返回 true，由调用者直接比较快照。
+ */
+class BloomFilter {
+
+    /** 每个文件名占用的位数 */
+    private static final int BITS_PER_ENTRY = 10;
+
+    /** 哈希函数个数 */
+    private static final int NUM_HASHES = 7;
+
+    /** 过滤器的最小字节数 */
+    private static final int MIN_BYTES = 8;
+
+    /** 超过这个数量的修改不再逐个记录 */
+    static final int MAX_CHANGED_PATHS = 512;
+
+    /** 两个 murmur3 哈希的种子 */
+    private static final int SEED1 = 0x293ae76f;
+    private static final int SEED2 = 0x7e646e2c;
+
+    /** 过滤器的位数组 */
+    private final byte[] bits;
+
+    private BloomFilter(byte[] bits) {
+        this.bits = bits;
+    }
+
+    /** 由保存的位数组恢复过滤器 */
+    static BloomFilter of(byte[] bits) {
+        return new BloomFilter(bits);
+    }
+
+    /**
+     * 为修改过的文件名集合创建过滤器。
+     *
+     * @param paths 修改过的文件名
+     * @return 过滤器
+     */
+    static BloomFilter create(Collection<String> paths) {
+        if (paths.isEmpty()) {
+            return new BloomFilter(new byte[0]);
+        }
+        if (paths.size() > MAX_CHANGED_PATHS) {
+            return new BloomFilter(new byte[]{(byte) 0xff});
+        }
+        int size = Math.max(MIN_BYTES, (paths.size() * BITS_PER_ENTRY + 7) / 8);
+        byte[] bits = new byte[size];
+        long total = (long) size * 8;
+        for (String path : paths) {
+            byte[] key = path.getBytes(StandardCharsets.UTF_8);
+            int h1 = murmur3(SEED1, key);
+            int h2 = murmur3(SEED2, key);
+            for (int i = 0; i < NUM_HASHES; i++) {
+                long bit = Integer.toUnsignedLong(h1 + i * h2) % total;
+                bits[(int) (bit >>> 3)] |= 1 << (bit & 7);
+            }
+        }
+        return new BloomFilter(bits);
+    }
+
+    /**
+     * 判断文件 path 是否可能被修改过。返回 false 时一定没有修改；返回 true 时可能是误判。
+     *
+     * @param path 文件名
+     */
+    boolean mightContain(String path) {
+        if (bits.length == 0) {
+            return false;
+        }
+        byte[] key = path.getBytes(StandardCharsets.UTF_8);
+        int h1 = murmur3(SEED1, key);
+        int h2 = murmur3(SEED2, key);
+        long total = (long) bits.length * 8;
+        for (int i = 0; i < NUM_HASHES; i++) {
+            long bit = Integer.toUnsignedLong(h1 + i * h2) % total;
+            if ((bits[(int) (bit >>> 3)] & (1 << (bit & 7))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** 返回位数组 */
+    byte[] bits() {
+        return bits;
+    }
+
+    /** 32 位 murmur3 哈希 */
+    private static int murmur3(int seed, byte[] data) {
+        final int c1 = 0xcc9e2d51;
+        final int c2 = 0x1b873593;
+        int h = seed;
+        int blocks = data.length / 4;
+        for (int i = 0; i < blocks; i++) {
+            int k = (data[4 * i] & 0xff) | (data[4 * i + 1] & 0xff) << 8
+                    | (data[4 * i + 2] & 0xff) << 16 | (data[4 * i + 3] & 0xff) << 24;
+            k *= c1;
+            k = Integer.rotateLeft(k, 15);
+            k *= c2;
+            h ^= k;
+            h = Integer.rotateLeft(h, 13);
+            h = h * 5 + 0xe6546b64;
+        }
+        int k = 0;
+        int tail = blocks * 4;
+        switch (data.length & 3) {
+            case 3:
+                k ^= (data[tail + 2] & 0xff) << 16;
+                // fall through
+            case 2:
+                k ^= (data[tail + 1] & 0xff) << 8;
+                // fall through
+            case 1:
+                k ^= data[tail] & 0xff;
+                k *= c1;
+                k = Integer.rotateLeft(k, 15);
+                k *= c2;
+                h ^= k;
+                break;
+            default:
+                break;
+        }
+        h ^= data.length;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -1,8 +1,16 @@
 package gitlet;
 
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.*;
 
@@ -10,8 +18,18 @@ import java.util.*;
  * 表示一次提交快照，记录文件状态和提交元信息。
  * 包括提交信息、时间、父提交、所追踪文件以及提交 ID。
  * 支持生成子提交、更新追踪文件、判断文件状态变化等功能。
+ *
+ * commit 以规范的二进制格式保存（见 encode），提交 ID 就是这段字节的 SHA-1，
+ * 同一段字节既用于计算哈希也直接写入对象文件，不经过 Java 序列化。
+ * 更早的版本以 Java 序列化保存 commit，decode 仍能读取这类对象（见 decodeLegacy）。
  */
-class Commit implements Serializable {
+class Commit {
+    /** 二进制编码的魔数和格式版本号 */
+    private static final byte[] MAGIC = {'G', 'L', 'C', 1};
+
+    /** 更早的版本以 Java 序列化保存 commit，对象流以这两个字节开头 */
+    private static final byte[] LEGACY_MAGIC = {(byte) 0xAC, (byte) 0xED};
+
     /** 提交信息 */
     private final String message;
     /** 提交时间 */
@@ -22,6 +40,23 @@ class Commit implements Serializable {
     private final TreeMap<String, String> trackedFile;
     /** 提交 ID */
     private String commitId;
+    /** 计算提交 ID 时得到的编码，保存时直接写入，避免重复编码 */
+    private byte[] encoded;
+    /** 是否从 Java 序列化的旧格式读取，这类提交的 ID 按旧版本的方式计算，见 idMatches */
+    private boolean legacy;
+
+    /**
+     * 旧版本 Commit 序列化时的字段，字段名和类型与当时的 Commit 相同。
+     * 读取旧格式时用它代替流中记录的 gitlet.Commit 类，见 decodeLegacy。
+     */
+    private static class LegacyCommit implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private String message;
+        private Instant time;
+        private ArrayList<String> parentCommits;
+        private TreeMap<String, String> trackedFile;
+        private String commitId;
+    }
 
     /**
      * 构造一个新的 Commit 对象。
@@ -50,6 +85,22 @@ class Commit implements Serializable {
         return initCommit;
     }
 
+    /**
+     * 由完整的提交内容直接创建提交并计算 ID，用于导入历史。
+     *
+     * @param message 提交信息
+     * @param time 提交时间
+     * @param parentCommits 父提交 ID 列表
+     * @param trackedFile 追踪文件映射，其中的 blob 必须已经保存
+     * @return 新的 Commit 对象
+     */
+    static Commit create(String message, Instant time,
+                         ArrayList<String> parentCommits, TreeMap<String, String> trackedFile) {
+        Commit commit = new Commit(message, time, parentCommits, trackedFile);
+        commit.createId();
+        return commit;
+    }
+
     /**
      * 传入提交信息 msg，返回指向当前提交的新的 Commit 对象（子提交）。
      *
@@ -77,11 +128,151 @@ class Commit implements Serializable {
      * 创建提交 ID。
      */
     private void createId() {
-        commitId = Utils.sha1(
-                Utils.serialize(trackedFile),
-                Utils.serialize(parentCommits),
-                message,
-                Utils.serialize(time));
+        encoded = encode();
+        commitId = Utils.sha1(encoded);
+    }
+
+    /**
+     * 将提交内容编码为规范的二进制格式：
+     * 魔数 | 提交信息 | 时间（秒 long、纳秒 int）| 父提交数 int | 各父提交 ID |
+     * 追踪文件数 int | 按文件名排序的（文件名, blob 哈希值）。
+     * 其中每个字符串都写为 UTF-8 字节长度 int 加字节内容。相同内容的提交总是得到相同的字节。
+     *
+     * @return 编码后的字节
+     */
+    byte[] encode() {
+        // 每个追踪文件约为文件名加 40 字节哈希值，预估容量以避免扩容复制
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + trackedFile.size() * 64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.write(MAGIC);
+            writeString(out, message);
+            out.writeLong(time.getEpochSecond());
+            out.writeInt(time.getNano());
+            out.writeInt(parentCommits.size());
+            for (String parent : parentCommits) {
+                writeString(out, parent);
+            }
+            out.writeInt(trackedFile.size());
+            for (Map.Entry<String, String> entry : trackedFile.entrySet()) {
+                writeString(out, entry.getKey());
+                writeString(out, entry.getValue());
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw Utils.error("Internal error encoding commit.");
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 从 encode 生成的字节中还原提交。
+     *
+     * @param id 提交 ID
+     * @param bytes 编码后的字节
+     * @return 提交对象
+     * @throws IllegalArgumentException 字节不是合法的 commit 编码
+     */
+    static Commit decode(String id, byte[] bytes) {
+        Profiler.count(Profiler.Counter.COMMITS_DECODED, 1);
+        if (Arrays.equals(bytes, 0, LEGACY_MAGIC.length, LEGACY_MAGIC, 0, LEGACY_MAGIC.length)) {
+            return decodeLegacy(id, bytes);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        try {
+            byte[] magic = in.readNBytes(MAGIC.length);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IllegalArgumentException("not a commit");
+            }
+            String message = readString(in);
+            Instant time = Instant.ofEpochSecond(in.readLong(), in.readInt());
+            int parentCount = in.readInt();
+            ArrayList<String> parents = new ArrayList<>(parentCount);
+            for (int i = 0; i < parentCount; i++) {
+                parents.add(readString(in));
+            }
+            int fileCount = in.readInt();
+            TreeMap<String, String> tracked = new TreeMap<>();
+            for (int i = 0; i < fileCount; i++) {
+                tracked.put(readString(in), readString(in));
+            }
+            if (in.available() > 0) {
+                throw new IllegalArgumentException("trailing bytes in commit");
+            }
+            Commit commit = new Commit(message, time, parents, tracked);
+            commit.commitId = id;
+            commit.encoded = bytes;
+            return commit;
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalArgumentException("corrupt commit " + id);
+        }
+    }
+
+    /**
+     * 读取更早版本以 Java 序列化保存的 commit。流中的类描述换成字段相同的 LegacyCommit，
+     * 不要求当前的 Commit 可序列化。原始字节作为 encoded 保留，复制或重新保存时内容不变，
+     * 文件名（旧格式的提交 ID）也保持不变。
+     *
+     * @param id 提交 ID
+     * @param bytes 对象文件的内容
+     * @return 提交对象
+     * @throws IllegalArgumentException 字节不是旧格式的 commit
+     */
+    private static Commit decodeLegacy(String id, byte[] bytes) {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes)) {
+            @Override
+            protected ObjectStreamClass readClassDescriptor()
+                    throws IOException, ClassNotFoundException {
+                ObjectStreamClass desc = super.readClassDescriptor();
+                return desc.getName().equals(Commit.class.getName())
+                        ? ObjectStreamClass.lookup(LegacyCommit.class) : desc;
+            }
+        }) {
+            LegacyCommit old = (LegacyCommit) in.readObject();
+            if (old.message == null || old.time == null || in.available() > 0) {
+                throw new IllegalArgumentException("corrupt commit " + id);
+            }
+            Commit commit = new Commit(old.message, old.time, old.parentCommits, old.trackedFile);
+            commit.commitId = id;
+            commit.encoded = bytes;
+            commit.legacy = true;
+            return commit;
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            throw new IllegalArgumentException("corrupt commit " + id);
+        }
+    }
+
+    /**
+     * 判断提交 ID 是否与内容一致。当前格式的 ID 是编码字节的哈希；
+     * 旧格式的 ID 按旧版本的方式由追踪文件、父提交、提交信息和时间的序列化结果计算。
+     */
+    boolean idMatches() {
+        if (legacy) {
+            return commitId.equals(Utils.sha1(Utils.serialize(trackedFile),
+                    Utils.serialize(parentCommits), message, Utils.serialize(time)));
+        }
+        return commitId.equals(Utils.sha1(encoded));
+    }
+
+    /** 写入 UTF-8 字节长度和字节内容 */
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        byte[] data = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    /** 读取 writeString 写入的字符串 */
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+            throw new IOException("bad string length");
+        }
+        return new String(in.readNBytes(length), StandardCharsets.UTF_8);
+    }
+
+    /** 返回计算提交 ID 时得到的编码，即保存到对象文件中的字节。 */
+    byte[] encoded() {
+        return encoded;
     }
 
     /** 返回当前提交的 ID。 */
@@ -109,6 +300,21 @@ class Commit implements Serializable {
         return new TreeMap<>(trackedFile); // 返回副本
     }
 
+    /** 返回追踪文件映射的只读视图，按文件名排序，不复制。 */
+    SortedMap<String, String> trackedFiles() {
+        return Collections.unmodifiableSortedMap(trackedFile);
+    }
+
+    /**
+     * 返回文件 fileName 在当前提交中对应的 blob 哈希值，不复制追踪文件映射。
+     *
+     * @param fileName 文件名
+     * @return blob 哈希值，未追踪时返回 null
+     */
+    String trackedHash(String fileName) {
+        return trackedFile.get(fileName);
+    }
+
     /**
      * 解析暂存区域的添加记录和移除记录，更新追踪文件状态。
      *
@@ -144,10 +350,8 @@ class Commit implements Serializable {
     private void permanentSaveBlob(String fileHash,
                                    File stagingBlobDir, File blobDir) {
         File oldFile = Utils.join(stagingBlobDir, fileHash);
-        String content = Utils.readContentsAsString(oldFile);
-        File newFile = Utils.join(blobDir, fileHash);
-        if (!newFile.exists()) {
-            Utils.writeContents(newFile, content);
+        if (!ObjectStore.contains(blobDir, fileHash)) {
+            ObjectStore.write(blobDir, fileHash, Journal.read(oldFile));
         }
     }
 
@@ -193,11 +397,11 @@ class Commit implements Serializable {
     }
 
     /**
-     * 序列化保存到 commitDir 路径中
+     * 以二进制编码保存到 commitDir 路径中，写入的正是计算提交 ID 时哈希的字节
      *
      * @param commitDir 保存路径
      */
     void save(File commitDir) {
-        Utils.writeObject(Utils.join(commitDir, commitId), this);
+        ObjectStore.write(commitDir, commitId, encoded != null ? encoded : encode());
     }
 }
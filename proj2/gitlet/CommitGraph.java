@@ -0,0 +1,240 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * 提交图（commit-graph）：保存在 .gitlet/commit-graph 中的只读旁路索引。
+ *
+ * 每个 commit 一条记录：提交 ID、父提交 ID，以及相对第一个父提交修改过的文件名的 BloomFilter。
+ * 按路径查看历史（log -- 文件名）时，沿第一个父提交遍历只需要读取这里的记录，
+ * 过滤器判定没有修改的 commit 不必读取和解码快照；只有过滤器命中时才比较两个快照确认。
+ * 不在图中的 commit（上次 gc 之后新建的提交、浅克隆边界上的提交）按原来的方式读取快照。
+ *
+ * 文件格式：魔数 | 记录数(int) | 按 ID 排序的记录：ID | 父提交数(byte) | 父提交 ID... | 过滤器字节数(short) | 过滤器。
+ * 图由 gc 重写；提交 ID 由内容决定，已有的记录不会失效。
+ */
+class CommitGraph {
+
+    /** 文件名 */
+    private static final String FILE_NAME = "commit-graph";
+
+    /** 文件的魔数和格式版本号 */
+    private static final byte[] MAGIC = {'G', 'C', 'G', 1};
+
+    /** 按字典序排列的提交 ID */
+    private final String[] ids;
+
+    /** 每个提交的父提交 ID */
+    private final String[][] parents;
+
+    /** 每个提交的修改路径过滤器 */
+    private final BloomFilter[] filters;
+
+    /** 上一次 history 遍历的统计：访问的 commit 数 */
+    private int visited;
+
+    /** 上一次遍历中被过滤器直接排除的 commit 数 */
+    private int skipped;
+
+    /** 上一次遍历中过滤器命中但快照没有变化的 commit 数（误判） */
+    private int falsePositives;
+
+    private CommitGraph(String[] ids, String[][] parents, BloomFilter[] filters) {
+        this.ids = ids;
+        this.parents = parents;
+        this.filters = filters;
+    }
+
+    /** 返回不包含任何记录的提交图，所有 commit 都按原来的方式读取 */
+    static CommitGraph empty() {
+        return new CommitGraph(new String[0], new String[0][], new BloomFilter[0]);
+    }
+
+    /**
+     * 读取 gitletDir 中的提交图，不存在或损坏时返回空图。
+     *
+     * @param gitletDir .gitlet 目录
+     */
+    static CommitGraph load(File gitletDir) {
+        File file = Utils.join(gitletDir, FILE_NAME);
+        if (!Journal.exists(file)) {
+            return empty();
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Journal.read(file)))) {
+            if (!Arrays.equals(in.readNBytes(MAGIC.length), MAGIC)) {
+                return empty();
+            }
+            int count = in.readInt();
+            String[] ids = new String[count];
+            String[][] parents = new String[count][];
+            BloomFilter[] filters = new BloomFilter[count];
+            for (int i = 0; i < count; i++) {
+                ids[i] = in.readUTF();
+                parents[i] = new String[in.readUnsignedByte()];
+                for (int j = 0; j < parents[i].length; j++) {
+                    parents[i][j] = in.readUTF();
+                }
+                filters[i] = BloomFilter.of(in.readNBytes(in.readUnsignedShort()));
+            }
+            return new CommitGraph(ids, parents, filters);
+        } catch (IOException e) {
+            return empty();
+        }
+    }
+
+    /**
+     * 为 commitManager 中的所有 commit（浅克隆边界上的除外）计算记录，写入 gitletDir 中的提交图。
+     * 从各分支和每个尚未处理的 commit 出发沿第一个父提交向下走，
+     * 上一步读取的父提交就是下一步的 commit，因此每个 commit 只需要解码一次。
+     *
+     * @param gitletDir .gitlet 目录
+     * @param commitManager 提交管理器
+     * @return 写入的记录数
+     */
+    static int write(File gitletDir, CommitManager commitManager) {
+        TreeMap<String, byte[]> records = new TreeMap<>();
+        List<String> starts = new ArrayList<>(commitManager.getBranchMap().values());
+        starts.addAll(commitManager.getAllCommits().keySet());
+        try {
+            for (String start : starts) {
+                String id = start;
+                Commit commit = null;
+                while (id != null && !records.containsKey(id) && !commitManager.isShallow(id)
+                        && commitManager.containsCommit(id)) {
+                    if (commit == null) {
+                        commit = commitManager.getCommit(id);
+                        if (commit == null) {
+                            break;
+                        }
+                    }
+                    List<String> parentIds = commit.getParentIds();
+                    Commit parent = parentIds.isEmpty() ? null : commitManager.getCommit(parentIds.get(0));
+                    records.put(id, record(id, parentIds, BloomFilter.create(changedPaths(parent, commit))));
+                    id = parent == null ? null : parent.id();
+                    commit = parent;
+                }
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.write(MAGIC);
+            out.writeInt(records.size());
+            for (byte[] record : records.values()) {
+                out.write(record);
+            }
+            Journal.write(Utils.join(gitletDir, FILE_NAME), bytes.toByteArray());
+        } catch (IOException e) {
+            throw Utils.error("Could not write commit-graph: %s", e.getMessage());
+        }
+        return records.size();
+    }
+
+    /** 编码一条记录 */
+    private static byte[] record(String id, List<String> parentIds, BloomFilter filter) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(id);
+        out.writeByte(parentIds.size());
+        for (String parentId : parentIds) {
+            out.writeUTF(parentId);
+        }
+        out.writeShort(filter.bits().length);
+        out.write(filter.bits());
+        return bytes.toByteArray();
+    }
+
+    /** 返回 commit 相对 parent（为 null 时视为空快照）新增、修改或删除的文件名 */
+    static List<String> changedPaths(Commit parent, Commit commit) {
+        Map<String, String> before = parent == null ? Map.of() : parent.getTrackedFile();
+        Map<String, String> after = commit.getTrackedFile();
+        List<String> changed = new ArrayList<>();
+        for (Map.Entry<String, String> entry : after.entrySet()) {
+            if (!entry.getValue().equals(before.get(entry.getKey()))) {
+                changed.add(entry.getKey());
+            }
+        }
+        for (String path : before.keySet()) {
+            if (!after.containsKey(path)) {
+                changed.add(path);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * 从 startId 沿第一个父提交遍历，返回修改过文件 path 的 commit，从新到旧排列。
+     * 遍历到浅克隆边界为止，与 log 的范围相同。
+     *
+     * @param commitManager 提交管理器
+     * @param startId 起始提交 ID
+     * @param path 文件名
+     * @return 修改过 path 的 commit
+     */
+    List<Commit> history(CommitManager commitManager, String startId, String path) {
+        visited = 0;
+        skipped = 0;
+        falsePositives = 0;
+        List<Commit> result = new ArrayList<>();
+        String id = startId;
+        // 上一步读取的父提交，就是下一步要检查的 commit
+        Commit loaded = null;
+        try (Profiler.Phase p = Profiler.phase("graph-walk")) {
+            while (id != null) {
+                visited++;
+                int i = Arrays.binarySearch(ids, id);
+                if (i >= 0 && !filters[i].mightContain(path)) {
+                    // 过滤器判定没有修改，不读取快照
+                    skipped++;
+                    Profiler.count(Profiler.Counter.BLOOM_SKIPS, 1);
+                    boolean root = commitManager.isShallow(id) || parents[i].length == 0;
+                    id = root ? null : parents[i][0];
+                    continue;
+                }
+                Commit commit = loaded != null && loaded.id().equals(id)
+                        ? loaded : commitManager.getCommit(id);
+                List<String> visible = commitManager.getParentIds(commit);
+                String parentId = visible.isEmpty() ? null : visible.get(0);
+                loaded = parentId == null ? null : commitManager.getCommit(parentId);
+                Map<String, String> before = loaded == null ? Map.of() : loaded.getTrackedFile();
+                if (!Objects.equals(before.get(path), commit.getTrackedFile().get(path))) {
+                    result.add(commit);
+                } else if (i >= 0) {
+                    falsePositives++;
+                    Profiler.count(Profiler.Counter.BLOOM_FALSE_POSITIVES, 1);
+                }
+                id = parentId;
+            }
+        }
+        return result;
+    }
+
+    /** 图中的记录数 */
+    int size() {
+        return ids.length;
+    }
+
+    /** 上一次遍历访问的 commit 数 */
+    int visited() {
+        return visited;
+    }
+
+    /** 上一次遍历中被过滤器直接排除的 commit 数 */
+    int skipped() {
+        return skipped;
+    }
+
+    /** 上一次遍历中过滤器误判的 commit 数 */
+    int falsePositives() {
+        return falsePositives;
+    }
+}
@@ -21,8 +21,13 @@ class CommitManager implements Serializable {
     /** 存放 Commit id 与 Commit msg 的映射 */
     private final HashMap<String, String> commits;
 
-    /** 存放 Commit id 的字典树，用于前缀模糊查找 */
-    private final TrieSet commitTries;
+    /**
+     * 存放 Commit id 的字典树，用于前缀模糊查找。
+     * 不随 manager 序列化，第一次按前缀查找时才由 commits 重建，
+     * 避免每条命令都要读写一个节点数与提交数成正比的对象图。
+     * gc 会在多个线程中查找提交，所以字典树建好后才通过 volatile 字段发布。
+     */
+    private transient volatile TrieSet commitTries;
 
     /** HEAD 指针，指向当前活跃的分支名，默认为 master */
     private String headBranchName;
@@ -30,6 +35,9 @@ class CommitManager implements Serializable {
     /** 分支，key 为分支名，val 为分支当前的最新 Commit 的 id */
     private final HashMap<String, String> branches;
 
+    /** 浅克隆边界：这些 commit 的父提交没有被拉取到本地，遍历历史时视为没有父提交 */
+    private final HashSet<String> shallow;
+
     /**
      * 初始化 CommitManager。
      * 创建 main 分支和初始提交，并将其添加到提交集合中。
@@ -41,15 +49,40 @@ class CommitManager implements Serializable {
         commits = new HashMap<>();
         branches = new HashMap<>();
         remoteRepos = new HashMap<>();
-        commitTries = new TrieSet();
+        shallow = new HashSet<>();
         headBranchName = "master";
         Commit initCommit = Commit.createInitCommit();
         addCommit(initCommit);
     }
 
+    /**
+     * 创建 source 的副本，保存到新的路径：复制提交记录、分支、HEAD 和浅克隆边界，不复制远程仓库和远程跟踪分支。
+     * 用于 clone，commit 对象由 Repository.clone 另行链接到本地。
+     *
+     * @param savePath 保存路径
+     * @param commitDir 本地 commit 对象目录
+     * @param source 被复制的提交管理器
+     */
+    CommitManager(File savePath, File commitDir, CommitManager source) {
+        this.savePath = savePath;
+        this.commitDir = commitDir;
+        commits = new HashMap<>(source.commits);
+        branches = new HashMap<>();
+        for (Map.Entry<String, String> branch : source.branches.entrySet()) {
+            // source 自己的远程跟踪分支不复制
+            int slash = branch.getKey().indexOf('/');
+            if (slash <= 0 || !source.remoteRepos.containsKey(branch.getKey().substring(0, slash))) {
+                branches.put(branch.getKey(), branch.getValue());
+            }
+        }
+        remoteRepos = new HashMap<>();
+        shallow = new HashSet<>(source.shallow);
+        headBranchName = source.headBranchName;
+    }
+
     /** 将 manager 保存到 savePath 路径中 */
     void save() {
-        Utils.writeObject(savePath, this);
+        Journal.write(savePath, Utils.serialize(this));
     }
 
     /** 获取分支名列表 */
@@ -70,6 +103,16 @@ class CommitManager implements Serializable {
         return getCommit(headId);
     }
 
+    /** 返回所有分支（包括远程跟踪分支）当前指向的 Commit id 集合 */
+    Set<String> getBranchHeads() {
+        return new HashSet<>(branches.values());
+    }
+
+    /** 返回分支名到其最新 Commit id 的映射 */
+    Map<String, String> getBranchMap() {
+        return new TreeMap<>(branches);
+    }
+
     /** 以 Map 形式返回所有 commit id 和 commit msg */
     HashMap<String, String> getAllCommits() {
         return new HashMap<>(commits);
@@ -106,23 +149,88 @@ class CommitManager implements Serializable {
      *
      * @param id commit id 或 id 的前几个字符串
      * @return 查找成功返回 Commit 对象，失败返回 null
+     * @throws GitletException commit 对象存在但内容无法解码
      */
     Commit getCommit(String id) {
         String matchId;
         if (commits.containsKey(id)) {
             matchId = id;
         } else { // 模糊查找
-            List<String> matches = commitTries.startsWith(id);
+            List<String> matches = tries().startsWith(id);
             if (matches.size() != 1) {
                 return null;
             }
             matchId = matches.get(0);
         }
-        File commitFile = Utils.join(commitDir, matchId);
-        if (!commitFile.exists()) {
+        if (!ObjectStore.contains(commitDir, matchId)) {
             return null;
         }
-        return Utils.readObject(commitFile, Commit.class);
+        try {
+            return Commit.decode(matchId, ObjectStore.read(commitDir, matchId));
+        } catch (IllegalArgumentException e) {
+            // 报告损坏的对象而不是抛出异常栈，完整的检查交给 fsck
+            throw Utils.error("Commit %s is corrupt; run fsck.", matchId);
+        }
+    }
+
+    /** 返回提交 ID 的字典树，需要时由 commits 重建；先在局部变量中建好，再发布给其他线程 */
+    private TrieSet tries() {
+        TrieSet trie = commitTries;
+        if (trie != null) {
+            return trie;
+        }
+        synchronized (this) {
+            if (commitTries == null) {
+                trie = new TrieSet();
+                for (String id : commits.keySet()) {
+                    trie.add(id);
+                }
+                commitTries = trie;
+            }
+            return commitTries;
+        }
+    }
+
+    /** 判断本地是否保存了 id 对应的 commit 记录 */
+    boolean containsCommit(String id) {
+        return commits.containsKey(id);
+    }
+
+    /**
+     * 返回 commit 在本地可见的父提交 ID：浅克隆边界上的 commit 没有父提交。
+     *
+     * @param commit 提交对象
+     * @return 父提交 ID 列表
+     */
+    List<String> getParentIds(Commit commit) {
+        if (shallow.contains(commit.id())) {
+            return new ArrayList<>();
+        }
+        return commit.getParentIds();
+    }
+
+    /** 判断本地历史是否存在浅克隆边界 */
+    boolean hasShallow() {
+        return !shallow.isEmpty();
+    }
+
+    /** 判断 commit 是否位于浅克隆边界上 */
+    boolean isShallow(String id) {
+        return shallow.contains(id);
+    }
+
+    /**
+     * 设置 commit 是否位于浅克隆边界上。
+     *
+     * @param id 提交 ID
+     * @param isShallow 为 true 时加入边界，否则从边界中移除（历史已被加深）
+     */
+    void setShallow(String id, boolean isShallow) {
+        if (isShallow) {
+            shallow.add(id);
+        } else {
+            shallow.remove(id);
+        }
     }
 
     /** 判断 manager 是否有指定分支名 */
@@ -136,13 +244,51 @@ class CommitManager implements Serializable {
      * @param commit 要添加的提交对象
      */
     void addCommit(Commit commit) {
+        if (recordCommit(commit)) {
+            commit.save(commitDir);
+            setHeadCommit(commit.id());
+        }
+    }
+
+    /**
+     * 在 commits 和字典树中登记一个 Commit 对象，不保存对象文件，也不移动任何分支。
+     * 用于对象由调用者另行保存（例如写入 pack）的情况。
+     *
+     * @param commit 要登记的提交对象
+     * @return 是新的提交时返回 true，已存在时返回 false
+     */
+    boolean recordCommit(Commit commit) {
         String id = commit.id();
-        if (!commits.containsKey(id)) {
-            String commitMessage = commit.getMessage();
-            commits.put(id, commitMessage);
+        if (commits.containsKey(id)) {
+            return false;
+        }
+        commits.put(id, commit.getMessage());
+        if (commitTries != null) {
             commitTries.add(id);
-            setHeadCommit(id);
-            commit.save(commitDir);
+        }
+        return true;
+    }
+
+    /**
+     * 让分支 branchName 指向提交 id，分支不存在时创建。
+     *
+     * @param branchName 分支名
+     * @param id 提交 ID
+     */
+    void setBranch(String branchName, String id) {
+        branches.put(branchName, id);
+    }
+
+    /**
+     * 从 commits 和字典树中移除一个 Commit 记录，不删除 commit 文件。
+     *
+     * @param id 要移除的提交 ID
+     */
+    void removeCommit(String id) {
+        if (commits.remove(id) != null) {
+            if (commitTries != null) {
+                commitTries.remove(id);
+            }
         }
     }
 
@@ -187,13 +333,20 @@ class CommitManager implements Serializable {
     /**
      * 查找两个 Commit 对象的最近共同祖先（split point），支持输入不同仓库中的 Commit 对象。
      * 通过广度优先搜索第一个出现在另一个提交祖先集合中的节点。
+     * 遍历不会越过任一仓库的浅克隆边界。
      *
      * @param otherCM CommitManager 对象
      * @param commitId1 otherCM 保存的 Commit 对象 ID
      * @param commitId2 本地 CommitManager 保存的 Commit 对象 ID
-     * @return 两者最近公共祖先的 Commit 对象
+     * @return 两者最近公共祖先的 Commit 对象，在浅克隆边界内找不到时返回 null
      */
     Commit findSplitPoint(CommitManager otherCM, String commitId1, String commitId2) {
+        try (Profiler.Phase p = Profiler.phase("graph-walk")) {
+            return splitPoint(otherCM, commitId1, commitId2);
+        }
+    }
+
+    private Commit splitPoint(CommitManager otherCM, String commitId1, String commitId2) {
         // 先获得 otherCM 里的 commitId1 的所有祖先
         Set<String> ancestors = otherCM.getAllAncestors(commitId1);
         // 从 commitId2 向上遍历查找第一个出现在 ancestors 中的 commit
@@ -207,7 +360,7 @@ class CommitManager implements Serializable {
                 return currentCommit;
             }
             visited.add(currentId);
-            List<String> parentIds = currentCommit.getParentIds();
+            List<String> parentIds = getParentIds(currentCommit);
             if (parentIds != null && !parentIds.isEmpty()) {
                 for (String parentId : parentIds) {
                     if (!visited.contains(parentId)) {
@@ -216,16 +369,22 @@ class CommitManager implements Serializable {
                 }
             }
         }
-        return null;  // 理论上不可能没有公共祖先
+        return null;  // 只有在浅克隆边界截断了历史时才会找不到公共祖先
     }
 
     /**
-     * 获取指定提交的所有祖先提交 ID，包括其自身。
+     * 获取指定提交的所有祖先提交 ID，包括其自身。遍历到浅克隆边界为止。
      *
      * @param commitId 起始提交的 ID
      * @return 包含所有祖先 ID 的集合
      */
     Set<String> getAllAncestors(String commitId) {
+        try (Profiler.Phase p = Profiler.phase("graph-walk")) {
+            return ancestors(commitId);
+        }
+    }
+
+    private Set<String> ancestors(String commitId) {
         Set<String> ancestors = new HashSet<>();
         Queue<String> queue = new LinkedList<>();
         // 初始在队列加入元素自身
@@ -233,7 +392,7 @@ class CommitManager implements Serializable {
         while (!queue.isEmpty()) {
             String currentId = queue.poll();
             ancestors.add(currentId);
-            List<String> parentIds = getCommit(currentId).getParentIds();
+            List<String> parentIds = getParentIds(getCommit(currentId));
             // 遍历找出 current 的父 commit id，
             if (parentIds != null && !parentIds.isEmpty()) {
                 for (String parentId : parentIds) {
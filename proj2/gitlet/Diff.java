@@ -0,0 +1,385 @@
+package gitlet;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * 基于 Myers 算法的逐行比较，以及 unified 格式的差异输出。
+ *
+ * 比较前先把每一行内部化（intern）为一个整数，之后的所有比较都是 int 比较。
+ * 算法步骤：
+ * 1. 丢弃只在一侧出现的行：它们一定属于修改，去掉后可以大幅缩小两边完全不同的区域；
+ * 2. 在剩余的行上使用线性空间的 Myers 算法：先去掉公共前缀和后缀，
+ *    再从两端同时搜索找到“中间蛇”（middle snake），以它为界递归处理两半，
+ *    只需要 O(N + M) 的额外空间，时间为 O((N + M) D)，D 为编辑距离；
+ * 3. 把匹配的行映射回原始行号，相邻匹配之间的空隙就是一段编辑。
+ */
+class Diff {
+
+    /** unified 格式中每段修改前后保留的上下文行数 */
+    static final int CONTEXT = 3;
+
+    /** 一段编辑：a 中 [aStart, aEnd) 行被替换为 b 中 [bStart, bEnd) 行 */
+    static class Edit {
+        final int aStart;
+        final int aEnd;
+        final int bStart;
+        final int bEnd;
+
+        Edit(int aStart, int aEnd, int bStart, int bEnd) {
+            this.aStart = aStart;
+            this.aEnd = aEnd;
+            this.bStart = bStart;
+            this.bEnd = bEnd;
+        }
+    }
+
+    /** 把字符串行映射为从 0 开始的连续整数，相同内容的行得到相同的整数 */
+    static class Interner {
+        /** 行内容 -> 编号 */
+        private final Map<String, Integer> ids = new HashMap<>();
+
+        /** 返回每一行的编号 */
+        int[] intern(List<String> lines) {
+            int[] result = new int[lines.size()];
+            for (int i = 0; i < result.length; i++) {
+                Integer id = ids.putIfAbsent(lines.get(i), ids.size());
+                result[i] = (id != null) ? id : ids.size() - 1;
+            }
+            return result;
+        }
+
+        /** 已分配的编号数量 */
+        int size() {
+            return ids.size();
+        }
+    }
+
+    /**
+     * 把文本按行切分，每行保留行尾的换行符；最后一行没有换行符时原样保留。
+     *
+     * @param text 文本，null 视为空文本
+     * @return 行列表
+     */
+    static List<String> splitLines(String text) {
+        List<String> lines = new ArrayList<>();
+        if (text == null) {
+            return lines;
+        }
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                lines.add(text.substring(start, i + 1));
+                start = i + 1;
+            }
+        }
+        if (start < text.length()) {
+            lines.add(text.substring(start));
+        }
+        return lines;
+    }
+
+    /**
+     * 计算把 a 变为 b 的最短编辑序列。
+     *
+     * @param a 原序列（行编号）
+     * @param b 新序列（行编号）
+     * @return 按位置排序、互不相邻的编辑列表
+     */
+    static List<Edit> diff(int[] a, int[] b) {
+        int symbols = 0;
+        for (int x : a) {
+            symbols = Math.max(symbols, x + 1);
+        }
+        for (int x : b) {
+            symbols = Math.max(symbols, x + 1);
+        }
+        // 只保留在另一侧也出现过的行
+        boolean[] inA = new boolean[symbols];
+        boolean[] inB = new boolean[symbols];
+        for (int x : a) {
+            inA[x] = true;
+        }
+        for (int x : b) {
+            inB[x] = true;
+        }
+        int[] aIndex = keep(a, inB);
+        int[] bIndex = keep(b, inA);
+        int[] aa = new int[aIndex.length];
+        int[] bb = new int[bIndex.length];
+        for (int i = 0; i < aa.length; i++) {
+            aa[i] = a[aIndex[i]];
+        }
+        for (int j = 0; j < bb.length; j++) {
+            bb[j] = b[bIndex[j]];
+        }
+
+        int[] match = new int[aa.length];
+        Arrays.fill(match, -1);
+        compare(aa, 0, aa.length, bb, 0, bb.length, match);
+
+        // 匹配行之间的空隙就是编辑
+        List<Edit> edits = new ArrayList<>();
+        int prevA = 0;
+        int prevB = 0;
+        for (int i = 0; i < aa.length; i++) {
+            if (match[i] < 0) {
+                continue;
+            }
+            int ai = aIndex[i];
+            int bj = bIndex[match[i]];
+            if (ai > prevA || bj > prevB) {
+                edits.add(new Edit(prevA, ai, prevB, bj));
+            }
+            prevA = ai + 1;
+            prevB = bj + 1;
+        }
+        if (prevA < a.length || prevB < b.length) {
+            edits.add(new Edit(prevA, a.length, prevB, b.length));
+        }
+        return edits;
+    }
+
+    /** 返回 seq 中满足 present[seq[i]] 的下标 i */
+    private static int[] keep(int[] seq, boolean[] present) {
+        int count = 0;
+        for (int x : seq) {
+            if (present[x]) {
+                count++;
+            }
+        }
+        int[] result = new int[count];
+        int k = 0;
+        for (int i = 0; i < seq.length; i++) {
+            if (present[seq[i]]) {
+                result[k++] = i;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 找出 a[aLo, aHi) 与 b[bLo, bHi) 的最长公共子序列，把匹配记录到 match 中（match[i] = j）。
+     */
+    private static void compare(int[] a, int aLo, int aHi, int[] b, int bLo, int bHi,
+                                int[] match) {
+        while (true) {
+            // 公共前缀
+            while (aLo < aHi && bLo < bHi && a[aLo] == b[bLo]) {
+                match[aLo++] = bLo++;
+            }
+            // 公共后缀
+            while (aLo < aHi && bLo < bHi && a[aHi - 1] == b[bHi - 1]) {
+                match[--aHi] = --bHi;
+            }
+            if (aLo == aHi || bLo == bHi) {
+                return;
+            }
+            long split = bisect(a, aLo, aHi, b, bLo, bHi);
+            if (split < 0) {
+                return; // 没有公共行
+            }
+            int x = (int) (split >>> 32);
+            int y = (int) split;
+            // 较小的一半递归，较大的一半循环，限制递归深度
+            if (x - aLo + y - bLo < aHi - x + bHi - y) {
+                compare(a, aLo, x, b, bLo, y, match);
+                aLo = x;
+                bLo = y;
+            } else {
+                compare(a, x, aHi, b, y, bHi, match);
+                aHi = x;
+                bHi = y;
+            }
+        }
+    }
+
+    /**
+     * 从两端同时执行 Myers 贪心搜索，返回中间蛇的起点 (x, y)，
+     * 编码为 (x << 32) | y；两段没有任何公共行时返回 -1。
+     * 调用前 a[aLo, aHi) 和 b[bLo, bHi) 都不为空，且首尾行都不相同。
+     */
+    private static long bisect(int[] a, int aLo, int aHi, int[] b, int bLo, int bHi) {
+        int n = aHi - aLo;
+        int m = bHi - bLo;
+        int maxD = (n + m + 1) / 2;
+        int offset = maxD;
+        int length = 2 * maxD + 2;
+        int[] forward = new int[length];
+        int[] backward = new int[length];
+        Arrays.fill(forward, -1);
+        Arrays.fill(backward, -1);
+        forward[offset + 1] = 0;
+        backward[offset + 1] = 0;
+        int delta = n - m;
+        // delta 为奇数时在正向搜索中检查重叠，否则在反向搜索中检查
+        boolean front = (delta & 1) != 0;
+        int k1Start = 0;
+        int k1End = 0;
+        int k2Start = 0;
+        int k2End = 0;
+        for (int d = 0; d < maxD; d++) {
+            for (int k1 = -d + k1Start; k1 <= d - k1End; k1 += 2) {
+                int k1Offset = offset + k1;
+                int x1;
+                if (k1 == -d || (k1 != d && forward[k1Offset - 1] < forward[k1Offset + 1])) {
+                    x1 = forward[k1Offset + 1];
+                } else {
+                    x1 = forward[k1Offset - 1] + 1;
+                }
+                int y1 = x1 - k1;
+                while (x1 < n && y1 < m && a[aLo + x1] == b[bLo + y1]) {
+                    x1++;
+                    y1++;
+                }
+                forward[k1Offset] = x1;
+                if (x1 > n) {
+                    k1End += 2; // 超出右边界
+                } else if (y1 > m) {
+                    k1Start += 2; // 超出下边界
+                } else if (front) {
+                    int k2Offset = offset + delta - k1;
+                    if (k2Offset >= 0 && k2Offset < length && backward[k2Offset] != -1) {
+                        int x2 = n - backward[k2Offset];
+                        if (x1 >= x2) {
+                            return ((long) (aLo + x1) << 32) | (bLo + y1);
+                        }
+                    }
+                }
+            }
+            for (int k2 = -d + k2Start; k2 <= d - k2End; k2 += 2) {
+                int k2Offset = offset + k2;
+                int x2;
+                if (k2 == -d || (k2 != d && backward[k2Offset - 1] < backward[k2Offset + 1])) {
+                    x2 = backward[k2Offset + 1];
+                } else {
+                    x2 = backward[k2Offset - 1] + 1;
+                }
+                int y2 = x2 - k2;
+                while (x2 < n && y2 < m && a[aHi - x2 - 1] == b[bHi - y2 - 1]) {
+                    x2++;
+                    y2++;
+                }
+                backward[k2Offset] = x2;
+                if (x2 > n) {
+                    k2End += 2;
+                } else if (y2 > m) {
+                    k2Start += 2;
+                } else if (!front) {
+                    int k1Offset = offset + delta - k2;
+                    if (k1Offset >= 0 && k1Offset < length && forward[k1Offset] != -1) {
+                        int x1 = forward[k1Offset];
+                        int y1 = offset + x1 - k1Offset;
+                        if (x1 >= n - x2) {
+                            return ((long) (aLo + x1) << 32) | (bLo + y1);
+                        }
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 比较两段文本，返回 unified 格式的差异；内容相同时返回空字符串。
+     *
+     * @param aName 原文件显示名，文件不存在时为 /dev/null
+     * @param bName 新文件显示名，文件不存在时为 /dev/null
+     * @param aText 原文本，null 表示文件不存在
+     * @param bText 新文本，null 表示文件不存在
+     * @return 差异文本
+     */
+    static String unified(String aName, String bName, String aText, String bText) {
+        List<String> aLines = splitLines(aText);
+        List<String> bLines = splitLines(bText);
+        Interner interner = new Interner();
+        List<Edit> edits = diff(interner.intern(aLines), interner.intern(bLines));
+        if (edits.isEmpty()) {
+            return "";
+        }
+        StringBuilder out = new StringBuilder();
+        out.append("--- ").append(aName).append('\n');
+        out.append("+++ ").append(bName).append('\n');
+        int i = 0;
+        while (i < edits.size()) {
+            // 合并上下文重叠的相邻编辑为一个 hunk
+            int j = i;
+            while (j + 1 < edits.size()
+                    && edits.get(j + 1).aStart - edits.get(j).aEnd <= 2 * CONTEXT) {
+                j++;
+            }
+            Edit first = edits.get(i);
+            Edit last = edits.get(j);
+            int aStart = Math.max(0, first.aStart - CONTEXT);
+            int bStart = Math.max(0, first.bStart - CONTEXT);
+            int aEnd = Math.min(aLines.size(), last.aEnd + CONTEXT);
+            int bEnd = Math.min(bLines.size(), last.bEnd + CONTEXT);
+            out.append("@@ -").append(range(aStart, aEnd - aStart))
+                    .append(" +").append(range(bStart, bEnd - bStart)).append(" @@\n");
+            int pos = aStart;
+            for (int k = i; k <= j; k++) {
+                Edit edit = edits.get(k);
+                appendLines(out, ' ', aLines, pos, edit.aStart);
+                appendLines(out, '-', aLines, edit.aStart, edit.aEnd);
+                appendLines(out, '+', bLines, edit.bStart, edit.bEnd);
+                pos = edit.aEnd;
+            }
+            appendLines(out, ' ', aLines, pos, aEnd);
+            i = j + 1;
+        }
+        return out.toString();
+    }
+
+    /** hunk 头中的行范围：起始行号（从 1 开始）和行数，行数为 1 时省略 */
+    private static String range(int start, int count) {
+        if (count == 1) {
+            return Integer.toString(start + 1);
+        }
+        return (count == 0 ? start : start + 1) + "," + count;
+    }
+
+    /** 以 prefix 开头逐行输出 lines[from, to)，没有换行符的最后一行加上提示 */
+    private static void appendLines(StringBuilder out, char prefix, List<String> lines,
+                                    int from, int to) {
+        for (int i = from; i < to; i++) {
+            String line = lines.get(i);
+            out.append(prefix).append(line);
+            if (!line.endsWith("\n")) {
+                out.append("\n\\ No newline at end of file\n");
+            }
+        }
+    }
+
+    /**
+     * 比较两个快照中的所有文件，按文件名顺序返回 unified 格式的差异。
+     * 快照以“文件名 -> 哈希值”表示，哈希值相同的文件直接跳过，不读取内容。
+     *
+     * @param oldFiles 原快照
+     * @param oldContent 根据文件名读取原快照中的文件内容
+     * @param newFiles 新快照
+     * @param newContent 根据文件名读取新快照中的文件内容
+     * @return 差异文本
+     */
+    static String files(Map<String, String> oldFiles, Function<String, String> oldContent,
+                        Map<String, String> newFiles, Function<String, String> newContent) {
+        TreeSet<String> names = new TreeSet<>(oldFiles.keySet());
+        names.addAll(newFiles.keySet());
+        StringBuilder out = new StringBuilder();
+        for (String name : names) {
+            String oldHash = oldFiles.get(name);
+            String newHash = newFiles.get(name);
+            if (Objects.equals(oldHash, newHash)) {
+                continue;
+            }
+            String aText = (oldHash != null) ? oldContent.apply(name) : null;
+            String bText = (newHash != null) ? newContent.apply(name) : null;
+            String patch = unified(oldHash != null ? "a/" + name : "/dev/null",
+                    newHash != null ? "b/" + name : "/dev/null", aText, bText);
+            if (!patch.isEmpty()) {
+                out.append("diff --git a/").append(name).append(" b/").append(name).append('\n');
+                out.append(patch);
+            }
+        }
+        return out.toString();
+    }
+}
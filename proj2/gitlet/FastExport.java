@@ -0,0 +1,191 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 把仓库中所有分支可达的历史导出为 FastImport 能读取的流（fast-export）。
+ *
+ * commit 按拓扑顺序输出（父提交总是先于子提交），每个 commit 只输出相对第一个父提交
+ * 发生变化的文件（M / D 行），内容有变化的 blob 在第一次被用到之前输出一次并打上标记。
+ * 初始提交在每个仓库中都相同，不导出，引用它时直接写出提交 ID。
+ * 导出只读取对象，不写入工作区，最后用 reset 命令写出每个分支的位置。
+ */
+class FastExport {
+
+    /** 提交管理器，提供分支和 Commit 读取 */
+    private final CommitManager commitManager;
+
+    /** blob 文件保存目录 */
+    private final File blobDir;
+
+    /** 输出流 */
+    private final OutputStream out;
+
+    /** 已导出的 commit ID -> 标记 */
+    private final Map<String, Integer> commitMarks = new HashMap<>();
+
+    /** 已导出的 blob 哈希值 -> 标记 */
+    private final Map<String, Integer> blobMarks = new HashMap<>();
+
+    /** 下一个可用的标记 */
+    private int nextMark = 1;
+
+    /**
+     * @param commitManager 提交管理器
+     * @param blobDir blob 文件保存目录
+     * @param out 输出流
+     */
+    FastExport(CommitManager commitManager, File blobDir, OutputStream out) {
+        this.commitManager = commitManager;
+        this.blobDir = blobDir;
+        this.out = new BufferedOutputStream(out, 1 << 16);
+    }
+
+    /** 导出所有分支的历史 */
+    void run() {
+        String initialId = Commit.createInitCommit().id();
+        Map<String, String> branches = commitManager.getBranchMap();
+        Commit previous = null;
+        try {
+            for (Map.Entry<String, String> entry : topologicalOrder(branches).entrySet()) {
+                Commit commit = commitManager.getCommit(entry.getKey());
+                if (commit.id().equals(initialId)) {
+                    continue;
+                }
+                // 线性历史中上一个导出的 commit 通常就是父提交，避免重复读取
+                List<String> parents = commitManager.getParentIds(commit);
+                Commit parent = null;
+                if (!parents.isEmpty()) {
+                    parent = (previous != null && previous.id().equals(parents.get(0)))
+                            ? previous : commitManager.getCommit(parents.get(0));
+                }
+                writeCommit(entry.getValue(), commit, parents, parent);
+                previous = commit;
+            }
+            for (Map.Entry<String, String> branch : branches.entrySet()) {
+                writeLine("reset " + branch.getKey());
+                writeLine("from " + ref(branch.getValue()));
+                writeLine("");
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw Utils.error("Could not write fast-export stream: %s", e.getMessage());
+        }
+    }
+
+    /**
+     * 返回所有分支可达的 commit，按父提交在前的拓扑顺序排列，值为首先到达该 commit 的分支名。
+     * 使用显式栈做后序遍历，避免历史很长时栈溢出。
+     */
+    private LinkedHashMap<String, String> topologicalOrder(Map<String, String> branches) {
+        LinkedHashMap<String, String> order = new LinkedHashMap<>();
+        Set<String> visited = new HashSet<>();
+        for (Map.Entry<String, String> branch : branches.entrySet()) {
+            Deque<String[]> stack = new ArrayDeque<>();
+            stack.push(new String[]{branch.getValue(), null});
+            while (!stack.isEmpty()) {
+                String[] top = stack.pop();
+                String id = top[0];
+                if (top[1] != null) {
+                    // 所有父提交都已输出
+                    order.put(id, branch.getKey());
+                    continue;
+                }
+                if (!visited.add(id)) {
+                    continue;
+                }
+                stack.push(new String[]{id, "done"});
+                Commit commit = commitManager.getCommit(id);
+                List<String> parents = commitManager.getParentIds(commit);
+                for (int i = parents.size() - 1; i >= 0; i--) {
+                    if (!visited.contains(parents.get(i))) {
+                        stack.push(new String[]{parents.get(i), null});
+                    }
+                }
+            }
+        }
+        return order;
+    }
+
+    /**
+     * 输出一个 commit 及其新用到的 blob。
+     *
+     * @param branch 首先到达该 commit 的分支
+     * @param commit 要导出的提交
+     * @param parents 本地可见的父提交 ID
+     * @param parent 第一个父提交，浅克隆边界上的提交为 null
+     */
+    private void writeCommit(String branch, Commit commit, List<String> parents,
+                             Commit parent) throws IOException {
+        Map<String, String> oldFiles = parent == null ? Map.of() : parent.getTrackedFile();
+        Map<String, String> newFiles = commit.getTrackedFile();
+        List<String> changes = new ArrayList<>();
+        for (Map.Entry<String, String> file : newFiles.entrySet()) {
+            String hash = file.getValue();
+            if (hash.equals(oldFiles.get(file.getKey()))) {
+                continue;
+            }
+            if (!blobMarks.containsKey(hash)) {
+                int mark = nextMark++;
+                blobMarks.put(hash, mark);
+                writeLine("blob");
+                writeLine("mark :" + mark);
+                writeData(ObjectStore.read(blobDir, hash));
+            }
+            changes.add("M :" + blobMarks.get(hash) + " " + file.getKey());
+        }
+        for (String fileName : oldFiles.keySet()) {
+            if (!newFiles.containsKey(fileName)) {
+                changes.add("D " + fileName);
+            }
+        }
+
+        int mark = nextMark++;
+        commitMarks.put(commit.id(), mark);
+        writeLine("commit " + branch);
+        writeLine("mark :" + mark);
+        writeLine("time " + commit.getTime().getEpochSecond() + " " + commit.getTime().getNano());
+        writeData(commit.getMessage().getBytes(StandardCharsets.UTF_8));
+        if (parents.isEmpty()) {
+            // 浅克隆边界：父提交不在本地，导入方需要已经拥有它
+            List<String> missing = commit.getParentIds();
+            if (!missing.isEmpty()) {
+                writeLine("from " + missing.get(0));
+            }
+            writeLine("deleteall");
+        } else {
+            writeLine("from " + ref(parents.get(0)));
+            for (String other : parents.subList(1, parents.size())) {
+                writeLine("merge " + ref(other));
+            }
+        }
+        for (String change : changes) {
+            writeLine(change);
+        }
+        writeLine("");
+    }
+
+    /** 已导出的提交写为标记，否则（初始提交）写为提交 ID */
+    private String ref(String id) {
+        Integer mark = commitMarks.get(id);
+        return mark != null ? ":" + mark : id;
+    }
+
+    /** 输出一行 */
+    private void writeLine(String line) throws IOException {
+        out.write(line.getBytes(StandardCharsets.UTF_8));
+        out.write('\n');
+    }
+
+    /** 输出 data 行和内容 */
+    private void writeData(byte[] data) throws IOException {
+        writeLine("data " + data.length);
+        out.write(data);
+        out.write('\n');
+    }
+}
@@ -0,0 +1,384 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 从流中批量导入 blob、commit 和分支（fast-import）。
+ *
+ * 流由以下命令组成，命令之间可以有空行：
+ * <pre>
+ * blob
+ * mark :N                  （可选）
+ * data 字节数
+ * 内容
+ *
+ * commit 分支名
+ * mark :N                  （可选）
+ * time 秒 [纳秒]           （可选，默认为当前时间）
+ * data 字节数
+ * 提交信息
+ * from 提交引用            （可选，默认为分支的最新提交；分支不存在时为初始提交）
+ * merge 提交引用           （可选，可以有多行）
+ * deleteall                （可选，清空从父提交继承的文件）
+ * M blob引用 文件名
+ * D 文件名
+ *
+ * reset 分支名
+ * from 提交引用
+ * </pre>
+ * 提交引用可以是 :N、分支名或（可缩写的）提交 ID；blob 引用可以是 :N 或 blob 哈希值。
+ *
+ * 导入期间提交图和各分支的最新提交都保存在内存中，不读取也不写入工作区，
+ * 每个 commit 只根据父提交的追踪文件和 M / D 行计算一次。新对象先缓存在内存中，
+ * 累计超过 CHECKPOINT_BYTES 时建立检查点：把缓存的 blob 和 commit 各写成一个 pack，
+ * 再保存 CommitManager 并提交日志。这样不需要为每个对象创建一个文件，内存占用也有上限；
+ * 崩溃时最多丢失最后一个检查点之后的内容，已写入但未被引用的 pack 不影响仓库。
+ */
+class FastImport {
+
+    /** 两次检查点之间最多缓存的对象字节数 */
+    private static final long CHECKPOINT_BYTES = 64L << 20;
+
+    /** 提交管理器，导入结束时保存 */
+    private final CommitManager commitManager;
+
+    /** commit 对象保存目录 */
+    private final File commitDir;
+
+    /** blob 文件保存目录 */
+    private final File blobDir;
+
+    /** 输入流 */
+    private final InputStream in;
+
+    /** 被退回、下次 readLine 时重新返回的一行 */
+    private String pushedBack;
+
+    /** blob 标记 -> blob 哈希值 */
+    private final Map<Integer, String> blobMarks = new HashMap<>();
+
+    /** commit 标记 -> 提交 ID */
+    private final Map<Integer, String> commitMarks = new HashMap<>();
+
+    /** 本次导入中各分支的最新提交，避免反复从磁盘读取和解码 */
+    private final Map<String, Commit> tips = new HashMap<>();
+
+    /** 上一个检查点之后导入、尚未写入 pack 的 blob：哈希值 -> 内容 */
+    private final TreeMap<String, byte[]> pendingBlobs = new TreeMap<>();
+
+    /** 上一个检查点之后导入、尚未写入 pack 的 commit：提交 ID -> 编码，只保留编码以节省内存 */
+    private final TreeMap<String, byte[]> pendingCommits = new TreeMap<>();
+
+    /** 初始提交的 ID，没有 from 的新分支以它为父提交 */
+    private final String initialId = Commit.createInitCommit().id();
+
+    /** 上一个检查点之后写入的对象字节数 */
+    private long pendingBytes;
+
+    /** 导入的 commit 数 */
+    private int commitCount;
+
+    /** 导入的 blob 数 */
+    private int blobCount;
+
+    /**
+     * @param commitManager 提交管理器
+     * @param commitDir commit 对象保存目录
+     * @param blobDir blob 文件保存目录
+     * @param in 输入流
+     */
+    FastImport(CommitManager commitManager, File commitDir, File blobDir, InputStream in) {
+        this.commitManager = commitManager;
+        this.commitDir = commitDir;
+        this.blobDir = blobDir;
+        this.in = new BufferedInputStream(in, 1 << 16);
+    }
+
+    /** 读取并执行整个流，最后建立检查点 */
+    void run() {
+        String line;
+        while ((line = readLine()) != null) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (line.equals("blob")) {
+                readBlob();
+            } else if (line.startsWith("commit ")) {
+                readCommit(line.substring("commit ".length()));
+            } else if (line.startsWith("reset ")) {
+                readReset(line.substring("reset ".length()));
+            } else {
+                throw Utils.error("Unsupported fast-import command: %s", line);
+            }
+        }
+        checkpoint();
+    }
+
+    /** 返回导入的 commit 数 */
+    int commitCount() {
+        return commitCount;
+    }
+
+    /** 返回导入的 blob 数 */
+    int blobCount() {
+        return blobCount;
+    }
+
+    /** 读取一个 blob 并保存 */
+    private void readBlob() {
+        Integer mark = readMark();
+        // 与 add 相同，按 UTF-8 文本计算哈希值并保存
+        String content = new String(readData(), StandardCharsets.UTF_8);
+        String hash = Utils.sha1(content);
+        if (!pendingBlobs.containsKey(hash) && !ObjectStore.contains(blobDir, hash)) {
+            byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+            pendingBlobs.put(hash, bytes);
+            blobCount++;
+            written(bytes.length);
+        }
+        if (mark != null) {
+            blobMarks.put(mark, hash);
+        }
+    }
+
+    /** 读取一个 commit，保存并移动分支 branch */
+    private void readCommit(String branch) {
+        Integer mark = readMark();
+        Instant time = Instant.now();
+        String line = readLine();
+        if (line != null && line.startsWith("time ")) {
+            time = parseTime(line.substring("time ".length()));
+        } else {
+            pushedBack = line;
+        }
+        String message = new String(readData(), StandardCharsets.UTF_8);
+
+        ArrayList<String> parents = new ArrayList<>();
+        line = readLine();
+        if (line != null && line.startsWith("from ")) {
+            parents.add(resolveCommit(line.substring("from ".length())));
+            line = readLine();
+        } else if (tips.containsKey(branch)) {
+            parents.add(tips.get(branch).id());
+        } else if (commitManager.containsBranch(branch)) {
+            parents.add(commitManager.getBranchCommit(branch).id());
+        } else {
+            parents.add(initialId);
+        }
+        while (line != null && line.startsWith("merge ")) {
+            parents.add(resolveCommit(line.substring("merge ".length())));
+            line = readLine();
+        }
+
+        TreeMap<String, String> tracked = loadCommit(parents.get(0)).getTrackedFile();
+        while (line != null && !line.isEmpty()) {
+            if (line.equals("deleteall")) {
+                tracked.clear();
+            } else if (line.startsWith("M ")) {
+                int space = line.indexOf(' ', 2);
+                if (space < 0) {
+                    throw Utils.error("Malformed fast-import line: %s", line);
+                }
+                tracked.put(line.substring(space + 1), resolveBlob(line.substring(2, space)));
+            } else if (line.startsWith("D ")) {
+                tracked.remove(line.substring(2));
+            } else {
+                // 下一条命令，没有用空行分隔
+                break;
+            }
+            line = readLine();
+        }
+        pushedBack = line;
+
+        Commit commit = Commit.create(message, time, parents, tracked);
+        if (commitManager.recordCommit(commit)) {
+            pendingCommits.put(commit.id(), commit.encoded());
+            commitCount++;
+            written(commit.encoded().length);
+        }
+        commitManager.setBranch(branch, commit.id());
+        tips.put(branch, commit);
+        if (mark != null) {
+            commitMarks.put(mark, commit.id());
+        }
+    }
+
+    /** 读取 reset 命令，让分支 branch 指向 from 给出的提交 */
+    private void readReset(String branch) {
+        String line = readLine();
+        if (line == null || !line.startsWith("from ")) {
+            throw Utils.error("Expected from after reset %s.", branch);
+        }
+        String id = resolveCommit(line.substring("from ".length()));
+        commitManager.setBranch(branch, id);
+        tips.put(branch, loadCommit(id));
+    }
+
+    /** 读取可选的 mark 行，没有时返回 null */
+    private Integer readMark() {
+        String line = readLine();
+        if (line != null && line.startsWith("mark :")) {
+            return parseInt(line.substring("mark :".length()), line);
+        }
+        pushedBack = line;
+        return null;
+    }
+
+    /** 读取 data 行及其后的内容，内容之后的一个换行符可以省略 */
+    private byte[] readData() {
+        String line = readLine();
+        if (line == null || !line.startsWith("data ")) {
+            throw Utils.error("Expected data, got: %s", line);
+        }
+        int length = parseInt(line.substring("data ".length()), line);
+        try {
+            byte[] data = in.readNBytes(length);
+            if (data.length < length) {
+                throw Utils.error("Unexpected end of fast-import stream.");
+            }
+            in.mark(1);
+            if (in.read() != '\n') {
+                in.reset();
+            }
+            return data;
+        } catch (IOException e) {
+            throw Utils.error("Could not read fast-import stream: %s", e.getMessage());
+        }
+    }
+
+    /** 读取一行（不含换行符），流结束时返回 null */
+    private String readLine() {
+        if (pushedBack != null) {
+            String line = pushedBack;
+            pushedBack = null;
+            return line;
+        }
+        try {
+            ByteArrayOutputStream line = new ByteArrayOutputStream(80);
+            int c = in.read();
+            if (c == -1) {
+                return null;
+            }
+            while (c != -1 && c != '\n') {
+                line.write(c);
+                c = in.read();
+            }
+            return line.toString(StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw Utils.error("Could not read fast-import stream: %s", e.getMessage());
+        }
+    }
+
+    /** 把提交引用解析为提交 ID */
+    private String resolveCommit(String ref) {
+        if (ref.startsWith(":")) {
+            String id = commitMarks.get(parseInt(ref.substring(1), ref));
+            if (id == null) {
+                throw Utils.error("Unknown commit mark: %s", ref);
+            }
+            return id;
+        }
+        if (tips.containsKey(ref)) {
+            return tips.get(ref).id();
+        }
+        if (commitManager.containsBranch(ref)) {
+            return commitManager.getBranchCommit(ref).id();
+        }
+        if (pendingCommits.containsKey(ref)) {
+            return ref;
+        }
+        Commit commit = commitManager.getCommit(ref);
+        if (commit == null) {
+            throw Utils.error("Unknown commit reference: %s", ref);
+        }
+        return commit.id();
+    }
+
+    /** 把 blob 引用解析为 blob 哈希值 */
+    private String resolveBlob(String ref) {
+        if (ref.startsWith(":")) {
+            String hash = blobMarks.get(parseInt(ref.substring(1), ref));
+            if (hash == null) {
+                throw Utils.error("Unknown blob mark: %s", ref);
+            }
+            return hash;
+        }
+        if (!pendingBlobs.containsKey(ref) && !ObjectStore.contains(blobDir, ref)) {
+            throw Utils.error("Unknown blob: %s", ref);
+        }
+        return ref;
+    }
+
+    /** 读取提交 id，优先使用内存中的分支最新提交和尚未写入 pack 的提交 */
+    private Commit loadCommit(String id) {
+        for (Commit tip : tips.values()) {
+            if (tip.id().equals(id)) {
+                return tip;
+            }
+        }
+        if (pendingCommits.containsKey(id)) {
+            return Commit.decode(id, pendingCommits.get(id));
+        }
+        Commit commit = commitManager.getCommit(id);
+        if (commit == null) {
+            throw Utils.error("Unknown commit reference: %s", id);
+        }
+        return commit;
+    }
+
+    /** 解析 "秒 [纳秒]" 形式的时间 */
+    private static Instant parseTime(String text) {
+        String[] parts = text.split(" ");
+        try {
+            long seconds = Long.parseLong(parts[0]);
+            int nanos = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+            return Instant.ofEpochSecond(seconds, nanos);
+        } catch (NumberFormatException e) {
+            throw Utils.error("Malformed fast-import line: time %s", text);
+        }
+    }
+
+    /** 解析非负整数，失败时报告所在的行 */
+    private static int parseInt(String text, String line) {
+        try {
+            int value = Integer.parseInt(text);
+            if (value >= 0) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // 统一在下面报错
+        }
+        throw Utils.error("Malformed fast-import line: %s", line);
+    }
+
+    /** 记录缓存的字节数，超过 CHECKPOINT_BYTES 时建立检查点 */
+    private void written(long bytes) {
+        pendingBytes += bytes;
+        if (pendingBytes >= CHECKPOINT_BYTES) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * 建立检查点：先把缓存的对象写成 pack 并落盘，再保存引用它们的 CommitManager 并提交日志。
+     */
+    private void checkpoint() {
+        ObjectStore.writePack(blobDir, pendingBlobs);
+        ObjectStore.writePack(commitDir, pendingCommits);
+        pendingBlobs.clear();
+        pendingCommits.clear();
+        pendingBytes = 0;
+        commitManager.save();
+        Journal.commit();
+    }
+}
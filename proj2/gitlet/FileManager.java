@@ -2,6 +2,7 @@ package gitlet;
 
 import java.io.File;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 /**
@@ -40,6 +41,25 @@ class FileManager implements Serializable {
     /** 管理区中的所有文件集合，包括工作区的文件和head正在追踪的文件的并集 */
     private Set<String> filesInManagement;
 
+    /** 工作目录监视器的状态目录，参见 Watcher */
+    private final File watchDir;
+
+    /**
+     * 监视器模式下工作区文件的哈希缓存（文件名 -> 哈希值），没有监视器时为 null。
+     * 缓存和下面两个字段保存在监视目录的 cache 文件中，不随本对象保存，
+     * 这样只读命令（status）在共享锁下刷新的结果也能留给之后的命令使用。
+     */
+    private transient Map<String, String> workingHashes;
+
+    /** 上次刷新缓存时的监视代号 */
+    private transient String watchGeneration;
+
+    /** 上次刷新缓存时读到的变化日志偏移量 */
+    private transient long watchOffset;
+
+    /** 稀疏检出模式，每次 updateFiles 时从 .gitlet/sparse 读取，不随本对象保存 */
+    private transient SparseCheckout sparse;
+
     /**
      * FileManager 构造函数，用于初始化文件管理器的各个路径和暂存区结构。
      *
@@ -48,39 +68,126 @@ class FileManager implements Serializable {
      * @param stagingBlobsDir    暂存区 blob 文件保存目录（用于记录 add 的文件内容）
      * @param blobsDir           所有 blob 文件的存储目录（版本库中所有文件快照）
      * @param commitManagerPath  CommitManager 的序列化文件路径，用于获取当前 HEAD commit
+     * @param watchDir           工作目录监视器的状态目录
      */
     FileManager(File savePath, File workingDir,
-                       File stagingBlobsDir, File blobsDir, File commitManagerPath) {
+                       File stagingBlobsDir, File blobsDir, File commitManagerPath,
+                       File watchDir) {
         this.savePath = savePath;
         this.workingDir = workingDir;
         this.stagingBlobsDir = stagingBlobsDir;
         this.blobsDir = blobsDir;
         this.commitManagerPath = commitManagerPath;
+        this.watchDir = watchDir;
         addition = new HashMap<>();
         removal = new HashSet<>();
         filesInManagement = new HashSet<>();
         updateFiles();
     }
 
-    /** 更新 filesInManagement 获取正在管理的所有文件名列表（当前 HEAD 正在追踪的，和工作区目录下的所有文件名集合）。*/
+    /**
+     * 更新 filesInManagement 获取正在管理的所有文件名列表（当前 HEAD 正在追踪的，和工作区目录下的所有文件名集合）。
+     * 启用稀疏检出时，只包括稀疏集合内的文件，以及暂存区中的文件。
+     */
     void updateFiles() {
         Commit head = Repository.callCommitManager(commitManagerPath).getHeadCommit();
         Map<String, String> tracking = head.getTrackedFile();
-        List<String> workingFiles = Utils.plainFilenamesIn(workingDir);
+        sparse = SparseCheckout.load(savePath.getParentFile());
+        Collection<String> workingFiles;
+        try (Profiler.Phase p = Profiler.phase("scan-working-dir")) {
+            refreshWorkingHashes();
+            workingFiles = (workingHashes != null)
+                    ? workingHashes.keySet() : Utils.plainFilenamesIn(workingDir);
+        }
         filesInManagement = new HashSet<>();
         if (tracking != null) {
-            filesInManagement.addAll(tracking.keySet());
+            for (String fileName : tracking.keySet()) {
+                if (sparse.matches(fileName)) {
+                    filesInManagement.add(fileName);
+                }
+            }
         }
         if (workingFiles != null) {
-            filesInManagement.addAll(workingFiles);
+            for (String fileName : workingFiles) {
+                if (sparse.matches(fileName)) {
+                    filesInManagement.add(fileName);
+                }
+            }
         }
         filesInManagement.addAll(addition.keySet());
         filesInManagement.addAll(removal);
     }
 
-    /** 序列化保存到 savePath 路径中 */
+    /**
+     * 根据监视器记录的变化刷新工作区哈希缓存：
+     * - 没有正在运行的监视器时清空缓存，之后的判断都直接读取工作区；
+     * - 监视器刚启动、事件溢出或缓存不存在时，全量扫描工作区；
+     * - 否则只重新计算自上次刷新以来发生变化的文件。
+     * 刷新后立即保存缓存，不依赖命令结束时的 save。
+     */
+    private void refreshWorkingHashes() {
+        if (workingHashes == null) {
+            Watcher.Cache cache = Watcher.loadCache(watchDir);
+            if (cache != null) {
+                workingHashes = cache.hashes;
+                watchGeneration = cache.generation;
+                watchOffset = cache.offset;
+            }
+        }
+        Watcher.Changes changes = Watcher.poll(watchDir, watchGeneration, watchOffset);
+        if (changes == null) {
+            workingHashes = null;
+            watchGeneration = null;
+            watchOffset = 0;
+            return;
+        }
+        Collection<String> stale = changes.paths;
+        if (workingHashes == null || changes.rescan
+                || !changes.generation.equals(watchGeneration)) {
+            workingHashes = new HashMap<>();
+            stale = Utils.plainFilenamesIn(workingDir);
+        }
+        for (String fileName : stale) {
+            if (!sparse.matches(fileName)) {
+                continue;
+            }
+            if (Utils.join(workingDir, fileName).isFile()) {
+                workingHashes.put(fileName, Utils.fileHashIn(workingDir, fileName));
+            } else {
+                workingHashes.remove(fileName);
+            }
+        }
+        boolean changed = !stale.isEmpty() || watchOffset != changes.offset
+                || !changes.generation.equals(watchGeneration);
+        watchGeneration = changes.generation;
+        watchOffset = changes.offset;
+        if (changed) {
+            Watcher.saveCache(watchDir,
+                    new Watcher.Cache(watchGeneration, watchOffset, workingHashes));
+        }
+    }
+
+    /**
+     * 返回工作区中文件 fileName 的哈希值，优先使用监视器模式下的缓存。
+     *
+     * @param fileName 文件名
+     * @return 哈希值，文件不存在时返回 null
+     */
+    String workingHash(String fileName) {
+        if (workingHashes != null) {
+            return workingHashes.get(fileName);
+        }
+        return Utils.fileHashIn(workingDir, fileName);
+    }
+
+    /** 序列化保存到 savePath 路径中，同时清理已经处理过的监视日志并保存哈希缓存 */
     void save() {
-        Utils.writeObject(savePath, this);
+        if (watchGeneration != null) {
+            watchOffset = Watcher.compact(watchDir, watchOffset);
+            Watcher.saveCache(watchDir,
+                    new Watcher.Cache(watchGeneration, watchOffset, workingHashes));
+        }
+        Journal.write(savePath, Utils.serialize(this));
     }
 
     /** 获取暂存记录 */
@@ -100,9 +207,9 @@ class FileManager implements Serializable {
      */
     void addToAddition(String fileName) {
         String content = Utils.readContentsAsString(Utils.join(workingDir, fileName));
-        String fileHash = Utils.sha1(fileName, content);
+        String fileHash = Utils.sha1(content);
         addition.put(fileName, fileHash);
-        Utils.writeContents(Utils.join(stagingBlobsDir, fileHash), content);
+        Journal.write(Utils.join(stagingBlobsDir, fileHash), content);
     }
 
     /**
@@ -139,6 +246,9 @@ class FileManager implements Serializable {
      * @return true or false
      */
     boolean isInCWD(String fileName) {
+        if (workingHashes != null) {
+            return workingHashes.containsKey(fileName);
+        }
         return Utils.join(workingDir, fileName).exists();
     }
 
@@ -200,9 +310,9 @@ class FileManager implements Serializable {
         if (isNotTracking(commit, fileName)) {
             return false;
         }
-        String fileHash = Utils.fileHashIn(workingDir, fileName);
-        return (!isStagingInAdd(fileName)
-                && commit.isTrackingDifferentIn(workingDir, fileName))
+        String fileHash = workingHash(fileName);
+        return (!isStagingInAdd(fileName) && commit.isTracking(fileName)
+                && !Objects.equals(fileHash, commit.trackedHash(fileName)))
             || (isStagingInAdd(fileName) && !addition.get(fileName).equals(fileHash));
     }
 
@@ -228,19 +338,22 @@ class FileManager implements Serializable {
     void clearStageArea() {
         addition = new HashMap<>();
         removal = new HashSet<>();
-        Utils.clean(stagingBlobsDir);
+        Journal.clean(stagingBlobsDir);
     }
 
     /**
-     * 将工作区中所有被 commit 追踪的文件恢复成追踪的状态。
+     * 将工作区中所有被 commit 追踪、且属于稀疏集合的文件恢复成追踪的状态。
      *
      * @param commit 当前 commit
      */
     void checkout(Commit commit) {
         Map<String, String> branchTrackingFiles = commit.getTrackedFile();
         for (String fileName : branchTrackingFiles.keySet()) {
+            if (!sparse.matches(fileName)) {
+                continue;
+            }
             // 只要工作区的文件与追踪的版本不同，或追踪的文件不在工作区中，都进行 checkout
-            if (!commit.isTrackingSameIn(workingDir, fileName)) {
+            if (!Objects.equals(workingHash(fileName), commit.trackedHash(fileName))) {
                 checkout(commit, fileName);
             }
         }
@@ -253,9 +366,86 @@ class FileManager implements Serializable {
      * @param fileName 文件名
      */
     void checkout(Commit commit, String fileName) {
-        String fileHash = commit.getTrackedFile().get(fileName);
-        String blobContent = Utils.readContentsAsString(Utils.join(blobsDir, fileHash));
+        String fileHash = commit.trackedHash(fileName);
+        String blobContent = ObjectStore.readAsString(blobsDir, fileHash);
         Utils.writeContents(Utils.join(workingDir, fileName), blobContent);
+        if (workingHashes != null) {
+            workingHashes.put(fileName, fileHash);
+        }
+    }
+
+    /** 判断文件 fileName 是否属于稀疏检出集合，未启用稀疏检出时总是返回 true */
+    boolean isInSparse(String fileName) {
+        return sparse.matches(fileName);
+    }
+
+    /** 删除工作区中属于稀疏集合的所有文件，集合外的文件保持不变 */
+    void cleanWorkingDir() {
+        List<String> files = Utils.plainFilenamesIn(workingDir);
+        if (files == null) {
+            return;
+        }
+        for (String fileName : files) {
+            if (sparse.matches(fileName)) {
+                Utils.join(workingDir, fileName).delete();
+                if (workingHashes != null) {
+                    workingHashes.remove(fileName);
+                }
+            }
+        }
+    }
+
+    /** 删除工作区中的文件 fileName */
+    void deleteWorking(String fileName) {
+        Utils.join(workingDir, fileName).delete();
+        if (workingHashes != null) {
+            workingHashes.remove(fileName);
+        }
+    }
+
+    /**
+     * 把 commit 中追踪的文件 fileName 直接加入 addition，不写入工作区。
+     * 用于合并时更新稀疏集合外的文件。
+     *
+     * @param commit 文件所在的提交
+     * @param fileName 文件名
+     */
+    void stageFromCommit(Commit commit, String fileName) {
+        addition.put(fileName, commit.trackedHash(fileName));
+        removal.remove(fileName);
+    }
+
+    /**
+     * 应用新的稀疏模式：把新集合内、工作区中缺失的追踪文件写入工作区，
+     * 删除新集合外、未被修改的追踪文件。集合外的文件若有未提交的修改则报错。
+     *
+     * @param head 当前 HEAD commit
+     * @param newSparse 新的稀疏模式
+     */
+    void applySparse(Commit head, SparseCheckout newSparse) {
+        Map<String, String> tracking = head.getTrackedFile();
+        for (Map.Entry<String, String> entry : tracking.entrySet()) {
+            String fileName = entry.getKey();
+            File file = Utils.join(workingDir, fileName);
+            if (!newSparse.matches(fileName) && file.isFile()
+                    && (!entry.getValue().equals(Utils.fileHashIn(workingDir, fileName))
+                        || addition.containsKey(fileName))) {
+                throw Utils.error("You have uncommitted changes.");
+            }
+        }
+        for (Map.Entry<String, String> entry : tracking.entrySet()) {
+            String fileName = entry.getKey();
+            File file = Utils.join(workingDir, fileName);
+            if (newSparse.matches(fileName)) {
+                if (!file.exists() && !removal.contains(fileName)) {
+                    Utils.writeContents(file, ObjectStore.readAsString(blobsDir, entry.getValue()));
+                }
+            } else {
+                file.delete();
+            }
+        }
+        sparse = newSparse;
+        newSparse.save(savePath.getParentFile());
     }
 
     /**
@@ -326,6 +516,65 @@ class FileManager implements Serializable {
         return untrackedFiles;
     }
 
+    /**
+     * 返回暂存区快照：HEAD 追踪的文件加上 addition、去掉 removal 后的“文件名 -> 哈希值”。
+     *
+     * @param head 当前 HEAD commit
+     * @return 暂存区快照
+     */
+    Map<String, String> getIndex(Commit head) {
+        Map<String, String> index = head.getTrackedFile();
+        index.putAll(addition);
+        index.keySet().removeAll(removal);
+        return index;
+    }
+
+    /**
+     * 返回工作区快照：工作区中所有文件的“文件名 -> 哈希值”。
+     *
+     * @return 工作区快照
+     */
+    Map<String, String> getWorkingFiles() {
+        if (workingHashes != null) {
+            return new HashMap<>(workingHashes);
+        }
+        Map<String, String> files = new HashMap<>();
+        for (String fileName : Utils.plainFilenamesIn(workingDir)) {
+            files.put(fileName, Utils.fileHashIn(workingDir, fileName));
+        }
+        return files;
+    }
+
+    /**
+     * 检测暂存区相对 head 的重命名：head 追踪但暂存区中已删除的文件，与暂存区中新增的文件配对。
+     *
+     * @param head 当前 HEAD commit
+     * @return 重命名列表
+     */
+    List<RenameDetector.Rename> getStagedRenames(Commit head) {
+        Map<String, String> index = getIndex(head);
+        Map<String, String> deleted = head.getTrackedFile();
+        deleted.keySet().removeAll(index.keySet());
+        Map<String, String> added = new HashMap<>(index);
+        added.keySet().removeAll(head.getTrackedFile().keySet());
+        return RenameDetector.detect(deleted, added, this::readBlob,
+                RenameDetector.DEFAULT_THRESHOLD);
+    }
+
+    /** 读取工作区中文件 fileName 的内容 */
+    String readWorking(String fileName) {
+        return Utils.readContentsAsString(Utils.join(workingDir, fileName));
+    }
+
+    /** 读取哈希值为 hash 的 blob 内容，优先读取暂存区中的版本 */
+    String readBlob(String hash) {
+        File staged = Utils.join(stagingBlobsDir, hash);
+        if (Journal.exists(staged)) {
+            return new String(Journal.read(staged), StandardCharsets.UTF_8);
+        }
+        return ObjectStore.readAsString(blobsDir, hash);
+    }
+
     /**
      * 从远程 FileManager 的 blobs 目录中拉取指定 blob 文件，如果本地尚未存在该 blob 则保存。
      *
@@ -333,13 +582,10 @@ class FileManager implements Serializable {
      * @param blobName blob 文件名（即文件哈希值）
      */
     void fetchBlobFrom(FileManager remoteFM, String blobName) {
-        File oldFile = Utils.join(remoteFM.blobsDir, blobName);
-        if (oldFile.exists()) {
-            String content = Utils.readContentsAsString(oldFile);
-            File newFile = Utils.join(blobsDir, blobName);
-            if (!newFile.exists()) {
-                Utils.writeContents(newFile, content);
-            }
+        if (ObjectStore.contains(remoteFM.blobsDir, blobName)
+                && !ObjectStore.contains(blobsDir, blobName)) {
+            String content = ObjectStore.readAsString(remoteFM.blobsDir, blobName);
+            ObjectStore.write(blobsDir, blobName, content);
         }
     }
 }
@@ -0,0 +1,250 @@
+package gitlet;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 负责回收仓库中不可达的 commit 和 blob 对象。
+ *
+ * 回收步骤概述：
+ * 1. 标记（mark）：从所有分支（包括 fetch 产生的远程跟踪分支）的最新提交出发，
+ *    沿父提交向上遍历，记录所有可达的 commit 及其追踪的 blob。多个分支在线程池中并行标记，
+ *    共享同一个并发集合，已被其他线程访问过的提交会被直接跳过。
+ * 2. 清扫（sweep）：列出 commits、blobs 目录中未被标记的对象，以及暂存区中
+ *    不再被 addition 引用的 blob，超过宽限期（grace period）的文件才会被删除。
+ * 3. 若为 dry-run 模式，只报告将被删除的对象和可回收的字节数，不做任何修改。
+ * pack 中的对象不能单独删除，清扫时只考虑松散对象。
+ */
+class GarbageCollector {
+
+    /** 默认宽限期：两周，与 git 的 gc.pruneExpire 默认值一致 */
+    static final long DEFAULT_GRACE_MILLIS = 14L * 24 * 60 * 60 * 1000;
+
+    /** 提交管理器，提供分支信息和 Commit 读取 */
+    private final CommitManager commitManager;
+
+    /** commit 对象保存目录 */
+    private final File commitDir;
+
+    /** blob 文件保存目录 */
+    private final File blobDir;
+
+    /** 暂存区 blob 文件保存目录 */
+    private final File stagingDir;
+
+    /** 暂存区 addition 中仍在引用的 blob 哈希值 */
+    private final Set<String> stagedBlobs;
+
+    /** 宽限期（毫秒），修改时间晚于 now - graceMillis 的对象不会被回收 */
+    private final long graceMillis;
+
+    /** 标记阶段找到的可达 commit id */
+    private final Set<String> reachableCommits = ConcurrentHashMap.newKeySet();
+
+    /** 标记阶段找到的可达 blob 哈希值 */
+    private final Set<String> reachableBlobs = ConcurrentHashMap.newKeySet();
+
+    /** 清扫阶段找到的不可达 commit id */
+    private final List<String> garbageCommits = new ArrayList<>();
+
+    /** 清扫阶段找到的不可达 blob 哈希值 */
+    private final List<String> garbageBlobs = new ArrayList<>();
+
+    /** 清扫阶段找到的暂存区孤立 blob 哈希值 */
+    private final List<String> garbageStaged = new ArrayList<>();
+
+    /** 可回收的总字节数 */
+    private long reclaimedBytes;
+
+    /** 构造 GarbageCollector 对象 */
+    GarbageCollector(CommitManager commitManager,
+                     Collection<String> stagedBlobs,
+                     File commitDir,
+                     File blobDir,
+                     File stagingDir,
+                     long graceMillis) {
+        this.commitManager = commitManager;
+        this.stagedBlobs = new HashSet<>(stagedBlobs);
+        this.commitDir = commitDir;
+        this.blobDir = blobDir;
+        this.stagingDir = stagingDir;
+        this.graceMillis = graceMillis;
+    }
+
+    /**
+     * 从所有分支头并行标记可达对象。
+     * 每个分支头由一个任务负责，任务之间共享可达集合，因此公共历史只会被遍历一次。
+     */
+    void mark() {
+        Set<String> tips = commitManager.getBranchHeads();
+        int threads = Math.max(1, Math.min(tips.size(),
+                Runtime.getRuntime().availableProcessors()));
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (String tip : tips) {
+                tasks.add(pool.submit(() -> markFrom(tip)));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw Utils.error("Garbage collection failed: %s", e.getMessage());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * 从 tip 出发深度优先遍历父提交，标记 commit 和其追踪的 blob。
+     *
+     * @param tip 分支头的 commit id
+     */
+    private void markFrom(String tip) {
+        Deque<String> stack = new ArrayDeque<>();
+        stack.push(tip);
+        while (!stack.isEmpty()) {
+            String id = stack.pop();
+            // 其他线程已经标记过，说明它的祖先也已经（或正在）被标记
+            if (!reachableCommits.add(id)) {
+                continue;
+            }
+            Commit commit = readCommit(id);
+            if (commit == null) {
+                continue; // 缺失的提交交给 fsck 报告
+            }
+            reachableBlobs.addAll(commit.getTrackedFile().values());
+            // 浅克隆边界上的 commit 的父提交不在本地
+            for (String parentId : commitManager.getParentIds(commit)) {
+                if (!reachableCommits.contains(parentId)) {
+                    stack.push(parentId);
+                }
+            }
+        }
+    }
+
+    /**
+     * 按完整的 id 读取 commit。标记在多个线程中进行，这里不经过 getCommit 的前缀查找；
+     * 不在提交记录中的对象（例如宽限期内的对象）直接从对象目录读取。
+     *
+     * @param id commit id
+     * @return commit 对象，缺失或无法解码时返回 null
+     */
+    private Commit readCommit(String id) {
+        if (commitManager.containsCommit(id)) {
+            return commitManager.getCommit(id);
+        }
+        if (!ObjectStore.contains(commitDir, id)) {
+            return null;
+        }
+        try {
+            return Commit.decode(id, ObjectStore.read(commitDir, id));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 找出所有超过宽限期的不可达对象，若不是 dry-run 则删除它们。
+     *
+     * @param dryRun 为 true 时只统计，不删除
+     */
+    void sweep(boolean dryRun) {
+        long cutoff = System.currentTimeMillis() - graceMillis;
+        markSurvivors(cutoff);
+        collect(commitDir, true, reachableCommits, cutoff, garbageCommits);
+        collect(blobDir, true, reachableBlobs, cutoff, garbageBlobs);
+        collect(stagingDir, false, stagedBlobs, cutoff, garbageStaged);
+        if (dryRun) {
+            return;
+        }
+        for (String id : garbageCommits) {
+            ObjectStore.delete(commitDir, id);
+            commitManager.removeCommit(id);
+        }
+        for (String hash : garbageBlobs) {
+            ObjectStore.delete(blobDir, hash);
+        }
+        for (String hash : garbageStaged) {
+            Journal.delete(Utils.join(stagingDir, hash));
+        }
+    }
+
+    /**
+     * 不可达但仍在宽限期内（或位于 pack 中）的 commit 会被保留，把它们作为额外的根标记。
+     * 否则它们的祖先和引用的 blob 可能已经超过宽限期而被删除，之后 checkout 或 reset 到这些 commit 时会失败。
+     * 与 git 一样，宽限期内的对象所引用的对象也一并保留。
+     *
+     * @param cutoff 宽限期截止时间戳
+     */
+    private void markSurvivors(long cutoff) {
+        for (String id : ObjectStore.list(commitDir)) {
+            if (reachableCommits.contains(id)) {
+                continue;
+            }
+            File file = ObjectStore.find(commitDir, id);
+            if (!file.isFile() || file.lastModified() > cutoff) {
+                markFrom(id);
+            }
+        }
+    }
+
+    /**
+     * 将 dir 中不在 live 集合内、且修改时间早于 cutoff 的文件名加入 garbage。
+     *
+     * @param dir 要扫描的目录
+     * @param objects dir 是否为通过 ObjectStore 分片保存的对象目录（暂存区为平铺目录）
+     * @param live 需要保留的文件名集合
+     * @param cutoff 宽限期截止时间戳
+     * @param garbage 收集结果
+     */
+    private void collect(File dir, boolean objects, Set<String> live,
+                         long cutoff, List<String> garbage) {
+        List<String> names = objects ? ObjectStore.list(dir) : Utils.plainFilenamesIn(dir);
+        if (names == null) {
+            return;
+        }
+        for (String name : names) {
+            if (live.contains(name)) {
+                continue;
+            }
+            File file = objects ? ObjectStore.find(dir, name) : Utils.join(dir, name);
+            if (!file.isFile()) {
+                continue; // pack 中的对象不能单独删除，保留
+            }
+            if (file.lastModified() > cutoff) {
+                continue;
+            }
+            garbage.add(name);
+            reclaimedBytes += file.length();
+        }
+    }
+
+    /**
+     * 打印回收报告。dry-run 模式下会逐个列出将被删除的对象。
+     *
+     * @param dryRun 是否为 dry-run 模式
+     */
+    void report(boolean dryRun) {
+        if (dryRun) {
+            for (String id : garbageCommits) {
+                Utils.message("commit %s", id);
+            }
+            for (String hash : garbageBlobs) {
+                Utils.message("blob %s", hash);
+            }
+            for (String hash : garbageStaged) {
+                Utils.message("staged %s", hash);
+            }
+        }
+        Utils.message("%s %d commits, %d blobs, %d staged blobs (%d bytes).",
+                dryRun ? "Would remove" : "Removed",
+                garbageCommits.size(), garbageBlobs.size(), garbageStaged.size(),
+                reclaimedBytes);
+    }
+}
@@ -0,0 +1,275 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.BiConsumer;
+
+/**
+ * 检查 .gitlet 对象库的一致性（fsck）。
+ *
+ * 检查步骤概述：
+ * 1. 通过 ObjectStore 逐个流式读取 commits 目录中的 commit 文件，在线程池中反序列化并重新计算提交 ID，
+ *    检查文件名与 ID 是否一致、父提交是否存在，并记录其追踪的 blob。
+ * 2. 逐个流式读取 blobs 目录中的 blob 文件，在线程池中对内容重新计算 sha1，
+ *    检查哈希是否与文件名一致；被 commit 引用但不存在的 blob 记为缺失。
+ * 3. 从所有分支头出发遍历提交图，不可达的 commit 以及未被任何 commit 引用的 blob
+ *    记为悬空（dangling）对象。
+ *
+ * 对象目录逐个分片流式读取，同时在途任务数由信号量限制，
+ * 内存占用只与不同 blob 的数量和可达提交数成正比，而不会一次性载入全部对象。
+ *
+ * 退出码是以下标志位的组合：
+ * - 1：存在损坏的对象（无法读取或哈希不匹配）；
+ * - 2：存在缺失的对象（父提交、blob、分支头或索引中的 commit）。
+ */
+class IntegrityChecker {
+
+    /** 存在损坏对象时的退出码标志位 */
+    static final int CORRUPT = 1;
+
+    /** 存在缺失对象时的退出码标志位 */
+    static final int MISSING = 2;
+
+    /** 流式读取 blob 时的缓冲区大小 */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** 提交管理器，提供分支信息和索引中的 commit 列表 */
+    private final CommitManager commitManager;
+
+    /** commit 对象保存目录 */
+    private final File commitDir;
+
+    /** blob 文件保存目录 */
+    private final File blobDir;
+
+    /** 线程数 */
+    private final int threads;
+
+    /** 被 commit 引用的 blob：blob 哈希值 -> 追踪它的某个文件名（blob 缺失时在报告中指明） */
+    private final Map<String, String> referencedBlobs = new ConcurrentHashMap<>();
+
+    /** blobs 目录中实际存在的 blob 哈希值 */
+    private final Set<String> presentBlobs = ConcurrentHashMap.newKeySet();
+
+    /** 检查中发现的问题描述 */
+    private final Queue<String> problems = new ConcurrentLinkedQueue<>();
+
+    /** 悬空对象描述，仅作提示，不影响退出码 */
+    private final Queue<String> dangling = new ConcurrentLinkedQueue<>();
+
+    /** 已检查的 commit 数量 */
+    private int commitCount;
+
+    /** 退出码 */
+    private volatile int status;
+
+    /** 构造 IntegrityChecker 对象 */
+    IntegrityChecker(CommitManager commitManager, File commitDir, File blobDir) {
+        this.commitManager = commitManager;
+        this.commitDir = commitDir;
+        this.blobDir = blobDir;
+        this.threads = Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * 依次执行所有检查，打印报告并返回退出码。
+     *
+     * @return 0 表示一致，否则为 CORRUPT 与 MISSING 的组合
+     */
+    int check() {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            commitCount = forEachObject(pool, commitDir, this::checkCommit);
+            forEachObject(pool, blobDir, this::checkBlob);
+        } finally {
+            pool.shutdown();
+        }
+        for (Map.Entry<String, String> entry : referencedBlobs.entrySet()) {
+            // pack 中的 blob 不在 presentBlobs 中
+            if (!presentBlobs.contains(entry.getKey()) && !ObjectStore.contains(blobDir, entry.getKey())) {
+                fail(MISSING, "missing blob %s (%s)", entry.getKey(), entry.getValue());
+            }
+        }
+        checkConnectivity();
+        report();
+        return status;
+    }
+
+    /**
+     * 流式遍历 dir 中的每个对象，把 action 提交到线程池执行。
+     * 在途任务数不超过线程数的四倍，以保证内存占用有界。
+     *
+     * @return 遍历的对象数量
+     */
+    private int forEachObject(ExecutorService pool, File dir, BiConsumer<String, File> action) {
+        Semaphore inFlight = new Semaphore(threads * 4);
+        List<Future<?>> pending = new ArrayList<>();
+        int[] count = {0};
+        try {
+            ObjectStore.forEach(dir, id -> {
+                count[0]++;
+                File file = ObjectStore.find(dir, id);
+                inFlight.acquireUninterruptibly();
+                pending.add(pool.submit(() -> {
+                    try {
+                        action.accept(id, file);
+                    } finally {
+                        inFlight.release();
+                    }
+                }));
+                // 定期回收已完成的 Future，避免列表随对象数增长
+                if (pending.size() >= threads * 64) {
+                    drain(pending);
+                }
+            });
+        } catch (IllegalArgumentException e) {
+            fail(MISSING, "unreadable directory %s", dir.getName());
+        }
+        drain(pending);
+        return count[0];
+    }
+
+    /** 等待 pending 中的所有任务完成并清空列表 */
+    private void drain(List<Future<?>> pending) {
+        for (Future<?> future : pending) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw Utils.error("fsck interrupted.");
+            } catch (ExecutionException e) {
+                throw Utils.error("fsck failed: %s", e.getCause());
+            }
+        }
+        pending.clear();
+    }
+
+    /** 检查单个 commit 文件：能否读取、ID 是否匹配、父提交是否存在，并记录其引用的 blob */
+    private void checkCommit(String name, File file) {
+        Commit commit;
+        try {
+            commit = Commit.decode(name, ObjectStore.read(commitDir, name));
+        } catch (IllegalArgumentException e) {
+            fail(CORRUPT, "corrupt commit %s", name);
+            return;
+        }
+        if (!commit.idMatches()) {
+            fail(CORRUPT, "hash mismatch commit %s", name);
+        }
+        // 浅克隆边界上的 commit 本来就没有拉取父提交
+        for (String parentId : commitManager.getParentIds(commit)) {
+            if (!ObjectStore.contains(commitDir, parentId)) {
+                fail(MISSING, "missing parent %s of commit %s", parentId, name);
+            }
+        }
+        for (Map.Entry<String, String> entry : commit.getTrackedFile().entrySet()) {
+            referencedBlobs.putIfAbsent(entry.getValue(), entry.getKey());
+        }
+    }
+
+    /** 检查单个 blob 文件：按文件内容重新计算哈希 */
+    private void checkBlob(String hash, File file) {
+        presentBlobs.add(hash);
+        if (!referencedBlobs.containsKey(hash)) {
+            dangling.add("dangling blob " + hash);
+            return;
+        }
+        try {
+            // pack 中的对象没有单独的文件，读出内容计算
+            String actual = file.isFile() ? sha1Of(file.toPath())
+                    : Utils.sha1((Object) ObjectStore.read(blobDir, hash));
+            if (!hash.equals(actual)) {
+                fail(CORRUPT, "hash mismatch blob %s", hash);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            fail(CORRUPT, "corrupt blob %s", hash);
+        }
+    }
+
+    /**
+     * 以流的方式计算文件内容的 sha1，与 Utils.fileHashIn 的结果一致，
+     * 但不需要把整个文件读入内存。
+     */
+    private static String sha1Of(Path path) throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("System does not support SHA-1");
+        }
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(path)) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                md.update(buffer, 0, n);
+            }
+        }
+        StringBuilder hex = new StringBuilder(Utils.UID_LENGTH);
+        for (byte b : md.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+            hex.append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * 检查分支头和索引中的 commit 是否存在，并从所有分支头遍历提交图，
+     * 找出不可达（悬空）的 commit。
+     */
+    private void checkConnectivity() {
+        Set<String> reachable = new HashSet<>();
+        Deque<String> stack = new ArrayDeque<>();
+        for (Map.Entry<String, String> branch : commitManager.getBranchMap().entrySet()) {
+            if (!ObjectStore.contains(commitDir, branch.getValue())) {
+                fail(MISSING, "missing commit %s (branch %s)", branch.getValue(), branch.getKey());
+            } else {
+                stack.push(branch.getValue());
+            }
+        }
+        while (!stack.isEmpty()) {
+            String id = stack.pop();
+            if (!reachable.add(id) || !ObjectStore.contains(commitDir, id)) {
+                continue;
+            }
+            try {
+                stack.addAll(Commit.decode(id, ObjectStore.read(commitDir, id)).getParentIds());
+            } catch (IllegalArgumentException e) {
+                // 已在 checkCommit 中报告
+            }
+        }
+        for (String id : commitManager.getAllCommits().keySet()) {
+            if (!ObjectStore.contains(commitDir, id)) {
+                fail(MISSING, "missing commit %s", id);
+            } else if (!reachable.contains(id)) {
+                dangling.add("dangling commit " + id);
+            }
+        }
+    }
+
+    /** 记录一个问题，并把对应的标志位并入退出码 */
+    private synchronized void fail(int flag, String msg, Object... args) {
+        problems.add(String.format(msg, args));
+        status |= flag;
+    }
+
+    /** 按字典序打印所有问题和悬空对象，最后打印汇总信息 */
+    private void report() {
+        List<String> lines = new ArrayList<>(problems);
+        Collections.sort(lines);
+        List<String> notes = new ArrayList<>(dangling);
+        Collections.sort(notes);
+        lines.addAll(notes);
+        for (String line : lines) {
+            Utils.message("%s", line);
+        }
+        Utils.message("Checked %d commits and %d blobs: %d problems found.",
+                commitCount, presentBlobs.size(), problems.size());
+    }
+}
@@ -0,0 +1,378 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.CRC32;
+
+/**
+ * .gitlet 元数据的预写日志（write-ahead journal）。
+ *
+ * 一条命令执行期间，对 CommitManager、FileManager、commit、blob 以及暂存区文件的
+ * 所有写入和删除都先缓存在内存中；之后的读取会优先看到缓存中的新内容。
+ * 命令结束时（commit），所有修改被编码成一条记录追加到 .gitlet/journal 中并 fsync，
+ * 然后逐个写入目标文件，把写入的文件和它们所在的目录（包括新建的分片目录）都 fsync 之后才清空日志，
+ * 保证日志被清空时修改已经全部落盘。
+ *
+ * 每条记录的格式为：长度(int) | 内容 | CRC32(long)，内容为：
+ * 条目数(int)，每个条目为 路径长度(int) | 路径 | 类型(byte，0 写入 / 1 删除) | 数据长度(int) | 数据。
+ * 路径相对于日志所在的 .gitlet 目录，仓库整体移动后仍然可以恢复。
+ *
+ * push 等命令会在持有远程仓库锁的期间修改远程仓库。远程仓库通过 attach 登记，
+ * 它的修改写入它自己的日志，只会在持有它的锁时被恢复（参见 LockManager.acquire）。
+ *
+ * 下次命令启动时（recover）：
+ * - 完整且校验通过的记录说明修改已经持久化，但可能没有全部写入目标文件，重新执行（redo）；
+ * - 不完整或校验失败的尾部记录说明崩溃发生在 fsync 之前，目标文件还没有被修改，直接丢弃（回滚）。
+ * 目标文件只会在记录持久化之后才被修改，因此元数据不会出现只更新了一半的状态。
+ */
+class Journal {
+
+    /** 条目类型：写入 */
+    private static final byte WRITE = 0;
+
+    /** 条目类型：删除 */
+    private static final byte DELETE = 1;
+
+    /** 表示待删除文件的标记，按引用比较 */
+    private static final byte[] TOMBSTONE = new byte[0];
+
+    /** 当前事务中尚未写入磁盘的修改：目标文件 -> 新内容（或 TOMBSTONE） */
+    private static final Map<File, byte[]> PENDING = new ConcurrentHashMap<>();
+
+    /** 日志文件路径，为 null 时表示没有进行中的事务，所有写入直接落盘 */
+    private static File journalFile;
+
+    /** 本次事务涉及的 .gitlet 目录（绝对路径），第一个是本仓库 */
+    private static final List<File> ROOTS = new CopyOnWriteArrayList<>();
+
+    /**
+     * 开始一个事务，之后的写入都会被缓存，直到调用 commit。
+     *
+     * @param file 日志文件路径
+     */
+    static void begin(File file) {
+        journalFile = file;
+        PENDING.clear();
+        ROOTS.clear();
+        ROOTS.add(key(file.getParentFile()));
+    }
+
+    /**
+     * 登记本次事务会修改的另一个仓库，调用者需要持有它的锁。
+     * 之后对 gitletDir 中文件的修改会写入 gitletDir 自己的日志。
+     *
+     * @param gitletDir 另一个仓库的 .gitlet 目录
+     */
+    static void attach(File gitletDir) {
+        File root = key(gitletDir);
+        if (journalFile != null && !ROOTS.contains(root)) {
+            ROOTS.add(root);
+        }
+    }
+
+    /**
+     * 写入文件。事务进行中时缓存修改，否则直接写入。
+     *
+     * @param file 目标文件
+     * @param contents 字符串或字节数组，参见 Utils.writeContents
+     */
+    static void write(File file, Object... contents) {
+        if (journalFile == null) {
+            file.getAbsoluteFile().getParentFile().mkdirs();
+            Utils.writeContents(file, contents);
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (Object obj : contents) {
+            byte[] data = (obj instanceof byte[])
+                    ? (byte[]) obj : ((String) obj).getBytes(StandardCharsets.UTF_8);
+            bytes.write(data, 0, data.length);
+        }
+        PENDING.put(key(file), bytes.toByteArray());
+    }
+
+    /** 删除文件。事务进行中时缓存删除操作，否则直接删除。 */
+    static void delete(File file) {
+        if (journalFile == null) {
+            file.delete();
+            return;
+        }
+        PENDING.put(key(file), TOMBSTONE);
+    }
+
+    /** 删除 dir 中的所有普通文件，包括事务中新写入但尚未落盘的文件。 */
+    static void clean(File dir) {
+        List<String> files = Utils.plainFilenamesIn(dir);
+        if (files != null) {
+            for (String file : files) {
+                delete(Utils.join(dir, file));
+            }
+        }
+        File parent = key(dir);
+        for (File file : PENDING.keySet()) {
+            if (parent.equals(file.getParentFile())) {
+                PENDING.put(file, TOMBSTONE);
+            }
+        }
+    }
+
+    /** 读取文件内容，优先返回事务中尚未落盘的新内容。 */
+    static byte[] read(File file) {
+        byte[] data = PENDING.get(key(file));
+        if (data == null) {
+            Profiler.count(Profiler.Counter.JOURNAL_MISSES, 1);
+            return Utils.readContents(file);
+        }
+        Profiler.count(Profiler.Counter.JOURNAL_HITS, 1);
+        if (data == TOMBSTONE) {
+            throw new IllegalArgumentException("must be a normal file");
+        }
+        return data;
+    }
+
+    /** 判断文件是否存在，考虑事务中尚未落盘的写入和删除。 */
+    static boolean exists(File file) {
+        byte[] data = PENDING.get(key(file));
+        if (data == null) {
+            return file.isFile();
+        }
+        return data != TOMBSTONE;
+    }
+
+    /**
+     * 提交事务中的所有修改：每个涉及的仓库各追加一条日志记录并 fsync，
+     * 然后写入目标文件，等它们落盘后再清空日志。
+     * 提交后事务仍然有效，之后的修改会进入下一条记录。没有修改时不做任何磁盘操作。
+     */
+    static void commit() {
+        if (journalFile == null || PENDING.isEmpty()) {
+            return;
+        }
+        try (Profiler.Phase p = Profiler.phase("journal-commit")) {
+            Map<File, Map<File, byte[]>> byRoot = splitByRoot(PENDING);
+            for (Map.Entry<File, Map<File, byte[]>> entry : byRoot.entrySet()) {
+                append(journalOf(entry.getKey()), encode(entry.getKey(), entry.getValue()));
+            }
+            for (Map<File, byte[]> changes : byRoot.values()) {
+                apply(changes);
+            }
+            PENDING.clear();
+            for (File root : byRoot.keySet()) {
+                truncate(journalOf(root));
+            }
+        }
+    }
+
+    /** 返回 .gitlet 目录 root 中的日志文件 */
+    private static File journalOf(File root) {
+        return new File(root, journalFile.getName());
+    }
+
+    /** 按所属的 .gitlet 目录拆分修改，不属于任何登记目录的文件归入本仓库 */
+    private static Map<File, Map<File, byte[]>> splitByRoot(Map<File, byte[]> changes) {
+        Map<File, Map<File, byte[]>> byRoot = new LinkedHashMap<>();
+        for (Map.Entry<File, byte[]> entry : changes.entrySet()) {
+            File owner = ROOTS.get(0);
+            for (File root : ROOTS) {
+                if (entry.getKey().toPath().startsWith(root.toPath())
+                        && root.getPath().length() > owner.getPath().length()) {
+                    owner = root;
+                }
+            }
+            byRoot.computeIfAbsent(owner, r -> new LinkedHashMap<>())
+                    .put(entry.getKey(), entry.getValue());
+        }
+        return byRoot;
+    }
+
+    /** 把一条记录追加到日志 file 的末尾并 fsync */
+    private static void append(File file, byte[] record) {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(record));
+            channel.force(true);
+            Profiler.count(Profiler.Counter.BYTES_WRITTEN, record.length);
+        } catch (IOException e) {
+            throw Utils.error("Could not write journal: %s", e.getMessage());
+        }
+    }
+
+    /**
+     * 恢复上次未完成的命令：重新执行日志中所有完整的记录，丢弃不完整的尾部记录，然后清空日志。
+     * 调用者需要持有日志所在仓库的锁。
+     *
+     * @param file 日志文件路径
+     */
+    static void recover(File file) {
+        if (!file.isFile() || file.length() == 0) {
+            return;
+        }
+        File root = key(file.getParentFile());
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            DataInputStream data = new DataInputStream(in);
+            while (true) {
+                Map<File, byte[]> changes = decode(data, root);
+                if (changes == null) {
+                    break;
+                }
+                apply(changes);
+            }
+        } catch (IOException e) {
+            throw Utils.error("Could not read journal: %s", e.getMessage());
+        }
+        truncate(file);
+    }
+
+    /**
+     * 把一组修改写入目标文件，再 fsync 写入的文件和所有被修改的目录（新建、删除文件的目录，
+     * 以及新建目录所在的目录），返回时这些修改都已经落盘。
+     */
+    private static void apply(Map<File, byte[]> changes) {
+        List<File> written = new ArrayList<>();
+        Set<File> dirs = new LinkedHashSet<>();
+        for (Map.Entry<File, byte[]> entry : changes.entrySet()) {
+            File file = entry.getKey();
+            File parent = file.getParentFile();
+            if (entry.getValue() == TOMBSTONE) {
+                if (file.delete()) {
+                    dirs.add(parent);
+                }
+                continue;
+            }
+            if (!parent.isDirectory()) {
+                parent.mkdirs();
+                dirs.add(parent.getParentFile());
+            }
+            if (!file.exists()) {
+                dirs.add(parent);
+            }
+            Utils.writeContents(file, entry.getValue());
+            written.add(file);
+        }
+        for (File file : written) {
+            force(file, StandardOpenOption.WRITE);
+        }
+        for (File dir : dirs) {
+            force(dir, StandardOpenOption.READ);
+        }
+    }
+
+    /** fsync 文件或目录 */
+    private static void force(File file, StandardOpenOption mode) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), mode)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // 有的平台不能打开目录，只能依赖文件系统自己的顺序保证
+            if (mode == StandardOpenOption.WRITE) {
+                throw Utils.error("Could not sync %s: %s", file.getPath(), e.getMessage());
+            }
+        }
+    }
+
+    /** 将一组修改编码为一条带长度和 CRC32 校验的日志记录，路径保存为相对 root 的路径 */
+    private static byte[] encode(File root, Map<File, byte[]> changes) {
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(body);
+            out.writeInt(changes.size());
+            for (Map.Entry<File, byte[]> entry : changes.entrySet()) {
+                String relative = root.toPath().relativize(entry.getKey().toPath()).toString();
+                byte[] path = relative.getBytes(StandardCharsets.UTF_8);
+                byte[] value = entry.getValue();
+                out.writeInt(path.length);
+                out.write(path);
+                out.writeByte(value == TOMBSTONE ? DELETE : WRITE);
+                out.writeInt(value.length);
+                out.write(value);
+            }
+            out.flush();
+            byte[] payload = body.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+
+            ByteArrayOutputStream record = new ByteArrayOutputStream(payload.length + 12);
+            DataOutputStream recordOut = new DataOutputStream(record);
+            recordOut.writeInt(payload.length);
+            recordOut.write(payload);
+            recordOut.writeLong(crc.getValue());
+            recordOut.flush();
+            return record.toByteArray();
+        } catch (IOException e) {
+            throw Utils.error("Could not encode journal: %s", e.getMessage());
+        }
+    }
+
+    /**
+     * 从 in 中读取下一条记录。
+     *
+     * @param root 日志所在的 .gitlet 目录，记录中的路径相对于它
+     * @return 记录中的修改；没有更多完整且校验通过的记录时返回 null
+     */
+    private static Map<File, byte[]> decode(DataInputStream in, File root) throws IOException {
+        byte[] payload;
+        long checksum;
+        try {
+            int length = in.readInt();
+            if (length < 0) {
+                return null;
+            }
+            payload = in.readNBytes(length);
+            if (payload.length < length) {
+                return null;
+            }
+            checksum = in.readLong();
+        } catch (EOFException e) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        if (crc.getValue() != checksum) {
+            return null;
+        }
+        DataInputStream body = new DataInputStream(new ByteArrayInputStream(payload));
+        int count = body.readInt();
+        Map<File, byte[]> changes = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            byte[] path = body.readNBytes(body.readInt());
+            byte type = body.readByte();
+            byte[] value = body.readNBytes(body.readInt());
+            changes.put(new File(root, new String(path, StandardCharsets.UTF_8)),
+                    type == DELETE ? TOMBSTONE : value);
+        }
+        return changes;
+    }
+
+    /** 清空日志文件 */
+    private static void truncate(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(0);
+        } catch (IOException e) {
+            // 记录是幂等的，清空失败时下次启动会再执行一遍
+        }
+    }
+
+    /** 统一使用绝对路径作为缓存的键 */
+    private static File key(File file) {
+        return file.getAbsoluteFile();
+    }
+}
@@ -0,0 +1,190 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基于 FileChannel.lock 的仓库锁，实现多读者 / 单写者。
+ *
+ * 锁加在 .gitlet/lock 文件上：
+ * - 只读命令（log、status 等）获取共享锁，多个只读命令可以同时运行，互不阻塞；
+ * - 其他会修改仓库的命令获取独占锁，与所有读者和其他写者互斥。
+ * 写者在持有独占锁期间完成 Journal 的提交，因此读者在共享锁下看到的元数据
+ * 始终是某条命令执行完毕后的完整快照，在读取期间不会改变。
+ *
+ * 若日志中还有上一条被中断的命令留下的记录，读者会改为获取独占锁，先完成恢复再继续。
+ *
+ * push、fetch、pull 还要锁定远程仓库。一条命令需要的所有仓库锁在命令开始前按规范路径的顺序一次性获取，
+ * 命令执行期间不再加锁：两个仓库之间方向相反的 push 和 fetch 同时运行时，
+ * 双方按同样的顺序等待，不会各自持有一把锁再等待对方的锁而死锁。
+ * 锁由操作系统管理，进程退出（包括异常退出）时会自动释放。
+ */
+class LockManager {
+
+    /** 锁文件名 */
+    private static final String LOCK_FILE = "lock";
+
+    /** 只读命令 */
+    private static final Set<String> READ_ONLY_COMMANDS =
+            Set.of("log", "global-log", "find", "status", "diff", "fsck", "fast-export");
+
+    /** 不需要锁的命令：init 时仓库还不存在，watch 是长期运行的进程，不能一直持有锁 */
+    private static final Set<String> UNLOCKED_COMMANDS = Set.of("init", "watch");
+
+    /** 本进程持有的锁。保留引用，避免通道被垃圾回收后锁被提前释放 */
+    private static final Set<Lock> HELD = ConcurrentHashMap.newKeySet();
+
+    /** 一个已获取的仓库锁 */
+    static class Lock implements AutoCloseable {
+        /** 被锁定仓库 .gitlet 目录的规范路径 */
+        private final String path;
+        /** 锁文件的通道 */
+        private final FileChannel channel;
+        /** 文件锁 */
+        private final FileLock lock;
+
+        private Lock(String path, FileChannel channel, FileLock lock) {
+            this.path = path;
+            this.channel = channel;
+            this.lock = lock;
+        }
+
+        /** 是否为共享锁 */
+        boolean isShared() {
+            return lock.isShared();
+        }
+
+        /** 释放锁 */
+        @Override
+        public void close() {
+            HELD.remove(this);
+            try {
+                lock.release();
+                channel.close();
+            } catch (IOException e) {
+                // 关闭通道失败时，锁会在进程退出时释放
+            }
+        }
+    }
+
+    /**
+     * 判断命令是否需要加锁。
+     *
+     * @param args 命令行参数
+     */
+    static boolean needsLock(String[] args) {
+        return !UNLOCKED_COMMANDS.contains(args[0]);
+    }
+
+    /**
+     * 判断命令是否只读，只读命令获取共享锁。gc --dry-run 和 sparse-checkout list 也不修改仓库。
+     *
+     * @param args 命令行参数
+     */
+    static boolean isReadOnly(String[] args) {
+        return READ_ONLY_COMMANDS.contains(args[0])
+                || (args[0].equals("gc") && Arrays.asList(args).contains("--dry-run"))
+                || (args[0].equals("sparse-checkout") && args.length == 2 && args[1].equals("list"));
+    }
+
+    /**
+     * 获取 gitletDir 仓库的锁，阻塞直到获取成功，并在锁内恢复上一条被中断的命令。
+     * 获取的是其他仓库的锁时，把它登记到当前事务中，参见 Journal.attach。
+     *
+     * @param gitletDir .gitlet 目录
+     * @param shared 是否获取共享锁
+     * @return 已获取的锁
+     */
+    static Lock acquire(File gitletDir, boolean shared) {
+        File journal = Utils.join(gitletDir, "journal");
+        Lock lock = lock(gitletDir, shared);
+        if (lock.isShared() && journal.length() > 0) {
+            // 共享锁无法升级，先释放再重新获取独占锁
+            lock.close();
+            lock = lock(gitletDir, false);
+        }
+        Journal.recover(journal);
+        // 持有锁期间对该仓库的修改写入它自己的日志
+        Journal.attach(gitletDir);
+        HELD.add(lock);
+        return lock;
+    }
+
+    /**
+     * 获取本仓库和 remotes 中各远程仓库的锁。所有锁按 .gitlet 目录规范路径的字典序依次获取，
+     * 同一目录只加一次锁，本仓库与远程仓库是同一目录、或有一方需要独占锁时获取独占锁。
+     *
+     * @param gitletDir 本仓库的 .gitlet 目录
+     * @param shared 本仓库是否只需共享锁
+     * @param remotes 远程仓库的 .gitlet 目录 -> 是否只需共享锁
+     */
+    static void acquireAll(File gitletDir, boolean shared, Map<File, Boolean> remotes) {
+        // 规范路径 -> 目录，同一目录保留先登记的写法，与事务中登记的仓库路径一致
+        Map<String, File> dirs = new TreeMap<>();
+        Map<String, Boolean> modes = new TreeMap<>();
+        dirs.put(canonicalPath(gitletDir), gitletDir);
+        modes.put(canonicalPath(gitletDir), shared);
+        for (Map.Entry<File, Boolean> remote : remotes.entrySet()) {
+            String path = canonicalPath(remote.getKey());
+            dirs.putIfAbsent(path, remote.getKey());
+            modes.merge(path, remote.getValue(), Boolean::logicalAnd);
+        }
+        for (Map.Entry<String, File> entry : dirs.entrySet()) {
+            acquire(entry.getValue(), modes.get(entry.getKey()));
+        }
+    }
+
+    /**
+     * 判断本进程是否持有 gitletDir 仓库的锁。
+     *
+     * @param gitletDir .gitlet 目录
+     * @param shared 为 false 时要求持有的是独占锁
+     */
+    static boolean holds(File gitletDir, boolean shared) {
+        String path = canonicalPath(gitletDir);
+        for (Lock lock : HELD) {
+            if (lock.path.equals(path) && (shared || !lock.isShared())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** 返回 gitletDir 的规范路径，同一仓库的不同写法（相对路径、符号链接）得到同一个结果 */
+    private static String canonicalPath(File gitletDir) {
+        try {
+            return gitletDir.getCanonicalPath();
+        } catch (IOException e) {
+            throw Utils.error("Could not lock repository: %s", e.getMessage());
+        }
+    }
+
+    /** 在 gitletDir/lock 上获取共享锁或独占锁 */
+    private static Lock lock(File gitletDir, boolean shared) {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(Utils.join(gitletDir, LOCK_FILE).toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            return new Lock(canonicalPath(gitletDir), channel,
+                    channel.lock(0, Long.MAX_VALUE, shared));
+        } catch (IOException e) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // 已经在报告更早的错误
+                }
+            }
+            throw Utils.error("Could not lock repository: %s", e.getMessage());
+        }
+    }
+}
@@ -11,15 +11,31 @@ public class Main {
      *  <COMMAND> <OPERAND1> <OPERAND2> ... 
      */
     public static void main(String[] args) {
+        int status = 0;
+        // --profile 或 GITLET_PROFILE 启用剖析，命令结束时把各阶段耗时和计数输出到标准错误
+        args = Profiler.start(args);
         try {
             if (args.length == 0) {
                 throw Utils.error("Please enter a command.");
             }
+            // 只读命令获取共享锁，其他命令获取独占锁，push、fetch、pull 同时锁定远程仓库；
+            // 每个仓库加锁后先恢复上一条被中断的命令，远程仓库登记到本条命令的事务中
+            Journal.begin(Repository.journalFile());
+            if (Repository.gitletDir().exists() && LockManager.needsLock(args)) {
+                try (Profiler.Phase p = Profiler.phase("lock")) {
+                    LockManager.acquireAll(Repository.gitletDir(), LockManager.isReadOnly(args),
+                            Repository.remotesToLock(args));
+                }
+            }
             switch (args[0]) {
                 case "init" -> {
                     validateArgs(args, 1, 1);
                     Repository.setup();
                 }
+                case "clone" -> {
+                    validateArgs(args, 2, 2);
+                    Repository.clone(args[1]);
+                }
                 case "add" -> {
                     validateArgs(args, 2, 2);
                     Repository.addFile(args[1]);
@@ -33,8 +49,8 @@ public class Main {
                     Repository.remove(args[1]);
                 }
                 case "log" -> {
-                    validateArgs(args, 1, 1);
-                    Repository.log();
+                    validateArgs(args, 1, 3);
+                    Repository.log(Arrays.copyOfRange(args, 1, args.length));
                 }
                 case "global-log" -> {
                     validateArgs(args, 1, 1);
@@ -45,8 +61,8 @@ public class Main {
                     Repository.find(args[1]);
                 }
                 case "status" -> {
-                    validateArgs(args, 1, 1);
-                    Repository.status();
+                    validateArgs(args, 1, 2);
+                    Repository.status(Arrays.copyOfRange(args, 1, args.length));
                 }
                 case "checkout" -> {
                     validateArgs(args, 2, 4);
@@ -69,6 +85,14 @@ public class Main {
                     validateArgs(args, 2, 2);
                     Repository.merge(args[1]);
                 }
+                case "cherry-pick" -> {
+                    validateArgs(args, 2, 2);
+                    Repository.cherryPick(args[1]);
+                }
+                case "rebase" -> {
+                    validateArgs(args, 2, 2);
+                    Repository.rebase(args[1]);
+                }
                 case "add-remote" -> {
                     validateArgs(args, 3, 3);
                     Repository.addRemote(args[1], args[2]);
@@ -82,19 +106,59 @@ public class Main {
                     Repository.push(args[1], args[2]);
                 }
                 case "fetch" -> {
-                    validateArgs(args, 3, 3);
-                    Repository.fetch(args[1], args[2]);
+                    validateArgs(args, 2, 5);
+                    Repository.fetch(Arrays.copyOfRange(args, 1, args.length));
                 }
                 case "pull" -> {
                     validateArgs(args, 3, 3);
                     Repository.pull(args[1], args[2]);
                 }
+                case "diff" -> {
+                    validateArgs(args, 1, 3);
+                    Repository.diff(Arrays.copyOfRange(args, 1, args.length));
+                }
+                case "gc" -> {
+                    validateArgs(args, 1, 3);
+                    Repository.gc(Arrays.copyOfRange(args, 1, args.length));
+                }
+                case "fsck" -> {
+                    validateArgs(args, 1, 1);
+                    status = Repository.fsck();
+                }
+                case "migrate-objects" -> {
+                    validateArgs(args, 1, 1);
+                    Repository.migrateObjects();
+                }
+                case "fast-import" -> {
+                    validateArgs(args, 1, 1);
+                    Repository.fastImport();
+                }
+                case "fast-export" -> {
+                    validateArgs(args, 1, 1);
+                    Repository.fastExport();
+                }
+                case "sparse-checkout" -> {
+                    validateArgs(args, 2, Integer.MAX_VALUE);
+                    Repository.sparseCheckout(Arrays.copyOfRange(args, 1, args.length));
+                }
+                case "watch" -> {
+                    validateArgs(args, 1, 2);
+                    Repository.watch(Arrays.copyOfRange(args, 1, args.length));
+                }
                 default -> throw Utils.error("No command with that name exists.");
             }
+            Journal.commit();
         } catch (GitletException e) {
+            // 报错前已经保存的修改照常提交，与逐个写文件时的行为保持一致
+            Journal.commit();
             System.out.println(e.getMessage());
+            Profiler.finish();
             System.exit(0);
         }
+        Profiler.finish();
+        if (status != 0) {
+            System.exit(status);
+        }
     }
 
     /**
@@ -111,7 +175,7 @@ public class Main {
         if (args[0].equals("checkout") && args.length > 2 && !Arrays.asList(args).contains("--")) {
             throw Utils.error("Incorrect operands.");
         }
-        if (!args[0].equals("init")) {
+        if (!args[0].equals("init") && !args[0].equals("clone")) {
             validatePath();
         }
     }
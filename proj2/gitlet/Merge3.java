@@ -0,0 +1,130 @@
+package gitlet;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 基于 Diff 的逐行三方合并（diff3）。
+ *
+ * 分别计算 base -> ours 和 base -> theirs 的编辑，按 base 中的行号把两边的编辑排在一起，
+ * 相互重叠（或首尾相接）的编辑合并为一个区块：
+ * - 区块中只有一方的编辑：直接采用该方的内容；
+ * - 双方都有编辑且结果相同：采用该内容；
+ * - 双方结果不同：只对这个区块输出冲突标记。
+ * 区块之间未被修改的行原样保留，因此互不相干的修改会被自动合并。
+ */
+class Merge3 {
+
+    /** 一次三方合并的结果 */
+    static class Result {
+        /** 合并后的文本，冲突区块带有冲突标记 */
+        final String text;
+        /** 是否存在冲突区块 */
+        final boolean conflict;
+
+        Result(String text, boolean conflict) {
+            this.text = text;
+            this.conflict = conflict;
+        }
+    }
+
+    /**
+     * 以 base 为共同祖先合并 ours 和 theirs。
+     *
+     * @param base 共同祖先的文本
+     * @param ours 当前分支的文本
+     * @param theirs 目标分支的文本
+     * @return 合并结果
+     */
+    static Result merge(String base, String ours, String theirs) {
+        List<String> baseLines = Diff.splitLines(base);
+        List<String> ourLines = Diff.splitLines(ours);
+        List<String> theirLines = Diff.splitLines(theirs);
+        Diff.Interner interner = new Diff.Interner();
+        int[] b = interner.intern(baseLines);
+        int[] o = interner.intern(ourLines);
+        int[] t = interner.intern(theirLines);
+        List<Diff.Edit> ourEdits = Diff.diff(b, o);
+        List<Diff.Edit> theirEdits = Diff.diff(b, t);
+
+        StringBuilder out = new StringBuilder();
+        boolean conflict = false;
+        int i = 0;
+        int j = 0;
+        int pos = 0;        // base 中已经输出到的位置
+        int ourDelta = 0;   // 已处理的 ours 编辑造成的行号偏移
+        int theirDelta = 0; // 已处理的 theirs 编辑造成的行号偏移
+        while (i < ourEdits.size() || j < theirEdits.size()) {
+            // 以 base 中起点最小的编辑开始一个区块，吸收所有与之重叠或相接的编辑
+            boolean startOurs = j == theirEdits.size()
+                    || (i < ourEdits.size() && ourEdits.get(i).aStart <= theirEdits.get(j).aStart);
+            int lo = startOurs ? ourEdits.get(i).aStart : theirEdits.get(j).aStart;
+            int hi = lo;
+            int i0 = i;
+            int j0 = j;
+            while (true) {
+                if (i < ourEdits.size() && ourEdits.get(i).aStart <= hi) {
+                    hi = Math.max(hi, ourEdits.get(i).aEnd);
+                    i++;
+                } else if (j < theirEdits.size() && theirEdits.get(j).aStart <= hi) {
+                    hi = Math.max(hi, theirEdits.get(j).aEnd);
+                    j++;
+                } else {
+                    break;
+                }
+            }
+            appendLines(out, baseLines, pos, lo);
+            pos = hi;
+
+            int[] ourRange = range(ourEdits, i0, i, lo, hi, ourDelta);
+            int[] theirRange = range(theirEdits, j0, j, lo, hi, theirDelta);
+            ourDelta = ourRange[1] - hi;
+            theirDelta = theirRange[1] - hi;
+            if (j == j0) {
+                appendLines(out, ourLines, ourRange[0], ourRange[1]);
+            } else if (i == i0) {
+                appendLines(out, theirLines, theirRange[0], theirRange[1]);
+            } else if (Arrays.equals(o, ourRange[0], ourRange[1],
+                    t, theirRange[0], theirRange[1])) {
+                appendLines(out, ourLines, ourRange[0], ourRange[1]);
+            } else {
+                conflict = true;
+                out.append("<<<<<<< HEAD\n");
+                appendLines(out, ourLines, ourRange[0], ourRange[1]);
+                out.append("=======\n");
+                appendLines(out, theirLines, theirRange[0], theirRange[1]);
+                out.append(">>>>>>>\n");
+            }
+        }
+        appendLines(out, baseLines, pos, baseLines.size());
+        return new Result(out.toString(), conflict);
+    }
+
+    /**
+     * 计算 base 区块 [lo, hi) 在一方中对应的行范围。
+     *
+     * @param edits 该方相对 base 的编辑
+     * @param from 区块中该方第一个编辑的下标
+     * @param to 区块中该方最后一个编辑的下一个下标，from == to 表示该方在区块中没有编辑
+     * @param lo 区块在 base 中的起点
+     * @param hi 区块在 base 中的终点
+     * @param delta 区块之前的编辑造成的行号偏移
+     * @return {起点, 终点}
+     */
+    private static int[] range(List<Diff.Edit> edits, int from, int to,
+                               int lo, int hi, int delta) {
+        if (from == to) {
+            return new int[]{lo + delta, hi + delta};
+        }
+        Diff.Edit first = edits.get(from);
+        Diff.Edit last = edits.get(to - 1);
+        return new int[]{first.bStart - (first.aStart - lo), last.bEnd + (hi - last.aEnd)};
+    }
+
+    /** 把 lines[from, to) 原样追加到 out */
+    private static void appendLines(StringBuilder out, List<String> lines, int from, int to) {
+        for (int k = from; k < to; k++) {
+            out.append(lines.get(k));
+        }
+    }
+}
@@ -2,9 +2,16 @@ package gitlet;
 
 import java.io.File;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 负责将指定分支的提交（Commit）合并到当前分支。
@@ -13,7 +20,7 @@ import java.util.Set;
  * 1. 找出两个分支的分裂点（split point）：
  *    a. 若 split point 与目标分支相同，则合并无须执行，提示并返回。
  *    b. 若 split point 与当前分支相同，执行 fast-forward 合并。
- * 2. 针对三个 commit（split, current, given）所追踪的每个文件进行合并分析：
+ * 2. 针对三个 commit（split, current, given）所追踪的每个文件进行合并分析（按文件名有序归并三个快照，见 classify）：
  *    a. only given 修改：checkout → add
  *    b. only current 修改：不处理
  *    c. 修改一致或未改动：不处理
@@ -23,6 +30,11 @@ import java.util.Set;
  *    g. only current 删除：不处理
  *    h. 修改冲突情况：标记为冲突文件，后续处理
  * 3. 若发生冲突，生成冲突格式内容写入文件，并暂存该文件。
+ *    双方都修改了同一文件（1-2-3）时，先用 Merge3 逐行三方合并，互不重叠的修改会被自动合并，
+ *    只有真正重叠的区块才写入冲突标记；各文件的合并在线程池中并行计算，再依次写入工作区。
+ * 另外，合并前用 RenameDetector 分别检测 split -> current 和 split -> given 中的重命名。
+ * 若一方把文件从 A 重命名为 B，另一方修改了 A，则把另一方对 A 的修改三方合并到 B 上，
+ * 而不是当作“删除 A + 新增 B”产生冲突。
  * 4. 若存在未追踪文件将被覆盖，则提示错误并终止合并。
  * 5. 合并完成后，生成一条带有两个父提交的新 commit。
  * 6. 若处理了冲突，额外打印提示信息。
@@ -51,6 +63,12 @@ class MergeManager {
     /** 合并过程中发生冲突的文件集合 */
     private final Set<String> conflictFiles;
 
+    /** 需要跟随重命名合并的文件：新文件名 -> {split 中原文件, current 中的版本, given 中的版本} 的哈希值 */
+    private final Map<String, String[]> renamedFiles;
+
+    /** 参与了重命名合并、不再按状态编码单独处理的文件名 */
+    private final Set<String> renameHandled;
+
     /** 当前 Gitlet 仓库的工作目录 */
     private final File workingDir;
 
@@ -71,62 +89,159 @@ class MergeManager {
         this.checkoutFiles = new HashSet<>();
         this.removeFiles = new HashSet<>();
         this.conflictFiles = new HashSet<>();
+        this.renamedFiles = new TreeMap<>();
+        this.renameHandled = new HashSet<>();
         this.workingDir = workingDir;
         this.blobDir = blobDir;
     }
 
     /**
-     * 获取 split、current、given 三个提交中所有被追踪的文件集合。
+     * 对所有相关文件执行合并操作。
      *
-     * @return 文件名的集合
+     * @return 若所有文件合并成功（无未追踪冲突）返回 true，否则 false
      */
-    private Set<String> getAllFiles() {
-        HashSet<String> allFiles = new HashSet<>();
-        Set<String> splitPointTracked = splitPoint.getTrackedFile().keySet();
-        Set<String> currentCommitTracked = currentCommit.getTrackedFile().keySet();
-        Set<String> givenCommitTracked = givenCommit.getTrackedFile().keySet();
-        allFiles.addAll(splitPointTracked);
-        allFiles.addAll(currentCommitTracked);
-        allFiles.addAll(givenCommitTracked);
-        return allFiles;
+    boolean merge() {
+        detectRenames();
+        for (String target : renamedFiles.keySet()) {
+            if (untrackedFiles.contains(target)) {
+                return false;
+            }
+        }
+        return classify();
     }
 
     /**
-     * 对所有相关文件执行合并操作。
+     * 对 split、current、given 三个快照做一次有序归并（merge-join），按文件名顺序计算每个文件的状态编码并分类。
+     * 三个追踪文件映射都按文件名排序，各用一个迭代器向前推进即可对齐同名文件，
+     * 不复制映射，也不对每个文件分别查找，耗时与三个快照的文件总数成正比。
      *
-     * @return 若所有文件合并成功（无未追踪冲突）返回 true，否则 false
+     * @return 若不存在会被覆盖的未追踪文件返回 true，否则 false
      */
-    boolean merge() {
-        Set<String> files = getAllFiles();
-        for (String fileName : files) {
-            if (!merge(fileName)) {
+    boolean classify() {
+        Iterator<Map.Entry<String, String>> splitIt = splitPoint.trackedFiles().entrySet().iterator();
+        Iterator<Map.Entry<String, String>> currentIt = currentCommit.trackedFiles().entrySet().iterator();
+        Iterator<Map.Entry<String, String>> givenIt = givenCommit.trackedFiles().entrySet().iterator();
+        Map.Entry<String, String> split = next(splitIt);
+        Map.Entry<String, String> current = next(currentIt);
+        Map.Entry<String, String> given = next(givenIt);
+        while (split != null || current != null || given != null) {
+            // 三个迭代器当前位置中最小的文件名
+            String fileName = min(min(key(split), key(current)), key(given));
+            String splitHash = null;
+            String currentHash = null;
+            String givenHash = null;
+            if (split != null && split.getKey().equals(fileName)) {
+                splitHash = split.getValue();
+                split = next(splitIt);
+            }
+            if (current != null && current.getKey().equals(fileName)) {
+                currentHash = current.getValue();
+                current = next(currentIt);
+            }
+            if (given != null && given.getKey().equals(fileName)) {
+                givenHash = given.getValue();
+                given = next(givenIt);
+            }
+            if (!renameHandled.contains(fileName)
+                    && !classify(fileName, statusCode(splitHash, currentHash, givenHash))) {
                 return false;
             }
         }
         return true;
     }
 
+    /** 返回迭代器的下一个元素，没有时返回 null */
+    static Map.Entry<String, String> next(Iterator<Map.Entry<String, String>> it) {
+        return it.hasNext() ? it.next() : null;
+    }
+
+    /** 返回条目的文件名，条目为 null 时返回 null */
+    static String key(Map.Entry<String, String> entry) {
+        return entry == null ? null : entry.getKey();
+    }
+
+    /** 返回两个文件名中较小的一个，null 表示已经遍历完 */
+    static String min(String a, String b) {
+        if (a == null) {
+            return b;
+        }
+        return (b == null || a.compareTo(b) <= 0) ? a : b;
+    }
+
+    /**
+     * 检测两边的重命名。只有一方重命名、另一方修改了原文件时才需要特殊处理：
+     * - current 把 A 重命名为 B，given 修改了 A：B = merge(split A, current B, given A)；
+     * - given 把 A 重命名为 B，current 修改了 A：B = merge(split A, current A, given B)，并删除 A。
+     * 其余情况按状态编码处理即可得到正确结果。
+     */
+    private void detectRenames() {
+        Map<String, String> split = splitPoint.trackedFiles();
+        Map<String, String> current = currentCommit.trackedFiles();
+        Map<String, String> given = givenCommit.trackedFiles();
+        List<RenameDetector.Rename> ours = renamesBetween(split, current);
+        List<RenameDetector.Rename> theirs = renamesBetween(split, given);
+        Set<String> ourSources = new HashSet<>();
+        Set<String> theirSources = new HashSet<>();
+        ours.forEach(r -> ourSources.add(r.from));
+        theirs.forEach(r -> theirSources.add(r.from));
+
+        for (RenameDetector.Rename r : ours) {
+            String givHash = given.get(r.from);
+            if (!theirSources.contains(r.from) && givHash != null
+                    && !givHash.equals(split.get(r.from)) && !given.containsKey(r.to)) {
+                renamedFiles.put(r.to, new String[]{split.get(r.from), current.get(r.to), givHash});
+                renameHandled.add(r.from);
+                renameHandled.add(r.to);
+            }
+        }
+        for (RenameDetector.Rename r : theirs) {
+            String curHash = current.get(r.from);
+            if (!ourSources.contains(r.from) && curHash != null
+                    && !curHash.equals(split.get(r.from)) && !current.containsKey(r.to)) {
+                renamedFiles.put(r.to, new String[]{split.get(r.from), curHash, given.get(r.to)});
+                removeFiles.add(r.from);
+                renameHandled.add(r.from);
+                renameHandled.add(r.to);
+            }
+        }
+    }
+
+    /** 检测从 before 到 after 的重命名 */
+    private List<RenameDetector.Rename> renamesBetween(Map<String, String> before,
+                                                       Map<String, String> after) {
+        Map<String, String> deleted = new HashMap<>(before);
+        deleted.keySet().removeAll(after.keySet());
+        Map<String, String> added = new HashMap<>(after);
+        added.keySet().removeAll(before.keySet());
+        if (deleted.isEmpty() || added.isEmpty()) {
+            return List.of();
+        }
+        return RenameDetector.detect(deleted, added, this::readBlob,
+                RenameDetector.DEFAULT_THRESHOLD);
+    }
+
     /**
      * 根据指定文件在 split、current 和 given 提交中的状态编码，执行对应的合并操作。
+     * 状态编码 split-current-given 以三位十进制数表示，例如 1-1-2 为 112，0-0-1 为 1。
      * 具体逻辑：
      *   对于状态 "112" 或 "001"：如果该文件存在于未追踪文件集合中，则返回 false；否则，将其加入 checkoutFiles 集合。
      *   对于状态 "110"：将该文件加入 removeFiles 集合。
      *   对于状态 "123", "120", "102", "012"：如果该文件存在于未追踪文件集合中，则返回 false；否则，将其加入 conflictFiles 集合。
      *
      * @param fileName 要合并的文件名
+     * @param statusCode 状态编码
      * @return 若合并操作过程中不存在未追踪文件冲突，返回 true；否则返回 false
      */
-    private boolean merge(String fileName) {
-        String statusCode = statusCode(fileName);
+    private boolean classify(String fileName, int statusCode) {
         switch (statusCode) {
-            case "112", "001" -> {
+            case 112, 1 -> {
                 if (untrackedFiles.contains(fileName)) {
                     return false;
                 }
                 checkoutFiles.add(fileName);
             }
-            case "110" -> removeFiles.add(fileName);
-            case "123", "120", "102", "012" -> {
+            case 110 -> removeFiles.add(fileName);
+            case 123, 120, 102, 12 -> {
                 if (untrackedFiles.contains(fileName)) {
                     return false;
                 }
@@ -160,12 +275,8 @@ class MergeManager {
      | 0-1-2   | split 没有，双方都新增内容不同的同名文件        | 产生冲突                             |
      */
 
-    /** 计算并返回 fileName 的状态编码 */
-    private String statusCode(String fileName) {
-        String splitHash = splitPoint.getTrackedFile().get(fileName);
-        String currentHash = currentCommit.getTrackedFile().get(fileName);
-        String givenHash = givenCommit.getTrackedFile().get(fileName);
-
+    /** 由文件在三个提交中的 blob 哈希值（未追踪为 null）计算状态编码 */
+    static int statusCode(String splitHash, String currentHash, String givenHash) {
         // 计算 f 的高度：若 splitHash 不为 null，则 f 为 1，否则为 0
         int f = (splitHash != null) ? 1 : 0;
 
@@ -195,15 +306,20 @@ class MergeManager {
             }
         }
 
-        return String.format("%d%d%d", f, s, t);
+        return f * 100 + s * 10 + t;
     }
 
 
     /**
      * 执行 checkout 操作：将需要检出的文件从 givenCommit 还原到工作区，并添加到暂存区。
+     * 稀疏集合外的文件只加入暂存区，不写入工作区。
      */
     void doCheckout() {
         for (String fileName : checkoutFiles) {
+            if (!Repository.isInSparse(fileName)) {
+                Repository.stageFromCommit(givenCommit, fileName);
+                continue;
+            }
             Repository.checkout(new String[]{givenCommit.id(), "--", fileName});
             Repository.addFile(fileName);
         }
@@ -219,30 +335,82 @@ class MergeManager {
     }
 
     /**
-     * 处理冲突文件：将冲突文件以特定格式写入工作区并添加到暂存区。
+     * 处理冲突文件：并行计算每个文件的合并结果，再依次写入工作区并添加到暂存区。
+     * 能够逐行自动合并的文件会从 conflictFiles 中移除。
      */
     void handleConflict() {
-        for (String fileName : conflictFiles) {
-            String curHash = currentCommit.getTrackedFile().get(fileName);
-            String givHash = givenCommit.getTrackedFile().get(fileName);
-            String curContents = null;
-            String givContents = null;
-            if (curHash != null) {
-                curContents = Utils.readContentsAsString(Utils.join(blobDir, curHash));
-            }
-            if (givHash != null) {
-                givContents = Utils.readContentsAsString(Utils.join(blobDir, givHash));
+        Map<String, Merge3.Result> results = new ConcurrentHashMap<>();
+        conflictFiles.parallelStream().forEach(fileName ->
+                results.put(fileName, mergeFile(fileName)));
+        renamedFiles.entrySet().parallelStream().forEach(entry -> {
+            String[] hashes = entry.getValue();
+            results.put(entry.getKey(), Merge3.merge(readBlob(hashes[0]),
+                    readBlob(hashes[1]), readBlob(hashes[2])));
+        });
+        // 写入工作区和暂存区需要按顺序进行
+        for (Map.Entry<String, Merge3.Result> entry : new TreeMap<>(results).entrySet()) {
+            String fileName = entry.getKey();
+            Utils.writeContents(Utils.join(workingDir, fileName), entry.getValue().text);
+            Repository.addFile(fileName);
+            if (entry.getValue().conflict) {
+                conflictFiles.add(fileName);
+            } else {
+                conflictFiles.remove(fileName);
             }
+        }
+    }
 
-            String mergedContents = "<<<<<<< HEAD\n"
-                    + (curContents == null ? "" : curContents)
-                    + "=======\n"
-                    + (givContents == null ? "" : givContents)
-                    + ">>>>>>>\n";
-            Utils.writeContents(Utils.join(workingDir, fileName), mergedContents);
+    /** 读取哈希值为 hash 的 blob 内容 */
+    private String readBlob(String hash) {
+        return ObjectStore.readAsString(blobDir, hash);
+    }
 
-            Repository.addFile(fileName);
+    /**
+     * 计算冲突文件 fileName 的合并结果。双方都修改时逐行三方合并，
+     * 一方删除或 split 中不存在时，整个文件作为一个冲突区块。
+     *
+     * @param fileName 文件名
+     * @return 合并结果
+     */
+    private Merge3.Result mergeFile(String fileName) {
+        String splitHash = splitPoint.trackedHash(fileName);
+        String curHash = currentCommit.trackedHash(fileName);
+        String givHash = givenCommit.trackedHash(fileName);
+        String curContents = null;
+        String givContents = null;
+        if (curHash != null) {
+            curContents = ObjectStore.readAsString(blobDir, curHash);
         }
+        if (givHash != null) {
+            givContents = ObjectStore.readAsString(blobDir, givHash);
+        }
+        String splitContents = null;
+        if (splitHash != null && curContents != null && givContents != null) {
+            splitContents = ObjectStore.readAsString(blobDir, splitHash);
+        }
+        return mergeContents(splitContents, curContents, givContents);
+    }
+
+    /**
+     * 合并一个文件的三个版本（不存在时为 null）。三个版本都存在时逐行三方合并，
+     * 否则整个文件作为一个冲突区块。
+     *
+     * @param splitContents split 中的内容
+     * @param curContents current 中的内容
+     * @param givContents given 中的内容
+     * @return 合并结果
+     */
+    static Merge3.Result mergeContents(String splitContents, String curContents, String givContents) {
+        if (splitContents != null && curContents != null && givContents != null) {
+            return Merge3.merge(splitContents, curContents, givContents);
+        }
+
+        String mergedContents = "<<<<<<< HEAD\n"
+                + (curContents == null ? "" : curContents)
+                + "=======\n"
+                + (givContents == null ? "" : givContents)
+                + ">>>>>>>\n";
+        return new Merge3.Result(mergedContents, true);
     }
 
     /**
@@ -254,4 +422,19 @@ class MergeManager {
         return !conflictFiles.isEmpty();
     }
 
+    /** 返回需要从 given 检出的文件 */
+    Set<String> getCheckoutFiles() {
+        return Collections.unmodifiableSet(checkoutFiles);
+    }
+
+    /** 返回需要移除的文件 */
+    Set<String> getRemoveFiles() {
+        return Collections.unmodifiableSet(removeFiles);
+    }
+
+    /** 返回冲突文件 */
+    Set<String> getConflictFiles() {
+        return Collections.unmodifiableSet(conflictFiles);
+    }
+
 }
@@ -0,0 +1,233 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * fetch --all：并发地从所有远程仓库拉取所有分支。
+ *
+ * 每个远程仓库目录由线程池中的一个任务负责（同一目录配置了多个远程名时只读取一次），
+ * 任务在该仓库的共享锁下（命令开始时获取）从各分支头遍历远程历史，把本地没有的 commit 解码后登记到共享的 fetched 中，
+ * 并复制它们追踪的 blob。commit 和 blob 都按 ID 去重：多个远程共有的对象只由第一个认领它的任务读取和写入，
+ * 其他任务直接复用已解码的 commit 继续遍历。遍历期间只读取本地 CommitManager，不修改它。
+ *
+ * 所有任务结束后 apply 在单线程中一次性登记 commit、更新浅克隆边界和 远程名/分支名 引用，
+ * 再保存 CommitManager；这些修改与对象一起在命令结束时作为一条日志记录提交，
+ * 因此分支引用要么全部更新，要么（任一远程失败时）全部保持不变。
+ */
+class MultiFetcher {
+
+    /** 线程数上限。拉取主要等待磁盘 I/O，线程数可以多于处理器数 */
+    private static final int MAX_THREADS = 8;
+
+    /** 本地提交管理器 */
+    private final CommitManager localCM;
+
+    /** 本地 commit 对象目录 */
+    private final File commitDir;
+
+    /** 本地 blob 对象目录 */
+    private final File blobDir;
+
+    /** 本地没有浅克隆边界时，已有 commit 的历史完整，遍历到它们即可停止 */
+    private final boolean localComplete;
+
+    /** 本地没有、需要登记的 commit */
+    private final Map<String, Commit> fetched = new ConcurrentHashMap<>();
+
+    /** 被完整遍历（父提交也被遍历）的 commit，拉取后不是浅克隆边界 */
+    private final Set<String> complete = ConcurrentHashMap.newKeySet();
+
+    /** 在远程仓库中位于浅克隆边界上的 commit */
+    private final Set<String> boundary = ConcurrentHashMap.newKeySet();
+
+    /** 已被某个任务认领复制的 blob */
+    private final Set<String> claimedBlobs = ConcurrentHashMap.newKeySet();
+
+    /** 要更新的引用：远程名/分支名 -> 提交 ID */
+    private final Map<String, String> refs = new ConcurrentHashMap<>();
+
+    /** 构造 MultiFetcher 对象 */
+    MultiFetcher(CommitManager localCM, File commitDir, File blobDir) {
+        this.localCM = localCM;
+        this.commitDir = commitDir;
+        this.blobDir = blobDir;
+        this.localComplete = !localCM.hasShallow();
+    }
+
+    /**
+     * 并发拉取所有远程仓库，然后一次性应用到本地。
+     *
+     * @return 更新的引用数
+     */
+    int run() {
+        // 远程仓库目录 -> 指向它的远程名
+        Map<File, List<String>> remotes = new TreeMap<>();
+        for (Map.Entry<String, File> entry : new TreeMap<>(localCM.getRemoteRepos()).entrySet()) {
+            File dir = entry.getValue().getAbsoluteFile();
+            if (!dir.exists()) {
+                throw Utils.error("Remote directory not found.");
+            }
+            remotes.computeIfAbsent(dir, k -> new ArrayList<>()).add(entry.getKey());
+        }
+        if (remotes.isEmpty()) {
+            return 0;
+        }
+        int threads = Math.min(remotes.size(), MAX_THREADS);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (Map.Entry<File, List<String>> entry : remotes.entrySet()) {
+                tasks.add(pool.submit(() -> fetchFrom(entry.getKey(), entry.getValue())));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof GitletException) {
+                throw (GitletException) e.getCause();
+            }
+            throw Utils.error("Fetch failed: %s", e.getCause());
+        } catch (InterruptedException e) {
+            throw Utils.error("Fetch failed: %s", e.getMessage());
+        } finally {
+            pool.shutdown();
+        }
+        apply();
+        return refs.size();
+    }
+
+    /**
+     * 在持有远程仓库共享锁的情况下，从它的每个分支头遍历历史，记录 names 中每个远程名下的引用。
+     *
+     * @param remoteGitletDir 远程仓库的 .gitlet 目录
+     * @param names 指向该目录的远程名
+     */
+    private void fetchFrom(File remoteGitletDir, List<String> names) {
+        // 远程仓库的共享锁已在命令开始时获取（见 Repository.remotesToLock）
+        Repository.requireLock(remoteGitletDir, true);
+        try (Profiler.Phase p = Profiler.phase("fetch-remote")) {
+            CommitManager remoteCM = Repository.callCommitManager(
+                    Utils.join(remoteGitletDir, "CommitManager"));
+            File remoteBlobDir = Utils.join(remoteGitletDir, "blobs");
+            Set<String> visited = new HashSet<>();
+            for (Map.Entry<String, String> branch : new TreeMap<>(remoteCM.getBranchMap()).entrySet()) {
+                if (isRemoteTracking(remoteCM, branch.getKey())) {
+                    continue;
+                }
+                for (String name : names) {
+                    refs.put(name + "/" + branch.getKey(), branch.getValue());
+                }
+                walk(remoteCM, remoteBlobDir, branch.getValue(), visited);
+            }
+        }
+    }
+
+    /** 判断 branch 是否是远程仓库自己拉取得到的 远程名/分支名 引用，这些引用不再向下游传递 */
+    private static boolean isRemoteTracking(CommitManager remoteCM, String branch) {
+        int slash = branch.indexOf('/');
+        return slash > 0 && remoteCM.getRemoteRepos().containsKey(branch.substring(0, slash));
+    }
+
+    /**
+     * 从 tip 出发深度优先遍历远程历史，登记本地没有的 commit 并复制它们的 blob。
+     * 与单分支 fetch 相同：本地历史完整时遍历到本地已有的 commit 即停止，否则继续遍历以加深浅克隆边界；
+     * 遍历到远程的浅克隆边界为止。
+     */
+    private void walk(CommitManager remoteCM, File remoteBlobDir, String tip, Set<String> visited) {
+        Deque<String> stack = new ArrayDeque<>();
+        stack.push(tip);
+        while (!stack.isEmpty()) {
+            String id = stack.pop();
+            if (!visited.add(id)) {
+                continue;
+            }
+            boolean known = localCM.containsCommit(id);
+            if (known && localComplete) {
+                continue;
+            }
+            Commit commit = fetched.get(id);
+            if (commit == null) {
+                commit = remoteCM.getCommit(id);
+                if (commit == null) {
+                    continue;
+                }
+                if (!known && fetched.putIfAbsent(id, commit) == null) {
+                    copyBlobs(commit, remoteBlobDir);
+                }
+            }
+            if (remoteCM.isShallow(id)) {
+                boundary.add(id);
+                continue;
+            }
+            complete.add(id);
+            for (String parentId : commit.getParentIds()) {
+                if (!visited.contains(parentId)) {
+                    stack.push(parentId);
+                }
+            }
+        }
+    }
+
+    /** 复制 commit 追踪的、本地没有且没有被其他任务认领的 blob */
+    private void copyBlobs(Commit commit, File remoteBlobDir) {
+        for (String hash : commit.trackedFiles().values()) {
+            if (!ObjectStore.contains(blobDir, hash) && ObjectStore.contains(remoteBlobDir, hash)
+                    && claimedBlobs.add(hash)) {
+                ObjectStore.write(blobDir, hash, ObjectStore.read(remoteBlobDir, hash));
+            }
+        }
+    }
+
+    /** 登记拉取的 commit，更新浅克隆边界和引用，保存本地 CommitManager */
+    private void apply() {
+        for (Commit commit : new TreeMap<>(fetched).values()) {
+            if (localCM.recordCommit(commit)) {
+                commit.save(commitDir);
+            }
+        }
+        for (String id : complete) {
+            localCM.setShallow(id, false);
+        }
+        for (String id : boundary) {
+            if (complete.contains(id)) {
+                continue;
+            }
+            // 在所有远程中都位于边界上：父提交在本地没有完整历史时，记录为浅克隆边界
+            boolean parentsComplete = true;
+            for (String parentId : fetched.containsKey(id)
+                    ? fetched.get(id).getParentIds() : localCM.getCommit(id).getParentIds()) {
+                if (!localCM.containsCommit(parentId) || localCM.isShallow(parentId)) {
+                    parentsComplete = false;
+                }
+            }
+            localCM.setShallow(id, !parentsComplete);
+        }
+        for (Map.Entry<String, String> ref : new TreeMap<>(refs).entrySet()) {
+            localCM.setBranch(ref.getKey(), ref.getValue());
+        }
+        localCM.save();
+    }
+
+    /** 本次拉取新登记的 commit 数 */
+    int fetchedCommits() {
+        return fetched.size();
+    }
+
+    /** 本次拉取复制的 blob 数 */
+    int copiedBlobs() {
+        return claimedBlobs.size();
+    }
+}
@@ -0,0 +1,329 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * 松散对象（commit 和 blob）的查找层。
+ *
+ * 对象按 ID 的前两位十六进制字符分散到子目录中保存，例如 ID 为 "3fa1..." 的对象
+ * 保存在 dir/3f/a1... 中。这样单个目录中的文件数约为平铺存放时的 1/256，
+ * 避免文件系统在目录项过多时创建和查找变慢。
+ *
+ * 为兼容旧仓库，若对象目录中仍有平铺存放的文件，查找时在分片路径不存在的情况下
+ * 会回退到平铺路径 dir/ID（是否存在平铺文件每个目录只检查一次）；
+ * migrate 方法可以把平铺的对象一次性迁移到分片目录中。
+ * 批量导入的对象保存在 dir/pack 中的 pack 里（见 Pack），松散对象中找不到时再查找 pack；
+ * pack 中的对象只读，delete 只删除松散对象。
+ * clone 用 copy 把需要的对象从源仓库硬链接到本地，之后两个仓库各自独立，
+ * 任何一方执行 gc 都不会影响另一方。
+ * 其他类只通过这里的方法访问对象文件，不需要关心具体的目录布局。
+ * 写入和删除都经过 Journal，读取时能看到当前命令中尚未落盘的对象。
+ */
+class ObjectStore {
+
+    /** 分片目录名的长度（十六进制字符数） */
+    static final int FAN_OUT_LENGTH = 2;
+
+    /** pack 所在的子目录名 */
+    static final String PACK_DIR = "pack";
+
+    /** 缓存每个对象目录中是否还有未迁移的平铺对象 */
+    private static final Map<File, Boolean> LEGACY_DIRS = new ConcurrentHashMap<>();
+
+    /** migrate 时每批提交的最大字节数 */
+    private static final long MIGRATE_BATCH_BYTES = 16L << 20;
+
+    /** 缓存每个对象目录中已打开的 pack */
+    private static final Map<File, List<Pack>> PACKS = new ConcurrentHashMap<>();
+
+    /**
+     * 返回对象 id 在 dir 中的分片路径，不检查文件是否存在。
+     *
+     * @param dir 对象目录
+     * @param id 对象 ID
+     * @return 分片路径
+     */
+    static File locate(File dir, String id) {
+        if (id.length() <= FAN_OUT_LENGTH) {
+            return Utils.join(dir, id);
+        }
+        return Utils.join(dir, id.substring(0, FAN_OUT_LENGTH), id.substring(FAN_OUT_LENGTH));
+    }
+
+    /**
+     * 查找对象文件：优先返回分片路径，若不存在但旧的平铺路径存在，则返回平铺路径。
+     *
+     * @param dir 对象目录
+     * @param id 对象 ID
+     * @return 对象文件（可能不存在）
+     */
+    static File find(File dir, String id) {
+        File sharded = locate(dir, id);
+        if (sharded.isFile() || !hasLegacyObjects(dir)) {
+            return sharded;
+        }
+        File flat = Utils.join(dir, id);
+        return flat.isFile() ? flat : sharded;
+    }
+
+    /** 判断 dir 中是否存在对象 id（松散对象或 pack 中的对象） */
+    static boolean contains(File dir, String id) {
+        return Journal.exists(find(dir, id)) || packOf(dir, id) != null;
+    }
+
+    /** 读取对象 id 的全部内容 */
+    static byte[] read(File dir, String id) {
+        try (Profiler.Phase p = Profiler.phase("object-read")) {
+            Profiler.count(Profiler.Counter.OBJECTS_READ, 1);
+            File file = find(dir, id);
+            if (!Journal.exists(file)) {
+                Pack pack = packOf(dir, id);
+                if (pack != null) {
+                    byte[] bytes = pack.read(id);
+                    Profiler.count(Profiler.Counter.BYTES_READ, bytes.length);
+                    return bytes;
+                }
+            }
+            return Journal.read(file);
+        }
+    }
+
+    /** 以字符串形式读取对象 id 的全部内容 */
+    static String readAsString(File dir, String id) {
+        return new String(read(dir, id), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 将 contents 写入对象 id 的分片路径，分片目录在写入磁盘时按需创建。
+     *
+     * @param dir 对象目录
+     * @param id 对象 ID
+     * @param contents 字符串或字节数组，参见 Utils.writeContents
+     */
+    static void write(File dir, String id, Object... contents) {
+        Journal.write(locate(dir, id), contents);
+    }
+
+    /** 删除松散对象 id，pack 中的对象不受影响 */
+    static void delete(File dir, String id) {
+        Journal.delete(find(dir, id));
+    }
+
+    /**
+     * 把对象目录 source 中的对象 id 硬链接到 dir 中，不能建立硬链接时（例如跨文件系统）复制。
+     * pack 中的对象无法单独链接，读出后放入 packed，由调用者用 writePack 统一写成一个 pack。
+     * 与 writePack 一样绕过 Journal 直接落盘：对象按内容寻址，多出的对象不影响仓库。
+     *
+     * @param source 源对象目录
+     * @param dir 本地对象目录
+     * @param id 对象 ID
+     * @param packed 收集 pack 中的对象：对象 ID -> 内容
+     * @return 源中是否存在该对象
+     */
+    static boolean copy(File source, File dir, String id, SortedMap<String, byte[]> packed) {
+        if (!contains(source, id)) {
+            return false;
+        }
+        File target = locate(dir, id);
+        if (target.isFile() || packed.containsKey(id)) {
+            return true;
+        }
+        File file = find(source, id);
+        if (!file.isFile()) {
+            packed.put(id, read(source, id));
+            return true;
+        }
+        target.getParentFile().mkdirs();
+        try {
+            Files.createLink(target.toPath(), file.toPath());
+        } catch (IOException | UnsupportedOperationException e) {
+            try {
+                Files.copy(file.toPath(), target.toPath());
+            } catch (IOException copyError) {
+                throw Utils.error("Could not copy object %s: %s", id, copyError.getMessage());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 把 objects 作为一个新 pack 写入 dir，绕过 Journal 直接落盘。
+     * pack 在索引写入后才可见，写入前后仓库都是一致的；之后再由 Journal 提交引用这些对象的元数据。
+     *
+     * @param dir 对象目录
+     * @param objects 对象 ID -> 内容，按 ID 排序
+     */
+    static void writePack(File dir, SortedMap<String, byte[]> objects) {
+        if (objects.isEmpty()) {
+            return;
+        }
+        Pack pack = Pack.write(Utils.join(dir, PACK_DIR), objects);
+        List<Pack> packs = new ArrayList<>(packs(dir));
+        packs.add(pack);
+        PACKS.put(dir, packs);
+    }
+
+    /**
+     * 返回包含对象 id 的 pack，对象不在任何 pack 中时返回 null。
+     *
+     * @param dir 对象目录
+     * @param id 对象 ID
+     */
+    static Pack packOf(File dir, String id) {
+        for (Pack pack : packs(dir)) {
+            if (pack.contains(id)) {
+                return pack;
+            }
+        }
+        return null;
+    }
+
+    /** 返回 dir 中所有的 pack，第一次访问时读取全部索引 */
+    static List<Pack> packs(File dir) {
+        List<Pack> cached = PACKS.get(dir);
+        if (cached != null) {
+            Profiler.count(Profiler.Counter.PACK_HITS, 1);
+            return cached;
+        }
+        Profiler.count(Profiler.Counter.PACK_MISSES, 1);
+        return PACKS.computeIfAbsent(dir, d -> {
+            List<Pack> packs = new ArrayList<>();
+            File[] indexes = Utils.join(d, PACK_DIR).listFiles(
+                    (parent, name) -> name.endsWith(Pack.INDEX_SUFFIX));
+            if (indexes != null) {
+                Arrays.sort(indexes);
+                for (File index : indexes) {
+                    packs.add(Pack.open(index));
+                }
+            }
+            return packs;
+        });
+    }
+
+    /**
+     * 流式遍历 dir 中所有对象的 ID（包括尚未迁移的平铺对象和 pack 中的对象），顺序不确定。
+     * 每次只打开一个分片目录，不会一次性把全部文件名载入内存。
+     * 同时以松散对象和 pack 形式存在的对象只遍历一次。
+     *
+     * @param dir 对象目录
+     * @param action 对每个对象 ID 执行的操作
+     */
+    static void forEach(File dir, Consumer<String> action) {
+        try (DirectoryStream<Path> shards = Files.newDirectoryStream(dir.toPath())) {
+            for (Path entry : shards) {
+                String name = entry.getFileName().toString();
+                if (Files.isRegularFile(entry)) {
+                    action.accept(name);
+                } else if (isShard(entry)) {
+                    try (DirectoryStream<Path> objects = Files.newDirectoryStream(entry)) {
+                        for (Path object : objects) {
+                            if (Files.isRegularFile(object)) {
+                                action.accept(name + object.getFileName());
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        for (Pack pack : packs(dir)) {
+            for (String id : pack.ids()) {
+                if (!find(dir, id).isFile()) {
+                    action.accept(id);
+                }
+            }
+        }
+    }
+
+    /**
+     * 返回 dir 中所有对象 ID 的列表，按字典序排列。
+     *
+     * @param dir 对象目录
+     * @return 对象 ID 列表，目录不存在时返回空列表
+     */
+    static List<String> list(File dir) {
+        List<String> ids = new ArrayList<>();
+        if (dir.isDirectory()) {
+            forEach(dir, ids::add);
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    /**
+     * 将 dir 中所有平铺存放的对象移动到分片目录中。
+     * 与其他写入一样经过 Journal：每迁移 MIGRATE_BATCH_BYTES 字节提交一次，
+     * 中途崩溃时已提交的批次完整保留，其余对象仍留在平铺路径上，重新运行即可继续。
+     *
+     * 迁移只调整目录布局，不转换对象内容。平铺存放的仓库都创建于 commit 改用二进制编码之前，
+     * 其中以 Java 序列化保存的 commit 原样移动，之后由 Commit.decode 按旧格式读取。
+     *
+     * @param dir 对象目录
+     * @return 迁移的对象数量
+     */
+    static int migrate(File dir) {
+        List<String> flat = Utils.plainFilenamesIn(dir);
+        if (flat == null) {
+            return 0;
+        }
+        int moved = 0;
+        long pending = 0;
+        for (String id : flat) {
+            File source = Utils.join(dir, id);
+            File target = locate(dir, id);
+            // 内容寻址，分片路径上已有同名对象时内容相同，只删除多余的平铺副本
+            if (!target.isFile()) {
+                byte[] bytes = Utils.readContents(source);
+                Journal.write(target, bytes);
+                pending += bytes.length;
+            }
+            Journal.delete(source);
+            moved++;
+            if (pending >= MIGRATE_BATCH_BYTES) {
+                Journal.commit();
+                pending = 0;
+            }
+        }
+        Journal.commit();
+        LEGACY_DIRS.remove(dir);
+        PACKS.remove(dir);
+        return moved;
+    }
+
+    /** 判断 dir 中是否还有平铺存放的对象文件，结果按目录缓存 */
+    private static boolean hasLegacyObjects(File dir) {
+        return LEGACY_DIRS.computeIfAbsent(dir, d -> {
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(d.toPath())) {
+                for (Path entry : entries) {
+                    if (Files.isRegularFile(entry)) {
+                        return true;
+                    }
+                }
+            } catch (IOException e) {
+                return false;
+            }
+            return false;
+        });
+    }
+
+    /** 判断 path 是否为分片目录（名称为两位十六进制字符的目录） */
+    private static boolean isShard(Path path) {
+        String name = path.getFileName().toString();
+        return Files.isDirectory(path) && name.length() == FAN_OUT_LENGTH
+                && name.chars().allMatch(ch -> Character.digit(ch, 16) >= 0);
+    }
+}
@@ -0,0 +1,209 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedMap;
+
+/**
+ * 一个只读的对象包（pack），由 pack 文件和索引文件组成。
+ *
+ * 批量写入大量对象时，逐个创建松散对象文件的系统调用开销远大于写入内容本身，
+ * pack 把一批对象的内容依次写入同一个 .pack 文件，再写一个 .idx 索引：
+ * 魔数 | 对象数(int) | 按 ID 排序的（ID, 偏移量 long, 长度 int）。
+ * 读取时把索引载入内存，二分查找 ID 后按偏移量从 .pack 中读出内容。
+ *
+ * 写入时先写完并 fsync .pack，再写 .idx，两者都先写入临时文件再重命名；
+ * 只有 .idx 存在的 pack 才会被读取，因此崩溃时不会看到不完整的 pack。
+ * pack 写入后不再修改，其中的对象也不会被单独删除。
+ */
+class Pack {
+
+    /** pack 文件后缀 */
+    static final String PACK_SUFFIX = ".pack";
+
+    /** 索引文件后缀 */
+    static final String INDEX_SUFFIX = ".idx";
+
+    /** 索引文件的魔数和格式版本号 */
+    private static final byte[] MAGIC = {'G', 'L', 'P', 1};
+
+    /** pack 文件 */
+    private final File packFile;
+
+    /** 按字典序排列的对象 ID */
+    private final String[] ids;
+
+    /** 每个对象在 pack 文件中的偏移量 */
+    private final long[] offsets;
+
+    /** 每个对象的字节数 */
+    private final int[] lengths;
+
+    /** 读取 pack 文件的通道，按位置读取，可以被多个线程共享 */
+    private FileChannel channel;
+
+    private Pack(File packFile, String[] ids, long[] offsets, int[] lengths) {
+        this.packFile = packFile;
+        this.ids = ids;
+        this.offsets = offsets;
+        this.lengths = lengths;
+    }
+
+    /**
+     * 读取索引文件 indexFile 并打开对应的 pack。
+     *
+     * @param indexFile 索引文件
+     * @return pack 对象
+     * @throws IllegalArgumentException 索引文件损坏
+     */
+    static Pack open(File indexFile) {
+        String name = indexFile.getName();
+        File packFile = new File(indexFile.getParentFile(),
+                name.substring(0, name.length() - INDEX_SUFFIX.length()) + PACK_SUFFIX);
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(indexFile.toPath())))) {
+            if (!Arrays.equals(in.readNBytes(MAGIC.length), MAGIC)) {
+                throw new IllegalArgumentException("not a pack index " + name);
+            }
+            int count = in.readInt();
+            String[] ids = new String[count];
+            long[] offsets = new long[count];
+            int[] lengths = new int[count];
+            for (int i = 0; i < count; i++) {
+                ids[i] = in.readUTF();
+                offsets[i] = in.readLong();
+                lengths[i] = in.readInt();
+            }
+            return new Pack(packFile, ids, offsets, lengths);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("corrupt pack index " + name);
+        }
+    }
+
+    /**
+     * 把 objects 写成 packDir 中的一个新 pack。pack 名由其中所有对象 ID 的哈希值决定。
+     *
+     * @param packDir pack 目录，不存在时创建
+     * @param objects 对象 ID -> 内容，按 ID 排序
+     * @return 新写入的 pack
+     */
+    static Pack write(File packDir, SortedMap<String, byte[]> objects) {
+        packDir.mkdirs();
+        int count = objects.size();
+        String[] ids = objects.keySet().toArray(new String[0]);
+        long[] offsets = new long[count];
+        int[] lengths = new int[count];
+        String name = "pack-" + Utils.sha1(String.join("", ids));
+        File packFile = Utils.join(packDir, name + PACK_SUFFIX);
+        File indexFile = Utils.join(packDir, name + INDEX_SUFFIX);
+        try {
+            File tmp = Utils.join(packDir, name + PACK_SUFFIX + ".tmp");
+            try (FileOutputStream out = new FileOutputStream(tmp)) {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream(1 << 16);
+                long offset = 0;
+                int i = 0;
+                for (byte[] data : objects.values()) {
+                    offsets[i] = offset;
+                    lengths[i] = data.length;
+                    offset += data.length;
+                    i++;
+                    buffer.write(data);
+                    if (buffer.size() >= 1 << 16) {
+                        buffer.writeTo(out);
+                        buffer.reset();
+                    }
+                }
+                buffer.writeTo(out);
+                out.getFD().sync();
+            }
+            Files.move(tmp.toPath(), packFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+
+            ByteArrayOutputStream index = new ByteArrayOutputStream(count * 56 + 8);
+            DataOutputStream data = new DataOutputStream(index);
+            data.write(MAGIC);
+            data.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                data.writeUTF(ids[i]);
+                data.writeLong(offsets[i]);
+                data.writeInt(lengths[i]);
+            }
+            tmp = Utils.join(packDir, name + INDEX_SUFFIX + ".tmp");
+            try (FileOutputStream out = new FileOutputStream(tmp)) {
+                index.writeTo(out);
+                out.getFD().sync();
+            }
+            Files.move(tmp.toPath(), indexFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw Utils.error("Could not write pack %s: %s", name, e.getMessage());
+        }
+        return new Pack(packFile, ids, offsets, lengths);
+    }
+
+    /** 判断 pack 中是否有对象 id */
+    boolean contains(String id) {
+        return Arrays.binarySearch(ids, id) >= 0;
+    }
+
+    /**
+     * 读取对象 id 的内容。
+     *
+     * @param id 对象 ID
+     * @return 对象内容
+     * @throws IllegalArgumentException 对象不在 pack 中或 pack 文件无法读取
+     */
+    byte[] read(String id) {
+        int i = Arrays.binarySearch(ids, id);
+        if (i < 0) {
+            throw new IllegalArgumentException("object " + id + " not in pack");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(lengths[i]);
+        try {
+            FileChannel ch = channel();
+            long position = offsets[i];
+            while (buffer.hasRemaining()) {
+                int n = ch.read(buffer, position + buffer.position());
+                if (n < 0) {
+                    throw new IOException("truncated pack");
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("could not read " + packFile.getName());
+        }
+        return buffer.array();
+    }
+
+    /** 返回 pack 中所有对象的 ID，按字典序排列 */
+    List<String> ids() {
+        return Arrays.asList(ids);
+    }
+
+    /** 返回对象 id 的字节数 */
+    int length(String id) {
+        return lengths[Arrays.binarySearch(ids, id)];
+    }
+
+    /** 返回 pack 文件 */
+    File file() {
+        return packFile;
+    }
+
+    /** 按需打开 pack 文件的读取通道 */
+    private synchronized FileChannel channel() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(packFile.toPath(), StandardOpenOption.READ);
+        }
+        return channel;
+    }
+}
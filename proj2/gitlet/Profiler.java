@@ -0,0 +1,291 @@
+package gitlet;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 单条命令的性能剖析：记录各阶段耗时和 I/O、反序列化、哈希等计数。
+ *
+ * 用 --profile（文本）或 --profile=json 作为第一个参数，或设置环境变量 GITLET_PROFILE=1 / json 启用，
+ * 命令结束时把汇总输出到标准错误，不影响标准输出。
+ * 阶段用 try (Profiler.Phase p = Profiler.phase("名字")) 包围，可以嵌套：
+ * total 是包含子阶段的总耗时，self 是扣除子阶段后的耗时，同一线程上各阶段的 self 之和不超过命令总耗时。
+ *
+ * 同时每个阶段作为 JFR 事件 gitlet.Phase 发出，命令结束时发出带全部计数的 gitlet.Command 事件，
+ * 生产环境用 -XX:StartFlightRecording 运行即可在不加 --profile 的情况下归因延迟。
+ * 两者都未启用时 phase() 返回空操作对象，计数只做一次 volatile 读。
+ */
+class Profiler {
+
+    /** 计数器 */
+    enum Counter {
+        BYTES_READ("bytes-read"),
+        BYTES_WRITTEN("bytes-written"),
+        OBJECTS_READ("objects-read"),
+        OBJECTS_DESERIALIZED("objects-deserialized"),
+        COMMITS_DECODED("commits-decoded"),
+        HASHES("hashes"),
+        BYTES_HASHED("bytes-hashed"),
+        JOURNAL_HITS("journal-cache-hits"),
+        JOURNAL_MISSES("journal-cache-misses"),
+        PACK_HITS("pack-cache-hits"),
+        PACK_MISSES("pack-cache-misses"),
+        BLOOM_SKIPS("bloom-skips"),
+        BLOOM_FALSE_POSITIVES("bloom-false-positives");
+
+        /** 输出时使用的名字 */
+        private final String label;
+
+        Counter(String label) {
+            this.label = label;
+        }
+    }
+
+    /** 启用 --profile 的命令行参数 */
+    private static final String FLAG = "--profile";
+
+    /** 启用剖析的环境变量 */
+    private static final String ENV = "GITLET_PROFILE";
+
+    /** 不记录任何内容的阶段 */
+    private static final Phase NOOP = new Phase(null);
+
+    /** 各计数器的值 */
+    private static final LongAdder[] COUNTS = new LongAdder[Counter.values().length];
+
+    /** 阶段名 -> 统计 */
+    private static final Map<String, PhaseStats> PHASES = new ConcurrentHashMap<>();
+
+    /** 每个线程上正在执行的阶段 */
+    private static final ThreadLocal<Deque<Phase>> STACK = ThreadLocal.withInitial(ArrayDeque::new);
+
+    /** 是否记录（--profile 或 JFR 事件启用） */
+    private static volatile boolean active;
+
+    /** 是否在命令结束时输出汇总 */
+    private static boolean report;
+
+    /** 汇总是否使用 JSON 格式 */
+    private static boolean json;
+
+    /** 命令名 */
+    private static String command;
+
+    /** 命令开始时间 */
+    private static long startNanos;
+
+    /** 整条命令的 JFR 事件，持续时间即命令耗时 */
+    private static CommandEvent commandEvent;
+
+    static {
+        for (int i = 0; i < COUNTS.length; i++) {
+            COUNTS[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * 根据 --profile 参数和 GITLET_PROFILE 环境变量决定是否启用剖析，返回去掉 --profile 后的参数。
+     *
+     * @param args 命令行参数
+     * @return 剩余的命令行参数
+     */
+    static String[] start(String[] args) {
+        String mode = System.getenv(ENV);
+        if (args.length > 0 && (args[0].equals(FLAG) || args[0].startsWith(FLAG + "="))) {
+            mode = args[0].equals(FLAG) ? "text" : args[0].substring(FLAG.length() + 1);
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+        report = mode != null && !mode.isEmpty() && !mode.equals("0");
+        json = "json".equals(mode);
+        commandEvent = new CommandEvent();
+        active = report || commandEvent.isEnabled() || new PhaseEvent().isEnabled();
+        command = args.length > 0 ? args[0] : "";
+        commandEvent.begin();
+        startNanos = System.nanoTime();
+        return args;
+    }
+
+    /** 计数器 counter 增加 n */
+    static void count(Counter counter, long n) {
+        if (active) {
+            COUNTS[counter.ordinal()].add(n);
+        }
+    }
+
+    /** 开始一个阶段，用 try-with-resources 结束 */
+    static Phase phase(String name) {
+        if (!active) {
+            return NOOP;
+        }
+        Phase phase = new Phase(name);
+        STACK.get().push(phase);
+        return phase;
+    }
+
+    /** 命令结束：发出 JFR 命令事件，需要时把汇总输出到标准错误 */
+    static void finish() {
+        if (!active) {
+            return;
+        }
+        long elapsed = System.nanoTime() - startNanos;
+        CommandEvent event = commandEvent;
+        if (event.shouldCommit()) {
+            event.command = command;
+            event.bytesRead = value(Counter.BYTES_READ);
+            event.bytesWritten = value(Counter.BYTES_WRITTEN);
+            event.objectsRead = value(Counter.OBJECTS_READ);
+            event.objectsDeserialized = value(Counter.OBJECTS_DESERIALIZED);
+            event.hashes = value(Counter.HASHES);
+            event.commit();
+        }
+        if (report) {
+            System.out.flush();
+            System.err.print(json ? toJson(elapsed) : toText(elapsed));
+            System.err.flush();
+        }
+        active = false;
+    }
+
+    /** 返回计数器的当前值 */
+    static long value(Counter counter) {
+        return COUNTS[counter.ordinal()].sum();
+    }
+
+    private static String toText(long elapsed) {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("=== Profile: %s %.3f ms ===%n", command, elapsed / 1e6));
+        out.append(String.format("%-24s %8s %12s %12s%n", "phase", "calls", "total ms", "self ms"));
+        for (Map.Entry<String, PhaseStats> entry : new TreeMap<>(PHASES).entrySet()) {
+            PhaseStats stats = entry.getValue();
+            out.append(String.format("%-24s %8d %12.3f %12.3f%n", entry.getKey(),
+                    stats.calls.sum(), stats.total.sum() / 1e6, stats.self.sum() / 1e6));
+        }
+        out.append(String.format("%-24s %8s%n", "counter", "value"));
+        for (Counter counter : Counter.values()) {
+            out.append(String.format("%-24s %8d%n", counter.label, value(counter)));
+        }
+        return out.toString();
+    }
+
+    private static String toJson(long elapsed) {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("{\"command\":\"%s\",\"elapsedNanos\":%d,\"phases\":{", command, elapsed));
+        String separator = "";
+        for (Map.Entry<String, PhaseStats> entry : new TreeMap<>(PHASES).entrySet()) {
+            PhaseStats stats = entry.getValue();
+            out.append(String.format("%s\"%s\":{\"calls\":%d,\"totalNanos\":%d,\"selfNanos\":%d}",
+                    separator, entry.getKey(), stats.calls.sum(), stats.total.sum(), stats.self.sum()));
+            separator = ",";
+        }
+        out.append("},\"counters\":{");
+        separator = "";
+        for (Counter counter : Counter.values()) {
+            out.append(String.format("%s\"%s\":%d", separator, counter.label, value(counter)));
+            separator = ",";
+        }
+        return out.append("}}").append(System.lineSeparator()).toString();
+    }
+
+    /** 一个阶段的累计统计 */
+    private static class PhaseStats {
+        final LongAdder calls = new LongAdder();
+        final LongAdder total = new LongAdder();
+        final LongAdder self = new LongAdder();
+    }
+
+    /** 一次正在执行的阶段 */
+    static final class Phase implements AutoCloseable {
+
+        /** 阶段名，为 null 表示空操作 */
+        private final String name;
+
+        /** 开始时间 */
+        private final long begin;
+
+        /** 子阶段的总耗时 */
+        private long children;
+
+        /** JFR 事件 */
+        private final PhaseEvent event;
+
+        private Phase(String name) {
+            this.name = name;
+            if (name == null) {
+                this.begin = 0;
+                this.event = null;
+                return;
+            }
+            this.event = new PhaseEvent();
+            this.event.begin();
+            this.begin = System.nanoTime();
+        }
+
+        @Override
+        public void close() {
+            if (name == null) {
+                return;
+            }
+            long elapsed = System.nanoTime() - begin;
+            Deque<Phase> stack = STACK.get();
+            stack.remove(this);
+            Phase parent = stack.peek();
+            if (parent != null) {
+                parent.children += elapsed;
+            }
+            PhaseStats stats = PHASES.computeIfAbsent(name, k -> new PhaseStats());
+            stats.calls.increment();
+            stats.total.add(elapsed);
+            stats.self.add(elapsed - children);
+            if (event.shouldCommit()) {
+                event.name = name;
+                event.commit();
+            }
+        }
+    }
+
+    @Name("gitlet.Phase")
+    @Label("Gitlet Phase")
+    @Category("Gitlet")
+    @Description("A timed phase of a gitlet command")
+    static class PhaseEvent extends Event {
+        @Label("Phase")
+        String name;
+    }
+
+    @Name("gitlet.Command")
+    @Label("Gitlet Command")
+    @Category("Gitlet")
+    @Description("Totals for one gitlet command")
+    static class CommandEvent extends Event {
+        @Label("Command")
+        String command;
+
+        @Label("Bytes Read")
+        @DataAmount
+        long bytesRead;
+
+        @Label("Bytes Written")
+        @DataAmount
+        long bytesWritten;
+
+        @Label("Objects Read")
+        long objectsRead;
+
+        @Label("Objects Deserialized")
+        long objectsDeserialized;
+
+        @Label("Hashes")
+        long hashes;
+    }
+}
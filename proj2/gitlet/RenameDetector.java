@@ -0,0 +1,220 @@
+package gitlet;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * 基于 MinHash 和 LSH（局部敏感哈希）的重命名检测。
+ *
+ * 给定一组被删除的文件和一组新增的文件，找出内容相似的（删除, 新增）配对：
+ * 1. blob 哈希值相同的配对是完全相同的内容，直接作为 100% 相似的重命名；
+ * 2. 其余文件把每一行（连同它在文件中第几次出现）作为一个 shingle，
+ *    用 SKETCH_SIZE 个哈希函数计算 MinHash 签名，两个签名中相同位置取值相等的比例
+ *    近似于两个文件 shingle 集合的 Jaccard 相似度；
+ * 3. 把签名分成 BANDS 段，每段哈希后放入桶中，至少有一段完全相同的配对才成为候选，
+ *    因此不需要两两比较所有文件，耗时与文件数近似线性；
+ * 4. 对候选配对按行精确计算相似度，保留不低于阈值的配对，按相似度从高到低贪心匹配，
+ *    每个文件最多参与一次重命名。
+ */
+class RenameDetector {
+
+    /** 默认相似度阈值，与 git 的默认值一致 */
+    static final double DEFAULT_THRESHOLD = 0.5;
+
+    /** MinHash 签名长度 */
+    private static final int SKETCH_SIZE = 64;
+
+    /**
+     * LSH 分段数，每段 SKETCH_SIZE / BANDS = 2 个值。相似度阈值为 50% 时，两个等长文件的
+     * Jaccard 相似度约为 1/3，此时成为候选的概率约为 1 - (1 - (1/3)^2)^32 ≈ 97%。
+     */
+    private static final int BANDS = 32;
+
+    /** 每个哈希函数的种子 */
+    private static final long[] SEEDS = new long[SKETCH_SIZE];
+
+    static {
+        Random random = new Random(61);
+        for (int i = 0; i < SKETCH_SIZE; i++) {
+            SEEDS[i] = random.nextLong() | 1;
+        }
+    }
+
+    /** 一次重命名 */
+    static class Rename {
+        /** 原文件名 */
+        final String from;
+        /** 新文件名 */
+        final String to;
+        /** 相似度，0 到 1 之间 */
+        final double similarity;
+
+        Rename(String from, String to, double similarity) {
+            this.from = from;
+            this.to = to;
+            this.similarity = similarity;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s -> %s (%d%%)", from, to, (int) (similarity * 100));
+        }
+    }
+
+    /**
+     * 检测重命名。
+     *
+     * @param deleted 被删除的文件（文件名 -> blob 哈希值）
+     * @param added 新增的文件（文件名 -> blob 哈希值）
+     * @param content 根据 blob 哈希值读取文件内容
+     * @param threshold 相似度阈值
+     * @return 按原文件名排序的重命名列表
+     */
+    static List<Rename> detect(Map<String, String> deleted, Map<String, String> added,
+                               Function<String, String> content, double threshold) {
+        List<Rename> renames = new ArrayList<>();
+        Set<String> usedFrom = new HashSet<>();
+        Set<String> usedTo = new HashSet<>();
+
+        // 内容完全相同
+        Map<String, String> deletedByHash = new HashMap<>();
+        for (Map.Entry<String, String> entry : new TreeMap<>(deleted).entrySet()) {
+            deletedByHash.putIfAbsent(entry.getValue(), entry.getKey());
+        }
+        for (Map.Entry<String, String> entry : new TreeMap<>(added).entrySet()) {
+            String from = deletedByHash.remove(entry.getValue());
+            if (from != null) {
+                renames.add(new Rename(from, entry.getKey(), 1.0));
+                usedFrom.add(from);
+                usedTo.add(entry.getKey());
+            }
+        }
+
+        // 其余文件计算签名，按 LSH 分桶
+        List<String> fromNames = remaining(deleted, usedFrom);
+        List<String> toNames = remaining(added, usedTo);
+        if (!fromNames.isEmpty() && !toNames.isEmpty()) {
+            Map<String, Map<String, Integer>> lines = new HashMap<>();
+            Map<Long, List<String>> buckets = new HashMap<>();
+            for (String name : fromNames) {
+                Map<String, Integer> counts = lineCounts(content.apply(deleted.get(name)));
+                lines.put(name, counts);
+                long[] keys = bandKeys(sketch(counts));
+                for (long key : keys) {
+                    buckets.computeIfAbsent(key, k -> new ArrayList<>()).add(name);
+                }
+            }
+            List<Rename> candidates = new ArrayList<>();
+            for (String name : toNames) {
+                Map<String, Integer> counts = lineCounts(content.apply(added.get(name)));
+                Set<String> matches = new TreeSet<>();
+                for (long key : bandKeys(sketch(counts))) {
+                    matches.addAll(buckets.getOrDefault(key, List.of()));
+                }
+                for (String from : matches) {
+                    double similarity = similarity(lines.get(from), counts);
+                    if (similarity >= threshold) {
+                        candidates.add(new Rename(from, name, similarity));
+                    }
+                }
+            }
+            // 相似度高的优先，相同时按文件名保证结果确定
+            candidates.sort(Comparator.comparingDouble((Rename r) -> -r.similarity)
+                    .thenComparing(r -> r.from).thenComparing(r -> r.to));
+            for (Rename candidate : candidates) {
+                if (!usedFrom.contains(candidate.from) && !usedTo.contains(candidate.to)) {
+                    renames.add(candidate);
+                    usedFrom.add(candidate.from);
+                    usedTo.add(candidate.to);
+                }
+            }
+        }
+        renames.sort(Comparator.comparing(r -> r.from));
+        return renames;
+    }
+
+    /** 返回 files 中不在 used 里的文件名，按字典序排列 */
+    private static List<String> remaining(Map<String, String> files, Set<String> used) {
+        List<String> names = new ArrayList<>();
+        for (String name : new TreeSet<>(files.keySet())) {
+            if (!used.contains(name)) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+    /** 统计文本中每一行出现的次数 */
+    private static Map<String, Integer> lineCounts(String text) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (String line : Diff.splitLines(text)) {
+            counts.merge(line, 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    /**
+     * 计算 MinHash 签名。行的第 k 次出现作为独立的 shingle，使签名反映行的多重集合。
+     * 空文件返回 null。
+     */
+    private static long[] sketch(Map<String, Integer> counts) {
+        if (counts.isEmpty()) {
+            return null;
+        }
+        long[] mins = new long[SKETCH_SIZE];
+        Arrays.fill(mins, Long.MAX_VALUE);
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            long base = entry.getKey().hashCode();
+            for (int k = 0; k < entry.getValue(); k++) {
+                long shingle = base * 31 + k;
+                for (int i = 0; i < SKETCH_SIZE; i++) {
+                    long h = mix(shingle * SEEDS[i]);
+                    if (h < mins[i]) {
+                        mins[i] = h;
+                    }
+                }
+            }
+        }
+        return mins;
+    }
+
+    /** 把签名分段哈希，返回每段的桶键；签名为 null 时返回空数组 */
+    private static long[] bandKeys(long[] sketch) {
+        if (sketch == null) {
+            return new long[0];
+        }
+        int rows = SKETCH_SIZE / BANDS;
+        long[] keys = new long[BANDS];
+        for (int band = 0; band < BANDS; band++) {
+            long h = band;
+            for (int r = 0; r < rows; r++) {
+                h = mix(h * 31 + sketch[band * rows + r]);
+            }
+            keys[band] = h;
+        }
+        return keys;
+    }
+
+    /** 64 位整数混淆函数（SplitMix64 的最终步骤） */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /** 精确计算两个文件的相似度：共同的行数除以较长文件的行数 */
+    private static double similarity(Map<String, Integer> a, Map<String, Integer> b) {
+        int sizeA = 0;
+        int sizeB = 0;
+        int common = 0;
+        for (int count : a.values()) {
+            sizeA += count;
+        }
+        for (Map.Entry<String, Integer> entry : b.entrySet()) {
+            sizeB += entry.getValue();
+            common += Math.min(entry.getValue(), a.getOrDefault(entry.getKey(), 0));
+        }
+        int max = Math.max(sizeA, sizeB);
+        return max == 0 ? 0 : (double) common / max;
+    }
+}
@@ -0,0 +1,190 @@
+package gitlet;
+
+import java.io.File;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * 在内存中重放提交，供 cherry-pick 和 rebase 使用。
+ *
+ * 重放一个 commit 就是对三个快照做三方合并：base 为它的第一个父提交，ours 为当前的新基底，
+ * theirs 为这个 commit 本身。合并方式与 MergeManager 相同：按文件名有序归并三个快照，
+ * 由状态编码决定采用哪一方，双方都修改的文件用 Merge3 逐行合并，合并结果作为 blob 直接写入对象库。
+ * 整个过程只读写对象库，不读写工作区和暂存区，调用者在全部重放结束后一次性更新工作区。
+ *
+ * 连续重放时，上一步得到的 commit 就是下一步的基底，上一个被重放的 commit 通常就是下一个的 base，
+ * 都直接复用内存中的对象，因此每个被重放的 commit 只解码一次。
+ * 遇到第一个冲突即停止；结果与基底快照相同（修改已经存在于基底中）的 commit 被跳过。
+ * 不做重命名检测，一方重命名、另一方修改原文件时按冲突处理。
+ */
+class Replayer {
+
+    /** 一次重放的结果 */
+    static class Step {
+        /** 重放得到的快照，父提交为基底；有冲突时冲突文件的 blob 带有冲突标记，不会被保存 */
+        final Commit commit;
+        /** 冲突文件 */
+        final Set<String> conflicts;
+
+        Step(Commit commit, Set<String> conflicts) {
+            this.commit = commit;
+            this.conflicts = conflicts;
+        }
+    }
+
+    /** 提交管理器 */
+    private final CommitManager commitManager;
+
+    /** commit 对象目录 */
+    private final File commitDir;
+
+    /** blob 对象目录 */
+    private final File blobDir;
+
+    /** 上一次 replay 中产生冲突的一步，没有冲突时为 null */
+    private Step conflict;
+
+    /** 上一次 replay 停止的位置（产生冲突的 commit 的下标），没有冲突时为 commit 总数 */
+    private int stoppedAt;
+
+    /** 上一次 replay 中被跳过的 commit 数 */
+    private int skipped;
+
+    Replayer(CommitManager commitManager, File commitDir, File blobDir) {
+        this.commitManager = commitManager;
+        this.commitDir = commitDir;
+        this.blobDir = blobDir;
+    }
+
+    /**
+     * 依次把 commits 重放到 onto 之上，保存并登记新的 commit，但不移动任何分支。
+     *
+     * @param onto 基底
+     * @param commits 要重放的 commit，从旧到新排列
+     * @return 最后一个重放成功的 commit；一个都没有时返回 onto
+     */
+    Commit replay(Commit onto, List<Commit> commits) {
+        conflict = null;
+        stoppedAt = commits.size();
+        skipped = 0;
+        Commit tip = onto;
+        Commit previous = null;
+        try (Profiler.Phase p = Profiler.phase("replay")) {
+            for (int i = 0; i < commits.size(); i++) {
+                Commit commit = commits.get(i);
+                List<String> parents = commitManager.getParentIds(commit);
+                Commit base = null;
+                if (!parents.isEmpty()) {
+                    String baseId = parents.get(0);
+                    base = previous != null && previous.id().equals(baseId)
+                            ? previous : commitManager.getCommit(baseId);
+                }
+                previous = commit;
+                Step step = pick(tip, base, commit);
+                if (!step.conflicts.isEmpty()) {
+                    conflict = step;
+                    stoppedAt = i;
+                    break;
+                }
+                if (step.commit.trackedFiles().equals(tip.trackedFiles())) {
+                    skipped++;
+                    continue;
+                }
+                if (commitManager.recordCommit(step.commit)) {
+                    step.commit.save(commitDir);
+                }
+                tip = step.commit;
+            }
+        }
+        return tip;
+    }
+
+    /**
+     * 把 commit 相对 base 的修改合并到 onto 上，得到以 onto 为父提交的新快照。
+     *
+     * @param onto 基底
+     * @param base commit 的第一个父提交，根提交时为 null
+     * @param commit 要重放的 commit
+     * @return 重放结果
+     */
+    Step pick(Commit onto, Commit base, Commit commit) {
+        SortedMap<String, String> empty = new TreeMap<>();
+        Iterator<Map.Entry<String, String>> baseIt =
+                (base == null ? empty : base.trackedFiles()).entrySet().iterator();
+        Iterator<Map.Entry<String, String>> ontoIt = onto.trackedFiles().entrySet().iterator();
+        Iterator<Map.Entry<String, String>> commitIt = commit.trackedFiles().entrySet().iterator();
+        Map.Entry<String, String> b = MergeManager.next(baseIt);
+        Map.Entry<String, String> o = MergeManager.next(ontoIt);
+        Map.Entry<String, String> c = MergeManager.next(commitIt);
+        TreeMap<String, String> result = onto.getTrackedFile();
+        Set<String> conflicts = new TreeSet<>();
+        while (b != null || o != null || c != null) {
+            String fileName = MergeManager.min(MergeManager.min(MergeManager.key(b),
+                    MergeManager.key(o)), MergeManager.key(c));
+            String baseHash = null;
+            String ontoHash = null;
+            String commitHash = null;
+            if (b != null && b.getKey().equals(fileName)) {
+                baseHash = b.getValue();
+                b = MergeManager.next(baseIt);
+            }
+            if (o != null && o.getKey().equals(fileName)) {
+                ontoHash = o.getValue();
+                o = MergeManager.next(ontoIt);
+            }
+            if (c != null && c.getKey().equals(fileName)) {
+                commitHash = c.getValue();
+                c = MergeManager.next(commitIt);
+            }
+            switch (MergeManager.statusCode(baseHash, ontoHash, commitHash)) {
+                case 112, 1 -> result.put(fileName, commitHash);
+                case 110 -> result.remove(fileName);
+                case 123, 120, 102, 12 -> {
+                    Merge3.Result merged = MergeManager.mergeContents(
+                            baseHash == null ? null : read(baseHash),
+                            ontoHash == null ? null : read(ontoHash),
+                            commitHash == null ? null : read(commitHash));
+                    String hash = Utils.sha1(merged.text);
+                    if (!ObjectStore.contains(blobDir, hash)) {
+                        ObjectStore.write(blobDir, hash, merged.text);
+                    }
+                    result.put(fileName, hash);
+                    if (merged.conflict) {
+                        conflicts.add(fileName);
+                    }
+                }
+                default -> { }
+            }
+        }
+        ArrayList<String> parents = new ArrayList<>();
+        parents.add(onto.id());
+        return new Step(Commit.create(commit.getMessage(), Instant.now(), parents, result), conflicts);
+    }
+
+    /** 读取哈希值为 hash 的 blob 内容 */
+    private String read(String hash) {
+        return ObjectStore.readAsString(blobDir, hash);
+    }
+
+    /** 上一次 replay 中产生冲突的一步，没有冲突时为 null */
+    Step conflict() {
+        return conflict;
+    }
+
+    /** 上一次 replay 停止的位置 */
+    int stoppedAt() {
+        return stoppedAt;
+    }
+
+    /** 上一次 replay 中被跳过的 commit 数 */
+    int skipped() {
+        return skipped;
+    }
+}
@@ -35,10 +35,24 @@ class Repository {
     private static final File COMMIT_MANAGER = join(GITLET_DIR, "CommitManager");
     private static final File FILE_MANAGER = join(GITLET_DIR, "fileManager");
 
+    /** 工作目录监视器的状态目录 */
+    private static final File WATCH_DIR = join(GITLET_DIR, "watch");
+
+    /** 元数据预写日志 */
+    private static final File JOURNAL = join(GITLET_DIR, "journal");
+
+    /** 因浅克隆边界找不到公共祖先时的提示 */
+    private static final String SHALLOW_MESSAGE =
+            "No common ancestor within the shallow history; fetch with a larger --depth.";
+
     static File gitletDir() {
         return GITLET_DIR;
     }
 
+    static File journalFile() {
+        return JOURNAL;
+    }
+
     /**
      * 初始化版本库目录和初始提交。
      * 创建 .gitlet 目录及其子目录，并生成初始提交。
@@ -57,7 +71,112 @@ class Repository {
         new CommitManager(COMMIT_MANAGER, COMMITS).save();
         // 传入工作区域各文件目录的路径，创建 fileManager，保存
         new FileManager(FILE_MANAGER, CWD,
-                STAGING_BLOBS, BLOBS, COMMIT_MANAGER).save();
+                STAGING_BLOBS, BLOBS, COMMIT_MANAGER, WATCH_DIR).save();
+    }
+
+    /**
+     * 在当前目录中创建本地仓库 source 的克隆，并检出它的当前分支。
+     * 复制元数据（CommitManager 中的提交记录和分支、提交图），并把各分支可达的对象硬链接到本地
+     * （见 ObjectStore.copy），不复制对象内容，克隆的占用空间与对象的大小无关。
+     * 克隆不依赖源仓库的对象库，源仓库之后执行 gc 不会影响克隆。
+     * 源仓库登记为远程仓库 origin，并为它的每个分支创建 origin/分支名。
+     *
+     * @param source 源仓库目录，或其中的 .gitlet 目录
+     */
+    static void clone(String source) {
+        if (GITLET_DIR.exists()) {
+            throw Utils.error("A Gitlet version-control system "
+                    + "already exists in the current directory.");
+        }
+        File sourceDir = new File(source);
+        if (!sourceDir.isAbsolute()) {
+            sourceDir = join(CWD, source);
+        }
+        if (join(sourceDir, ".gitlet").isDirectory()) {
+            sourceDir = join(sourceDir, ".gitlet");
+        }
+        if (!join(sourceDir, "CommitManager").isFile()) {
+            throw error("Remote directory not found.");
+        }
+        sourceDir = sourceDir.toPath().normalize().toFile();
+        // 复制期间持有源仓库的共享锁；本地仓库还不存在，只有这一把锁，不涉及加锁顺序
+        LockManager.Lock sourceLock = LockManager.acquire(sourceDir, true);
+        try {
+            CommitManager sourceCM = callCommitManager(join(sourceDir, "CommitManager"));
+            Commit head = sourceCM.getHeadCommit();
+            // 会被检出覆盖的已有文件
+            for (String fileName : head.trackedFiles().keySet()) {
+                if (join(CWD, fileName).exists()) {
+                    throw error("There is an untracked file in the way; "
+                            + "delete it, or add and commit it first.");
+                }
+            }
+            GITLET_DIR.mkdir();
+            COMMITS.mkdir();
+            STAGING_BLOBS.mkdir();
+            BLOBS.mkdir();
+            File commitGraph = join(sourceDir, "commit-graph");
+            if (commitGraph.isFile()) {
+                Journal.write(join(GITLET_DIR, "commit-graph"), readContents(commitGraph));
+            }
+
+            CommitManager commitManager = new CommitManager(COMMIT_MANAGER, COMMITS, sourceCM);
+            commitManager.addRemoteRepo("origin", sourceDir);
+            for (Map.Entry<String, String> branch : sourceCM.getBranchMap().entrySet()) {
+                commitManager.setBranch("origin/" + branch.getKey(), branch.getValue());
+            }
+            Set<String> reachable = copyReachableObjects(sourceCM, sourceDir,
+                    commitManager.getBranchHeads());
+            for (String id : commitManager.getAllCommits().keySet()) {
+                if (!reachable.contains(id)) {
+                    commitManager.removeCommit(id);
+                }
+            }
+            commitManager.save();
+
+            FileManager fileManager = new FileManager(FILE_MANAGER, CWD,
+                    STAGING_BLOBS, BLOBS, COMMIT_MANAGER, WATCH_DIR);
+            fileManager.checkout(head);
+            fileManager.save();
+        } finally {
+            sourceLock.close();
+        }
+    }
+
+    /**
+     * 把源仓库中从 heads 可达的 commit 和它们追踪的 blob 复制到本地对象库。
+     * 浅克隆边界之外缺失的 commit 被跳过。
+     *
+     * @param sourceCM 源仓库的 CommitManager
+     * @param sourceDir 源仓库的 .gitlet 目录
+     * @param heads 克隆后的各分支最新提交
+     * @return 所有可达的 commit id
+     */
+    private static Set<String> copyReachableObjects(CommitManager sourceCM, File sourceDir,
+                                                    Set<String> heads) {
+        File sourceCommits = join(sourceDir, COMMITS.getName());
+        File sourceBlobs = join(sourceDir, BLOBS.getName());
+        TreeMap<String, byte[]> packedCommits = new TreeMap<>();
+        TreeMap<String, byte[]> packedBlobs = new TreeMap<>();
+        Set<String> reachable = new HashSet<>();
+        Deque<String> stack = new ArrayDeque<>(heads);
+        while (!stack.isEmpty()) {
+            String id = stack.pop();
+            if (!reachable.add(id)) {
+                continue;
+            }
+            Commit commit = sourceCM.getCommit(id);
+            if (commit == null || !ObjectStore.copy(sourceCommits, COMMITS, id, packedCommits)) {
+                continue;
+            }
+            for (String hash : commit.getTrackedFile().values()) {
+                ObjectStore.copy(sourceBlobs, BLOBS, hash, packedBlobs);
+            }
+            stack.addAll(commit.getParentIds());
+        }
+        ObjectStore.writePack(COMMITS, packedCommits);
+        ObjectStore.writePack(BLOBS, packedBlobs);
+        return reachable;
     }
 
     /**
@@ -66,7 +185,7 @@ class Repository {
      * @return CommitManager 管理器
      */
     static CommitManager callCommitManager(File path) {
-        return Utils.readObject(path, CommitManager.class);
+        return Utils.deserialize(Journal.read(path), CommitManager.class);
     }
 
     /**
@@ -75,7 +194,7 @@ class Repository {
      * @return FileManager 管理器
      */
     static FileManager callFileManager(File path) {
-        FileManager manager = Utils.readObject(path, FileManager.class);
+        FileManager manager = Utils.deserialize(Journal.read(path), FileManager.class);
         manager.updateFiles();
         return manager;
     }
@@ -172,22 +291,47 @@ class Repository {
     }
 
     /**
-     * 打印当前分支的提交历史，从 HEAD 回溯到初始提交。
+     * 打印当前分支的提交历史，从 HEAD 回溯到初始提交，或浅克隆边界上的提交。
+     * 带 "-- 文件名" 时只打印修改过该文件的提交，参见 CommitGraph。
+     *
+     * @param options 空，或 "--" 和文件名
      */
-    static void log() {
+    static void log(String[] options) {
+        if (options.length == 2 && options[0].equals("--")) {
+            logPath(options[1]);
+            return;
+        } else if (options.length != 0) {
+            throw error("Incorrect operands.");
+        }
         CommitManager manager = callCommitManager(COMMIT_MANAGER);
         Commit cur = manager.getHeadCommit();
 
-        while (true) {
-            // Print current commit details
-            printLog(cur);
-            // Determine the parent commit
-            List<String> parents = cur.getParentIds();
-            if (parents.isEmpty()) {
-                break;
+        try (Profiler.Phase p = Profiler.phase("graph-walk")) {
+            while (true) {
+                // Print current commit details
+                printLog(cur);
+                // Determine the parent commit
+                List<String> parents = manager.getParentIds(cur);
+                if (parents.isEmpty()) {
+                    break;
+                }
+                String parentId = parents.get(0);
+                cur = manager.getCommit(parentId);
             }
-            String parentId = cur.getParentIds().get(0);
-            cur = manager.getCommit(parentId);
+        }
+    }
+
+    /**
+     * 沿第一个父提交打印修改过文件 path（新增、修改或删除）的提交。
+     * 提交图中的 Bloom 过滤器可以排除大部分没有修改该文件的提交，不必读取它们的快照。
+     *
+     * @param path 文件名
+     */
+    private static void logPath(String path) {
+        CommitManager manager = callCommitManager(COMMIT_MANAGER);
+        CommitGraph graph = CommitGraph.load(GITLET_DIR);
+        for (Commit commit : graph.history(manager, manager.getHeadCommit().id(), path)) {
+            printLog(commit);
         }
     }
 
@@ -269,14 +413,16 @@ class Repository {
             }
             List<String> files = plainFilenamesIn(CWD);
             for (String fileName : files) {
-                if (fileManager.isNotTracking(head, fileName)
+                if (fileManager.isInSparse(fileName)
+                        && fileManager.isNotTracking(head, fileName)
                         && branchCommit.isTracking(fileName)) {
                     throw error("There is an untracked file in the way; "
                             + "delete it, or add and commit it first.");
                 }
             }
+            // 删除目标分支不追踪的文件，以及之前被手动写入工作区的稀疏集合外的文件
             for (String fileName : head.getTrackedFile().keySet()) {
-                if (!branchCommit.isTracking(fileName)) {
+                if (!branchCommit.isTracking(fileName) || !fileManager.isInSparse(fileName)) {
                     restrictedDelete(join(CWD, fileName));
                 }
             }
@@ -344,8 +490,15 @@ class Repository {
 
     /**
      * 展示当前所有状态，包括分支、暂存区、未追踪文件等。
+     * 带 --renames 选项时，额外列出暂存区中相对 HEAD 检测到的重命名。
+     *
+     * @param options 命令选项
      */
-    static void status() {
+    static void status(String[] options) {
+        boolean showRenames = options.length == 1 && options[0].equals("--renames");
+        if (options.length > 0 && !showRenames) {
+            throw error("Incorrect operands.");
+        }
         FileManager fileManager = callFileManager(FILE_MANAGER);
         CommitManager commitManager = callCommitManager(COMMIT_MANAGER);
         Commit head = commitManager.getHeadCommit();
@@ -355,9 +508,16 @@ class Repository {
         List<String> removedFiles = fileManager.getRemovedFiles();
         List<String> modifiedFiles = fileManager.getModifiedFiles(head);
         List<String> untrackedFiles = fileManager.getUntrackedFiles(head);
+        List<String> renamedFiles = null;
+        if (showRenames) {
+            renamedFiles = new ArrayList<>();
+            for (RenameDetector.Rename rename : fileManager.getStagedRenames(head)) {
+                renamedFiles.add(rename.toString());
+            }
+        }
 
         printStatus(headBranch, branches,
-                stagingFiles, removedFiles,
+                stagingFiles, removedFiles, renamedFiles,
                 modifiedFiles, untrackedFiles);
     }
 
@@ -368,6 +528,7 @@ class Repository {
      * @param branches      分支名称列表，包括所有分支名
      * @param stagingFiles  暂存文件列表
      * @param removedFiles  标记为已移除的文件列表
+     * @param renamedFiles  检测到的重命名列表，为 null 时不打印该部分
      * @param modifiedFiles 修改但未暂存的文件列表
      * @param untrackedFiles 未被追踪的文件列表
      */
@@ -375,6 +536,7 @@ class Repository {
                                     List<String> branches,
                                     List<String> stagingFiles,
                                     List<String> removedFiles,
+                                    List<String> renamedFiles,
                                     List<String> modifiedFiles,
                                     List<String> untrackedFiles) {
         // 打印分支信息
@@ -406,6 +568,15 @@ class Repository {
         }
         System.out.println(); // 空行
 
+        // 打印重命名信息
+        if (renamedFiles != null) {
+            message("=== Renamed Files ===");
+            for (String rename : renamedFiles) {
+                message("%s", rename);
+            }
+            System.out.println(); // 空行
+        }
+
         // 打印修改未暂存文件信息
         message("=== Modifications Not Staged For Commit ===");
         if (!modifiedFiles.isEmpty()) {
@@ -441,8 +612,8 @@ class Repository {
                     + "delete it, or add and commit it first.");
         }
         // 将工作区中的所有文件恢复成 commit 时的状态
-        // 1 清空工作区
-        clean(CWD);
+        // 1 清空工作区（启用稀疏检出时只清空稀疏集合内的文件）
+        fileManager.cleanWorkingDir();
         // 2 checkout
         fileManager.checkout(commit);
         // 3 重新设置 headCommit
@@ -488,6 +659,9 @@ class Repository {
         String hId = headCommit.id();
         String bId = branchCommit.id();
         Commit splitPoint = commitManager.findSplitPoint(commitManager, hId, bId);
+        if (splitPoint == null) {
+            throw error(SHALLOW_MESSAGE);
+        }
         if (splitPoint.id().equals(hId)) {
             checkout(new String[]{branch});
             message("Current branch fast-forwarded.");
@@ -525,6 +699,153 @@ class Repository {
         }
     }
 
+    /**
+     * 把提交 commitId 相对第一个父提交的修改重放到当前分支上，生成一个使用原提交信息的新提交。
+     * 重放在内存中完成（见 Replayer），最后一次性更新工作区。
+     * 有冲突时不创建提交：带冲突标记的结果写入工作区并暂存，由用户解决后提交。
+     *
+     * @param commitId 提交 ID 或其前缀
+     */
+    static void cherryPick(String commitId) {
+        FileManager fileManager = callFileManager(FILE_MANAGER);
+        CommitManager commitManager = callCommitManager(COMMIT_MANAGER);
+        if (!fileManager.getAddition().isEmpty() || !fileManager.getRemoval().isEmpty()) {
+            throw error("You have uncommitted changes.");
+        }
+        Commit commit = commitManager.getCommit(commitId);
+        if (commit == null) {
+            throw error("No commit with that id exists.");
+        }
+        Commit headCommit = commitManager.getHeadCommit();
+        Replayer replayer = new Replayer(commitManager, COMMITS, BLOBS);
+        Commit tip = replayer.replay(headCommit, List.of(commit));
+        if (replayer.conflict() == null && tip == headCommit) {
+            throw error("No changes added to the commit.");
+        }
+        finishReplay(fileManager, commitManager, headCommit, tip, replayer.conflict());
+    }
+
+    /**
+     * 把当前分支从与 branch 的分裂点开始的提交（沿第一个父提交）依次重放到 branch 上，
+     * 然后让当前分支指向重放的结果。合并提交按相对第一个父提交的修改重放，历史被拉直。
+     * 所有重放都在内存中完成，工作区只在最后更新一次。
+     * 遇到第一个冲突即停止：当前分支指向最后一个重放成功的提交，冲突结果写入工作区并暂存，
+     * 并列出尚未重放的提交，用户提交冲突解决结果后可以逐个 cherry-pick。
+     *
+     * @param branch 新的基底分支
+     */
+    static void rebase(String branch) {
+        FileManager fileManager = callFileManager(FILE_MANAGER);
+        CommitManager commitManager = callCommitManager(COMMIT_MANAGER);
+        if (!fileManager.getAddition().isEmpty() || !fileManager.getRemoval().isEmpty()) {
+            throw error("You have uncommitted changes.");
+        }
+        if (!commitManager.containsBranch(branch)) {
+            throw error("A branch with that name does not exist.");
+        }
+        if (branch.equals(commitManager.headBranch())) {
+            throw error("Cannot rebase a branch onto itself.");
+        }
+        Commit headCommit = commitManager.getHeadCommit();
+        Commit branchCommit = commitManager.getBranchCommit(branch);
+        Commit splitPoint = commitManager.findSplitPoint(commitManager,
+                headCommit.id(), branchCommit.id());
+        if (splitPoint == null) {
+            throw error(SHALLOW_MESSAGE);
+        }
+        if (splitPoint.id().equals(branchCommit.id())) {
+            message("Current branch is up to date.");
+            return;
+        }
+        if (splitPoint.id().equals(headCommit.id())) {
+            finishReplay(fileManager, commitManager, headCommit, branchCommit, null);
+            message("Current branch fast-forwarded.");
+            return;
+        }
+
+        // 沿第一个父提交收集要重放的提交，直到分裂点
+        List<Commit> commits = new ArrayList<>();
+        Commit cur = headCommit;
+        while (cur != null && !cur.id().equals(splitPoint.id())) {
+            commits.add(cur);
+            List<String> parents = commitManager.getParentIds(cur);
+            cur = parents.isEmpty() ? null : commitManager.getCommit(parents.get(0));
+        }
+        if (cur == null) {
+            // 分裂点只能经由第二个父提交到达：去掉已经包含在 branch 中的提交
+            Set<String> merged = commitManager.getAllAncestors(branchCommit.id());
+            commits.removeIf(c -> merged.contains(c.id()));
+        }
+        Collections.reverse(commits);
+
+        Replayer replayer = new Replayer(commitManager, COMMITS, BLOBS);
+        Commit tip = replayer.replay(branchCommit, commits);
+        finishReplay(fileManager, commitManager, headCommit, tip, replayer.conflict());
+        if (replayer.conflict() != null) {
+            List<Commit> rest = commits.subList(replayer.stoppedAt(), commits.size());
+            message("Stopped at %s.", rest.get(0).id());
+            if (rest.size() > 1) {
+                message("Not replayed:");
+                for (Commit commit : rest.subList(1, rest.size())) {
+                    message(commit.id());
+                }
+            }
+        }
+    }
+
+    /**
+     * 重放结束后一次性更新：当前分支指向 tip，工作区从 headCommit 的状态变为 tip 的状态。
+     * 若 conflict 不为 null，工作区改为冲突一步的结果，并把它相对 tip 的修改加入暂存区。
+     * 更新前先检查：会被覆盖的未追踪文件和未暂存的修改都会导致报错，此时什么都不改变。
+     *
+     * @param fileManager 文件管理器
+     * @param commitManager 提交管理器
+     * @param headCommit 重放前的 HEAD
+     * @param tip 当前分支的新位置
+     * @param conflict 产生冲突的一步，没有冲突时为 null
+     */
+    private static void finishReplay(FileManager fileManager, CommitManager commitManager,
+                                     Commit headCommit, Commit tip, Replayer.Step conflict) {
+        Commit target = conflict == null ? tip : conflict.commit;
+        List<String> changed = CommitGraph.changedPaths(headCommit, target);
+        for (String fileName : changed) {
+            if (!fileManager.isInSparse(fileName)) {
+                continue;
+            }
+            if (fileManager.isNotTracking(headCommit, fileName) && target.isTracking(fileName)) {
+                throw error("There is an untracked file in the way; "
+                        + "delete it, or add and commit it first.");
+            }
+            if (fileManager.hasModified(headCommit, fileName)
+                    || fileManager.hasDeleted(headCommit, fileName)) {
+                throw error("You have uncommitted changes.");
+            }
+        }
+        for (String fileName : changed) {
+            if (!fileManager.isInSparse(fileName)) {
+                continue;
+            }
+            if (target.isTracking(fileName)) {
+                fileManager.checkout(target, fileName);
+            } else {
+                fileManager.deleteWorking(fileName);
+            }
+        }
+        commitManager.setHeadCommit(tip.id());
+        if (conflict != null) {
+            for (String fileName : CommitGraph.changedPaths(tip, target)) {
+                if (target.isTracking(fileName)) {
+                    fileManager.stageFromCommit(target, fileName);
+                } else {
+                    fileManager.addToRemoval(fileName);
+                }
+            }
+            message("Encountered a merge conflict.");
+        }
+        fileManager.save();
+        commitManager.save();
+    }
+
     /**
      * 添加一个远程仓库。
      * 该方法会将远程仓库的名称和路径记录到本地 CommitManager 中。
@@ -577,7 +898,74 @@ class Repository {
         if (!remoteGitletDir.exists()) {
             throw error("Remote directory not found.");
         }
-        File remoteCMpath = join(remoteGitletDir, "CommitManager");
+        // 远程仓库的独占锁已在命令开始时获取（见 remotesToLock），对它的修改随本条命令的事务一起提交
+        requireLock(remoteGitletDir, false);
+        pushTo(localCM, join(remoteGitletDir, "CommitManager"), remoteBranchName);
+    }
+
+    /**
+     * 返回命令需要锁定的远程仓库：.gitlet 目录 -> 是否只需共享锁。
+     * push 修改远程仓库，需要独占锁；fetch、pull 只读取远程仓库。
+     * 远程仓库列表在本仓库的共享锁下读取，命令执行时再用 requireLock 确认列表没有在加锁前被修改。
+     *
+     * @param args 命令行参数
+     */
+    static Map<File, Boolean> remotesToLock(String[] args) {
+        Set<String> names = new HashSet<>();
+        boolean all = false;
+        switch (args[0]) {
+            case "push", "pull" -> {
+                if (args.length > 1) {
+                    names.add(args[1]);
+                }
+            }
+            case "fetch" -> {
+                for (int i = 1; i < args.length; i++) {
+                    if (args[i].equals("--depth")) {
+                        i++;
+                    } else if (args[i].equals("--all")) {
+                        all = true;
+                    } else {
+                        names.add(args[i]);
+                        break;
+                    }
+                }
+            }
+            default -> {
+                return Map.of();
+            }
+        }
+        Map<String, File> remotes;
+        LockManager.Lock lock = LockManager.acquire(GITLET_DIR, true);
+        try {
+            remotes = callCommitManager(COMMIT_MANAGER).getRemoteRepos();
+        } finally {
+            lock.close();
+        }
+        Map<File, Boolean> result = new HashMap<>();
+        for (Map.Entry<String, File> remote : remotes.entrySet()) {
+            if ((all || names.contains(remote.getKey())) && remote.getValue().exists()) {
+                result.put(remote.getValue(), !args[0].equals("push"));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 确认命令开始时已经锁定了 remoteGitletDir。远程仓库列表在加锁前被其他命令修改时，
+     * 需要的仓库可能没有被锁定，此时放弃本条命令，而不是在执行期间加锁（可能与其他命令死锁）。
+     *
+     * @param remoteGitletDir 远程仓库的 .gitlet 目录
+     * @param shared 是否只需共享锁
+     */
+    static void requireLock(File remoteGitletDir, boolean shared) {
+        if (!LockManager.holds(remoteGitletDir, shared)) {
+            throw error("Remote repositories changed while waiting for locks; try again.");
+        }
+    }
+
+    /** 在持有远程仓库锁的情况下，把本地 HEAD 推送到 remoteCMpath 所在仓库的 remoteBranchName 分支 */
+    private static void pushTo(CommitManager localCM, File remoteCMpath, String remoteBranchName) {
         CommitManager remoteCM = callCommitManager(remoteCMpath);
 
         // 检查 remoteCM 是否存在 remoteBranchName，没有则创建，并设置为 HEAD
@@ -594,7 +982,7 @@ class Repository {
         Commit splitPoint = localCM.findSplitPoint(remoteCM, rmId, lcId);
 
         // 如果 splitPoint 不是 remoteCM 的 HEAD commit，报错
-        if (!remoteHead.id().equals(splitPoint.id())) {
+        if (splitPoint == null || !remoteHead.id().equals(splitPoint.id())) {
             throw error("Please pull down remote changes before pushing.");
         }
         // 从 localCM 的 HEAD commit 开始，直到 split point（不包括），执行 remoteCM.addCommit(commit)
@@ -609,22 +997,70 @@ class Repository {
         remoteCM.save();
     }
 
+    /**
+     * 解析 fetch 命令的参数：[--depth N] [remote name] [remote branch name]，
+     * 或 --all：并发拉取所有远程仓库的所有分支（见 MultiFetcher），不支持 --depth。
+     *
+     * @param options 命令选项
+     */
+    static void fetch(String[] options) {
+        List<String> names = new ArrayList<>();
+        int depth = 0;
+        for (int i = 0; i < options.length; i++) {
+            if (options[i].equals("--depth") && i + 1 < options.length && depth == 0) {
+                try {
+                    depth = Integer.parseInt(options[++i]);
+                } catch (NumberFormatException e) {
+                    throw error("Incorrect operands.");
+                }
+                if (depth <= 0) {
+                    throw error("Incorrect operands.");
+                }
+            } else {
+                names.add(options[i]);
+            }
+        }
+        if (names.contains("--all")) {
+            if (names.size() != 1 || depth != 0) {
+                throw error("Incorrect operands.");
+            }
+            new MultiFetcher(callCommitManager(COMMIT_MANAGER), COMMITS, BLOBS).run();
+            return;
+        }
+        if (names.size() != 2) {
+            throw error("Incorrect operands.");
+        }
+        fetch(names.get(0), names.get(1), depth);
+    }
+
     /**
      * 从远程仓库拉取指定分支的提交记录和相关 blob 文件。
      * 拉取后，本地将创建一个名为 remoteName/remoteBranchName 的分支，
      * 其 HEAD 指向远程分支最新的提交。
+     * depth 大于 0 时只拉取距离分支头 depth 代以内的提交，最早的一代记录为浅克隆边界；
+     * 之后以更大的 depth（或不限深度）再次拉取会加深已有的浅历史。
      *
      * @param remoteName        远程仓库名称
      * @param remoteBranchName  远程分支名称
+     * @param depth             拉取的代数，0 表示不限
      */
-    static void fetch(String remoteName, String remoteBranchName) {
+    static void fetch(String remoteName, String remoteBranchName, int depth) {
         // 打开远程仓库和本地仓库各自的 commitManager 和 fileManager
         CommitManager localCM = callCommitManager(COMMIT_MANAGER);
         FileManager localFM = callFileManager(FILE_MANAGER);
         File remoteGitletDir = localCM.getRemoteRepos().get(remoteName);
-        if (!remoteGitletDir.exists()) {
+        if (remoteGitletDir == null || !remoteGitletDir.exists()) {
             throw error("Remote directory not found.");
         }
+        // 远程仓库的共享锁已在命令开始时获取（见 remotesToLock）
+        requireLock(remoteGitletDir, true);
+        fetchFrom(localCM, localFM, remoteGitletDir, remoteName, remoteBranchName, depth);
+    }
+
+    /** 在持有远程仓库锁的情况下，从 remoteGitletDir 仓库拉取 remoteBranchName 分支 */
+    private static void fetchFrom(CommitManager localCM, FileManager localFM,
+                                  File remoteGitletDir, String remoteName,
+                                  String remoteBranchName, int depth) {
         File remoteCMpath = join(remoteGitletDir, "CommitManager");
         File remoteFMpath = join(remoteGitletDir, "fileManager");
         CommitManager remoteCM = callCommitManager(remoteCMpath);
@@ -632,12 +1068,7 @@ class Repository {
         if (!remoteCM.containsBranch(remoteBranchName)) {
             throw error("That remote does not have that branch.");
         }
-
-        // 查询 remoteCM 指定的分支上的 commit 和 localCM 的 HEAD commit 之间的 split point
         Commit remoteBranchCommit = remoteCM.getBranchCommit(remoteBranchName);
-        Commit localHead = localCM.getHeadCommit();
-        Commit splitPoint = remoteCM.findSplitPoint(localCM,
-                localHead.id(), remoteBranchCommit.id());
 
         // 保存 localFM 原活跃分支名以备最后复原
         String orinBranch = localCM.headBranch();
@@ -649,17 +1080,43 @@ class Repository {
         }
         localCM.changeHeadTo(remoteBranch);
 
-        // localCM 从 remoteCM 中复制所有从 remoteBranchCommit 回溯到 splitPoint（不包括）的所有 commit
-        // localFM 从 remoteFM 中复制对应的 blob 文件
-        Commit cur = remoteBranchCommit;
-        while (!cur.id().equals(splitPoint.id())) {
+        // 从 remoteBranchCommit 开始按代数广度优先遍历远程历史，复制 commit 和对应的 blob 文件。
+        // 本地没有浅克隆边界时，本地已有的 commit 历史完整，不必继续向上遍历；
+        // 否则需要继续遍历，以便加深它们下方的边界。
+        boolean localComplete = !localCM.hasShallow();
+        Map<String, Integer> generation = new HashMap<>();
+        Queue<String> queue = new LinkedList<>();
+        generation.put(remoteBranchCommit.id(), 0);
+        queue.add(remoteBranchCommit.id());
+        while (!queue.isEmpty()) {
+            String id = queue.poll();
+            if (localComplete && localCM.containsCommit(id)) {
+                continue;
+            }
+            Commit cur = remoteCM.getCommit(id);
             localCM.addCommit(cur);
-            Map<String, String> trackingFiles = cur.getTrackedFile();
-            for (String blobName : trackingFiles.values()) {
+            for (String blobName : cur.getTrackedFile().values()) {
                 localFM.fetchBlobFrom(remoteFM, blobName);
             }
-            String parentId = cur.getParentIds().get(0);
-            cur = remoteCM.getCommit(parentId);
+            int gen = generation.get(id);
+            if ((depth > 0 && gen + 1 >= depth) || remoteCM.isShallow(id)) {
+                // 到达深度限制：父提交在本地没有完整历史时，记录为浅克隆边界
+                boolean complete = true;
+                for (String parentId : cur.getParentIds()) {
+                    if (!localCM.containsCommit(parentId) || localCM.isShallow(parentId)) {
+                        complete = false;
+                    }
+                }
+                localCM.setShallow(id, !complete);
+                continue;
+            }
+            localCM.setShallow(id, false);
+            for (String parentId : cur.getParentIds()) {
+                if (!generation.containsKey(parentId)) {
+                    generation.put(parentId, gen + 1);
+                    queue.add(parentId);
+                }
+            }
         }
         // 最后设置 HEAD 指向最新 commit
         localCM.setHeadCommit(remoteBranchCommit.id());
@@ -677,7 +1134,191 @@ class Repository {
      * @param remoteBranchName  远程分支名称
      */
     static void pull(String remoteName, String remoteBranchName) {
-        fetch(remoteName, remoteBranchName);
+        fetch(remoteName, remoteBranchName, 0);
         merge(remoteName + "/" + remoteBranchName);
     }
+
+    /**
+     * 以 unified 格式显示文件差异，支持的形式：
+     * - diff：暂存区与工作区；
+     * - diff --cached：HEAD 与暂存区；
+     * - diff [commit id]：指定提交与工作区；
+     * - diff [commit id] [commit id]：两个提交之间。
+     *
+     * @param options 命令选项
+     */
+    static void diff(String[] options) {
+        CommitManager commitManager = callCommitManager(COMMIT_MANAGER);
+        FileManager fileManager = callFileManager(FILE_MANAGER);
+        Commit head = commitManager.getHeadCommit();
+        String patch;
+        if (options.length == 0) {
+            Map<String, String> index = fileManager.getIndex(head);
+            patch = Diff.files(index, name -> fileManager.readBlob(index.get(name)),
+                    fileManager.getWorkingFiles(), fileManager::readWorking);
+        } else if (options.length == 1 && options[0].equals("--cached")) {
+            Map<String, String> index = fileManager.getIndex(head);
+            patch = Diff.files(head.getTrackedFile(), name -> readTrackedBlob(head, name),
+                    index, name -> fileManager.readBlob(index.get(name)));
+        } else if (options.length == 1) {
+            Commit commit = diffCommit(commitManager, options[0]);
+            patch = Diff.files(commit.getTrackedFile(), name -> readTrackedBlob(commit, name),
+                    fileManager.getWorkingFiles(), fileManager::readWorking);
+        } else {
+            Commit from = diffCommit(commitManager, options[0]);
+            Commit to = diffCommit(commitManager, options[1]);
+            patch = Diff.files(from.getTrackedFile(), name -> readTrackedBlob(from, name),
+                    to.getTrackedFile(), name -> readTrackedBlob(to, name));
+        }
+        System.out.print(patch);
+    }
+
+    /** 按（可缩写的）ID 查找提交，不存在时抛出异常 */
+    private static Commit diffCommit(CommitManager commitManager, String id) {
+        Commit commit = commitManager.getCommit(id);
+        if (commit == null) {
+            throw error("No commit with that id exists.");
+        }
+        return commit;
+    }
+
+    /** 读取 commit 中追踪的文件 fileName 的内容 */
+    private static String readTrackedBlob(Commit commit, String fileName) {
+        return ObjectStore.readAsString(BLOBS, commit.trackedHash(fileName));
+    }
+
+    /**
+     * 回收所有分支都无法到达的 commit 和 blob，以及暂存区中的孤立 blob。
+     * 支持的选项：
+     * - --dry-run：只列出将被删除的对象和可回收的字节数；
+     * - --prune=now 或 --prune=[秒数]：设置宽限期，默认两周。
+     *
+     * @param options 命令选项
+     */
+    static void gc(String[] options) {
+        boolean dryRun = false;
+        long graceMillis = GarbageCollector.DEFAULT_GRACE_MILLIS;
+        for (String option : options) {
+            if (option.equals("--dry-run")) {
+                dryRun = true;
+            } else if (option.equals("--prune=now")) {
+                graceMillis = 0;
+            } else if (option.matches("--prune=\\d+")) {
+                graceMillis = Long.parseLong(option.substring("--prune=".length())) * 1000;
+            } else {
+                throw error("Incorrect operands.");
+            }
+        }
+        CommitManager commitManager = callCommitManager(COMMIT_MANAGER);
+        FileManager fileManager = callFileManager(FILE_MANAGER);
+        GarbageCollector collector = new GarbageCollector(commitManager,
+                fileManager.getAddition().values(),
+                COMMITS, BLOBS, STAGING_BLOBS, graceMillis);
+        collector.mark();
+        collector.sweep(dryRun);
+        collector.report(dryRun);
+        if (!dryRun) {
+            commitManager.save();
+            // 重写提交图，让 log -- 文件名 可以跳过没有修改该文件的提交
+            CommitGraph.write(GITLET_DIR, commitManager);
+        }
+    }
+
+    /**
+     * 检查对象库的一致性：commit 与 blob 的哈希、父提交与 blob 的引用以及提交图的连通性。
+     *
+     * @return 退出码，0 表示一致，参见 IntegrityChecker
+     */
+    static int fsck() {
+        CommitManager commitManager = callCommitManager(COMMIT_MANAGER);
+        return new IntegrityChecker(commitManager, COMMITS, BLOBS).check();
+    }
+
+    /**
+     * 将平铺存放的 commit 和 blob 迁移到按 ID 前两位分片的子目录中。
+     * 只移动文件，不转换格式：以 Java 序列化保存的 commit 仍按旧格式读取，参见 ObjectStore.migrate。
+     */
+    static void migrateObjects() {
+        int moved = ObjectStore.migrate(COMMITS) + ObjectStore.migrate(BLOBS);
+        message("Migrated %d objects.", moved);
+    }
+
+    /**
+     * 在前台运行工作目录监视器，使 status 和 add 只需处理发生变化的文件。
+     * 使用 --stop 选项可以通知正在运行的监视器退出。
+     *
+     * @param options 命令选项
+     */
+    static void watch(String[] options) {
+        if (options.length == 0) {
+            Watcher.run(CWD, WATCH_DIR);
+        } else if (options.length == 1 && options[0].equals("--stop")) {
+            Watcher.stop(WATCH_DIR);
+        } else {
+            throw error("Incorrect operands.");
+        }
+    }
+
+    /**
+     * 从标准输入读取 fast-import 流，批量导入 blob、commit 和分支，不修改工作区和暂存区。
+     */
+    static void fastImport() {
+        CommitManager commitManager = callCommitManager(COMMIT_MANAGER);
+        FastImport importer = new FastImport(commitManager, COMMITS, BLOBS, System.in);
+        importer.run();
+        message("Imported %d commits and %d blobs.",
+                importer.commitCount(), importer.blobCount());
+    }
+
+    /**
+     * 把所有分支可达的历史以 fast-import 流的格式写到标准输出。
+     */
+    static void fastExport() {
+        new FastExport(callCommitManager(COMMIT_MANAGER), BLOBS, System.out).run();
+    }
+
+    /**
+     * 管理稀疏检出模式。
+     * - set [pattern]...：只在工作区中保留文件名匹配任意模式的追踪文件；
+     * - list：列出当前的模式；
+     * - disable：关闭稀疏检出，把所有追踪文件写回工作区。
+     *
+     * @param options 命令选项
+     */
+    static void sparseCheckout(String[] options) {
+        FileManager fileManager = callFileManager(FILE_MANAGER);
+        Commit head = callCommitManager(COMMIT_MANAGER).getHeadCommit();
+        String action = options[0];
+        if (action.equals("set") && options.length > 1) {
+            List<String> patterns = Arrays.asList(options).subList(1, options.length);
+            fileManager.applySparse(head, SparseCheckout.of(patterns));
+        } else if (action.equals("disable") && options.length == 1) {
+            fileManager.applySparse(head, SparseCheckout.of(List.of()));
+        } else if (action.equals("list") && options.length == 1) {
+            for (String pattern : SparseCheckout.load(GITLET_DIR).patterns()) {
+                message("%s", pattern);
+            }
+            return;
+        } else {
+            throw error("Incorrect operands.");
+        }
+        fileManager.save();
+    }
+
+    /**
+     * 把 commit 中的文件 fileName 加入暂存区但不写入工作区，用于合并稀疏集合外的文件。
+     *
+     * @param commit 文件所在的提交
+     * @param fileName 文件名
+     */
+    static void stageFromCommit(Commit commit, String fileName) {
+        FileManager fileManager = callFileManager(FILE_MANAGER);
+        fileManager.stageFromCommit(commit, fileName);
+        fileManager.save();
+    }
+
+    /** 判断文件 fileName 是否属于当前的稀疏检出集合 */
+    static boolean isInSparse(String fileName) {
+        return SparseCheckout.load(GITLET_DIR).matches(fileName);
+    }
 }
@@ -0,0 +1,110 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 稀疏检出（sparse checkout）的文件名模式。
+ *
+ * 模式保存在 .gitlet/sparse 中，每行一个 glob 模式（例如 "*.txt"、"src-*"），
+ * 文件名匹配任意一个模式即属于稀疏集合。文件不存在时表示未启用稀疏检出，所有文件都属于集合。
+ *
+ * 启用后，checkout、reset、merge 只把集合内的文件写入工作区，status 只扫描集合内的文件；
+ * 集合外的文件仍然被提交追踪，新的提交从父提交继承它们，不会被当作删除。
+ */
+class SparseCheckout {
+
+    /** 模式文件名 */
+    private static final String FILE_NAME = "sparse";
+
+    /** 模式列表，为空表示未启用 */
+    private final List<String> patterns;
+
+    /** 与 patterns 一一对应的匹配器 */
+    private final List<PathMatcher> matchers;
+
+    private SparseCheckout(List<String> patterns) {
+        this.patterns = patterns;
+        this.matchers = new ArrayList<>();
+        for (String pattern : patterns) {
+            try {
+                matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + pattern));
+            } catch (IllegalArgumentException e) {
+                throw Utils.error("Invalid sparse pattern: %s", pattern);
+            }
+        }
+    }
+
+    /**
+     * 读取 gitletDir 中保存的稀疏模式。
+     *
+     * @param gitletDir .gitlet 目录
+     * @return 稀疏模式，未启用时所有文件都匹配
+     */
+    static SparseCheckout load(File gitletDir) {
+        File file = Utils.join(gitletDir, FILE_NAME);
+        List<String> patterns = new ArrayList<>();
+        if (Journal.exists(file)) {
+            String text = new String(Journal.read(file), StandardCharsets.UTF_8);
+            for (String line : text.split("\n")) {
+                if (!line.isBlank()) {
+                    patterns.add(line.strip());
+                }
+            }
+        }
+        return new SparseCheckout(patterns);
+    }
+
+    /**
+     * 由命令行给出的模式创建稀疏模式，模式不合法时抛出异常。
+     *
+     * @param patterns 模式列表，为空表示不启用
+     * @return 稀疏模式
+     */
+    static SparseCheckout of(List<String> patterns) {
+        return new SparseCheckout(new ArrayList<>(patterns));
+    }
+
+    /** 把模式保存到 gitletDir 中；未启用时删除模式文件 */
+    void save(File gitletDir) {
+        File file = Utils.join(gitletDir, FILE_NAME);
+        if (patterns.isEmpty()) {
+            Journal.delete(file);
+        } else {
+            Journal.write(file, String.join("\n", patterns) + "\n");
+        }
+    }
+
+    /** 是否启用了稀疏检出 */
+    boolean isEnabled() {
+        return !patterns.isEmpty();
+    }
+
+    /** 返回模式列表 */
+    List<String> patterns() {
+        return new ArrayList<>(patterns);
+    }
+
+    /**
+     * 判断文件 fileName 是否属于稀疏集合，未启用时总是返回 true。
+     *
+     * @param fileName 文件名
+     */
+    boolean matches(String fileName) {
+        if (patterns.isEmpty()) {
+            return true;
+        }
+        Path path = Path.of(fileName);
+        for (PathMatcher matcher : matchers) {
+            if (matcher.matches(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
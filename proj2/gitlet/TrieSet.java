@@ -30,6 +30,28 @@ class TrieSet implements Serializable {
         node.isEnd = true;
     }
 
+    /** 从 Trie 中删除一个字符串，并剪掉不再通向任何字符串的空分支 */
+    void remove(String word) {
+        remove(root, word, 0);
+    }
+
+    /** 辅助函数：递归删除，返回当前节点是否可以被父节点剪掉 */
+    private boolean remove(TrieNode node, String word, int depth) {
+        if (depth == word.length()) {
+            node.isEnd = false;
+            return node.children.isEmpty();
+        }
+        char ch = word.charAt(depth);
+        TrieNode child = node.children.get(ch);
+        if (child == null) {
+            return false;
+        }
+        if (remove(child, word, depth + 1)) {
+            node.children.remove(ch);
+        }
+        return !node.isEnd && node.children.isEmpty();
+    }
+
     /** 判断 Trie 中是否包含这个字符串 */
     boolean contains(String word) {
         TrieNode node = findNode(word);
@@ -1,6 +1,7 @@
 package gitlet;
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -15,7 +16,6 @@ import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
-import java.util.Formatter;
 import java.util.List;
 
 
@@ -46,21 +46,29 @@ class Utils {
      *  返回 VALS 连接后的 SHA-1 哈希值，VALS 可以是字节数组或字符串的任意组合。
      */
     static String sha1(Object... vals) {
-        try {
+        try (Profiler.Phase p = Profiler.phase("hash")) {
             MessageDigest md = MessageDigest.getInstance("SHA-1");
+            long length = 0;
             for (Object val : vals) {
                 if (val instanceof byte[]) {
                     md.update((byte[]) val);
+                    length += ((byte[]) val).length;
                 } else if (val instanceof String) {
-                    md.update(((String) val).getBytes(StandardCharsets.UTF_8));
+                    byte[] bytes = ((String) val).getBytes(StandardCharsets.UTF_8);
+                    md.update(bytes);
+                    length += bytes.length;
                 } else {
                     throw new IllegalArgumentException("improper type to sha1");
                 }
             }
-            Formatter result = new Formatter();
+            // 逐个字节转成十六进制，比 Formatter 快得多，导入等批量操作中每个对象都要计算一次
+            StringBuilder result = new StringBuilder(UID_LENGTH);
             for (byte b : md.digest()) {
-                result.format("%02x", b);
+                result.append(Character.forDigit((b >> 4) & 0xf, 16));
+                result.append(Character.forDigit(b & 0xf, 16));
             }
+            Profiler.count(Profiler.Counter.HASHES, 1);
+            Profiler.count(Profiler.Counter.BYTES_HASHED, length);
             return result.toString();
         } catch (NoSuchAlgorithmException excp) {
             throw new IllegalArgumentException("System does not support SHA-1");
@@ -122,8 +130,10 @@ class Utils {
         if (!file.isFile()) {
             throw new IllegalArgumentException("must be a normal file");
         }
-        try {
-            return Files.readAllBytes(file.toPath());
+        try (Profiler.Phase p = Profiler.phase("file-read")) {
+            byte[] bytes = Files.readAllBytes(file.toPath());
+            Profiler.count(Profiler.Counter.BYTES_READ, bytes.length);
+            return bytes;
         } catch (IOException excp) {
             throw new IllegalArgumentException(excp.getMessage());
         }
@@ -149,7 +159,7 @@ class Utils {
      *  CONTENTS 中的每个对象可以是字符串或字节数组。如果出现问题，抛出 IllegalArgumentException 异常。
      */
     static void writeContents(File file, Object... contents) {
-        try {
+        try (Profiler.Phase p = Profiler.phase("file-write")) {
             if (file.isDirectory()) {
                 throw
                     new IllegalArgumentException("cannot overwrite directory");
@@ -157,11 +167,10 @@ class Utils {
             BufferedOutputStream str =
                 new BufferedOutputStream(Files.newOutputStream(file.toPath()));
             for (Object obj : contents) {
-                if (obj instanceof byte[]) {
-                    str.write((byte[]) obj);
-                } else {
-                    str.write(((String) obj).getBytes(StandardCharsets.UTF_8));
-                }
+                byte[] bytes = obj instanceof byte[]
+                        ? (byte[]) obj : ((String) obj).getBytes(StandardCharsets.UTF_8);
+                str.write(bytes);
+                Profiler.count(Profiler.Counter.BYTES_WRITTEN, bytes.length);
             }
             str.close();
         } catch (IOException | ClassCastException excp) {
@@ -177,11 +186,13 @@ class Utils {
      */
     static <T extends Serializable> T readObject(File file,
                                                  Class<T> expectedClass) {
-        try {
+        try (Profiler.Phase p = Profiler.phase("deserialize")) {
             ObjectInputStream in =
                 new ObjectInputStream(new FileInputStream(file));
             T result = expectedClass.cast(in.readObject());
             in.close();
+            Profiler.count(Profiler.Counter.OBJECTS_DESERIALIZED, 1);
+            Profiler.count(Profiler.Counter.BYTES_READ, file.length());
             return result;
         } catch (IOException | ClassCastException
                  | ClassNotFoundException excp) {
@@ -271,7 +282,7 @@ class Utils {
      *  返回包含 OBJ 序列化内容的字节数组。
      */
     static byte[] serialize(Serializable obj) {
-        try {
+        try (Profiler.Phase p = Profiler.phase("serialize")) {
             ByteArrayOutputStream stream = new ByteArrayOutputStream();
             ObjectOutputStream objectStream = new ObjectOutputStream(stream);
             objectStream.writeObject(obj);
@@ -282,6 +293,25 @@ class Utils {
         }
     }
 
+    /** Returns an object of type T deserialized from BYTES, casting it to
+     *  EXPECTEDCLASS. Throws IllegalArgumentException in case of problems.
+     *
+     *  从字节数组 BYTES 中反序列化类型为 T 的对象，并将其转换为 EXPECTEDCLASS。
+     *  如果出现问题，抛出 IllegalArgumentException 异常。
+     */
+    static <T extends Serializable> T deserialize(byte[] bytes,
+                                                  Class<T> expectedClass) {
+        try (Profiler.Phase p = Profiler.phase("deserialize");
+             ObjectInputStream in =
+                 new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            Profiler.count(Profiler.Counter.OBJECTS_DESERIALIZED, 1);
+            return expectedClass.cast(in.readObject());
+        } catch (IOException | ClassCastException
+                 | ClassNotFoundException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
 
 
     /* MESSAGES AND ERROR REPORTING */
@@ -327,7 +357,8 @@ class Utils {
      *
      * @param dir      包含目标文件的目录
      * @param fileName 目标文件的名称
-     * @return         该文件名和内容连接后的 SHA-1 哈希值；如果文件不存在，则返回 null
+     * @return         该文件内容的 SHA-1 哈希值（与文件名无关，内容相同的文件共用一个 blob）；
+     *                 如果文件不存在，则返回 null
      */
     static String fileHashIn(File dir, String fileName) {
         File file = join(dir, fileName);
@@ -335,6 +366,6 @@ class Utils {
             return null;
         }
         String content = readContentsAsString(file);
-        return sha1(fileName, content);
+        return sha1(content);
     }
 }
@@ -0,0 +1,354 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于 java.nio.file.WatchService 的工作目录监视器（可选启用）。
+ *
+ * 监视器作为一个前台进程运行（gitlet watch），把工作目录中发生变化的文件名
+ * 逐行追加到 .gitlet/watch/dirty 日志中。FileManager 记录自己上次刷新时读到的日志偏移量，
+ * 下次只需要重新计算日志中新出现的文件的哈希值，因此 status 和 add 的磁盘读取量
+ * 只与变化的文件数成正比。
+ *
+ * 监视目录中的文件：
+ * - alive：保存本次监视的代号（generation），监视器每秒更新一次其修改时间作为心跳；
+ *   心跳超时或文件不存在时，视为没有监视器，FileManager 退回到全量扫描。
+ * - dirty：变化日志。一行 "*" 表示事件溢出（OVERFLOW）或监视器刚启动，读者需要全量扫描。
+ * - cookie-*：读者创建的同步文件。监视器看到它时会在日志中写入 "!cookie-*"，
+ *   读者等到这一行出现，就能确定在此之前发生的所有事件都已经写入日志。
+ * - cache：读者保存的工作区哈希缓存及其对应的代号和偏移量。它不属于锁保护的元数据，
+ *   status 等只读命令在共享锁下也会更新它；每次都写入临时文件再原子替换，
+ *   所以任何时刻读到的都是某一次完整刷新的结果，缓存丢失或损坏时退回全量扫描。
+ */
+class Watcher {
+
+    /** 心跳间隔（毫秒） */
+    private static final long HEARTBEAT_MILLIS = 1000;
+
+    /** 超过该时间没有心跳则认为监视器已退出（毫秒） */
+    private static final long STALE_MILLIS = 5 * HEARTBEAT_MILLIS;
+
+    /** 读者等待 cookie 回显的最长时间（毫秒），超时则退回全量扫描 */
+    private static final long COOKIE_TIMEOUT_MILLIS = 1000;
+
+    /** 日志中表示需要全量扫描的行 */
+    private static final String RESCAN = "*";
+
+    /** 日志中 cookie 回显行的前缀 */
+    private static final String COOKIE_ECHO = "!";
+
+    /** cookie 文件名前缀 */
+    private static final String COOKIE_PREFIX = "cookie-";
+
+    /**
+     * 一次读取变化日志的结果。
+     */
+    static class Changes {
+        /** 监视代号，与上次不同时需要全量扫描 */
+        final String generation;
+        /** 读到的日志末尾偏移量 */
+        final long offset;
+        /** 是否需要全量扫描 */
+        final boolean rescan;
+        /** 自上次偏移量以来发生变化的文件名 */
+        final Set<String> paths;
+
+        Changes(String generation, long offset, boolean rescan, Set<String> paths) {
+            this.generation = generation;
+            this.offset = offset;
+            this.rescan = rescan;
+            this.paths = paths;
+        }
+    }
+
+    /**
+     * 保存在 cache 文件中的工作区哈希缓存。
+     */
+    static class Cache implements Serializable {
+        private static final long serialVersionUID = 1L;
+        /** 缓存对应的监视代号 */
+        final String generation;
+        /** 缓存对应的日志偏移量 */
+        final long offset;
+        /** 文件名 -> 哈希值 */
+        final HashMap<String, String> hashes;
+
+        Cache(String generation, long offset, Map<String, String> hashes) {
+            this.generation = generation;
+            this.offset = offset;
+            this.hashes = new HashMap<>(hashes);
+        }
+    }
+
+    /**
+     * 在前台运行监视器，直到 alive 文件被删除（gitlet watch --stop）或进程被终止。
+     *
+     * @param workingDir 工作目录
+     * @param watchDir 监视状态目录
+     */
+    static void run(File workingDir, File watchDir) {
+        watchDir.mkdir();
+        File alive = Utils.join(watchDir, "alive");
+        File dirty = Utils.join(watchDir, "dirty");
+        if (isAlive(watchDir)) {
+            throw Utils.error("A watcher is already running.");
+        }
+        String generation = Long.toString(System.currentTimeMillis());
+        Utils.writeContents(alive, generation);
+        Utils.writeContents(dirty, "");
+        append(dirty, List.of(RESCAN));
+        Runtime.getRuntime().addShutdownHook(new Thread(alive::delete));
+
+        try (WatchService service = FileSystems.getDefault().newWatchService()) {
+            Path working = workingDir.toPath();
+            Path state = watchDir.toPath();
+            working.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            // 与工作目录共用同一个 WatchService，两个目录的事件由同一个线程按发生顺序分发到各自的 key
+            state.register(service, StandardWatchEventKinds.ENTRY_CREATE);
+            while (alive.exists()) {
+                WatchKey key = service.poll(HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+                alive.setLastModified(System.currentTimeMillis());
+                if (key == null) {
+                    continue;
+                }
+                List<String> lines = new ArrayList<>();
+                List<String> cookies = new ArrayList<>();
+                drain(key, state, lines, cookies);
+                if (!cookies.isEmpty()) {
+                    // 回显 cookie 之前先取出所有已就绪的 key：工作目录的 key 若在 reset 时仍有事件，
+                    // 会重新排到状态目录的 key 之后，不先取出就会在 cookie 之后才写入日志
+                    for (WatchKey ready = service.poll(); ready != null; ready = service.poll()) {
+                        drain(ready, state, lines, cookies);
+                    }
+                    lines.addAll(cookies);
+                }
+                if (!lines.isEmpty()) {
+                    append(dirty, lines);
+                }
+            }
+        } catch (IOException e) {
+            throw Utils.error("Watcher failed: %s", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            alive.delete();
+        }
+    }
+
+    /**
+     * 取出 key 上的所有事件：工作目录中的文件名和溢出标记加入 lines，cookie 回显行加入 cookies。
+     *
+     * @param key 已就绪的 key
+     * @param state 监视状态目录
+     * @param lines 日志行
+     * @param cookies cookie 回显行
+     */
+    private static void drain(WatchKey key, Path state, List<String> lines, List<String> cookies) {
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                lines.add(RESCAN);
+                continue;
+            }
+            String name = event.context().toString();
+            if (key.watchable().equals(state)) {
+                if (name.startsWith(COOKIE_PREFIX)) {
+                    cookies.add(COOKIE_ECHO + name);
+                }
+            } else if (!name.equals(".gitlet")) {
+                lines.add(name);
+            }
+        }
+        if (!key.reset()) {
+            lines.add(RESCAN);
+        }
+    }
+
+    /** 通知正在运行的监视器退出 */
+    static void stop(File watchDir) {
+        if (!Utils.join(watchDir, "alive").delete()) {
+            throw Utils.error("No watcher is running.");
+        }
+    }
+
+    /** 判断监视器是否在运行（alive 文件存在且心跳未超时） */
+    static boolean isAlive(File watchDir) {
+        File alive = Utils.join(watchDir, "alive");
+        return alive.isFile()
+                && System.currentTimeMillis() - alive.lastModified() < STALE_MILLIS;
+    }
+
+    /**
+     * 读取自 offset 以来的变化。读取前先通过 cookie 与监视器同步，
+     * 保证调用之前发生的所有文件变化都已包含在结果中。
+     *
+     * @param watchDir 监视状态目录
+     * @param generation 上次读取时的监视代号，可以为 null
+     * @param offset 上次读取到的日志偏移量
+     * @return 变化集合；没有可用的监视器时返回 null
+     */
+    static Changes poll(File watchDir, String generation, long offset) {
+        if (!isAlive(watchDir)) {
+            return null;
+        }
+        String current;
+        try {
+            current = Utils.readContentsAsString(Utils.join(watchDir, "alive"));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (!current.equals(generation)) {
+            offset = 0;
+        }
+        String cookie = COOKIE_PREFIX + ProcessHandle.current().pid() + "-" + System.nanoTime();
+        File cookieFile = Utils.join(watchDir, cookie);
+        File dirty = Utils.join(watchDir, "dirty");
+        Utils.writeContents(cookieFile, "");
+        try {
+            long deadline = System.currentTimeMillis() + COOKIE_TIMEOUT_MILLIS;
+            while (System.currentTimeMillis() < deadline) {
+                Changes changes = read(dirty, current, offset, COOKIE_ECHO + cookie);
+                if (changes != null) {
+                    return changes;
+                }
+                Thread.sleep(1);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            cookieFile.delete();
+        }
+        return null;
+    }
+
+    /**
+     * 读取 cache 文件中的工作区哈希缓存。
+     *
+     * @param watchDir 监视状态目录
+     * @return 缓存；文件不存在或损坏时返回 null
+     */
+    static Cache loadCache(File watchDir) {
+        File cache = Utils.join(watchDir, "cache");
+        if (!cache.isFile()) {
+            return null;
+        }
+        try {
+            return Utils.deserialize(Utils.readContents(cache), Cache.class);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 把工作区哈希缓存写入临时文件，再原子替换 cache 文件。
+     * 写入失败时保持原文件不变，下次刷新时多读一些变化即可。
+     *
+     * @param watchDir 监视状态目录
+     * @param cache 要保存的缓存
+     */
+    static void saveCache(File watchDir, Cache cache) {
+        File tmp = Utils.join(watchDir, "cache." + ProcessHandle.current().pid() + ".tmp");
+        try {
+            Utils.writeContents(tmp, Utils.serialize(cache));
+            Files.move(tmp.toPath(), Utils.join(watchDir, "cache").toPath(),
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | IllegalArgumentException e) {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * 从 offset 开始读取日志，直到 cookie 回显行为止，返回其间的变化集合；
+     * 还没有读到 cookie 回显行时返回 null。cookie 之后的内容可能还没写完整，留给下次读取。
+     */
+    private static Changes read(File dirty, String generation, long offset, String cookieLine) {
+        byte[] bytes;
+        try (RandomAccessFile file = new RandomAccessFile(dirty, "r")) {
+            long length = file.length();
+            if (length < offset) {
+                // 日志已被截断，无法确定期间的变化
+                return new Changes(generation, 0, true, new HashSet<>());
+            }
+            bytes = new byte[(int) (length - offset)];
+            file.seek(offset);
+            file.readFully(bytes);
+        } catch (IOException e) {
+            return null;
+        }
+        boolean rescan = false;
+        Set<String> paths = new HashSet<>();
+        int lineStart = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] != '\n') {
+                continue;
+            }
+            String line = new String(bytes, lineStart, i - lineStart, StandardCharsets.UTF_8);
+            lineStart = i + 1;
+            if (line.equals(cookieLine)) {
+                return new Changes(generation, offset + lineStart, rescan, paths);
+            } else if (line.equals(RESCAN)) {
+                rescan = true;
+            } else if (!line.isEmpty() && !line.startsWith(COOKIE_ECHO)) {
+                paths.add(line);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 若日志中 offset 之后没有新内容，则把日志清空，返回新的偏移量；
+     * 否则保持日志不变，返回原偏移量。在日志文件锁内完成，避免与监视器的追加交错。
+     *
+     * @param watchDir 监视状态目录
+     * @param offset 已经处理到的偏移量
+     * @return 新的偏移量
+     */
+    static long compact(File watchDir, long offset) {
+        File dirty = Utils.join(watchDir, "dirty");
+        if (!dirty.isFile()) {
+            return offset;
+        }
+        try (FileChannel channel = new RandomAccessFile(dirty, "rw").getChannel();
+             FileLock lock = channel.lock()) {
+            if (channel.size() == offset) {
+                channel.truncate(0);
+                return 0;
+            }
+        } catch (IOException e) {
+            // 清理失败不影响正确性，下次再试
+        }
+        return offset;
+    }
+
+    /** 在日志文件锁内把 lines 追加到日志末尾 */
+    private static void append(File dirty, List<String> lines) {
+        StringBuilder text = new StringBuilder();
+        for (String line : lines) {
+            text.append(line).append('\n');
+        }
+        try (FileChannel channel = new RandomAccessFile(dirty, "rw").getChannel();
+             FileLock lock = channel.lock()) {
+            channel.position(channel.size());
+            channel.write(ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (IOException e) {
+            throw Utils.error("Watcher failed: %s", e.getMessage());
+        }
+    }
+}
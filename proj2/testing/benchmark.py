@@ -0,0 +1,292 @@
+import sys, json, time
+from subprocess import run, PIPE, STDOUT
+from getopt import GetoptError
+from os import makedirs
+from os.path import abspath, exists, getsize, join
+from shutil import copytree, rmtree
+from statistics import median
+from tempfile import mkdtemp
+
+# Importing repogen must not leave a __pycache__ directory in the source tree.
+sys.dont_write_bytecode = True
+from repogen import Generator, gitlet, headId, parseOptions
+
+SHORT_USAGE = """\
+Usage: python3 benchmark.py OPTIONS
+
+   OPTIONS may include the repogen.py shape options (--shape, --files,
+   --commits, --changes, --branches, --merge-every, --sizes, --seed) and
+       --progdir=DIR  Directory containing the compiled gitlet classes
+                      (default "..").
+       --repeat=N     Number of timed runs of each command (default 5).
+       --commands=LIST
+                      Comma-separated subset of: startup, fast-import,
+                      status, log, checkout, add, commit, merge, fetch,
+                      fetch-all, clone.
+       --output=FILE  Write the JSON results to FILE instead of stdout.
+       --baseline=FILE
+                      Compare the medians with an earlier results file and
+                      exit with status 1 if any command got slower than the
+                      threshold allows.
+       --threshold=F  Allowed slowdown against the baseline as a fraction
+                      (default 0.25).
+       --keep         Keep the generated repositories.
+"""
+
+USAGE = SHORT_USAGE + """\
+
+Builds a synthetic repository with repogen.py (through "gitlet fast-import"),
+then times each gitlet command as a separate "java gitlet.Main" process, the
+way it is used from the shell, so every sample includes JVM startup; the
+"startup" entry (gitlet with no arguments) measures that fixed cost.
+
+  status, log   run on master.
+  checkout      switches to a side branch and back; both switches are samples.
+  add, commit   modify one file, add it, commit it.
+  merge         merges a side branch into master, then resets master before
+                the next run.  Conflicting merges are still timed.
+  fetch         fetches master into a new empty repository.
+  fetch-all     adds three copies of the repository as remotes of a new empty
+                repository and runs "fetch --all"; "fetch-each" times the same
+                work done with one "fetch" per remote and branch.
+  clone         clones the repository into a new directory; reachable loose
+                objects are hard-linked, packed ones are rewritten into a pack.
+
+The JSON output records the shape, the Java version and, for every command,
+all samples plus their median and minimum in seconds.
+"""
+
+COMMANDS = ['startup', 'fast-import', 'status', 'log', 'checkout', 'add',
+            'commit', 'merge', 'fetch', 'fetch-all', 'clone']
+
+def Usage():
+    print(SHORT_USAGE, file=sys.stderr)
+    sys.exit(1)
+
+class Bench:
+    """在一个生成的仓库中逐个计时 gitlet 命令。"""
+
+    def __init__(self, prog_dir, work_dir, repeat):
+        self.prog_dir = prog_dir
+        self.work_dir = work_dir
+        self.repo = join(work_dir, 'repo')
+        self.repeat = repeat
+        self.results = {}
+
+    def timed(self, name, repo, *args, stdin=None, expect_ok=True):
+        """运行一条命令，把耗时记入 name 的样本。"""
+        start = time.perf_counter()
+        result = gitlet(self.prog_dir, repo, *args, stdin=stdin)
+        elapsed = time.perf_counter() - start
+        if expect_ok and result.returncode != 0:
+            raise ValueError("gitlet {} failed: {}".format(
+                ' '.join(args), result.stdout.strip()))
+        self.results.setdefault(name, []).append(elapsed)
+        return result
+
+    def run(self, *args, repo=None):
+        """运行一条不计时的准备命令。"""
+        result = gitlet(self.prog_dir, repo or self.repo, *args)
+        if result.returncode != 0:
+            raise ValueError("gitlet {} failed: {}".format(
+                ' '.join(args), result.stdout.strip()))
+        return result
+
+    def build(self, generator):
+        """生成仓库：init、fast-import 并检出 master。"""
+        stream = join(self.work_dir, 'stream')
+        with open(stream, 'wb') as out:
+            generator.write(out)
+        self.stream_bytes = getsize(stream)
+        makedirs(self.repo)
+        self.run('init')
+        with open(stream, 'rb') as inp:
+            self.timed('fast-import', self.repo, 'fast-import', stdin=inp)
+        self.run('reset', headId(self.prog_dir, self.repo))
+        self.side = next((b for b in generator.branches[1:]
+                          if b in generator.state
+                          and b not in generator.merged), None)
+        if self.side is None:
+            # 没有未合并的分支：建一个只改了一个文件的分支供 checkout 和 merge 使用
+            self.side = 'bench-side'
+            self.run('branch', self.side)
+            self.run('checkout', self.side)
+            self.touch(generator.names[-1], 'side')
+            self.run('add', generator.names[-1])
+            self.run('commit', 'side change')
+            self.run('checkout', 'master')
+        self.names = generator.names
+        self.branches = sorted(generator.state)
+
+    def touch(self, name, text):
+        with open(join(self.repo, name), 'a') as out:
+            out.write('benchmark {}\n'.format(text))
+
+    def startup(self):
+        for _ in range(self.repeat):
+            self.timed('startup', self.repo, expect_ok=False)
+
+    def status(self):
+        for _ in range(self.repeat):
+            self.timed('status', self.repo, 'status')
+
+    def log(self):
+        for _ in range(self.repeat):
+            self.timed('log', self.repo, 'log')
+
+    def checkout(self):
+        for _ in range(self.repeat):
+            self.timed('checkout', self.repo, 'checkout', self.side)
+            self.timed('checkout', self.repo, 'checkout', 'master')
+
+    def add(self):
+        self.addAndCommit(commit=False)
+
+    def commit(self):
+        self.addAndCommit(commit=True)
+
+    def addAndCommit(self, commit):
+        for i in range(self.repeat):
+            name = self.names[i % len(self.names)]
+            self.touch(name, 'run {}'.format(i))
+            if commit:
+                self.run('add', name)
+                self.timed('commit', self.repo, 'commit', 'benchmark ' + name)
+            else:
+                self.timed('add', self.repo, 'add', name)
+        if not commit:
+            # 提交暂存的文件，让后面的 checkout 和 merge 从干净的状态开始
+            self.run('commit', 'benchmark add')
+
+    def merge(self):
+        base = headId(self.prog_dir, self.repo)
+        for _ in range(self.repeat):
+            self.timed('merge', self.repo, 'merge', self.side, expect_ok=False)
+            self.run('reset', base)
+
+    def fetch(self):
+        for i in range(self.repeat):
+            clone = join(self.work_dir, 'clone{}'.format(i))
+            makedirs(clone)
+            self.run('init', repo=clone)
+            self.run('add-remote', 'origin', join(self.repo, '.gitlet'),
+                     repo=clone)
+            self.timed('fetch', clone, 'fetch', 'origin', 'master')
+            rmtree(clone, ignore_errors=True)
+
+    def fetch_all(self):
+        mirrors = []
+        for i in range(3):
+            mirror = join(self.work_dir, 'mirror{}'.format(i))
+            copytree(join(self.repo, '.gitlet'), join(mirror, '.gitlet'))
+            mirrors.append(mirror)
+        for i in range(self.repeat):
+            for mode in ('fetch-all', 'fetch-each'):
+                clone = join(self.work_dir, 'clone{}'.format(i))
+                makedirs(clone)
+                self.run('init', repo=clone)
+                for j, mirror in enumerate(mirrors):
+                    self.run('add-remote', 'm{}'.format(j),
+                             join(mirror, '.gitlet'), repo=clone)
+                if mode == 'fetch-all':
+                    self.timed(mode, clone, 'fetch', '--all')
+                else:
+                    start = time.perf_counter()
+                    for j in range(len(mirrors)):
+                        for branch in self.branches:
+                            self.run('fetch', 'm{}'.format(j), branch,
+                                     repo=clone)
+                    self.results.setdefault(mode, []).append(
+                        time.perf_counter() - start)
+                rmtree(clone, ignore_errors=True)
+        for mirror in mirrors:
+            rmtree(mirror, ignore_errors=True)
+
+    def clone(self):
+        for i in range(self.repeat):
+            clone = join(self.work_dir, 'clone{}'.format(i))
+            makedirs(clone)
+            self.timed('clone', clone, 'clone', self.repo)
+            rmtree(clone, ignore_errors=True)
+
+def summarize(samples):
+    return dict(samples=[round(s, 4) for s in samples],
+                median=round(median(samples), 4), min=round(min(samples), 4))
+
+def javaVersion():
+    result = run(['java', '-version'], stdout=PIPE, stderr=STDOUT,
+                 universal_newlines=True)
+    return result.stdout.splitlines()[0] if result.stdout else None
+
+def compare(results, baseline_file, threshold):
+    """打印与基准结果的比较，返回变慢超过阈值的命令。"""
+    with open(baseline_file) as inp:
+        baseline = json.load(inp)['results']
+    slower = []
+    for name, entry in results.items():
+        if name not in baseline:
+            continue
+        old, new = baseline[name]['median'], entry['median']
+        change = (new - old) / old if old > 0 else 0.0
+        flag = ''
+        if change > threshold:
+            slower.append(name)
+            flag = '  REGRESSION'
+        print("{:12} {:8.3f}s  baseline {:8.3f}s  {:+6.1%}{}".format(
+            name, new, old, change, flag), file=sys.stderr)
+    return slower
+
+if __name__ == "__main__":
+    try:
+        shape, others, rest = parseOptions(
+            sys.argv[1:], ['progdir=', 'repeat=', 'commands=', 'output=',
+                           'baseline=', 'threshold=', 'keep', 'help'])
+        repeat = int(others.get('--repeat', 5))
+        threshold = float(others.get('--threshold', 0.25))
+        commands = others.get('--commands', ','.join(COMMANDS)).split(',')
+        if rest or repeat < 1 or any(c not in COMMANDS for c in commands):
+            Usage()
+    except (GetoptError, ValueError):
+        Usage()
+    if '--help' in others:
+        print(USAGE)
+        sys.exit(0)
+    prog_dir = abspath(others.get('--progdir', '..'))
+    if not exists(join(prog_dir, 'gitlet', 'Main.class')):
+        print("Could not find gitlet.Main in {}.".format(prog_dir),
+              file=sys.stderr)
+        sys.exit(1)
+
+    work_dir = mkdtemp(prefix='gitlet-bench-')
+    bench = Bench(prog_dir, work_dir, repeat)
+    try:
+        bench.build(Generator(**shape))
+        for name in commands:
+            if name != 'fast-import':
+                getattr(bench, name.replace('-', '_'))()
+    except ValueError as excp:
+        print(excp, file=sys.stderr)
+        sys.exit(1)
+    finally:
+        if '--keep' in others:
+            print("Repositories kept in {}".format(work_dir), file=sys.stderr)
+        else:
+            rmtree(work_dir, ignore_errors=True)
+
+    if 'fetch-all' in commands:
+        commands.append('fetch-each')
+    results = {name: summarize(bench.results[name])
+               for name in commands if name in bench.results}
+    report = dict(shape=shape, stream_bytes=bench.stream_bytes,
+                  repeat=repeat, java=javaVersion(),
+                  timestamp=time.strftime('%Y-%m-%dT%H:%M:%S%z'),
+                  results=results)
+    text = json.dumps(report, indent=2, sort_keys=True)
+    if '--output' in others:
+        with open(others['--output'], 'w') as out:
+            out.write(text + '\n')
+    else:
+        print(text)
+    if '--baseline' in others:
+        if compare(results, others['--baseline'], threshold):
+            sys.exit(1)
@@ -0,0 +1,272 @@
+import sys, re, random
+from subprocess import run, PIPE, STDOUT
+from getopt import getopt, GetoptError
+from tempfile import mkstemp
+from os import environ, makedirs, close, remove
+from os.path import abspath, exists, join
+
+SHORT_USAGE = """\
+Usage: python3 repogen.py OPTIONS
+
+   OPTIONS may include
+       --shape=NAME   Start from a preset shape: small, wide, deep, branchy.
+       --files=N      Number of files in the first commit.
+       --commits=N    Total number of commits (including merges).
+       --changes=N    Files modified by each ordinary commit.
+       --branches=N   Number of branches besides master.
+       --merge-every=N
+                      Merge a side branch into master every N commits
+                      (0 disables merges).
+       --sizes=DIST   File-size distribution in bytes: fixed:N,
+                      uniform:MIN:MAX or lognormal:MU:SIGMA.
+       --seed=N       Random seed (default 61).
+       --stream=FILE  Write the fast-import stream to FILE ("-" for stdout).
+       --repo=DIR     Create a gitlet repository in DIR from the stream and
+                      check out master.
+       --progdir=DIR  Directory containing the compiled gitlet classes
+                      (needed with --repo).
+"""
+
+USAGE = SHORT_USAGE + """\
+
+Generates a synthetic history in the stream format read by
+"java gitlet.Main fast-import".  The first commit on master adds all files;
+every later commit picks a branch at random, modifies --changes files on it
+(rewriting one line and the header of each), and every --merge-every commits
+one side branch is merged into master, taking the side branch's version of
+every file that differs.  Side branches start from master's tip the first time
+they are picked.  The same options and seed always produce the same stream.
+"""
+
+# 预设的仓库形状，命令行选项会覆盖其中的值
+SHAPES = {
+    'small':   dict(files=100, commits=200, changes=2, branches=2,
+                    merge_every=20, sizes='uniform:100:2000'),
+    'wide':    dict(files=10000, commits=100, changes=20, branches=0,
+                    merge_every=0, sizes='lognormal:7:1'),
+    'deep':    dict(files=100, commits=100000, changes=1, branches=0,
+                    merge_every=0, sizes='uniform:100:1000'),
+    'branchy': dict(files=1000, commits=5000, changes=3, branches=16,
+                    merge_every=25, sizes='lognormal:7:1'),
+}
+
+LINE_WIDTH = 64
+
+def Usage():
+    print(SHORT_USAGE, file=sys.stderr)
+    sys.exit(1)
+
+def parseSizes(spec):
+    """返回按分布抽取一个文件大小的函数。"""
+    parts = spec.split(':')
+    try:
+        if parts[0] == 'fixed' and len(parts) == 2:
+            n = int(parts[1])
+            return lambda rng: n
+        if parts[0] == 'uniform' and len(parts) == 3:
+            lo, hi = int(parts[1]), int(parts[2])
+            return lambda rng: rng.randint(lo, hi)
+        if parts[0] == 'lognormal' and len(parts) == 3:
+            mu, sigma = float(parts[1]), float(parts[2])
+            return lambda rng: min(int(rng.lognormvariate(mu, sigma)), 1 << 24)
+    except ValueError:
+        pass
+    raise ValueError("bad size distribution {}".format(spec))
+
+class Generator:
+    """按给定形状生成 fast-import 流。"""
+
+    def __init__(self, files, commits, changes, branches, merge_every,
+                 sizes, seed=61):
+        self.files = files
+        self.commits = commits
+        self.changes = min(changes, files)
+        self.branches = ['master'] + ['b{}'.format(i + 1)
+                                      for i in range(branches)]
+        self.merge_every = merge_every
+        self.size_of = parseSizes(sizes)
+        self.rng = random.Random(seed)
+        self.names = ['f{:05d}.txt'.format(i) for i in range(files)]
+        # 每个文件的行数，以及每个分支上 文件名 -> (版本号, 被改写的行)
+        self.lines = {}
+        self.state = {}
+        self.tips = {}
+        # 最新提交已经合并进 master 的分支
+        self.merged = set()
+        self.mark = 0
+        self.time = 1600000000
+
+    def content(self, name, version, line):
+        n = self.lines[name]
+        out = ['{} version {}\n'.format(name, version)]
+        for j in range(1, n):
+            text = '{} line {}'.format(name, j) if j != line else \
+                   '{} line {} rewritten in version {}'.format(name, j, version)
+            out.append(text.ljust(LINE_WIDTH - 1, '.') + '\n')
+        return ''.join(out)
+
+    def nextMark(self):
+        self.mark += 1
+        return self.mark
+
+    def blob(self, out, name, version, line):
+        data = self.content(name, version, line).encode()
+        mark = self.nextMark()
+        out.write(b'blob\nmark :%d\ndata %d\n' % (mark, len(data)))
+        out.write(data)
+        out.write(b'\n')
+        return mark
+
+    def commit(self, out, branch, message, changed, parent=None, merge=None):
+        """输出 changed（文件名 -> blob 标记）对应的 commit，返回其标记。"""
+        mark = self.nextMark()
+        self.time += 60
+        data = message.encode()
+        out.write(b'commit %s\nmark :%d\ntime %d\ndata %d\n'
+                  % (branch.encode(), mark, self.time, len(data)))
+        out.write(data)
+        out.write(b'\n')
+        if parent is not None:
+            out.write(b'from :%d\n' % parent)
+        if merge is not None:
+            out.write(b'merge :%d\n' % merge)
+        for name in sorted(changed):
+            out.write(b'M :%d %s\n' % (changed[name], name.encode()))
+        out.write(b'\n')
+        self.tips[branch] = mark
+        self.merged.discard(branch)
+        return mark
+
+    def write(self, out):
+        rng = self.rng
+        master = {}
+        changed = {}
+        for name in self.names:
+            self.lines[name] = max(1, self.size_of(rng) // LINE_WIDTH)
+            master[name] = (0, 0)
+            changed[name] = self.blob(out, name, 0, 0)
+        self.state['master'] = master
+        self.commit(out, 'master', 'initial import of {} files'.format(
+            self.files), changed)
+        version = 0
+        for i in range(1, self.commits):
+            if self.merge_every and len(self.branches) > 1 \
+                    and i % self.merge_every == 0:
+                side = rng.choice(self.branches[1:])
+                if side in self.state:
+                    self.mergeBranch(out, side)
+                    continue
+            branch = rng.choice(self.branches)
+            parent = None
+            if branch not in self.state:
+                self.state[branch] = dict(self.state['master'])
+                parent = self.tips['master']
+            files = self.state[branch]
+            changed = {}
+            for name in rng.sample(self.names, self.changes):
+                version += 1
+                line = rng.randrange(self.lines[name])
+                files[name] = (version, line)
+                changed[name] = self.blob(out, name, version, line)
+            self.commit(out, branch, 'commit {} on {}'.format(i, branch),
+                        changed, parent)
+
+    def mergeBranch(self, out, side):
+        master = self.state['master']
+        theirs = self.state[side]
+        changed = {}
+        for name in self.names:
+            if master[name] != theirs[name]:
+                master[name] = theirs[name]
+                changed[name] = self.blob(out, name, *theirs[name])
+        self.commit(out, 'master', 'Merged {} into master.'.format(side),
+                    changed, self.tips['master'], self.tips[side])
+        self.merged.add(side)
+
+def gitlet(prog_dir, repo, *args, stdin=None):
+    """在 repo 中运行一条 gitlet 命令，返回 CompletedProcess。"""
+    env = dict(environ, CLASSPATH=prog_dir)
+    return run(['java', 'gitlet.Main'] + list(args), cwd=repo, env=env,
+               stdin=stdin, stdout=PIPE, stderr=STDOUT,
+               universal_newlines=True)
+
+def headId(prog_dir, repo):
+    """返回当前分支最新提交的 ID。"""
+    log = gitlet(prog_dir, repo, 'log').stdout
+    m = re.search(r'^commit ([0-9a-f]+)', log, re.M)
+    return m.group(1) if m else None
+
+def createRepo(stream_file, repo, prog_dir):
+    """在 repo 中初始化仓库，导入 stream_file 并检出 master。"""
+    makedirs(repo, exist_ok=True)
+    if exists(join(repo, '.gitlet')):
+        raise ValueError("{} already contains a gitlet repository".format(repo))
+    for step in (lambda: gitlet(prog_dir, repo, 'init'),
+                 lambda: gitlet(prog_dir, repo, 'fast-import',
+                                stdin=open(stream_file, 'rb')),
+                 lambda: gitlet(prog_dir, repo, 'reset',
+                                headId(prog_dir, repo))):
+        result = step()
+        if result.returncode != 0:
+            raise ValueError("gitlet failed in {}: {}".format(
+                repo, result.stdout.strip()))
+    return result
+
+def parseOptions(argv, extra=()):
+    """解析形状选项，返回 (形状参数, 其他选项)。"""
+    names = ['shape=', 'files=', 'commits=', 'changes=', 'branches=',
+             'merge-every=', 'sizes=', 'seed='] + list(extra)
+    opts, rest = getopt(argv, '', names)
+    shape = dict(SHAPES['small'])
+    shape['seed'] = 61
+    for opt, val in opts:
+        if opt == '--shape':
+            if val not in SHAPES:
+                raise GetoptError("unknown shape " + val)
+            shape.update(SHAPES[val])
+    others = {}
+    for opt, val in opts:
+        key = opt[2:].replace('-', '_')
+        if opt == '--shape':
+            continue
+        elif opt == '--sizes':
+            parseSizes(val)
+            shape['sizes'] = val
+        elif key in shape:
+            shape[key] = int(val)
+        else:
+            others[opt] = val
+    return shape, others, rest
+
+if __name__ == "__main__":
+    try:
+        shape, others, rest = parseOptions(
+            sys.argv[1:], ['stream=', 'repo=', 'progdir=', 'help'])
+    except (GetoptError, ValueError):
+        Usage()
+    if '--help' in others or rest or \
+            ('--stream' not in others and '--repo' not in others):
+        print(USAGE)
+        sys.exit(0)
+
+    generator = Generator(**shape)
+    stream_file = others.get('--stream')
+    if stream_file == '-':
+        generator.write(sys.stdout.buffer)
+        sys.exit(0)
+    temporary = stream_file is None
+    if temporary:
+        fd, stream_file = mkstemp(suffix='.stream')
+        close(fd)
+    try:
+        with open(stream_file, 'wb') as out:
+            generator.write(out)
+        if '--repo' in others:
+            prog_dir = abspath(others.get('--progdir', '..'))
+            createRepo(stream_file, abspath(others['--repo']), prog_dir)
+    except ValueError as excp:
+        print(excp, file=sys.stderr)
+        sys.exit(1)
+    finally:
+        if temporary:
+            remove(stream_file)